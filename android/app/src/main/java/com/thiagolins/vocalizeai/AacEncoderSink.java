@@ -0,0 +1,317 @@
+package com.thiagolins.vocalizeai;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes PCM to AAC in an MP4. {@link #rotate} moves the output to a new
+ * file between two access units while the same encoder keeps running, so
+ * only the first part carries encoder priming and the parts join back into
+ * the exact stream a single file would have had.
+ */
+public class AacEncoderSink implements PcmSink {
+    private static final String TAG = "AacEncoderSink";
+    private static final long TIMEOUT_US = 10_000;
+    /** Journal flush cadence: about a second of audio at 44.1 kHz. */
+    private static final int JOURNAL_FLUSH_FRAMES = 43;
+
+    private static final Set<String> recording = ConcurrentHashMap.newKeySet();
+
+    private final int bitRate;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    /** Guards the muxer, which {@link #rotate} swaps from another thread. */
+    private final Object muxerLock = new Object();
+
+    private volatile String outputPath;
+    private MediaCodec codec;
+    private MediaMuxer muxer;
+    private MediaFormat outputFormat;
+    private int trackIndex = -1;
+    private boolean muxerStarted = false;
+    /** Subtracted from every timestamp so each part after the first starts at zero. */
+    private long partOffsetUs = 0;
+    private boolean rebasePending = false;
+    private int sampleRate;
+    private int channelCount;
+    private long lastPresentationTimeUs = 0;
+
+    /**
+     * Size of every access unit handed to the muxer, so {@link Mp4Repair}
+     * can rebuild the file if the muxer never gets to write its moov.
+     */
+    private DataOutputStream journal;
+    private int journalUnflushed = 0;
+
+    public AacEncoderSink(String outputPath, int bitRate) {
+        this.outputPath = outputPath;
+        this.bitRate = bitRate;
+    }
+
+    /** The file currently being written; changes on {@link #rotate}. */
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    /** True while an encoder in this process is still writing {@code path}. */
+    public static boolean isRecording(String path) {
+        return recording.contains(path);
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) throws IOException {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, channelCount);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, sampleRate * channelCount * 2 / 10);
+
+        codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+        codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        codec.start();
+
+        muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        recording.add(outputPath);
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+            if (inputIndex < 0) {
+                drain(false);
+                continue;
+            }
+
+            ByteBuffer input = codec.getInputBuffer(inputIndex);
+            input.clear();
+            input.order(ByteOrder.nativeOrder());
+            int chunk = Math.min(length - offset, input.remaining() / 2);
+            chunk -= chunk % channelCount;
+            input.asShortBuffer().put(buffer, offset, chunk);
+
+            long chunkTimeUs = presentationTimeUs + (offset / channelCount) * 1_000_000L / sampleRate;
+            codec.queueInputBuffer(inputIndex, 0, chunk * 2, chunkTimeUs, 0);
+            lastPresentationTimeUs = chunkTimeUs;
+            offset += chunk;
+
+            drain(false);
+        }
+    }
+
+    /**
+     * Finishes the current file after the access units already encoded and
+     * writes the following ones to {@code nextPath}. The encoder is not
+     * touched. Returns false if the previous file could not be finalized;
+     * its frame journal is then kept for {@link Mp4Repair}.
+     */
+    public boolean rotate(String nextPath) throws IOException {
+        MediaMuxer next = new MediaMuxer(nextPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        MediaMuxer previous;
+        DataOutputStream previousJournal;
+        String previousPath;
+        synchronized (muxerLock) {
+            if (codec == null || !muxerStarted) {
+                next.release();
+                new File(nextPath).delete();
+                throw new IOException("Encoder ainda não gravou nada nesta parte");
+            }
+            int nextTrack;
+            try {
+                nextTrack = next.addTrack(outputFormat);
+                next.start();
+            } catch (RuntimeException e) {
+                next.release();
+                new File(nextPath).delete();
+                throw new IOException("Erro ao iniciar nova parte: " + e.getMessage());
+            }
+            drain(false);
+            previous = muxer;
+            previousJournal = journal;
+            previousPath = outputPath;
+
+            muxer = next;
+            trackIndex = nextTrack;
+            outputPath = nextPath;
+            recording.add(nextPath);
+            rebasePending = true;
+            journal = null;
+            journalUnflushed = 0;
+            openJournal(outputFormat);
+        }
+        try {
+            return finishPart(previous, true, previousJournal, previousPath);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Erro ao finalizar parte " + previousPath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void drain(boolean endOfStream) {
+        synchronized (muxerLock) {
+            drainLocked(endOfStream);
+        }
+    }
+
+    private void drainLocked(boolean endOfStream) {
+        int idleRounds = 0;
+        while (true) {
+            int outputIndex = codec.dequeueOutputBuffer(bufferInfo, endOfStream ? TIMEOUT_US : 0);
+            if (outputIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream || ++idleRounds > 100) {
+                    return;
+                }
+            } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                outputFormat = codec.getOutputFormat();
+                trackIndex = muxer.addTrack(outputFormat);
+                muxer.start();
+                muxerStarted = true;
+                openJournal(outputFormat);
+            } else if (outputIndex >= 0) {
+                ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                    bufferInfo.size = 0;
+                }
+                if (bufferInfo.size > 0 && muxerStarted && output != null) {
+                    output.position(bufferInfo.offset);
+                    output.limit(bufferInfo.offset + bufferInfo.size);
+                    if (rebasePending) {
+                        partOffsetUs = bufferInfo.presentationTimeUs;
+                        rebasePending = false;
+                    }
+                    bufferInfo.presentationTimeUs -= partOffsetUs;
+                    muxer.writeSampleData(trackIndex, output, bufferInfo);
+                    appendJournal(bufferInfo.size);
+                }
+                codec.releaseOutputBuffer(outputIndex, false);
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (codec != null) {
+                int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US * 10);
+                if (inputIndex >= 0) {
+                    codec.queueInputBuffer(inputIndex, 0, 0, lastPresentationTimeUs, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                    drain(true);
+                } else {
+                    Log.w(TAG, "Encoder sem buffer livre para EOS");
+                }
+            }
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (Exception e) {
+                    Log.e(TAG, "Erro ao parar encoder: " + e.getMessage());
+                }
+                codec.release();
+                codec = null;
+            }
+            if (muxer != null) {
+                MediaMuxer finished = muxer;
+                DataOutputStream finishedJournal = journal;
+                boolean started = muxerStarted;
+                muxer = null;
+                journal = null;
+                muxerStarted = false;
+                finishPart(finished, started, finishedJournal, outputPath);
+            }
+        }
+    }
+
+    /** Writes the moov of a finished part; the journal is only kept if that fails. */
+    private static boolean finishPart(MediaMuxer finished, boolean started, DataOutputStream partJournal, String path) {
+        boolean finalized = false;
+        try {
+            if (started) {
+                finished.stop();
+                finalized = true;
+            }
+        } finally {
+            finished.release();
+            closeJournal(partJournal, path, finalized);
+            recording.remove(path);
+        }
+        return finalized;
+    }
+
+    private void openJournal(MediaFormat format) {
+        File file = Mp4Repair.journalFor(new File(outputPath));
+        try {
+            journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 4096));
+            journal.write(Mp4Repair.JOURNAL_MAGIC.getBytes(StandardCharsets.US_ASCII));
+            journal.writeInt(Mp4Repair.JOURNAL_VERSION);
+            journal.writeInt(sampleRate);
+            journal.writeInt(channelCount);
+            journal.writeInt(bitRate);
+            ByteBuffer csd = format.getByteBuffer("csd-0");
+            if (csd != null) {
+                byte[] bytes = new byte[csd.remaining()];
+                csd.duplicate().get(bytes);
+                journal.writeShort(bytes.length);
+                journal.write(bytes);
+            } else {
+                journal.writeShort(0);
+            }
+            journal.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao criar diário de quadros: " + e.getMessage());
+            closeJournal(journal, outputPath, true);
+            journal = null;
+        }
+    }
+
+    private void appendJournal(int size) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.writeInt(size);
+            if (++journalUnflushed >= JOURNAL_FLUSH_FRAMES) {
+                journal.flush();
+                journalUnflushed = 0;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao gravar diário de quadros: " + e.getMessage());
+            closeJournal(journal, outputPath, true);
+            journal = null;
+        }
+    }
+
+    /** The journal is only kept when the file may need repair. */
+    private static void closeJournal(DataOutputStream partJournal, String path, boolean delete) {
+        if (partJournal == null) {
+            return;
+        }
+        try {
+            partJournal.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao fechar diário de quadros: " + e.getMessage());
+        }
+        if (delete) {
+            Mp4Repair.journalFor(new File(path)).delete();
+        }
+    }
+}
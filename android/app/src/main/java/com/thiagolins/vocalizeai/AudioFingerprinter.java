@@ -0,0 +1,234 @@
+package com.thiagolins.vocalizeai;
+
+import java.util.Arrays;
+
+/**
+ * Landmark fingerprint of a recording: spectral peaks picked against a
+ * decaying threshold, paired into (f1, f2, dt) hashes anchored at the first
+ * peak's frame. Two copies of the same audio share most hashes at a constant
+ * time offset, whatever their gain, trimming or encoding.
+ *
+ * <p>PCM is downmixed and decimated to about 11 kHz before framing; the
+ * vocalizations of interest sit well below 5 kHz. Peaks and hashes are
+ * produced as the audio streams in, so only the hashes are kept.
+ */
+public class AudioFingerprinter implements PcmSink {
+    static final int TARGET_RATE = 11025;
+    static final int FFT_SIZE = 1024;
+    static final int HOP_SIZE = 256;
+    private static final int BINS = FFT_SIZE / 2;
+
+    private static final int MAX_PEAKS_PER_FRAME = 3;
+    private static final int FAN_OUT = 3;
+    static final int MAX_DT = 63;
+    private static final int MAX_DF = 127;
+    /** Threshold decay per frame, about 8.6 dB per second. */
+    private static final float DECAY_DB = 0.2f;
+    private static final float SPREAD_BINS = 40f;
+    /** Full-scale sine through the Hann window, so levels read as dBFS. */
+    private static final float FULL_SCALE_DB = (float) (20 * Math.log10(FFT_SIZE / 4.0));
+    private static final float FLOOR_DB = -70f;
+
+    private final Fft fft = new Fft(FFT_SIZE);
+    private final float[] window = new float[FFT_SIZE];
+    private final float[] frame = new float[FFT_SIZE];
+    private final float[] re = new float[FFT_SIZE];
+    private final float[] im = new float[FFT_SIZE];
+    private final float[] power = new float[BINS + 1];
+    private final float[] levelDb = new float[BINS + 1];
+    private final float[] threshold = new float[BINS + 1];
+    private final int[] candidates = new int[BINS];
+
+    private int channelCount;
+    private int decimation;
+    private float decimationSum;
+    private int decimationFill;
+    private int frameFill;
+    private int frameIndex;
+    private int effectiveRate;
+
+    private final int[] anchorTime = new int[(MAX_DT + 1) * MAX_PEAKS_PER_FRAME];
+    private final int[] anchorBin = new int[anchorTime.length];
+    private final int[] anchorPairs = new int[anchorTime.length];
+    private int anchorHead;
+    private int anchorCount;
+
+    private int[] hashes = new int[4096];
+    private int[] times = new int[4096];
+    private int count;
+
+    public AudioFingerprinter() {
+        for (int i = 0; i < FFT_SIZE; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / FFT_SIZE));
+        }
+    }
+
+    /** Packs a landmark into 24 bits: 9 for each frequency bin, 6 for the frame gap. */
+    static int hash(int anchorBin, int targetBin, int dt) {
+        return (anchorBin << 15) | (targetBin << 6) | dt;
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) {
+        this.channelCount = channelCount;
+        decimation = Math.max(1, Math.round(sampleRate / (float) TARGET_RATE));
+        effectiveRate = sampleRate / decimation;
+        Arrays.fill(threshold, FLOOR_DB);
+        decimationSum = 0;
+        decimationFill = 0;
+        frameFill = 0;
+        frameIndex = 0;
+        anchorHead = 0;
+        anchorCount = 0;
+        count = 0;
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) {
+        for (int i = 0; i + channelCount <= length; i += channelCount) {
+            int mono = 0;
+            for (int ch = 0; ch < channelCount; ch++) {
+                mono += buffer[i + ch];
+            }
+            // Box-car average before decimating; crude, but the aliases it lets
+            // through land identically in every copy of the same audio
+            decimationSum += mono / (float) channelCount;
+            if (++decimationFill < decimation) {
+                continue;
+            }
+            frame[frameFill++] = decimationSum / decimation / 32768f;
+            decimationSum = 0;
+            decimationFill = 0;
+
+            if (frameFill == FFT_SIZE) {
+                processFrame();
+                System.arraycopy(frame, HOP_SIZE, frame, 0, FFT_SIZE - HOP_SIZE);
+                frameFill = FFT_SIZE - HOP_SIZE;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int[] getHashes() {
+        return Arrays.copyOf(hashes, count);
+    }
+
+    /** Anchor frame of each hash, in hops of {@link #getHopMs()}. */
+    public int[] getTimes() {
+        return Arrays.copyOf(times, count);
+    }
+
+    public double getHopMs() {
+        return effectiveRate == 0 ? 0 : HOP_SIZE * 1000.0 / effectiveRate;
+    }
+
+    public long getDurationMs() {
+        return (long) (frameIndex * getHopMs());
+    }
+
+    private void processFrame() {
+        for (int i = 0; i < FFT_SIZE; i++) {
+            re[i] = frame[i] * window[i];
+            im[i] = 0;
+        }
+        fft.transform(re, im);
+        fft.powerSpectrum(re, im, power);
+        for (int k = 0; k <= BINS; k++) {
+            levelDb[k] = (float) (10 * Math.log10(power[k] + 1e-12)) - FULL_SCALE_DB;
+        }
+
+        int candidateCount = 0;
+        for (int k = 1; k < BINS; k++) {
+            float level = levelDb[k];
+            if (level > FLOOR_DB && level > threshold[k] && level > levelDb[k - 1] && level >= levelDb[k + 1]) {
+                candidates[candidateCount++] = k;
+            }
+        }
+
+        // Strongest excess over the threshold first; each accepted peak raises
+        // the threshold around it, which can disqualify weaker neighbours
+        for (int accepted = 0; accepted < MAX_PEAKS_PER_FRAME; accepted++) {
+            int best = -1;
+            float bestExcess = 0;
+            for (int c = 0; c < candidateCount; c++) {
+                int k = candidates[c];
+                float excess = levelDb[k] - threshold[k];
+                if (excess > bestExcess) {
+                    bestExcess = excess;
+                    best = c;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            int bin = candidates[best];
+            candidates[best] = candidates[--candidateCount];
+            spread(bin, levelDb[bin]);
+            addPeak(frameIndex, bin);
+        }
+
+        for (int k = 0; k <= BINS; k++) {
+            threshold[k] = Math.max(FLOOR_DB, threshold[k] - DECAY_DB);
+        }
+        frameIndex++;
+    }
+
+    /** Gaussian mask in amplitude, which is a parabola in dB. */
+    private void spread(int bin, float level) {
+        int reach = (int) (3 * SPREAD_BINS);
+        int from = Math.max(0, bin - reach);
+        int to = Math.min(BINS, bin + reach);
+        for (int k = from; k <= to; k++) {
+            float x = (k - bin) / SPREAD_BINS;
+            float masked = level - 4.343f * x * x;
+            if (masked > threshold[k]) {
+                threshold[k] = masked;
+            }
+        }
+    }
+
+    private void addPeak(int time, int bin) {
+        int capacity = anchorTime.length;
+        while (anchorCount > 0 && time - anchorTime[anchorHead] > MAX_DT) {
+            anchorHead = (anchorHead + 1) % capacity;
+            anchorCount--;
+        }
+
+        for (int i = 0; i < anchorCount; i++) {
+            int a = (anchorHead + i) % capacity;
+            int dt = time - anchorTime[a];
+            if (dt < 1 || anchorPairs[a] >= FAN_OUT || Math.abs(bin - anchorBin[a]) > MAX_DF) {
+                continue;
+            }
+            emit(hash(anchorBin[a], bin, dt), anchorTime[a]);
+            anchorPairs[a]++;
+        }
+
+        if (anchorCount == capacity) {
+            anchorHead = (anchorHead + 1) % capacity;
+            anchorCount--;
+        }
+        int slot = (anchorHead + anchorCount) % capacity;
+        anchorTime[slot] = time;
+        anchorBin[slot] = bin;
+        anchorPairs[slot] = 0;
+        anchorCount++;
+    }
+
+    private void emit(int hash, int time) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            times = Arrays.copyOf(times, count * 2);
+        }
+        hashes[count] = hash;
+        times[count] = time;
+        count++;
+    }
+}
@@ -0,0 +1,130 @@
+package com.thiagolins.vocalizeai;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Joins MP4 parts written by the same encoder configuration into one file
+ * by copying their AAC access units in order, shifting each part's
+ * timestamps to follow the previous one. Nothing is decoded or re-encoded.
+ * The parts must be cut from one encoder stream by
+ * {@link AacEncoderSink#rotate}: only the first then starts with encoder
+ * priming, and the join is the stream a single file would have held.
+ */
+public class AudioPartConcatenator {
+    private static final int AAC_FRAME_SAMPLES = 1024;
+
+    /** Writes {@code parts} into {@code dest} and returns the total duration in microseconds. */
+    public static long concat(List<File> parts, File dest) throws IOException {
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma parte para concatenar");
+        }
+
+        MediaMuxer muxer = null;
+        MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+        ByteBuffer sampleBuffer = null;
+        MediaFormat firstFormat = null;
+        int track = -1;
+        long offsetUs = 0;
+        boolean started = false;
+
+        try {
+            for (File part : parts) {
+                MediaExtractor extractor = new MediaExtractor();
+                try {
+                    extractor.setDataSource(part.getAbsolutePath());
+                    MediaFormat format = selectAudioTrack(extractor, part);
+
+                    if (firstFormat == null) {
+                        firstFormat = format;
+                        muxer = new MediaMuxer(dest.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+                        track = muxer.addTrack(format);
+                        muxer.start();
+                        started = true;
+                        int maxInput = format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+                            ? format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE)
+                            : 0;
+                        sampleBuffer = ByteBuffer.allocateDirect(Math.max(maxInput, 64 * 1024));
+                    } else if (!sameStream(firstFormat, format)) {
+                        throw new IOException("Parte com formato diferente: " + part.getName());
+                    }
+
+                    long frameDurationUs = AAC_FRAME_SAMPLES * 1_000_000L / format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    long lastUs = -1;
+                    while (true) {
+                        sampleBuffer.clear();
+                        int size = extractor.readSampleData(sampleBuffer, 0);
+                        if (size < 0) {
+                            break;
+                        }
+                        long sampleTimeUs = extractor.getSampleTime();
+                        bufferInfo.offset = 0;
+                        bufferInfo.size = size;
+                        bufferInfo.presentationTimeUs = offsetUs + sampleTimeUs;
+                        bufferInfo.flags = MediaCodec.BUFFER_FLAG_KEY_FRAME;
+                        muxer.writeSampleData(track, sampleBuffer, bufferInfo);
+                        lastUs = sampleTimeUs;
+                        if (!extractor.advance()) {
+                            break;
+                        }
+                    }
+                    if (lastUs >= 0) {
+                        offsetUs += lastUs + frameDurationUs;
+                    }
+                } finally {
+                    extractor.release();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            releaseQuietly(muxer, started);
+            dest.delete();
+            throw e;
+        }
+
+        try {
+            muxer.stop();
+        } finally {
+            muxer.release();
+        }
+        return offsetUs;
+    }
+
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor, File part) throws IOException {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IOException("Nenhuma faixa de áudio em " + part.getName());
+    }
+
+    private static boolean sameStream(MediaFormat a, MediaFormat b) {
+        return a.getString(MediaFormat.KEY_MIME).equals(b.getString(MediaFormat.KEY_MIME))
+            && a.getInteger(MediaFormat.KEY_SAMPLE_RATE) == b.getInteger(MediaFormat.KEY_SAMPLE_RATE)
+            && a.getInteger(MediaFormat.KEY_CHANNEL_COUNT) == b.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+    }
+
+    private static void releaseQuietly(MediaMuxer muxer, boolean started) {
+        if (muxer == null) {
+            return;
+        }
+        try {
+            if (started) {
+                muxer.stop();
+            }
+        } catch (Exception ignored) {
+        } finally {
+            muxer.release();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.thiagolins.vocalizeai;
+
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a few MediaPlayers prepared for the recordings around the visible
+ * rows, so a tap only has to call start(). Players are paused and rewound
+ * instead of released when another clip starts. Everything touching the
+ * pool runs on one HandlerThread, which is also the looper the players
+ * deliver their callbacks on.
+ */
+public class AudioPlayerPoolModule extends ReactContextBaseJavaModule implements MemoryBudget.Consumer {
+    private static final String TAG = "AudioPlayerPool";
+    private static final int POOL_SIZE = 6;
+    private static final int FIRST_AUDIO_POLL_MS = 5;
+    private static final int FIRST_AUDIO_TIMEOUT_MS = 2000;
+    private static final int LATENCY_HISTORY = 100;
+    /**
+     * Rough cost of a prepared player to this process; its decoder mostly
+     * lives in the media server, but the extractor and buffers are ours.
+     */
+    private static final long PLAYER_ESTIMATE_BYTES = 512 * 1024;
+
+    private static final class Slot {
+        final String path;
+        final long length;
+        final long lastModified;
+        MediaPlayer player;
+        boolean prepared = false;
+        Promise pendingPlay;
+        long tapTimeMs;
+        boolean warm;
+
+        Slot(String path, File file) {
+            this.path = path;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        boolean isStale(File file) {
+            return file.length() != length || file.lastModified() != lastModified;
+        }
+    }
+
+    private final ReactApplicationContext reactContext;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<>(POOL_SIZE, 0.75f, true);
+    private Slot current;
+
+    private final double[] latencies = new double[LATENCY_HISTORY];
+    private final boolean[] latencyWarm = new boolean[LATENCY_HISTORY];
+    private int latencyCount = 0;
+    private double lastLatencyMs = -1;
+
+    public AudioPlayerPoolModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.thread = new HandlerThread("AudioPlayerPool", android.os.Process.THREAD_PRIORITY_AUDIO);
+        this.thread.start();
+        this.handler = new Handler(thread.getLooper());
+        MemoryBudget.getInstance().register("audioPlayerPool", MemoryBudget.Priority.LOW, this);
+    }
+
+    @Override
+    public String getName() {
+        return "AudioPlayerPool";
+    }
+
+    private static String normalize(String uri) {
+        return uri.startsWith("file://") ? uri.substring(7) : uri;
+    }
+
+    private void sendEvent(String eventName, WritableMap params) {
+        try {
+            if (reactContext.hasActiveReactInstance()) {
+                reactContext
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(eventName, params);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao enviar evento " + eventName + ": " + e.getMessage());
+        }
+    }
+
+    private Slot acquire(String path) throws Exception {
+        File file = new File(path);
+        if (!file.exists()) {
+            evict(path);
+            throw new java.io.FileNotFoundException("Arquivo não existe");
+        }
+        if (file.length() < 50) {
+            evict(path);
+            throw new java.io.IOException("Arquivo de áudio suspeito (muito pequeno)");
+        }
+
+        Slot slot = slots.get(path);
+        if (slot != null && !slot.isStale(file)) {
+            return slot;
+        }
+        if (slot != null) {
+            evict(path);
+        }
+
+        Iterator<Map.Entry<String, Slot>> eldest = slots.entrySet().iterator();
+        while (slots.size() >= POOL_SIZE && eldest.hasNext()) {
+            Slot candidate = eldest.next().getValue();
+            if (candidate != current && candidate.pendingPlay == null) {
+                eldest.remove();
+                candidate.player.release();
+            }
+        }
+
+        Slot created = new Slot(path, file);
+        MediaPlayer player = new MediaPlayer();
+        created.player = player;
+        player.setOnPreparedListener(mp -> onPrepared(created));
+        player.setOnCompletionListener(mp -> onCompletion(created));
+        player.setOnErrorListener((mp, what, extra) -> {
+            onError(created, what, extra);
+            return true;
+        });
+        try {
+            player.setDataSource(path);
+            player.prepareAsync();
+        } catch (Exception e) {
+            player.release();
+            throw e;
+        }
+        slots.put(path, created);
+        return created;
+    }
+
+    private void evict(String path) {
+        Slot slot = slots.remove(path);
+        if (slot == null) {
+            return;
+        }
+        if (slot == current) {
+            current = null;
+        }
+        if (slot.pendingPlay != null) {
+            slot.pendingPlay.reject("PLAYBACK_ERROR", "Reprodução interrompida");
+            slot.pendingPlay = null;
+        }
+        slot.player.release();
+    }
+
+    private void onPrepared(Slot slot) {
+        slot.prepared = true;
+        if (slot.pendingPlay != null) {
+            start(slot);
+        }
+    }
+
+    private void start(Slot slot) {
+        Promise promise = slot.pendingPlay;
+        slot.pendingPlay = null;
+        try {
+            slot.player.start();
+            current = slot;
+            if (promise != null) {
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("warm", slot.warm);
+                promise.resolve(result);
+            }
+            long deadline = SystemClock.uptimeMillis() + FIRST_AUDIO_TIMEOUT_MS;
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (current != slot || !slot.player.isPlaying()) {
+                        return;
+                    }
+                    if (slot.player.getCurrentPosition() > 0) {
+                        recordLatency(slot, System.currentTimeMillis() - slot.tapTimeMs);
+                    } else if (SystemClock.uptimeMillis() < deadline) {
+                        handler.postDelayed(this, FIRST_AUDIO_POLL_MS);
+                    }
+                }
+            }, FIRST_AUDIO_POLL_MS);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao iniciar reprodução: " + e.getMessage());
+            if (promise != null) {
+                promise.reject("PLAYBACK_ERROR", e.getMessage());
+            }
+            evict(slot.path);
+        }
+    }
+
+    private void recordLatency(Slot slot, double latencyMs) {
+        int index = latencyCount % LATENCY_HISTORY;
+        latencies[index] = latencyMs;
+        latencyWarm[index] = slot.warm;
+        latencyCount++;
+        lastLatencyMs = latencyMs;
+
+        WritableMap event = Arguments.createMap();
+        event.putString("uri", "file://" + slot.path);
+        event.putDouble("latencyMs", latencyMs);
+        event.putBoolean("warm", slot.warm);
+        sendEvent("onPlaybackStarted", event);
+    }
+
+    private void onCompletion(Slot slot) {
+        if (current == slot) {
+            current = null;
+        }
+        slot.player.seekTo(0);
+        WritableMap event = Arguments.createMap();
+        event.putString("uri", "file://" + slot.path);
+        sendEvent("onPlaybackComplete", event);
+    }
+
+    private void onError(Slot slot, int what, int extra) {
+        Log.e(TAG, "Erro no player (" + what + ", " + extra + ") para " + slot.path);
+        boolean wasPlaying = slot == current || slot.pendingPlay != null;
+        if (slot.pendingPlay != null) {
+            slot.pendingPlay.reject("PLAYBACK_ERROR", "Erro de reprodução: " + what + "/" + extra);
+            slot.pendingPlay = null;
+        }
+        if (slots.get(slot.path) == slot) {
+            evict(slot.path);
+        } else {
+            slot.player.release();
+        }
+        if (wasPlaying) {
+            WritableMap event = Arguments.createMap();
+            event.putString("uri", "file://" + slot.path);
+            event.putInt("what", what);
+            event.putInt("extra", extra);
+            sendEvent("onPlaybackError", event);
+        }
+    }
+
+    private void pauseCurrent() {
+        if (current == null) {
+            return;
+        }
+        try {
+            if (current.player.isPlaying()) {
+                current.player.pause();
+            }
+            current.player.seekTo(0);
+        } catch (Exception e) {
+            Log.w(TAG, "Erro ao pausar player: " + e.getMessage());
+        }
+        current = null;
+    }
+
+    /**
+     * Starts {@code uri}. {@code tapTimeMs} is the JS Date.now() of the tap and
+     * is the origin of the reported tap-to-first-audio latency.
+     */
+    @ReactMethod
+    public void play(String uri, double tapTimeMs, Promise promise) {
+        handler.post(() -> {
+            String path = normalize(uri);
+            try {
+                pauseCurrent();
+                for (Slot other : slots.values()) {
+                    if (other.pendingPlay != null) {
+                        other.pendingPlay.reject("CANCELLED", "Substituído por outra reprodução");
+                        other.pendingPlay = null;
+                    }
+                }
+
+                Slot slot = acquire(path);
+                slot.tapTimeMs = tapTimeMs > 0 ? (long) tapTimeMs : System.currentTimeMillis();
+                slot.warm = slot.prepared;
+                slot.pendingPlay = promise;
+                if (slot.prepared) {
+                    start(slot);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao reproduzir " + path + ": " + e.getMessage());
+                promise.reject("PLAYBACK_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void stop(Promise promise) {
+        handler.post(() -> {
+            for (Slot slot : slots.values()) {
+                if (slot.pendingPlay != null) {
+                    slot.pendingPlay.reject("CANCELLED", "Reprodução cancelada");
+                    slot.pendingPlay = null;
+                }
+            }
+            pauseCurrent();
+            promise.resolve(true);
+        });
+    }
+
+    /**
+     * Prepares players for {@code uris}, in priority order. One slot is always
+     * left for the clip that is playing.
+     */
+    @ReactMethod
+    public void preload(ReadableArray uris, Promise promise) {
+        handler.post(() -> {
+            int limit = Math.min(uris.size(), POOL_SIZE - 1);
+            int loaded = 0;
+            // Acquire lowest priority first so the first entries end up most recently used.
+            for (int i = limit - 1; i >= 0; i--) {
+                try {
+                    acquire(normalize(uris.getString(i)));
+                    loaded++;
+                } catch (Exception e) {
+                    Log.w(TAG, "Pré-carregamento ignorado: " + e.getMessage());
+                }
+            }
+            promise.resolve(loaded);
+        });
+    }
+
+    @ReactMethod
+    public void evict(String uri, Promise promise) {
+        handler.post(() -> {
+            evict(normalize(uri));
+            promise.resolve(true);
+        });
+    }
+
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        handler.post(() -> {
+            int samples = Math.min(latencyCount, LATENCY_HISTORY);
+            List<Double> warm = new ArrayList<>();
+            List<Double> cold = new ArrayList<>();
+            for (int i = 0; i < samples; i++) {
+                (latencyWarm[i] ? warm : cold).add(latencies[i]);
+            }
+            double[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+
+            int prepared = 0;
+            for (Slot slot : slots.values()) {
+                if (slot.prepared) {
+                    prepared++;
+                }
+            }
+
+            WritableMap metrics = Arguments.createMap();
+            metrics.putInt("samples", samples);
+            metrics.putInt("warmSamples", warm.size());
+            metrics.putInt("coldSamples", cold.size());
+            metrics.putDouble("lastMs", lastLatencyMs);
+            metrics.putDouble("avgWarmMs", average(warm));
+            metrics.putDouble("avgColdMs", average(cold));
+            metrics.putDouble("p50Ms", samples == 0 ? -1 : sorted[samples / 2]);
+            metrics.putDouble("p95Ms", samples == 0 ? -1 : sorted[Math.min(samples - 1, (int) Math.ceil(samples * 0.95) - 1)]);
+            metrics.putInt("poolSize", slots.size());
+            metrics.putInt("prepared", prepared);
+            promise.resolve(metrics);
+        });
+    }
+
+    private static double average(List<Double> values) {
+        if (values.isEmpty()) {
+            return -1;
+        }
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total / values.size();
+    }
+
+    @ReactMethod
+    public void releaseAll(Promise promise) {
+        handler.post(() -> {
+            for (String path : new ArrayList<>(slots.keySet())) {
+                evict(path);
+            }
+            current = null;
+            promise.resolve(true);
+        });
+    }
+
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(Integer count) {
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return slots.size() * PLAYER_ESTIMATE_BYTES;
+    }
+
+    /** Releases idle players, least recently used first; the playing one is kept. */
+    @Override
+    public void trimMemory(long targetBytes) {
+        handler.post(() -> {
+            Iterator<Map.Entry<String, Slot>> eldest = slots.entrySet().iterator();
+            while (slots.size() * PLAYER_ESTIMATE_BYTES > targetBytes && eldest.hasNext()) {
+                Slot candidate = eldest.next().getValue();
+                if (candidate != current && candidate.pendingPlay == null) {
+                    eldest.remove();
+                    candidate.player.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void invalidate() {
+        MemoryBudget.getInstance().unregister("audioPlayerPool");
+        handler.post(() -> {
+            for (Slot slot : slots.values()) {
+                slot.player.release();
+            }
+            slots.clear();
+            current = null;
+        });
+        thread.quitSafely();
+    }
+}
@@ -0,0 +1,184 @@
+package com.thiagolins.vocalizeai;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Copies whole AAC access units for a time range into a new MP4 without
+ * decoding. The extractor stays open so several ranges can be cut from the
+ * same source cheaply.
+ *
+ * <p>An AAC frame only decodes cleanly after the frame before it, since the
+ * MDCT windows overlap, so one extra access unit is copied ahead of the
+ * range as pre-roll. MediaMuxer cannot write an edit list to hide it, so
+ * the output starts {@link Range#prerollUs} before the requested audio and
+ * players that ignore that offset play one frame (about 23 ms at 44.1 kHz)
+ * early.
+ */
+public class AudioRangeExtractor implements Closeable {
+    private static final int AAC_FRAME_SAMPLES = 1024;
+
+    public static final class Range {
+        public final String outputPath;
+        /** Source time of the first frame of the range proper, after the pre-roll. */
+        public final long startUs;
+        public final long endUs;
+        /** Frames written, pre-roll included. */
+        public final int frames;
+        /** Where {@link #startUs} falls in the output; 0 when the range starts the source. */
+        public final long prerollUs;
+
+        Range(String outputPath, long startUs, long endUs, int frames, long prerollUs) {
+            this.outputPath = outputPath;
+            this.startUs = startUs;
+            this.endUs = endUs;
+            this.frames = frames;
+            this.prerollUs = prerollUs;
+        }
+    }
+
+    private final MediaExtractor extractor = new MediaExtractor();
+    private final MediaFormat format;
+    private final long frameDurationUs;
+    private final long durationUs;
+    private final ByteBuffer sampleBuffer;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+    public AudioRangeExtractor(String sourcePath) throws IOException {
+        extractor.setDataSource(sourcePath);
+
+        int audioTrack = -1;
+        MediaFormat audioFormat = null;
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat candidate = extractor.getTrackFormat(i);
+            String mime = candidate.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                audioTrack = i;
+                audioFormat = candidate;
+                break;
+            }
+        }
+        if (audioTrack < 0) {
+            extractor.release();
+            throw new IOException("Nenhuma faixa de áudio em " + sourcePath);
+        }
+
+        extractor.selectTrack(audioTrack);
+        format = audioFormat;
+        frameDurationUs = AAC_FRAME_SAMPLES * 1_000_000L / format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : -1;
+
+        int maxInput = format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+            ? format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE)
+            : 0;
+        sampleBuffer = ByteBuffer.allocateDirect(Math.max(maxInput, 64 * 1024));
+    }
+
+    public MediaFormat getFormat() {
+        return format;
+    }
+
+    public long getFrameDurationUs() {
+        return frameDurationUs;
+    }
+
+    public long getDurationUs() {
+        return durationUs;
+    }
+
+    public Range extract(long startUs, long endUs, String destPath) throws IOException {
+        if (endUs <= startUs) {
+            throw new IllegalArgumentException("Intervalo inválido: " + startUs + " >= " + endUs);
+        }
+
+        File destFile = new File(destPath);
+        if (destFile.getParentFile() != null && !destFile.getParentFile().exists()) {
+            destFile.getParentFile().mkdirs();
+        }
+
+        extractor.seekTo(Math.max(0, startUs - 2 * frameDurationUs), MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+
+        long firstUs = -1;
+        long contentUs = -1;
+        long lastUs = -1;
+        int frames = 0;
+        boolean completed = false;
+        MediaMuxer muxer = new MediaMuxer(destPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        boolean started = false;
+
+        try {
+            int track = muxer.addTrack(format);
+            while (true) {
+                long sampleTimeUs = extractor.getSampleTime();
+                if (sampleTimeUs < 0 || sampleTimeUs >= endUs) {
+                    break;
+                }
+                // Keeps the one frame before the range as pre-roll
+                if (sampleTimeUs + 2 * frameDurationUs <= startUs) {
+                    extractor.advance();
+                    continue;
+                }
+
+                sampleBuffer.clear();
+                int size = extractor.readSampleData(sampleBuffer, 0);
+                if (size < 0) {
+                    break;
+                }
+                if (!started) {
+                    muxer.start();
+                    started = true;
+                    firstUs = sampleTimeUs;
+                }
+
+                bufferInfo.offset = 0;
+                bufferInfo.size = size;
+                bufferInfo.presentationTimeUs = sampleTimeUs - firstUs;
+                bufferInfo.flags = MediaCodec.BUFFER_FLAG_KEY_FRAME;
+                muxer.writeSampleData(track, sampleBuffer, bufferInfo);
+
+                if (contentUs < 0 && sampleTimeUs + frameDurationUs > startUs) {
+                    contentUs = sampleTimeUs;
+                }
+                lastUs = sampleTimeUs;
+                frames++;
+                if (!extractor.advance()) {
+                    break;
+                }
+            }
+            completed = true;
+        } finally {
+            try {
+                if (started) {
+                    muxer.stop();
+                }
+            } catch (RuntimeException e) {
+                completed = false;
+                throw e;
+            } finally {
+                muxer.release();
+                if (!completed) {
+                    destFile.delete();
+                }
+            }
+        }
+
+        if (contentUs < 0) {
+            destFile.delete();
+            throw new IOException("Nenhum quadro de áudio no intervalo solicitado");
+        }
+
+        return new Range(destPath, contentUs, lastUs + frameDurationUs, frames, contentUs - firstUs);
+    }
+
+    @Override
+    public void close() {
+        extractor.release();
+    }
+}
@@ -0,0 +1,88 @@
+package com.thiagolins.vocalizeai;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.IOException;
+
+/** The microphone, read through {@link AudioRecord}. */
+public class AudioRecordInput implements CapturePipeline.AudioInput {
+    private static final String TAG = "AudioRecordInput";
+
+    private final AudioRecord audioRecord;
+    private final int bufferBytes;
+
+    private AudioRecordInput(AudioRecord audioRecord, int bufferBytes) {
+        this.audioRecord = audioRecord;
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+     * Opens and starts the first source that initializes, with a hardware
+     * buffer large enough for two reads of {@code batchFrames}.
+     */
+    public static AudioRecordInput open(int sampleRate, int channelCount, int batchFrames) throws IOException {
+        int channelMask = channelCount == 2 ? AudioFormat.CHANNEL_IN_STEREO : AudioFormat.CHANNEL_IN_MONO;
+        int minBufferBytes = AudioRecord.getMinBufferSize(sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferBytes <= 0) {
+            throw new IOException("Configuração de áudio não suportada: " + sampleRate + " Hz, " + channelCount + " canais");
+        }
+        // The hardware buffer must hold two batches so nothing overruns while one is processed.
+        int bufferBytes = Math.max(Math.max(minBufferBytes * 4, sampleRate * channelCount * 2 / 5),
+            batchFrames * channelCount * 2 * 2);
+
+        AudioRecord record = create(sampleRate, channelMask, bufferBytes);
+        if (record == null) {
+            throw new IOException("Não foi possível inicializar o AudioRecord");
+        }
+        record.startRecording();
+        return new AudioRecordInput(record, bufferBytes);
+    }
+
+    @SuppressLint("MissingPermission")
+    private static AudioRecord create(int sampleRate, int channelMask, int bufferBytes) {
+        int[] sources = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+            ? new int[] {MediaRecorder.AudioSource.UNPROCESSED, MediaRecorder.AudioSource.MIC, MediaRecorder.AudioSource.CAMCORDER}
+            : new int[] {MediaRecorder.AudioSource.MIC, MediaRecorder.AudioSource.CAMCORDER};
+
+        for (int source : sources) {
+            try {
+                AudioRecord record = new AudioRecord(source, sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT, bufferBytes);
+                if (record.getState() == AudioRecord.STATE_INITIALIZED) {
+                    return record;
+                }
+                record.release();
+            } catch (Exception e) {
+                Log.w(TAG, "Fonte de áudio " + source + " indisponível: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        return audioRecord.read(buffer, offset, length);
+    }
+
+    @Override
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+
+    @Override
+    public void release() {
+        try {
+            if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+                audioRecord.stop();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao parar AudioRecord: " + e.getMessage());
+        } finally {
+            audioRecord.release();
+        }
+    }
+}
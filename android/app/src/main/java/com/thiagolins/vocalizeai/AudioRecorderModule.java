@@ -9,6 +9,7 @@ import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.app.NotificationManager;
 
@@ -20,20 +21,47 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AudioRecorderModule extends ReactContextBaseJavaModule implements LifecycleEventListener {
     private static final String TAG = "AudioRecorderModule";
     private final ReactApplicationContext reactContext;
     private boolean isRecording = false;
     private boolean isPaused = false;
-    private String currentOutputFile = null;
+    private volatile String currentOutputFile = null;
     private long currentRecordingTime = 0;
+    private final IoScheduler scheduler = IoScheduler.getInstance();
+    private static final long COMMAND_ACK_TIMEOUT_MS = 10_000;
+    private final AtomicInteger nextCommandId = new AtomicInteger(1);
+    /** Stop command whose "stop to onRecordingComplete" trace span is still open. */
+    private final AtomicInteger finalizeTraceCookie = new AtomicInteger(0);
+    private static final String FINALIZE_TRACE = "recorder.stopToComplete";
+    private final ConcurrentHashMap<Integer, PendingCommand> pendingCommands = new ConcurrentHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final RecorderEventJournal journal;
+
+    /** A service command whose promise settles when the service acknowledges it. */
+    private static class PendingCommand {
+        final Promise promise;
+        final String errorCode;
+        final String invalidStateMessage;
+
+        PendingCommand(Promise promise, String errorCode, String invalidStateMessage) {
+            this.promise = promise;
+            this.errorCode = errorCode;
+            this.invalidStateMessage = invalidStateMessage;
+        }
+    }
     
     private final BroadcastReceiver recordingStatusReceiver = new BroadcastReceiver() {
       @Override
@@ -118,36 +146,38 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
               isPaused = false;
               
               if (outputFile != null) {
-                  File file = new File(outputFile);
-                  if (file.exists() && file.length() > 0) {
-                      if (!file.canRead()) {
-                          file.setReadable(true, false);
+                  scheduler.submit(IoScheduler.Lane.RECORDING_CRITICAL, null, token -> {
+                      File file = new File(outputFile);
+                      if (file.exists() && file.length() > 0) {
+                          if (!file.canRead()) {
+                              file.setReadable(true, false);
+                          }
+                          
+                          String fileUrl = "file://" + outputFile;
+                          currentOutputFile = outputFile;
+                          
+                          WritableMap params = toWritableMap(RecorderEventPayloads.completed(intent));
+                          putSeq(params, intent);
+                          
+                          sendEvent("onRecordingComplete", params);
+                          endFinalizeTrace(finalizeTraceCookie.get());
+                          
+                          WritableMap statusParams = Arguments.createMap();
+                          statusParams.putBoolean("isRecording", false);
+                          statusParams.putBoolean("isPaused", false);
+                          statusParams.putString("outputFile", fileUrl);
+                          statusParams.putDouble("currentTime", duration);
+                          
+                          sendEvent("onRecordingStatusChange", statusParams);
+                      } else {
+                          Log.e(TAG, "File doesn't exist or is empty: " + outputFile);
+                          
+                          WritableMap params = Arguments.createMap();
+                          params.putString("error", "File doesn't exist or is empty");
+                          
+                          sendEvent("onRecordingError", params);
                       }
-                      
-                      String fileUrl = "file://" + outputFile;
-                      currentOutputFile = outputFile;
-                      
-                      WritableMap params = Arguments.createMap();
-                      params.putString("outputFile", fileUrl);
-                      params.putDouble("duration", duration);
-                      
-                      sendEvent("onRecordingComplete", params);
-                      
-                      WritableMap statusParams = Arguments.createMap();
-                      statusParams.putBoolean("isRecording", false);
-                      statusParams.putBoolean("isPaused", false);
-                      statusParams.putString("outputFile", fileUrl);
-                      statusParams.putDouble("currentTime", duration);
-                      
-                      sendEvent("onRecordingStatusChange", statusParams);
-                  } else {
-                      Log.e(TAG, "File doesn't exist or is empty: " + outputFile);
-                      
-                      WritableMap params = Arguments.createMap();
-                      params.putString("error", "File doesn't exist or is empty");
-                      
-                      sendEvent("onRecordingError", params);
-                  }
+                  });
               } else {
                   Log.e(TAG, "Received null outputFile");
                   
@@ -156,13 +186,19 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
                   
                   sendEvent("onRecordingError", params);
               }
-          } else if ("com.thiagolins.vocalizeai.RECORDING_ERROR".equals(action)) {
-              String errorMessage = intent.getStringExtra("error");
+          } else if ("com.thiagolins.vocalizeai.RECORDING_PART_COMPLETED".equals(action)) {
+              WritableMap params = toWritableMap(RecorderEventPayloads.partCompleted(intent));
+              putSeq(params, intent);
               
-              WritableMap params = Arguments.createMap();
-              params.putString("error", errorMessage != null ? errorMessage : "Unknown error");
+              sendEvent("onRecordingPartComplete", params);
+          } else if (ForegroundAudioRecorderService.ACTION_COMMAND_ACK.equals(action)) {
+              handleCommandAck(intent);
+          } else if ("com.thiagolins.vocalizeai.RECORDING_ERROR".equals(action)) {
+              WritableMap params = toWritableMap(RecorderEventPayloads.error(intent));
+              putSeq(params, intent);
               
               sendEvent("onRecordingError", params);
+              endFinalizeTrace(finalizeTraceCookie.get());
               
               isRecording = false;
               isPaused = false;
@@ -181,6 +217,7 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
     public AudioRecorderModule(ReactApplicationContext reactContext) {
       super(reactContext);
       this.reactContext = reactContext;
+      this.journal = RecorderEventJournal.getInstance(reactContext);
       this.reactContext.addLifecycleEventListener(this);
       
       IntentFilter filter = new IntentFilter();
@@ -189,6 +226,8 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
       filter.addAction("com.thiagolins.vocalizeai.RECORDING_COMPLETED");
       filter.addAction("com.thiagolins.vocalizeai.OUTPUT_FILE_SET");
       filter.addAction("com.thiagolins.vocalizeai.RECORDING_ERROR");
+      filter.addAction(ForegroundAudioRecorderService.ACTION_COMMAND_ACK);
+      filter.addAction("com.thiagolins.vocalizeai.RECORDING_PART_COMPLETED");
 
       try {
           if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
@@ -207,6 +246,67 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
     }
     
     private void sendEvent(String eventName, WritableMap params) {
+      try (TraceRecorder.Section trace = TraceRecorder.section("recorder.module.emit")) {
+          emitToJs(eventName, params);
+      }
+    }
+
+    /**
+     * Copies the sequence number the service journaled the event under; the
+     * journal is written by the service, before the broadcast, so an event
+     * sent while no module is listening can still be replayed.
+     */
+    private static void putSeq(WritableMap params, Intent intent) {
+      if (intent.hasExtra(RecorderEventPayloads.EXTRA_SEQ)) {
+          params.putDouble("seq", intent.getLongExtra(RecorderEventPayloads.EXTRA_SEQ, 0));
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WritableMap toWritableMap(Map<String, Object> map) {
+      WritableMap result = Arguments.createMap();
+      for (Map.Entry<String, Object> entry : map.entrySet()) {
+          Object value = entry.getValue();
+          if (value == null) {
+              result.putNull(entry.getKey());
+          } else if (value instanceof String) {
+              result.putString(entry.getKey(), (String) value);
+          } else if (value instanceof Boolean) {
+              result.putBoolean(entry.getKey(), (Boolean) value);
+          } else if (value instanceof Number) {
+              result.putDouble(entry.getKey(), ((Number) value).doubleValue());
+          } else if (value instanceof Map) {
+              result.putMap(entry.getKey(), toWritableMap((Map<String, Object>) value));
+          } else if (value instanceof List) {
+              result.putArray(entry.getKey(), toWritableArray((List<Object>) value));
+          }
+      }
+      return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WritableArray toWritableArray(List<Object> list) {
+      WritableArray result = Arguments.createArray();
+      for (Object value : list) {
+          if (value == null) {
+              result.pushNull();
+          } else if (value instanceof String) {
+              result.pushString((String) value);
+          } else if (value instanceof Boolean) {
+              result.pushBoolean((Boolean) value);
+          } else if (value instanceof Number) {
+              result.pushDouble(((Number) value).doubleValue());
+          } else if (value instanceof Map) {
+              result.pushMap(toWritableMap((Map<String, Object>) value));
+          } else if (value instanceof List) {
+              result.pushArray(toWritableArray((List<Object>) value));
+          }
+      }
+      return result;
+    }
+
+    /** Hands an event to the JS emitter; the JVM latency harness records them here instead. */
+    void emitToJs(String eventName, WritableMap params) {
       try {
           if (reactContext.hasActiveReactInstance()) {
               reactContext
@@ -238,6 +338,74 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
     public void removeListeners(Integer count) {
     }
 
+    /**
+     * Journaled events with a sequence number greater than {@code seq}, for
+     * a JS context that starts after they were emitted.
+     */
+    @ReactMethod
+    public void replaySince(double seq, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                List<RecorderEventJournal.Entry> entries = journal.readSince((long) seq);
+                WritableArray events = Arguments.createArray();
+                for (RecorderEventJournal.Entry entry : entries) {
+                    WritableMap payload = toWritableMap(RecorderEventJournal.toMap(entry.payload));
+                    payload.putDouble("seq", entry.seq);
+
+                    WritableMap event = Arguments.createMap();
+                    event.putDouble("seq", entry.seq);
+                    event.putString("event", entry.event);
+                    event.putDouble("timestamp", entry.timestamp);
+                    event.putMap("payload", payload);
+                    events.pushMap(event);
+                }
+
+                WritableMap result = Arguments.createMap();
+                result.putDouble("lastSeq", journal.getLastSeq());
+                result.putArray("events", events);
+                promise.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao reproduzir eventos: " + e.getMessage());
+                promise.reject("REPLAY_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    /** Records a point event from JS, such as the tap that started a command. */
+    @ReactMethod
+    public void markTrace(String name) {
+        TraceRecorder.instant("js." + name);
+    }
+
+    /**
+     * Writes the trace ring buffer as Chrome trace JSON into the cache
+     * directory and resolves with its path and event count.
+     */
+    @ReactMethod
+    public void exportTrace(Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, null, token -> {
+            try {
+                File file = new File(reactContext.getCacheDir(), "trace_" + System.currentTimeMillis() + ".json");
+                int events = TraceRecorder.exportChromeTrace(file);
+
+                WritableMap result = Arguments.createMap();
+                result.putString("file", "file://" + file.getAbsolutePath());
+                result.putInt("events", events);
+                result.putDouble("droppedEvents", TraceRecorder.getDropped());
+                promise.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao exportar trace: " + e.getMessage());
+                promise.reject("TRACE_EXPORT_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void clearTrace(Promise promise) {
+        TraceRecorder.clear();
+        promise.resolve(true);
+    }
+
     @ReactMethod
     public void forceStopService(Promise promise) {
         try {
@@ -261,8 +429,101 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
         }
     }
 
+    /**
+     * Sends {@code serviceIntent} tagged with a command id. The promise is
+     * settled by the service's acknowledgement, which carries the state the
+     * command left the recorder in, or rejected if none arrives in time.
+     */
+    private void sendCommand(Intent serviceIntent, boolean foreground, String errorCode,
+                             String invalidStateMessage, Promise promise) {
+        int commandId = nextCommandId.getAndIncrement();
+        serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_COMMAND_ID, commandId);
+        pendingCommands.put(commandId, new PendingCommand(promise, errorCode, invalidStateMessage));
+        TraceRecorder.beginAsync(commandTraceName(serviceIntent.getAction()), commandId);
+        if (ForegroundAudioRecorderService.ACTION_STOP_RECORDING.equals(serviceIntent.getAction())) {
+            TraceRecorder.beginAsync(FINALIZE_TRACE, commandId);
+            finalizeTraceCookie.set(commandId);
+        }
+
+        try (TraceRecorder.Section trace = TraceRecorder.section("recorder.module.startService")) {
+            if (foreground && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                reactContext.startForegroundService(serviceIntent);
+            } else {
+                reactContext.startService(serviceIntent);
+            }
+        } catch (Exception e) {
+            pendingCommands.remove(commandId);
+            TraceRecorder.endAsync(commandTraceName(serviceIntent.getAction()), commandId);
+            endFinalizeTrace(commandId);
+            Log.e(TAG, "Erro ao enviar comando " + serviceIntent.getAction() + ": " + e.getMessage());
+            promise.reject(errorCode, e.getMessage());
+            return;
+        }
+
+        mainHandler.postDelayed(() -> {
+            PendingCommand pending = pendingCommands.remove(commandId);
+            if (pending != null) {
+                TraceRecorder.endAsync(commandTraceName(serviceIntent.getAction()), commandId);
+                Log.w(TAG, "Comando " + commandId + " sem confirmação do serviço");
+                pending.promise.reject("COMMAND_TIMEOUT", "O serviço de gravação não confirmou o comando");
+            }
+        }, COMMAND_ACK_TIMEOUT_MS);
+    }
+
+    private static String commandTraceName(String action) {
+        return "recorder.command." + (action != null ? action.substring(action.lastIndexOf('.') + 1) : "unknown");
+    }
+
+    /** Closes the stop span once; the completion broadcast is delivered more than once. */
+    private void endFinalizeTrace(int commandId) {
+        if (commandId != 0 && finalizeTraceCookie.compareAndSet(commandId, 0)) {
+            TraceRecorder.endAsync(FINALIZE_TRACE, commandId);
+        }
+    }
+
+    private void handleCommandAck(Intent intent) {
+        int commandId = intent.getIntExtra("commandId", 0);
+        String result = intent.getStringExtra("result");
+        String outputFile = intent.getStringExtra("outputFile");
+
+        isRecording = intent.getBooleanExtra("isRecording", false);
+        isPaused = intent.getBooleanExtra("isPaused", false);
+        if (outputFile != null) {
+            currentOutputFile = outputFile;
+        }
+
+        if (commandId != 0) {
+            TraceRecorder.endAsync(commandTraceName(intent.getStringExtra("action")), commandId);
+        }
+
+        // Commands from the notification buttons carry no id and have no caller.
+        PendingCommand pending = commandId != 0 ? pendingCommands.remove(commandId) : null;
+        if (pending == null) {
+            return;
+        }
+
+        if (ForegroundAudioRecorderService.RESULT_FAILED.equals(result)) {
+            pending.promise.reject(pending.errorCode, "Comando não pôde ser executado: " + intent.getStringExtra("action"));
+            return;
+        }
+        if (ForegroundAudioRecorderService.RESULT_IGNORED.equals(result) && pending.invalidStateMessage != null) {
+            pending.promise.reject("INVALID_STATE", pending.invalidStateMessage);
+            return;
+        }
+
+        WritableMap ack = Arguments.createMap();
+        ack.putBoolean("success", true);
+        ack.putInt("commandId", commandId);
+        ack.putString("result", result);
+        ack.putBoolean("isRecording", isRecording);
+        ack.putBoolean("isPaused", isPaused);
+        ack.putString("outputFile", currentOutputFile != null ? "file://" + currentOutputFile : null);
+        ack.putDouble("currentTime", intent.getLongExtra("currentTime", 0));
+        pending.promise.resolve(ack);
+    }
+
     @ReactMethod
-    public void startRecording(double elapsedTimeBeforePause, Promise promise) {
+    public void startRecording(double elapsedTimeBeforePause, ReadableMap options, Promise promise) {
         try {
             if (ContextCompat.checkSelfPermission(reactContext, Manifest.permission.RECORD_AUDIO) 
                     != PackageManager.PERMISSION_GRANTED) {
@@ -274,19 +535,52 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
             Intent serviceIntent = new Intent(reactContext, ForegroundAudioRecorderService.class);
             serviceIntent.setAction(ForegroundAudioRecorderService.ACTION_START_RECORDING);
             serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_ELAPSED_TIME, (long)elapsedTimeBeforePause);
-            
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                reactContext.startForegroundService(serviceIntent);
-            } else {
-                reactContext.startService(serviceIntent);
+            if (options != null && options.hasKey("wavArchive")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_WAV_ARCHIVE, options.getBoolean("wavArchive"));
             }
+            if (options != null && options.hasKey("flacArchive")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_FLAC_ARCHIVE, options.getBoolean("flacArchive"));
+            }
+            if (options != null && options.hasKey("features")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_FEATURES, options.getBoolean("features"));
+            }
+            if (options != null && options.hasKey("mlDerivative")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_ML_DERIVATIVE, options.getBoolean("mlDerivative"));
+            }
+            if (options != null && options.hasKey("rapidCapture")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_RAPID_CAPTURE, options.getBoolean("rapidCapture"));
+            }
+            if (options != null && options.hasKey("maxPartBytes")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_MAX_PART_BYTES, (long) options.getDouble("maxPartBytes"));
+            }
+            if (options != null && options.hasKey("maxPartDurationMs")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_MAX_PART_DURATION_MS, (long) options.getDouble("maxPartDurationMs"));
+            }
+            if (options != null && options.hasKey("lowPower")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_LOW_POWER, options.getBoolean("lowPower"));
+            }
+            if (options != null && options.hasKey("dsp")) {
+                ReadableMap dsp = options.getMap("dsp");
+                if (dsp.hasKey("highPassHz")) {
+                    serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_DSP_HIGH_PASS_HZ, (float) dsp.getDouble("highPassHz"));
+                }
+                if (dsp.hasKey("gainDb")) {
+                    serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_DSP_GAIN_DB, (float) dsp.getDouble("gainDb"));
+                }
+                if (dsp.hasKey("gateDb")) {
+                    serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_DSP_GATE_DB, (float) dsp.getDouble("gateDb"));
+                }
+                if (dsp.hasKey("limiterDb")) {
+                    serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_DSP_LIMITER_DB, (float) dsp.getDouble("limiterDb"));
+                }
+            }
+            if (options != null && options.hasKey("partMode")) {
+                serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_PART_MODE, options.getString("partMode"));
+            }
+            serviceIntent.putExtra(ForegroundAudioRecorderService.EXTRA_REQUEST_TIME, SystemClock.elapsedRealtime());
             
-            isRecording = true;
-            isPaused = false;
-            
-            WritableMap result = Arguments.createMap();
-            result.putBoolean("success", true);
-            promise.resolve(result);
+            // A start while already recording is acknowledged as ignored with the current state.
+            sendCommand(serviceIntent, true, "START_RECORDING_ERROR", null, promise);
         } catch (Exception e) {
             Log.e(TAG, "Erro ao iniciar gravação: " + e.getMessage());
             promise.reject("START_RECORDING_ERROR", e.getMessage());
@@ -296,20 +590,15 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
     @ReactMethod
     public void pauseRecording(Promise promise) {
         try {
-            if (!isRecording || isPaused) {
+            // With commands in flight the service decides, once they have run.
+            if (pendingCommands.isEmpty() && (!isRecording || isPaused)) {
                 promise.reject("INVALID_STATE", "Não há gravação ativa para pausar");
                 return;
             }
             
             Intent serviceIntent = new Intent(reactContext, ForegroundAudioRecorderService.class);
             serviceIntent.setAction(ForegroundAudioRecorderService.ACTION_PAUSE_RECORDING);
-            reactContext.startService(serviceIntent);
-            
-            isPaused = true;
-            
-            WritableMap result = Arguments.createMap();
-            result.putBoolean("success", true);
-            promise.resolve(result);
+            sendCommand(serviceIntent, false, "PAUSE_RECORDING_ERROR", "Não há gravação ativa para pausar", promise);
         } catch (Exception e) {
             Log.e(TAG, "Erro ao pausar gravação: " + e.getMessage());
             promise.reject("PAUSE_RECORDING_ERROR", e.getMessage());
@@ -319,20 +608,14 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
     @ReactMethod
     public void resumeRecording(Promise promise) {
         try {
-            if (!isRecording || !isPaused) {
+            if (pendingCommands.isEmpty() && (!isRecording || !isPaused)) {
                 promise.reject("INVALID_STATE", "Não há gravação pausada para retomar");
                 return;
             }
             
             Intent serviceIntent = new Intent(reactContext, ForegroundAudioRecorderService.class);
             serviceIntent.setAction(ForegroundAudioRecorderService.ACTION_RESUME_RECORDING);
-            reactContext.startService(serviceIntent);
-            
-            isPaused = false;
-            
-            WritableMap result = Arguments.createMap();
-            result.putBoolean("success", true);
-            promise.resolve(result);
+            sendCommand(serviceIntent, false, "RESUME_RECORDING_ERROR", "Não há gravação pausada para retomar", promise);
         } catch (Exception e) {
             Log.e(TAG, "Erro ao retomar gravação: " + e.getMessage());
             promise.reject("RESUME_RECORDING_ERROR", e.getMessage());
@@ -342,24 +625,32 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
     @ReactMethod
     public void stopRecording(Promise promise) {
         try {
-            if (!isRecording) {
+            if (pendingCommands.isEmpty() && !isRecording) {
                 promise.reject("INVALID_STATE", "Não há gravação ativa para parar");
                 return;
             }
             
             Intent serviceIntent = new Intent(reactContext, ForegroundAudioRecorderService.class);
             serviceIntent.setAction(ForegroundAudioRecorderService.ACTION_STOP_RECORDING);
-            reactContext.startService(serviceIntent);
-            
-            WritableMap result = Arguments.createMap();
-            result.putBoolean("success", true);
-            promise.resolve(result);
+            sendCommand(serviceIntent, false, "STOP_RECORDING_ERROR", "Não há gravação ativa para parar", promise);
         } catch (Exception e) {
             Log.e(TAG, "Erro ao parar gravação: " + e.getMessage());
             promise.reject("STOP_RECORDING_ERROR", e.getMessage());
         }
     }
 
+    @ReactMethod
+    public void releaseCapture(Promise promise) {
+        try {
+            Intent serviceIntent = new Intent(reactContext, ForegroundAudioRecorderService.class);
+            serviceIntent.setAction(ForegroundAudioRecorderService.ACTION_RELEASE_CAPTURE);
+            sendCommand(serviceIntent, false, "RELEASE_CAPTURE_ERROR", null, promise);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao liberar captura: " + e.getMessage());
+            promise.reject("RELEASE_CAPTURE_ERROR", e.getMessage());
+        }
+    }
+
     @ReactMethod
     public void getStatus(Promise promise) {
         try {
@@ -393,6 +684,8 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
             filter.addAction("com.thiagolins.vocalizeai.RECORDING_COMPLETED");
             filter.addAction("com.thiagolins.vocalizeai.OUTPUT_FILE_SET");
             filter.addAction("com.thiagolins.vocalizeai.RECORDING_ERROR");
+            filter.addAction(ForegroundAudioRecorderService.ACTION_COMMAND_ACK);
+            filter.addAction("com.thiagolins.vocalizeai.RECORDING_PART_COMPLETED");
     
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
                 reactContext.registerReceiver(recordingStatusReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
@@ -438,26 +731,29 @@ public class AudioRecorderModule extends ReactContextBaseJavaModule implements L
 
     @ReactMethod
     public void getOutputFilePath(Promise promise) {
-        try {
-            if (currentOutputFile != null) {
-                File file = new File(currentOutputFile);
-                if (file.exists() && file.length() > 0) {
-                    file.setReadable(true, false);
-                    
-                    String fileUrl = currentOutputFile.startsWith("file://") 
-                        ? currentOutputFile 
-                        : "file://" + currentOutputFile;
-                    
-                    promise.resolve(fileUrl);
+        scheduler.submit(IoScheduler.Lane.RECORDING_CRITICAL, null, token -> {
+            try {
+                String outputFile = currentOutputFile;
+                if (outputFile != null) {
+                    File file = new File(outputFile);
+                    if (file.exists() && file.length() > 0) {
+                        file.setReadable(true, false);
+                        
+                        String fileUrl = outputFile.startsWith("file://") 
+                            ? outputFile 
+                            : "file://" + outputFile;
+                        
+                        promise.resolve(fileUrl);
+                    } else {
+                        promise.resolve(null);
+                    }
                 } else {
                     promise.resolve(null);
                 }
-            } else {
-                promise.resolve(null);
+            } catch (Exception e) {
+                Log.e(TAG, "Error getting file path: " + e.getMessage());
+                promise.reject("GET_FILE_PATH_ERROR", e.getMessage());
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting file path: " + e.getMessage());
-            promise.reject("GET_FILE_PATH_ERROR", e.getMessage());
-        }
+        }, promise);
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.thiagolins.vocalizeai;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Streams one recording to {@code POST /audios} as multipart/form-data, the
+ * same request the app's audioService makes, with a fixed-length body so
+ * the file is never buffered in memory. Progress is reported per chunk and
+ * the token is checked between chunks. Every attempt for the same recording
+ * carries the same {@code Idempotency-Key}, so a retry of a POST the server
+ * already stored is not stored twice.
+ */
+public final class AudioUploader {
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 60_000;
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+
+    public interface ProgressListener {
+        void onProgress(long bytesSent, long totalBytes);
+    }
+
+    public static final class Response {
+        public final int status;
+        public final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+        /** The server already stored an upload with this idempotency key. */
+        public boolean isDuplicate() {
+            return status == 409;
+        }
+
+        public boolean isAuthError() {
+            return status == 401 || status == 403;
+        }
+
+        public boolean isRetryable() {
+            return status == 408 || status == 429 || status >= 500;
+        }
+
+        /** The API's {@code detail} field when present, like audioService reports it. */
+        public String message() {
+            if (body != null && !body.isEmpty()) {
+                try {
+                    String detail = new JSONObject(body).optString("detail", null);
+                    if (detail != null && !detail.isEmpty()) {
+                        return detail;
+                    }
+                } catch (JSONException ignored) {
+                }
+            }
+            return "Erro do servidor: " + status;
+        }
+    }
+
+    private AudioUploader() {
+    }
+
+    public static Response upload(UploadQueue.Config config, File recording, String idempotencyKey,
+                                  long vocalizationId, long participantId, IoScheduler.CancellationToken token,
+                                  ProgressListener listener) throws IOException {
+        String baseUrl = config.baseUrl.endsWith("/")
+            ? config.baseUrl.substring(0, config.baseUrl.length() - 1)
+            : config.baseUrl;
+        URL url = new URL(baseUrl + "/audios?id_vocalizacao=" + vocalizationId + "&id_participante=" + participantId);
+
+        String boundary = "----vocalizeai" + UUID.randomUUID().toString().replace("-", "");
+        byte[] head = ("--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"file\"; filename=\"" + recording.getName() + "\"\r\n"
+            + "Content-Type: " + contentType(recording.getName()) + "\r\n\r\n")
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        long fileBytes = recording.length();
+        long total = head.length + fileBytes + tail.length;
+
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(total);
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+        connection.setRequestProperty("Authorization", "Bearer " + config.authToken);
+        connection.setRequestProperty("Idempotency-Key", idempotencyKey);
+        if (config.apiKey != null && !config.apiKey.isEmpty()) {
+            connection.setRequestProperty("X-API-Key", config.apiKey);
+        }
+
+        try {
+            long sent = 0;
+            byte[] buffer = new byte[CHUNK_BYTES];
+            try (OutputStream out = connection.getOutputStream();
+                 InputStream in = new FileInputStream(recording)) {
+                out.write(head);
+                sent += head.length;
+
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (token != null) {
+                        token.throwIfCancelled();
+                    }
+                    out.write(buffer, 0, read);
+                    sent += read;
+                    if (listener != null) {
+                        listener.onProgress(sent, total);
+                    }
+                }
+
+                out.write(tail);
+                sent += tail.length;
+            }
+            if (sent != total) {
+                throw new IOException("Arquivo mudou durante o envio");
+            }
+            if (listener != null) {
+                listener.onProgress(total, total);
+            }
+
+            int status = connection.getResponseCode();
+            InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            return new Response(status, readBody(body));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        if (in == null) {
+            return null;
+        }
+        try (InputStream body = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while (bytes.size() < MAX_BODY_BYTES && (read = body.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static String contentType(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".flac")) {
+            return "audio/flac";
+        }
+        if (lower.endsWith(".wav")) {
+            return "audio/wav";
+        }
+        return "audio/mp4";
+    }
+}
@@ -0,0 +1,416 @@
+package com.thiagolins.vocalizeai;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads PCM from the microphone on a dedicated thread and fans every buffer
+ * out to the sinks of the active {@link Segment} (encoder, archival writer,
+ * analysis...). The microphone can stay open between segments, so a new
+ * output file only costs opening its sinks.
+ */
+public class CapturePipeline implements MemoryBudget.Consumer {
+    private static final String TAG = "CapturePipeline";
+
+    /** Audio delivered per read by default: low latency, 50 wakeups a second. */
+    public static final int DEFAULT_READ_BATCH_MS = 20;
+
+    /** Where captured PCM comes from; {@link AudioRecordInput} on devices. */
+    public interface AudioInput {
+        /** Blocks like {@code AudioRecord.read}; returns samples read or a negative error. */
+        int read(short[] buffer, int offset, int length);
+
+        /** Bytes of capture buffering held below the pipeline. */
+        int getBufferBytes();
+
+        void release();
+    }
+
+    /**
+     * A sink that measures the microphone itself. It is written each buffer
+     * as read, before the {@link DspChain} gates, limits or otherwise
+     * changes it; every other sink gets the processed buffer.
+     */
+    public interface RawSink extends PcmSink {
+    }
+
+    public interface Listener {
+        void onSinkError(PcmSink sink, Exception error);
+
+        void onCaptureError(Exception error);
+    }
+
+    /**
+     * One output (file set) of the pipeline. Timestamps start at zero for
+     * every segment.
+     */
+    public static final class Segment {
+        private final List<PcmSink> sinks;
+        private volatile long framesWritten = 0;
+        private volatile long requestedAtNs;
+        private volatile long firstBufferAtNs = 0;
+
+        private Segment(List<PcmSink> sinks) {
+            this.sinks = sinks;
+        }
+
+        public List<PcmSink> getSinks() {
+            return sinks;
+        }
+
+        /** Time from {@link #beginSegment} to the first buffer reaching the sinks, or -1. */
+        public double getStartLatencyMs() {
+            long first = firstBufferAtNs;
+            return first == 0 ? -1 : (first - requestedAtNs) / 1_000_000.0;
+        }
+
+        /** {@link SystemClock#elapsedRealtimeNanos()} of the first buffer, or 0. */
+        public long getFirstBufferAtNs() {
+            return firstBufferAtNs;
+        }
+
+        public long getFramesWritten() {
+            return framesWritten;
+        }
+    }
+
+    private final int sampleRate;
+    private final int channelCount;
+    private final Set<PcmSink> failedSinks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Object dispatchLock = new Object();
+    private Listener listener;
+
+    private AudioInput input;
+    private Thread captureThread;
+    private volatile Segment active;
+    private volatile boolean running = false;
+    private volatile boolean paused = false;
+    private int readBatchMs = DEFAULT_READ_BATCH_MS;
+    private volatile long readCount = 0;
+    private volatile DspChain processor;
+    private volatile long heldBytes = 0;
+
+    public CapturePipeline(int sampleRate, int channelCount) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * Sets how much audio each blocking read waits for. Larger batches let
+     * the CPU sleep between reads at the cost of start and stop latency.
+     * Takes effect on the next {@link #startCapture}.
+     */
+    public void setReadBatchMs(int readBatchMs) {
+        this.readBatchMs = Math.max(DEFAULT_READ_BATCH_MS, readBatchMs);
+    }
+
+    public int getReadBatchMs() {
+        return readBatchMs;
+    }
+
+    /**
+     * Sets the chain applied in place to every buffer before it reaches the
+     * sinks, or null for none. Can be changed while capturing.
+     */
+    public void setProcessor(DspChain chain) {
+        if (chain != null) {
+            chain.prepare(sampleRate, channelCount);
+        }
+        processor = chain;
+    }
+
+    /** The AudioRecord buffer and the read buffer, while capturing. */
+    @Override
+    public long getMemoryBytes() {
+        return heldBytes;
+    }
+
+    /** Capture buffers are sized for the hardware and never given back early. */
+    @Override
+    public void trimMemory(long targetBytes) {
+    }
+
+    /** Reads completed by the capture thread, i.e. its wakeups. */
+    public long getReadCount() {
+        return readCount;
+    }
+
+    public long getCapturedDurationMs() {
+        Segment segment = active;
+        return segment == null ? 0 : segment.framesWritten * 1000L / sampleRate;
+    }
+
+    /**
+     * Opens the microphone without any output. Buffers are read and dropped
+     * until a segment is begun.
+     */
+    public void startCapture() throws IOException {
+        int batchFrames = sampleRate * readBatchMs / 1000;
+        input = RecorderBackend.get().openInput(sampleRate, channelCount, batchFrames);
+
+        paused = false;
+        running = true;
+
+        short[] buffer = new short[batchFrames * channelCount];
+        heldBytes = input.getBufferBytes() + buffer.length * 2L;
+        MemoryBudget.getInstance().register("capture", MemoryBudget.Priority.CRITICAL, this);
+        captureThread = new Thread(() -> captureLoop(buffer), "capture-pipeline");
+        captureThread.start();
+    }
+
+    private void captureLoop(short[] buffer) {
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+        while (running) {
+            int read = input.read(buffer, 0, buffer.length);
+            if (read < 0) {
+                if (!running) {
+                    // Released by stop() while blocked in read
+                    break;
+                }
+                Log.e(TAG, "Erro na leitura do AudioRecord: " + read);
+                running = false;
+                if (listener != null) {
+                    listener.onCaptureError(new IOException("AudioRecord.read retornou " + read));
+                }
+                break;
+            }
+            readCount++;
+            if (read == 0 || paused || active == null) {
+                continue;
+            }
+
+            synchronized (dispatchLock) {
+                Segment segment = active;
+                if (segment == null) {
+                    continue;
+                }
+                if (segment.firstBufferAtNs == 0) {
+                    segment.firstBufferAtNs = SystemClock.elapsedRealtimeNanos();
+                }
+                long presentationTimeUs = segment.framesWritten * 1_000_000L / sampleRate;
+                DspChain chain = processor;
+                if (chain != null) {
+                    dispatch(segment.sinks, true, buffer, read, presentationTimeUs);
+                    chain.process(buffer, read);
+                    dispatch(segment.sinks, false, buffer, read, presentationTimeUs);
+                } else {
+                    dispatch(segment.sinks, buffer, read, presentationTimeUs);
+                }
+                segment.framesWritten += read / channelCount;
+            }
+        }
+    }
+
+    /** Writes to the {@link RawSink}s of {@code targets} if {@code raw}, otherwise to the rest. */
+    private void dispatch(List<PcmSink> targets, boolean raw, short[] buffer, int length, long presentationTimeUs) {
+        for (int i = 0; i < targets.size(); i++) {
+            PcmSink sink = targets.get(i);
+            if ((sink instanceof RawSink) == raw) {
+                write(sink, buffer, length, presentationTimeUs);
+            }
+        }
+    }
+
+    private void dispatch(List<PcmSink> targets, short[] buffer, int length, long presentationTimeUs) {
+        for (int i = 0; i < targets.size(); i++) {
+            write(targets.get(i), buffer, length, presentationTimeUs);
+        }
+    }
+
+    private void write(PcmSink sink, short[] buffer, int length, long presentationTimeUs) {
+        if (failedSinks.contains(sink)) {
+            return;
+        }
+        try {
+            sink.write(buffer, length, presentationTimeUs);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro no sink " + sink.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            failedSinks.add(sink);
+            if (listener != null) {
+                listener.onSinkError(sink, e);
+            }
+        }
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean hasFailed(PcmSink sink) {
+        return failedSinks.contains(sink);
+    }
+
+    /** Opens {@code segmentSinks} off the capture thread; nothing is written to them yet. */
+    public Segment openSegment(List<PcmSink> segmentSinks) throws IOException {
+        Segment segment = new Segment(new ArrayList<>(segmentSinks));
+        List<PcmSink> opened = new ArrayList<>();
+        try {
+            for (PcmSink sink : segment.sinks) {
+                sink.open(sampleRate, channelCount);
+                opened.add(sink);
+            }
+        } catch (IOException e) {
+            for (PcmSink sink : opened) {
+                try {
+                    sink.close();
+                } catch (Exception ignored) {
+                }
+            }
+            throw e;
+        }
+        return segment;
+    }
+
+    /**
+     * Routes captured audio to {@code segment} from the next buffer on.
+     * {@code requestedAtNs} ({@link SystemClock#elapsedRealtimeNanos()}) is
+     * the origin of {@link Segment#getStartLatencyMs()}.
+     */
+    public void beginSegment(Segment segment, long requestedAtNs) {
+        if (!running) {
+            throw new IllegalStateException("Captura não iniciada");
+        }
+        segment.requestedAtNs = requestedAtNs;
+        paused = false;
+        synchronized (dispatchLock) {
+            active = segment;
+        }
+    }
+
+    /**
+     * Detaches the active segment and closes its sinks. The microphone keeps
+     * running. Returns the finished segment, or null if there was none.
+     */
+    public Segment endSegment() {
+        Segment segment;
+        synchronized (dispatchLock) {
+            segment = active;
+            active = null;
+        }
+        if (segment != null) {
+            closeSegment(segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Opens {@code freshSinks} as the continuation of the active segment. The
+     * returned segment also carries {@code carriedSinks}, which are already
+     * open and stay open across {@link #rotateSegment}.
+     */
+    public Segment openContinuation(List<PcmSink> freshSinks, List<PcmSink> carriedSinks) throws IOException {
+        Segment next = openSegment(freshSinks);
+        next.sinks.addAll(carriedSinks);
+        return next;
+    }
+
+    /**
+     * Switches the active segment to {@code next} between two buffers, so no
+     * sample is lost or written twice, then closes the sinks of the previous
+     * segment that {@code next} does not carry. The pause state is kept.
+     * Returns the previous segment, or null if there was none.
+     */
+    public Segment rotateSegment(Segment next) {
+        if (!running) {
+            throw new IllegalStateException("Captura não iniciada");
+        }
+        next.requestedAtNs = SystemClock.elapsedRealtimeNanos();
+        Segment previous;
+        synchronized (dispatchLock) {
+            previous = active;
+            active = next;
+        }
+        if (previous != null) {
+            closeSinks(previous.sinks, next.sinks);
+        }
+        return previous;
+    }
+
+    /** Closes a segment that was opened but never begun. */
+    public void discardSegment(Segment segment) {
+        closeSegment(segment);
+    }
+
+    public boolean hasActiveSegment() {
+        return active != null;
+    }
+
+    public void stop() {
+        endSegment();
+        running = false;
+
+        if (captureThread != null) {
+            try {
+                captureThread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            captureThread = null;
+        }
+
+        releaseInput();
+    }
+
+    private void releaseInput() {
+        if (input == null) {
+            return;
+        }
+        try {
+            input.release();
+        } finally {
+            input = null;
+            heldBytes = 0;
+            MemoryBudget.getInstance().unregister("capture");
+        }
+    }
+
+    private void closeSegment(Segment segment) {
+        closeSinks(segment.sinks, Collections.emptyList());
+    }
+
+    private void closeSinks(List<PcmSink> targets, List<PcmSink> keepOpen) {
+        for (PcmSink sink : targets) {
+            if (keepOpen.contains(sink)) {
+                continue;
+            }
+            try {
+                sink.close();
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao fechar sink " + sink.getClass().getSimpleName() + ": " + e.getMessage());
+                if (failedSinks.add(sink)) {
+                    if (listener != null) {
+                        listener.onSinkError(sink, e);
+                    }
+                }
+            }
+        }
+    }
+}
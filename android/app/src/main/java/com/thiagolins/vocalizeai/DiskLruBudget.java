@@ -0,0 +1,131 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Byte budget for a flat cache directory. Files are ordered by mtime, so
+ * callers {@link #touch} a file on every hit; once a write pushes the
+ * directory over budget the oldest files are deleted down to 75% of it.
+ * In-progress files ending in .tmp or .part are only trimmed once nothing
+ * has written to them for {@link #STALE_IN_PROGRESS_MS}, since they count
+ * against the budget too.
+ */
+public class DiskLruBudget {
+    private static final String TAG = "DiskLruBudget";
+    static final long STALE_IN_PROGRESS_MS = 15 * 60 * 1000L;
+
+    private final File directory;
+    private final long budgetBytes;
+    private long bytes = -1;
+
+    public DiskLruBudget(File directory, long budgetBytes) {
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void ensureDirectory() throws java.io.IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new java.io.IOException("Não foi possível criar " + directory);
+        }
+    }
+
+    /** Short hex digest of {@code identity}, safe to use as a file name. */
+    public static String hashName(String identity) {
+        try {
+            byte[] digest = java.security.MessageDigest.getInstance("SHA-1")
+                .digest(identity.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 10; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void touch(File file) {
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    public synchronized void recordWrite(long written) {
+        if (bytes < 0) {
+            bytes = scan();
+        } else {
+            bytes += written;
+        }
+        if (bytes > budgetBytes) {
+            trim(budgetBytes * 3 / 4);
+        }
+    }
+
+    public synchronized void recordDelete(long removed) {
+        if (bytes >= 0) {
+            bytes = Math.max(0, bytes - removed);
+        }
+    }
+
+    public synchronized long getBytes() {
+        if (bytes < 0) {
+            bytes = scan();
+        }
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        bytes = 0;
+    }
+
+    private long scan() {
+        long total = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    private void trim(long targetBytes) {
+        long staleBefore = System.currentTimeMillis() - STALE_IN_PROGRESS_MS;
+        File[] files = directory.listFiles(file -> !isInProgress(file.getName()) || file.lastModified() < staleBefore);
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        int removed = 0;
+        for (File file : files) {
+            if (bytes <= targetBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                bytes -= length;
+                removed++;
+            }
+        }
+        Log.d(TAG, directory.getName() + ": " + removed + " arquivos removidos, " + bytes + " bytes em uso");
+    }
+
+    private static boolean isInProgress(String name) {
+        return name.endsWith(".tmp") || name.endsWith(".part");
+    }
+}
@@ -0,0 +1,329 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-place processing of interleaved 16-bit capture buffers by a list of
+ * {@link Stage}s, before they reach the sinks. Stages keep all their state
+ * in arrays sized in {@link Stage#prepare}, so processing allocates
+ * nothing. Each stage is timed per buffer; if the whole chain uses more
+ * than {@link #MAX_LOAD} of the buffer's real-time duration on average,
+ * the chain bypasses itself so capture never falls behind.
+ */
+public class DspChain {
+    private static final String TAG = "DspChain";
+
+    /** Fraction of real time the chain may use before it is bypassed. */
+    static final double MAX_LOAD = 0.5;
+    /** Buffers processed before the load is judged, to skip JIT warm-up. */
+    private static final int WARMUP_BUFFERS = 50;
+
+    public interface Stage {
+        String getName();
+
+        void prepare(int sampleRate, int channelCount);
+
+        void process(short[] buffer, int length);
+    }
+
+    public static final class StageStats {
+        public final String name;
+        public final long buffers;
+        public final double avgNsPerBuffer;
+        public final long maxNsPerBuffer;
+
+        StageStats(String name, long buffers, double avgNsPerBuffer, long maxNsPerBuffer) {
+            this.name = name;
+            this.buffers = buffers;
+            this.avgNsPerBuffer = avgNsPerBuffer;
+            this.maxNsPerBuffer = maxNsPerBuffer;
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private long[] totalNs = new long[0];
+    private long[] maxNs = new long[0];
+    private int sampleRate;
+    private int channelCount;
+    private long buffers = 0;
+    private double load = 0;
+    private volatile boolean bypassed = false;
+
+    public DspChain add(Stage stage) {
+        stages.add(stage);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    public synchronized void prepare(int sampleRate, int channelCount) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        for (Stage stage : stages) {
+            stage.prepare(sampleRate, channelCount);
+        }
+        totalNs = new long[stages.size()];
+        maxNs = new long[stages.size()];
+        buffers = 0;
+        load = 0;
+        bypassed = false;
+    }
+
+    public synchronized void process(short[] buffer, int length) {
+        if (bypassed || length == 0) {
+            return;
+        }
+
+        long chainNs = 0;
+        for (int i = 0; i < stages.size(); i++) {
+            long start = System.nanoTime();
+            stages.get(i).process(buffer, length);
+            long elapsed = System.nanoTime() - start;
+            totalNs[i] += elapsed;
+            if (elapsed > maxNs[i]) {
+                maxNs[i] = elapsed;
+            }
+            chainNs += elapsed;
+        }
+        buffers++;
+
+        long bufferNs = (long) length / channelCount * 1_000_000_000L / sampleRate;
+        load = load * 0.9 + (double) chainNs / bufferNs * 0.1;
+        if (buffers > WARMUP_BUFFERS && load > MAX_LOAD) {
+            bypassed = true;
+            Log.w(TAG, "Cadeia DSP desativada: carga " + Math.round(load * 100) + "% do tempo real");
+        }
+    }
+
+    public boolean isBypassed() {
+        return bypassed;
+    }
+
+    /** Smoothed fraction of real time spent in the chain. */
+    public synchronized double getLoad() {
+        return load;
+    }
+
+    public synchronized List<StageStats> getStats() {
+        List<StageStats> stats = new ArrayList<>();
+        for (int i = 0; i < stages.size(); i++) {
+            stats.add(new StageStats(
+                stages.get(i).getName(),
+                buffers,
+                buffers > 0 ? (double) totalNs[i] / buffers : 0,
+                maxNs[i]));
+        }
+        return stats;
+    }
+
+    private static short clamp(float value) {
+        if (value > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (value < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) value;
+    }
+
+    private static float dbToLinear(float db) {
+        return (float) Math.pow(10, db / 20.0);
+    }
+
+    /** Time constant to one-pole smoothing coefficient. */
+    private static float coefficient(float timeMs, int sampleRate) {
+        return (float) Math.exp(-1.0 / (timeMs * 0.001 * sampleRate));
+    }
+
+    /** Second-order Butterworth high-pass; removes DC offset and handling rumble. */
+    public static final class HighPass implements Stage {
+        private final float cutoffHz;
+        private float b0, b1, b2, a1, a2;
+        private float[] x1, x2, y1, y2;
+        private int channels;
+
+        public HighPass(float cutoffHz) {
+            this.cutoffHz = cutoffHz;
+        }
+
+        @Override
+        public String getName() {
+            return "highPass";
+        }
+
+        @Override
+        public void prepare(int sampleRate, int channelCount) {
+            double w0 = 2 * Math.PI * Math.min(cutoffHz, sampleRate * 0.45) / sampleRate;
+            double cos = Math.cos(w0);
+            double alpha = Math.sin(w0) / (2 * Math.sqrt(0.5));
+            double a0 = 1 + alpha;
+            b0 = (float) ((1 + cos) / 2 / a0);
+            b1 = (float) (-(1 + cos) / a0);
+            b2 = b0;
+            a1 = (float) (-2 * cos / a0);
+            a2 = (float) ((1 - alpha) / a0);
+
+            channels = channelCount;
+            x1 = new float[channelCount];
+            x2 = new float[channelCount];
+            y1 = new float[channelCount];
+            y2 = new float[channelCount];
+        }
+
+        @Override
+        public void process(short[] buffer, int length) {
+            for (int i = 0; i < length; i++) {
+                int ch = i % channels;
+                float x = buffer[i];
+                float y = b0 * x + b1 * x1[ch] + b2 * x2[ch] - a1 * y1[ch] - a2 * y2[ch];
+                x2[ch] = x1[ch];
+                x1[ch] = x;
+                y2[ch] = y1[ch];
+                y1[ch] = y;
+                buffer[i] = clamp(y);
+            }
+        }
+    }
+
+    /** Fixed gain in dB. */
+    public static final class Gain implements Stage {
+        private final float gain;
+
+        public Gain(float gainDb) {
+            this.gain = dbToLinear(gainDb);
+        }
+
+        @Override
+        public String getName() {
+            return "gain";
+        }
+
+        @Override
+        public void prepare(int sampleRate, int channelCount) {
+        }
+
+        @Override
+        public void process(short[] buffer, int length) {
+            for (int i = 0; i < length; i++) {
+                buffer[i] = clamp(buffer[i] * gain);
+            }
+        }
+    }
+
+    /**
+     * Attenuates the signal while its envelope stays under the threshold.
+     * Opens in about a millisecond, and closes slowly after a hold time so
+     * the tails of calls are kept.
+     */
+    public static final class NoiseGate implements Stage {
+        private static final float FLOOR_GAIN = 0.05f;
+        private static final float HOLD_MS = 80;
+
+        private final float threshold;
+        private float envelopeAttack, envelopeRelease, gainOpen, gainClose;
+        private int holdFrames;
+        private int channels;
+        private float envelope = 0;
+        private float gain = 1;
+        private int holdRemaining = 0;
+
+        public NoiseGate(float thresholdDb) {
+            this.threshold = dbToLinear(thresholdDb) * Short.MAX_VALUE;
+        }
+
+        @Override
+        public String getName() {
+            return "noiseGate";
+        }
+
+        @Override
+        public void prepare(int sampleRate, int channelCount) {
+            channels = channelCount;
+            envelopeAttack = coefficient(1, sampleRate);
+            envelopeRelease = coefficient(50, sampleRate);
+            gainOpen = coefficient(1, sampleRate);
+            gainClose = coefficient(60, sampleRate);
+            holdFrames = (int) (HOLD_MS * 0.001f * sampleRate);
+            envelope = 0;
+            gain = 1;
+            holdRemaining = 0;
+        }
+
+        @Override
+        public void process(short[] buffer, int length) {
+            for (int frame = 0; frame + channels <= length; frame += channels) {
+                float peak = 0;
+                for (int ch = 0; ch < channels; ch++) {
+                    peak = Math.max(peak, Math.abs((float) buffer[frame + ch]));
+                }
+                float envelopeCoef = peak > envelope ? envelopeAttack : envelopeRelease;
+                envelope = peak + envelopeCoef * (envelope - peak);
+
+                float target;
+                if (envelope >= threshold) {
+                    holdRemaining = holdFrames;
+                    target = 1;
+                } else if (holdRemaining > 0) {
+                    holdRemaining--;
+                    target = 1;
+                } else {
+                    target = FLOOR_GAIN;
+                }
+                float gainCoef = target > gain ? gainOpen : gainClose;
+                gain = target + gainCoef * (gain - target);
+
+                for (int ch = 0; ch < channels; ch++) {
+                    buffer[frame + ch] = (short) (buffer[frame + ch] * gain);
+                }
+            }
+        }
+    }
+
+    /**
+     * Peak limiter with instant attack and smooth release: no output sample
+     * exceeds the ceiling, so hot calls after the gain stage do not clip.
+     */
+    public static final class Limiter implements Stage {
+        private final float ceiling;
+        private float release;
+        private int channels;
+        private float gain = 1;
+
+        public Limiter(float ceilingDb) {
+            this.ceiling = dbToLinear(Math.min(0, ceilingDb)) * Short.MAX_VALUE;
+        }
+
+        @Override
+        public String getName() {
+            return "limiter";
+        }
+
+        @Override
+        public void prepare(int sampleRate, int channelCount) {
+            channels = channelCount;
+            release = coefficient(100, sampleRate);
+            gain = 1;
+        }
+
+        @Override
+        public void process(short[] buffer, int length) {
+            for (int frame = 0; frame + channels <= length; frame += channels) {
+                float peak = 0;
+                for (int ch = 0; ch < channels; ch++) {
+                    peak = Math.max(peak, Math.abs((float) buffer[frame + ch]));
+                }
+                float required = peak > ceiling ? ceiling / peak : 1;
+                gain = required < gain ? required : required + release * (gain - required);
+
+                for (int ch = 0; ch < channels; ch++) {
+                    buffer[frame + ch] = clamp(buffer[frame + ch] * gain);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.thiagolins.vocalizeai;
+
+/**
+ * Log-mel and MFCC features for one analysis frame. Every buffer is sized in
+ * the constructor; {@link #compute} only reads and writes those arrays.
+ */
+public class FeatureExtractor {
+    private static final float LOG_FLOOR = 1e-10f;
+
+    private final int fftSize;
+    private final int melBands;
+    private final int mfccCount;
+    private final Fft fft;
+    private final float[] window;
+    private final float[] re;
+    private final float[] im;
+    private final float[] power;
+    private final int[] melStart;
+    private final float[][] melWeights;
+    private final float[][] dct;
+    private final float[] logMel;
+    private final float[] mfcc;
+
+    public FeatureExtractor(int sampleRate, int fftSize, int melBands, int mfccCount) {
+        this(sampleRate, fftSize, melBands, mfccCount, 20f, sampleRate / 2f);
+    }
+
+    public FeatureExtractor(int sampleRate, int fftSize, int melBands, int mfccCount, float minHz, float maxHz) {
+        this.fftSize = fftSize;
+        this.melBands = melBands;
+        this.mfccCount = mfccCount;
+        this.fft = new Fft(fftSize);
+        this.window = new float[fftSize];
+        this.re = new float[fftSize];
+        this.im = new float[fftSize];
+        this.power = new float[fftSize / 2 + 1];
+        this.logMel = new float[melBands];
+        this.mfcc = new float[mfccCount];
+
+        for (int i = 0; i < fftSize; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / fftSize));
+        }
+
+        double minMel = hzToMel(minHz);
+        double maxMel = hzToMel(maxHz);
+        double[] edgesBin = new double[melBands + 2];
+        for (int i = 0; i < edgesBin.length; i++) {
+            double hz = melToHz(minMel + (maxMel - minMel) * i / (melBands + 1));
+            edgesBin[i] = hz * fftSize / sampleRate;
+        }
+
+        melStart = new int[melBands];
+        melWeights = new float[melBands][];
+        for (int m = 0; m < melBands; m++) {
+            double left = edgesBin[m];
+            double center = edgesBin[m + 1];
+            double right = edgesBin[m + 2];
+            int first = (int) Math.ceil(left);
+            int last = Math.min((int) Math.floor(right), fftSize / 2);
+            if (last < first) {
+                last = first;
+            }
+            melStart[m] = first;
+            melWeights[m] = new float[last - first + 1];
+            for (int k = first; k <= last; k++) {
+                double weight = k <= center
+                    ? (k - left) / Math.max(center - left, 1e-9)
+                    : (right - k) / Math.max(right - center, 1e-9);
+                melWeights[m][k - first] = (float) Math.max(0, weight);
+            }
+        }
+
+        dct = new float[mfccCount][melBands];
+        for (int c = 0; c < mfccCount; c++) {
+            double scale = Math.sqrt((c == 0 ? 1.0 : 2.0) / melBands);
+            for (int m = 0; m < melBands; m++) {
+                dct[c][m] = (float) (scale * Math.cos(Math.PI * c * (m + 0.5) / melBands));
+            }
+        }
+    }
+
+    private static double hzToMel(double hz) {
+        return 2595.0 * Math.log10(1.0 + hz / 700.0);
+    }
+
+    private static double melToHz(double mel) {
+        return 700.0 * (Math.pow(10.0, mel / 2595.0) - 1.0);
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    public int getMelBands() {
+        return melBands;
+    }
+
+    public int getMfccCount() {
+        return mfccCount;
+    }
+
+    /** Power spectrum of the last computed frame, length fftSize / 2 + 1. */
+    public float[] getPowerSpectrum() {
+        return power;
+    }
+
+    public float[] getLogMel() {
+        return logMel;
+    }
+
+    public float[] getMfcc() {
+        return mfcc;
+    }
+
+    /**
+     * Analyses {@code fftSize} samples read from a ring buffer starting at
+     * {@code offset}, wrapping around its end.
+     */
+    public void compute(float[] ring, int offset) {
+        int length = ring.length;
+        for (int i = 0; i < fftSize; i++) {
+            re[i] = ring[(offset + i) % length] * window[i];
+            im[i] = 0f;
+        }
+        fft.transform(re, im);
+        fft.powerSpectrum(re, im, power);
+
+        for (int m = 0; m < melBands; m++) {
+            float[] weights = melWeights[m];
+            int start = melStart[m];
+            float energy = 0f;
+            for (int k = 0; k < weights.length; k++) {
+                energy += weights[k] * power[start + k];
+            }
+            logMel[m] = (float) Math.log(Math.max(energy, LOG_FLOOR));
+        }
+
+        for (int c = 0; c < mfccCount; c++) {
+            float[] basis = dct[c];
+            float sum = 0f;
+            for (int m = 0; m < melBands; m++) {
+                sum += basis[m] * logMel[m];
+            }
+            mfcc[c] = sum;
+        }
+    }
+}
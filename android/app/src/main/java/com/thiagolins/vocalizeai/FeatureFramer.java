@@ -0,0 +1,69 @@
+package com.thiagolins.vocalizeai;
+
+/**
+ * Mixes interleaved PCM to mono into a ring buffer and runs a
+ * {@link FeatureExtractor} every {@code hopSize} samples.
+ */
+public class FeatureFramer {
+    public static final int FFT_SIZE = 1024;
+    public static final int HOP_SIZE = 512;
+    public static final int MEL_BANDS = 40;
+    public static final int MFCC_COUNT = 13;
+
+    public interface FrameListener {
+        void onFrame(float[] logMel, float[] mfcc) throws java.io.IOException;
+    }
+
+    private final FeatureExtractor extractor;
+    private final int channelCount;
+    private final int fftSize;
+    private final int hopSize;
+    private final float[] ring;
+    private int ringWrite = 0;
+    private int samplesSinceFrame = 0;
+    private int filled = 0;
+    private long frameStartNs;
+
+    public FeatureFramer(int sampleRate, int channelCount) {
+        this(sampleRate, channelCount, FFT_SIZE, HOP_SIZE, MEL_BANDS, MFCC_COUNT);
+    }
+
+    public FeatureFramer(int sampleRate, int channelCount, int fftSize, int hopSize, int melBands, int mfccCount) {
+        this.extractor = new FeatureExtractor(sampleRate, fftSize, melBands, mfccCount);
+        this.channelCount = channelCount;
+        this.fftSize = fftSize;
+        this.hopSize = hopSize;
+        this.ring = new float[fftSize];
+    }
+
+    public FeatureExtractor getExtractor() {
+        return extractor;
+    }
+
+    /** {@link System#nanoTime()} at which the frame being delivered started computing. */
+    public long getFrameStartNs() {
+        return frameStartNs;
+    }
+
+    public void process(short[] buffer, int length, FrameListener listener) throws java.io.IOException {
+        float scale = 1f / (32768f * channelCount);
+        for (int i = 0; i + channelCount <= length; i += channelCount) {
+            int mixed = 0;
+            for (int c = 0; c < channelCount; c++) {
+                mixed += buffer[i + c];
+            }
+            ring[ringWrite] = mixed * scale;
+            ringWrite = (ringWrite + 1) % fftSize;
+            if (filled < fftSize) {
+                filled++;
+            }
+
+            if (++samplesSinceFrame >= hopSize && filled == fftSize) {
+                samplesSinceFrame = 0;
+                frameStartNs = System.nanoTime();
+                extractor.compute(ring, ringWrite);
+                listener.onFrame(extractor.getLogMel(), extractor.getMfcc());
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Computes log-mel/MFCC frames on the capture thread and writes them to a
+ * little-endian sidecar:
+ *
+ * <pre>
+ * "VFEA" | version | sampleRate | fftSize | hop | melBands | mfccCount | frameCount
+ * frameCount x (float32[melBands] logMel, float32[mfccCount] mfcc)
+ * </pre>
+ */
+public class FeatureSidecarSink implements PcmSink, FeatureFramer.FrameListener {
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    private static final int FFT_SIZE = FeatureFramer.FFT_SIZE;
+    private static final int HOP_SIZE = FeatureFramer.HOP_SIZE;
+    private static final int MEL_BANDS = FeatureFramer.MEL_BANDS;
+    private static final int MFCC_COUNT = FeatureFramer.MFCC_COUNT;
+
+    private final File file;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(32 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    private FeatureFramer framer;
+    private int sampleRate;
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private long fileOffset;
+    private int frameCount;
+    private long totalFrameNs;
+    private long maxFrameNs;
+
+    public FeatureSidecarSink(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public double getAverageFrameUs() {
+        return frameCount == 0 ? 0 : totalFrameNs / 1000.0 / frameCount;
+    }
+
+    public double getMaxFrameUs() {
+        return maxFrameNs / 1000.0;
+    }
+
+    /** Average frame cost divided by the audio time one hop represents. */
+    public double getRealtimeFactor() {
+        if (frameCount == 0 || sampleRate == 0) {
+            return 0;
+        }
+        double hopNs = HOP_SIZE * 1_000_000_000.0 / sampleRate;
+        return (totalFrameNs / (double) frameCount) / hopNs;
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) throws IOException {
+        this.sampleRate = sampleRate;
+        framer = new FeatureFramer(sampleRate, channelCount);
+        frameCount = 0;
+        totalFrameNs = 0;
+        maxFrameNs = 0;
+
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(0);
+        channel = randomAccessFile.getChannel();
+
+        out.clear();
+        out.put(new byte[] {'V', 'F', 'E', 'A'});
+        out.putInt(VERSION);
+        out.putInt(sampleRate);
+        out.putInt(FFT_SIZE);
+        out.putInt(HOP_SIZE);
+        out.putInt(MEL_BANDS);
+        out.putInt(MFCC_COUNT);
+        out.putInt(0);
+        fileOffset = 0;
+        flush();
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+        framer.process(buffer, length, this);
+    }
+
+    @Override
+    public void onFrame(float[] logMel, float[] mfcc) throws IOException {
+        int frameBytes = (MEL_BANDS + MFCC_COUNT) * 4;
+        if (out.remaining() < frameBytes) {
+            flush();
+        }
+        for (float value : logMel) {
+            out.putFloat(value);
+        }
+        for (float value : mfcc) {
+            out.putFloat(value);
+        }
+        frameCount++;
+
+        long elapsed = System.nanoTime() - framer.getFrameStartNs();
+        totalFrameNs += elapsed;
+        if (elapsed > maxFrameNs) {
+            maxFrameNs = elapsed;
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            fileOffset += channel.write(out, fileOffset);
+        }
+        out.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            flush();
+            out.putInt(frameCount).flip();
+            channel.write(out, HEADER_SIZE - 4);
+            out.clear();
+            channel.force(false);
+        } finally {
+            channel.close();
+            randomAccessFile.close();
+            channel = null;
+            randomAccessFile = null;
+        }
+    }
+}
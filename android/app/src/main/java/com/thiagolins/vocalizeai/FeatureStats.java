@@ -0,0 +1,114 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Running mean / standard deviation of log-mel + MFCC frames (Welford), used
+ * as the fixed-size clip descriptor fed to the classifier. It can be filled
+ * from a .feat sidecar or, when there is none, by decoding the audio.
+ */
+public class FeatureStats implements PcmSink, FeatureFramer.FrameListener {
+    public static final int FRAME_DIM = FeatureFramer.MEL_BANDS + FeatureFramer.MFCC_COUNT;
+    public static final int VECTOR_DIM = FRAME_DIM * 2;
+
+    private final double[] mean = new double[FRAME_DIM];
+    private final double[] m2 = new double[FRAME_DIM];
+    private long count = 0;
+    private FeatureFramer framer;
+
+    public long getFrameCount() {
+        return count;
+    }
+
+    public void accumulate(float[] logMel, float[] mfcc) {
+        count++;
+        for (int i = 0; i < FRAME_DIM; i++) {
+            double value = i < logMel.length ? logMel[i] : mfcc[i - logMel.length];
+            double delta = value - mean[i];
+            mean[i] += delta / count;
+            m2[i] += delta * (value - mean[i]);
+        }
+    }
+
+    public float[] toVector() {
+        float[] vector = new float[VECTOR_DIM];
+        for (int i = 0; i < FRAME_DIM; i++) {
+            vector[i] = (float) mean[i];
+            vector[FRAME_DIM + i] = count > 1 ? (float) Math.sqrt(m2[i] / (count - 1)) : 0f;
+        }
+        return vector;
+    }
+
+    @Override
+    public void onFrame(float[] logMel, float[] mfcc) {
+        accumulate(logMel, mfcc);
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) {
+        framer = new FeatureFramer(sampleRate, channelCount);
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+        framer.process(buffer, length, this);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public static FeatureStats fromSidecar(File sidecar) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(sidecar, "r");
+             FileChannel channel = file.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(FeatureSidecarSink.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+            }
+            header.flip();
+            if (header.remaining() < FeatureSidecarSink.HEADER_SIZE
+                || header.get() != 'V' || header.get() != 'F' || header.get() != 'E' || header.get() != 'A') {
+                throw new IOException("Sidecar de features inválido: " + sidecar);
+            }
+            header.getInt();
+            header.getInt();
+            header.getInt();
+            header.getInt();
+            int melBands = header.getInt();
+            int mfccCount = header.getInt();
+            int frames = header.getInt();
+            if (frames == 0) {
+                // Still being recorded: the count is only patched in on close
+                frames = (int) ((channel.size() - FeatureSidecarSink.HEADER_SIZE) / (FRAME_DIM * 4));
+            }
+            if (melBands != FeatureFramer.MEL_BANDS || mfccCount != FeatureFramer.MFCC_COUNT) {
+                throw new IOException("Dimensões do sidecar incompatíveis: " + melBands + "x" + mfccCount);
+            }
+
+            FeatureStats stats = new FeatureStats();
+            float[] logMel = new float[melBands];
+            float[] mfcc = new float[mfccCount];
+            ByteBuffer block = ByteBuffer.allocate(FRAME_DIM * 4 * 256).order(ByteOrder.LITTLE_ENDIAN);
+            int remaining = frames;
+            while (remaining > 0 && channel.read(block) > 0) {
+                block.flip();
+                while (remaining > 0 && block.remaining() >= FRAME_DIM * 4) {
+                    for (int i = 0; i < melBands; i++) {
+                        logMel[i] = block.getFloat();
+                    }
+                    for (int i = 0; i < mfccCount; i++) {
+                        mfcc[i] = block.getFloat();
+                    }
+                    stats.accumulate(logMel, mfcc);
+                    remaining--;
+                }
+                block.compact();
+            }
+            return stats;
+        }
+    }
+}
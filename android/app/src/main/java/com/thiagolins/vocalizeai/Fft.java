@@ -0,0 +1,77 @@
+package com.thiagolins.vocalizeai;
+
+/**
+ * In-place iterative radix-2 FFT. Twiddles and the bit-reversal permutation
+ * are computed once, so {@link #transform} never allocates.
+ */
+public final class Fft {
+    private final int size;
+    private final int[] bitReverse;
+    private final float[] cos;
+    private final float[] sin;
+
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+
+        int bits = Integer.numberOfTrailingZeros(size);
+        bitReverse = new int[size];
+        for (int i = 0; i < size; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        cos = new float[size / 2];
+        sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2.0 * Math.PI * i / size;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void transform(float[] re, float[] im) {
+        for (int i = 0; i < size; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float tr = re[i];
+                re[i] = re[j];
+                re[j] = tr;
+                float ti = im[i];
+                im[i] = im[j];
+                im[j] = ti;
+            }
+        }
+
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1;
+            int step = size / length;
+            for (int start = 0; start < size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * step];
+                    float wi = sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    float xr = re[b] * wr - im[b] * wi;
+                    float xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+
+    /** Writes |X[k]|^2 for k in [0, size/2] into {@code power}. */
+    public void powerSpectrum(float[] re, float[] im, float[] power) {
+        for (int k = 0; k <= size / 2; k++) {
+            power[k] = re[k] * re[k] + im[k] * im[k];
+        }
+    }
+}
@@ -2,15 +2,27 @@ package com.thiagolins.vocalizeai;
 
 import android.util.Log;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 public class FileOperationsModule extends ReactContextBaseJavaModule {
     private static final String TAG = "FileOperationsModule";
     private final ReactApplicationContext reactContext;
+    private final IoScheduler scheduler = IoScheduler.getInstance();
 
     public FileOperationsModule(ReactApplicationContext reactContext) {
         super(reactContext);
@@ -24,126 +36,483 @@ public class FileOperationsModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void deleteFile(String filePath, Promise promise) {
-        try {
-            if (filePath.startsWith("file://")) {
-                filePath = filePath.substring(7);
-            }
-            
-            File file = new File(filePath);
-            
-            if (!file.exists()) {
-                promise.resolve(false);
-                return;
-            }
-            
-            boolean deleted = file.delete();
-            
-            if (deleted) {
-                promise.resolve(true);
-            } else {
-                file.setWritable(true);
-                deleted = file.delete();
-                
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                String path = filePath;
+                if (path.startsWith("file://")) {
+                    path = path.substring(7);
+                }
+
+                File file = new File(path);
+
+                if (!file.exists()) {
+                    promise.resolve(false);
+                    return;
+                }
+
+                boolean deleted;
+                try (TraceRecorder.Section trace = TraceRecorder.section("fileops.delete")) {
+                    deleted = file.delete();
+                }
+
                 if (deleted) {
                     promise.resolve(true);
                 } else {
-                    Log.e(TAG, "Failed to delete file: " + filePath);
-                    promise.reject("DELETE_ERROR", "Failed to delete file");
+                    file.setWritable(true);
+                    deleted = file.delete();
+
+                    if (deleted) {
+                        promise.resolve(true);
+                    } else {
+                        Log.e(TAG, "Failed to delete file: " + path);
+                        promise.reject("DELETE_ERROR", "Failed to delete file");
+                    }
                 }
+            } catch (Exception e) {
+                Log.e(TAG, "Error deleting file: " + e.getMessage());
+                promise.reject("DELETE_ERROR", e.getMessage());
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Error deleting file: " + e.getMessage());
-            promise.reject("DELETE_ERROR", e.getMessage());
-        }
+        }, promise);
     }
 
     @ReactMethod
     public void moveFile(String sourcePath, String destPath, Promise promise) {
-        try {
-            if (sourcePath.startsWith("file://")) {
-                sourcePath = sourcePath.substring(7);
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                String source = sourcePath.startsWith("file://") ? sourcePath.substring(7) : sourcePath;
+                String dest = destPath.startsWith("file://") ? destPath.substring(7) : destPath;
+                File sourceFile = new File(source);
+                File destFile = new File(dest);
+                if (!sourceFile.exists()) {
+                    promise.reject("MOVE_ERROR", "Source file does not exist");
+                    return;
+                }
+
+                if (destFile.getParentFile() != null && !destFile.getParentFile().exists()) {
+                    destFile.getParentFile().mkdirs();
+                }
+
+                boolean success;
+                try (TraceRecorder.Section trace = TraceRecorder.section("fileops.move.rename")) {
+                    success = sourceFile.renameTo(destFile);
+                }
+
+                if (success) {
+                    promise.resolve(true);
+                } else {
+                    try (TraceRecorder.Section trace = TraceRecorder.section("fileops.move.copy")) {
+                        java.nio.file.Files.copy(
+                            sourceFile.toPath(),
+                            destFile.toPath(),
+                            java.nio.file.StandardCopyOption.REPLACE_EXISTING
+                        );
+                        sourceFile.delete();
+                        promise.resolve(true);
+                    } catch (Exception e) {
+                        promise.reject("MOVE_ERROR", "Could not move file: " + e.getMessage());
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error moving file: " + e.getMessage());
+                promise.reject("MOVE_ERROR", e.getMessage());
             }
-            if (destPath.startsWith("file://")) {
-                destPath = destPath.substring(7);
+        }, promise);
+    }
+
+    @ReactMethod
+    public void getAppAudioDirectory(Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                File dir = new File(reactContext.getFilesDir(), "audiorecordings");
+                if (!dir.exists()) {
+                    dir.mkdirs();
+                }
+
+                dir.setReadable(true, false);
+                dir.setWritable(true, false);
+
+                String path = dir.getAbsolutePath();
+                promise.resolve("file://" + path);
+            } catch (Exception e) {
+                Log.e(TAG, "Error getting app audio directory: " + e.getMessage());
+                promise.reject("DIR_ERROR", e.getMessage());
             }
-            File sourceFile = new File(sourcePath);
-            File destFile = new File(destPath);
-            if (!sourceFile.exists()) {
-                promise.reject("MOVE_ERROR", "Source file does not exist");
-                return;
+        }, promise);
+    }
+
+    @ReactMethod
+    public void cleanAudioDirectory(String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            try {
+                File audioDir = new File(reactContext.getFilesDir(), "audiorecordings");
+                if (audioDir.exists() && audioDir.isDirectory()) {
+                    File[] files = audioDir.listFiles();
+                    if (files != null) {
+                        int deletedCount = 0;
+
+                        for (File file : files) {
+                            if (token.isCancelled()) {
+                                Log.w(TAG, "Limpeza do diretório cancelada após " + deletedCount + " arquivos");
+                                break;
+                            }
+                            if (file.delete()) {
+                                deletedCount++;
+                            }
+                        }
+
+                        promise.resolve(deletedCount);
+                    } else {
+                        promise.resolve(0);
+                    }
+                } else {
+                    promise.resolve(0);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error cleaning audio directory: " + e.getMessage(), e);
+                promise.reject("CLEAN_DIR_ERROR", e.getMessage());
             }
+        }, promise);
+    }
 
-            if (destFile.getParentFile() != null && !destFile.getParentFile().exists()) {
-                destFile.getParentFile().mkdirs();
+    @ReactMethod
+    public void extractRange(String sourcePath, double startMs, double endMs, String destPath, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            String source = sourcePath.startsWith("file://") ? sourcePath.substring(7) : sourcePath;
+            String dest = destPath.startsWith("file://") ? destPath.substring(7) : destPath;
+            try (AudioRangeExtractor extractor = new AudioRangeExtractor(source)) {
+                AudioRangeExtractor.Range range = extractor.extract(
+                    (long) (startMs * 1000),
+                    (long) (endMs * 1000),
+                    dest
+                );
+
+                WritableMap result = Arguments.createMap();
+                result.putString("outputFile", "file://" + range.outputPath);
+                result.putDouble("startMs", range.startUs / 1000.0);
+                result.putDouble("endMs", range.endUs / 1000.0);
+                result.putDouble("durationMs", (range.endUs - range.startUs) / 1000.0);
+                result.putInt("frames", range.frames);
+                result.putDouble("prerollMs", range.prerollUs / 1000.0);
+                promise.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error extracting range: " + e.getMessage());
+                promise.reject("EXTRACT_ERROR", e.getMessage());
             }
+        }, promise);
+    }
 
-            boolean success = sourceFile.renameTo(destFile);
+    @ReactMethod
+    public void segmentRecording(String sourcePath, String destDir, ReadableMap options, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            String source = sourcePath.startsWith("file://") ? sourcePath.substring(7) : sourcePath;
+            File sourceFile = new File(source);
+            File outputDir = destDir != null
+                ? new File(destDir.startsWith("file://") ? destDir.substring(7) : destDir)
+                : sourceFile.getParentFile();
+            List<File> written = new ArrayList<>();
 
-            if (success) {
-                promise.resolve(true);
-            } else {
-                try {
-                    java.nio.file.Files.copy(
-                        sourceFile.toPath(), 
-                        destFile.toPath(),
-                        java.nio.file.StandardCopyOption.REPLACE_EXISTING
+            try {
+                VocalizationSegmenter segmenter = new VocalizationSegmenter();
+                if (options != null) {
+                    segmenter.setThresholds(
+                        options.hasKey("onMarginDb") ? options.getDouble("onMarginDb") : 12.0,
+                        options.hasKey("offMarginDb") ? options.getDouble("offMarginDb") : 6.0
                     );
-                    sourceFile.delete();
-                    promise.resolve(true);
-                } catch (Exception e) {
-                    promise.reject("MOVE_ERROR", "Could not move file: " + e.getMessage());
+                    segmenter.setTiming(
+                        options.hasKey("minRegionMs") ? options.getInt("minRegionMs") : 250,
+                        options.hasKey("hangoverMs") ? options.getInt("hangoverMs") : 200,
+                        options.hasKey("mergeGapMs") ? options.getInt("mergeGapMs") : 300,
+                        options.hasKey("paddingMs") ? options.getInt("paddingMs") : 100
+                    );
+                }
+
+                PcmDecoder.decode(source, segmenter, token);
+
+                String baseName = sourceFile.getName().replaceFirst("\\.[^.]+$", "");
+                WritableArray clips = Arguments.createArray();
+                try (AudioRangeExtractor extractor = new AudioRangeExtractor(source)) {
+                    int index = 1;
+                    for (VocalizationSegmenter.Region region : segmenter.getRegions()) {
+                        token.throwIfCancelled();
+                        File clipFile = new File(outputDir, String.format("%s_seg%02d.m4a", baseName, index++));
+                        AudioRangeExtractor.Range range = extractor.extract(region.startUs, region.endUs, clipFile.getAbsolutePath());
+                        written.add(clipFile);
+
+                        WritableMap clip = Arguments.createMap();
+                        clip.putString("outputFile", "file://" + range.outputPath);
+                        clip.putDouble("startMs", range.startUs / 1000.0);
+                        clip.putDouble("endMs", range.endUs / 1000.0);
+                        clip.putDouble("prerollMs", range.prerollUs / 1000.0);
+                        clip.putDouble("peakDb", region.peakDb);
+                        clips.pushMap(clip);
+                    }
                 }
+
+                promise.resolve(clips);
+            } catch (java.util.concurrent.CancellationException e) {
+                for (File file : written) {
+                    file.delete();
+                }
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Error segmenting recording: " + e.getMessage(), e);
+                for (File file : written) {
+                    file.delete();
+                }
+                promise.reject("SEGMENT_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void convertToFlac(String sourcePath, String destPath, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            String source = sourcePath.startsWith("file://") ? sourcePath.substring(7) : sourcePath;
+            File sourceFile = new File(source);
+            File destFile = destPath != null
+                ? new File(destPath.startsWith("file://") ? destPath.substring(7) : destPath)
+                : new File(sourceFile.getParentFile(), sourceFile.getName().replaceFirst("\\.[^.]+$", "") + ".flac");
+
+            try {
+                if (!sourceFile.exists()) {
+                    promise.reject("FLAC_ERROR", "Arquivo de origem não existe");
+                    return;
+                }
+                if (destFile.getAbsolutePath().equals(sourceFile.getAbsolutePath())) {
+                    promise.reject("FLAC_ERROR", "Destino igual à origem");
+                    return;
+                }
+
+                long start = System.nanoTime();
+                FlacEncoderSink sink = new FlacEncoderSink(destFile);
+                PcmDecoder.decode(source, sink, token);
+                long elapsedNs = System.nanoTime() - start;
+
+                WritableMap result = Arguments.createMap();
+                result.putString("outputFile", "file://" + destFile.getAbsolutePath());
+                result.putDouble("samples", sink.getTotalSamples());
+                result.putDouble("sourceBytes", sourceFile.length());
+                result.putDouble("flacBytes", destFile.length());
+                result.putDouble("elapsedMs", elapsedNs / 1_000_000.0);
+                result.putDouble("encodeMs", sink.getEncodeNs() / 1_000_000.0);
+                promise.resolve(result);
+            } catch (java.util.concurrent.CancellationException e) {
+                destFile.delete();
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Error converting to FLAC: " + e.getMessage(), e);
+                destFile.delete();
+                promise.reject("FLAC_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void repairRecording(String filePath, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            try {
+                File file = new File(filePath.startsWith("file://") ? filePath.substring(7) : filePath);
+                if (!file.exists()) {
+                    promise.reject("REPAIR_ERROR", "Arquivo não existe");
+                    return;
+                }
+                promise.resolve(toMap(Mp4Repair.repairInPlace(file, token)));
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Error repairing recording: " + e.getMessage(), e);
+                promise.reject("REPAIR_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    /** Repairs every recording a killed session left without a moov; failures are reported per file. */
+    @ReactMethod
+    public void recoverUnfinalizedRecordings(String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            try {
+                WritableArray results = Arguments.createArray();
+                for (File file : Mp4Repair.findUnfinalized(new File(reactContext.getFilesDir(), "audiorecordings"))) {
+                    token.throwIfCancelled();
+                    try {
+                        results.pushMap(toMap(Mp4Repair.repairInPlace(file, token)));
+                    } catch (java.io.IOException e) {
+                        Log.e(TAG, "Error repairing " + file.getName() + ": " + e.getMessage());
+                        WritableMap failed = Arguments.createMap();
+                        failed.putString("uri", "file://" + file.getAbsolutePath());
+                        failed.putString("error", e.getMessage());
+                        results.pushMap(failed);
+                    }
+                }
+                promise.resolve(results);
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Error recovering recordings: " + e.getMessage(), e);
+                promise.reject("REPAIR_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    private static WritableMap toMap(Mp4Repair.Result result) {
+        WritableMap map = Arguments.createMap();
+        map.putString("uri", "file://" + result.file.getAbsolutePath());
+        map.putInt("frames", result.frames);
+        map.putDouble("durationMs", result.durationMs);
+        map.putDouble("recoveredBytes", result.recoveredBytes);
+        map.putDouble("droppedBytes", result.droppedBytes);
+        return map;
+    }
+
+    @ReactMethod
+    public void reprocessLibrary(ReadableMap options, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            try {
+                Set<String> analyses = new HashSet<>();
+                if (options != null && options.hasKey("analyses")) {
+                    ReadableArray requested = options.getArray("analyses");
+                    for (int i = 0; i < requested.size(); i++) {
+                        String analysis = requested.getString(i);
+                        if (!LibraryReprocessor.ALL_ANALYSES.contains(analysis)) {
+                            promise.reject("REPROCESS_ERROR", "Análise desconhecida: " + analysis);
+                            return;
+                        }
+                        analyses.add(analysis);
+                    }
+                }
+                int parallelism = options != null && options.hasKey("parallelism") ? options.getInt("parallelism") : 0;
+
+                LibraryReprocessor reprocessor = new LibraryReprocessor(
+                    new File(reactContext.getFilesDir(), "audiorecordings"),
+                    new File(reactContext.getFilesDir(), "library-index.json"),
+                    analyses,
+                    parallelism);
+                LibraryReprocessor.Progress result = reprocessor.run(token,
+                    progress -> sendEvent("onLibraryReprocessProgress", toMap(progress)));
+
+                WritableMap map = toMap(result);
+                map.putInt("parallelism", reprocessor.getParallelism());
+                promise.resolve(map);
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Error reprocessing library: " + e.getMessage(), e);
+                promise.reject("REPROCESS_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void getLibraryIndex(Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                promise.resolve(LibraryReprocessor.readIndex(new File(reactContext.getFilesDir(), "library-index.json")));
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading library index: " + e.getMessage());
+                promise.reject("REPROCESS_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    private static WritableMap toMap(LibraryReprocessor.Progress progress) {
+        WritableMap map = Arguments.createMap();
+        map.putInt("total", progress.total);
+        map.putInt("processed", progress.processed);
+        map.putInt("skipped", progress.skipped);
+        map.putInt("failed", progress.failed);
+        map.putDouble("bytesDone", progress.bytesDone);
+        map.putDouble("totalBytes", progress.totalBytes);
+        map.putDouble("elapsedMs", progress.elapsedMs);
+        map.putString("currentFile", progress.currentFile);
+        map.putBoolean("done", progress.isDone());
+        return map;
+    }
+
+    private void sendEvent(String eventName, WritableMap params) {
+        try (TraceRecorder.Section trace = TraceRecorder.section("fileops.emit")) {
+            if (reactContext.hasActiveReactInstance()) {
+                reactContext
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(eventName, params);
             }
         } catch (Exception e) {
-            Log.e(TAG, "Error moving file: " + e.getMessage());
-            promise.reject("MOVE_ERROR", e.getMessage());
+            Log.e(TAG, "Error sending event " + eventName + ": " + e.getMessage());
         }
     }
-    
+
     @ReactMethod
-    public void getAppAudioDirectory(Promise promise) {
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(Integer count) {
+    }
+
+    @ReactMethod
+    public void createCancellationToken(Promise promise) {
+        promise.resolve(scheduler.newTokenId());
+    }
+
+    @ReactMethod
+    public void cancelTask(String tokenId, Promise promise) {
+        try {
+            promise.resolve(scheduler.cancel(tokenId));
+        } catch (Exception e) {
+            Log.e(TAG, "Error cancelling task: " + e.getMessage());
+            promise.reject("CANCEL_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getSchedulerMetrics(Promise promise) {
         try {
-            File dir = new File(reactContext.getFilesDir(), "audiorecordings");
-            if (!dir.exists()) {
-                dir.mkdirs();
+            WritableMap result = Arguments.createMap();
+            for (Map.Entry<IoScheduler.Lane, IoScheduler.LaneMetrics> entry : scheduler.getMetrics().entrySet()) {
+                IoScheduler.LaneMetrics metrics = entry.getValue();
+                WritableMap lane = Arguments.createMap();
+                lane.putInt("queued", metrics.queued);
+                lane.putInt("active", metrics.active);
+                lane.putInt("maxQueueDepth", metrics.maxQueueDepth);
+                lane.putDouble("completed", metrics.completed);
+                lane.putDouble("cancelled", metrics.cancelled);
+                lane.putDouble("failed", metrics.failed);
+                result.putMap(entry.getKey().name().toLowerCase(), lane);
             }
-            
-            dir.setReadable(true, false);
-            dir.setWritable(true, false);
-            
-            String path = dir.getAbsolutePath();
-            promise.resolve("file://" + path);
+            promise.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Error getting app audio directory: " + e.getMessage());
-            promise.reject("DIR_ERROR", e.getMessage());
+            Log.e(TAG, "Error getting scheduler metrics: " + e.getMessage());
+            promise.reject("METRICS_ERROR", e.getMessage());
         }
     }
 
     @ReactMethod
-    public void cleanAudioDirectory(Promise promise) {
+    public void getMemoryUsage(Promise promise) {
         try {
-            File audioDir = new File(reactContext.getFilesDir(), "audiorecordings");
-            if (audioDir.exists() && audioDir.isDirectory()) {
-                File[] files = audioDir.listFiles();
-                if (files != null) {
-                    int deletedCount = 0;
-                    
-                    for (File file : files) {
-                        if (file.delete()) {
-                            deletedCount++;
-                        }
-                    }
-                    
-                    promise.resolve(deletedCount);
-                } else {
-                    promise.resolve(0);
-                }
-            } else {
-                promise.resolve(0);
+            MemoryBudget budget = MemoryBudget.getInstance();
+            WritableArray consumers = Arguments.createArray();
+            long total = 0;
+            for (MemoryBudget.Usage usage : budget.getUsage()) {
+                WritableMap consumer = Arguments.createMap();
+                consumer.putString("name", usage.name);
+                consumer.putString("priority", usage.priority.name().toLowerCase());
+                consumer.putDouble("bytes", usage.bytes);
+                consumer.putInt("trims", usage.trims);
+                consumers.pushMap(consumer);
+                total += usage.bytes;
+            }
+
+            WritableMap result = Arguments.createMap();
+            result.putArray("consumers", consumers);
+            result.putDouble("totalBytes", total);
+            if (budget.getBudgetBytes() != Long.MAX_VALUE) {
+                result.putDouble("budgetBytes", budget.getBudgetBytes());
             }
+            result.putInt("lastTrimLevel", budget.getLastTrimLevel());
+            result.putDouble("lastTrimAtMs", budget.getLastTrimAtMs());
+            promise.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Error cleaning audio directory: " + e.getMessage(), e);
-            promise.reject("CLEAN_DIR_ERROR", e.getMessage());
+            Log.e(TAG, "Error getting memory usage: " + e.getMessage());
+            promise.reject("METRICS_ERROR", e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
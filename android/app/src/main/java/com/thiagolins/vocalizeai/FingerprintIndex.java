@@ -0,0 +1,671 @@
+package com.thiagolins.vocalizeai;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk inverted index of {@link AudioFingerprinter} hashes, answering
+ * "which recordings share landmarks with this one at a consistent offset".
+ *
+ * <p>Every posting is one long, {@code hash:24 | recording:20 | frame:20},
+ * so sorting the longs groups them by hash. The bulk of the postings lives
+ * in a memory-mapped sorted file searched in place; new recordings go to a
+ * small sorted delta that is merged into it once it grows past
+ * {@link #DELTA_LIMIT}. Removed recordings are dropped at that merge and
+ * filtered out of queries until then. Each recording's own hashes are kept
+ * in a forward file so it can be queried without decoding it again.
+ */
+public final class FingerprintIndex {
+    private static final String TAG = "FingerprintIndex";
+    private static final int MAIN_MAGIC = 0x56465049; // "VFPI"
+    private static final int VERSION = 1;
+    private static final int MAIN_HEADER_BYTES = 16;
+    static final int DELTA_LIMIT = 64 * 1024;
+
+    private static final int RECORDING_BITS = 20;
+    private static final int FRAME_BITS = 20;
+    private static final long FRAME_MASK = (1L << FRAME_BITS) - 1;
+    private static final long RECORDING_MASK = (1L << RECORDING_BITS) - 1;
+
+    /** Below these a shared-landmark count is chance, not a copy. */
+    static final int MIN_MATCHES = 12;
+    static final double MIN_SIMILARITY = 0.05;
+
+    public static final class Recording {
+        public final int id;
+        public final String path;
+        public final long size;
+        public final long modified;
+        public final int hashCount;
+        public final long durationMs;
+
+        Recording(int id, String path, long size, long modified, int hashCount, long durationMs) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hashCount = hashCount;
+            this.durationMs = durationMs;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("path", path);
+            json.put("size", size);
+            json.put("modified", modified);
+            json.put("hashes", hashCount);
+            json.put("durationMs", durationMs);
+            return json;
+        }
+
+        static Recording fromJson(int id, JSONObject json) {
+            return new Recording(id, json.optString("path", ""), json.optLong("size", 0),
+                json.optLong("modified", 0), json.optInt("hashes", 0), json.optLong("durationMs", 0));
+        }
+    }
+
+    public static final class Match {
+        public final Recording recording;
+        /** Landmarks shared at the best-supported time offset. */
+        public final int matches;
+        /** {@link #matches} over the smaller of the two hash counts. */
+        public final double similarity;
+        /** Where the query starts inside the match. */
+        public final double offsetMs;
+
+        Match(Recording recording, int matches, double similarity, double offsetMs) {
+            this.recording = recording;
+            this.matches = matches;
+            this.similarity = similarity;
+            this.offsetMs = offsetMs;
+        }
+    }
+
+    /** Hashes and anchor frames of one recording. */
+    public static final class Fingerprint {
+        final int[] hashes;
+        final int[] times;
+        final double hopMs;
+        final long durationMs;
+
+        Fingerprint(int[] hashes, int[] times, double hopMs, long durationMs) {
+            this.hashes = hashes;
+            this.times = times;
+            this.hopMs = hopMs;
+            this.durationMs = durationMs;
+        }
+
+        public int size() {
+            return hashes.length;
+        }
+    }
+
+    private static FingerprintIndex instance;
+
+    private final File dir;
+    private final File mainFile;
+    private final File deltaFile;
+    private final File catalogFile;
+
+    private final Map<Integer, Recording> recordings = new HashMap<>();
+    private final Map<String, Integer> idsByPath = new HashMap<>();
+    private final Set<Integer> removed = new HashSet<>();
+    private int nextId = 1;
+
+    private LongBuffer main = LongBuffer.allocate(0);
+    private long[] delta = new long[0];
+
+    public static synchronized FingerprintIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new FingerprintIndex(new File(context.getApplicationContext().getFilesDir(), "fingerprints"));
+        }
+        return instance;
+    }
+
+    FingerprintIndex(File dir) {
+        this.dir = dir;
+        this.mainFile = new File(dir, "postings.idx");
+        this.deltaFile = new File(dir, "postings.delta");
+        this.catalogFile = new File(dir, "catalog.json");
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        try {
+            loadCatalog();
+            main = mapMain();
+            delta = readLongs(deltaFile);
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Índice de impressões digitais ilegível, recomeçando: " + e.getMessage());
+            recordings.clear();
+            idsByPath.clear();
+            removed.clear();
+            main = LongBuffer.allocate(0);
+            delta = new long[0];
+        }
+    }
+
+    public static Fingerprint fingerprint(File recording, IoScheduler.CancellationToken token) throws IOException {
+        AudioFingerprinter fingerprinter = new AudioFingerprinter();
+        PcmDecoder.decode(recording.getAbsolutePath(), fingerprinter, token);
+        return new Fingerprint(fingerprinter.getHashes(), fingerprinter.getTimes(),
+            fingerprinter.getHopMs(), fingerprinter.getDurationMs());
+    }
+
+    public synchronized Recording get(File recording) {
+        Integer id = idsByPath.get(recording.getAbsolutePath());
+        return id != null ? recordings.get(id) : null;
+    }
+
+    public synchronized int size() {
+        return recordings.size();
+    }
+
+    public synchronized long postingCount() {
+        return main.capacity() + delta.length;
+    }
+
+    /**
+     * Fingerprints and indexes {@code file}. A file already indexed with the
+     * same size and modification time is left alone; a changed one replaces
+     * its old entry.
+     */
+    public Recording add(File file, IoScheduler.CancellationToken token) throws IOException {
+        Recording existing = get(file);
+        if (existing != null && existing.size == file.length() && existing.modified == file.lastModified()) {
+            return existing;
+        }
+        // Decoding happens outside the lock so queries keep answering meanwhile
+        Fingerprint fingerprint = fingerprint(file, token);
+        return add(file, fingerprint);
+    }
+
+    synchronized Recording add(File file, Fingerprint fingerprint) throws IOException {
+        Integer previous = idsByPath.get(file.getAbsolutePath());
+        if (previous != null) {
+            removeId(previous);
+        }
+
+        int id = nextId++;
+        if (id > RECORDING_MASK) {
+            throw new IOException("Índice de impressões digitais cheio");
+        }
+        Recording recording = new Recording(id, file.getAbsolutePath(), file.length(), file.lastModified(),
+            fingerprint.size(), fingerprint.durationMs);
+        writeForward(id, fingerprint);
+
+        long[] postings = new long[fingerprint.size()];
+        int count = 0;
+        for (int i = 0; i < fingerprint.size(); i++) {
+            if (fingerprint.times[i] <= FRAME_MASK) {
+                postings[count++] = posting(fingerprint.hashes[i], id, fingerprint.times[i]);
+            }
+        }
+        postings = Arrays.copyOf(postings, count);
+        Arrays.sort(postings);
+        delta = merge(delta, postings);
+
+        recordings.put(id, recording);
+        idsByPath.put(recording.path, id);
+        try {
+            if (delta.length > DELTA_LIMIT) {
+                compact();
+            } else {
+                writeLongs(deltaFile, delta);
+            }
+            saveCatalog();
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return recording;
+    }
+
+    public synchronized boolean remove(File file) throws IOException {
+        Integer id = idsByPath.get(file.getAbsolutePath());
+        if (id == null) {
+            return false;
+        }
+        removeId(id);
+        try {
+            saveCatalog();
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return true;
+    }
+
+    /** Recordings sharing landmarks with {@code file}, best first; the file itself is excluded. */
+    public List<Match> findSimilar(File file, int limit, IoScheduler.CancellationToken token) throws IOException {
+        Fingerprint fingerprint;
+        Recording self;
+        synchronized (this) {
+            self = get(file);
+            fingerprint = self != null && self.size == file.length() && self.modified == file.lastModified()
+                ? readForward(self.id)
+                : null;
+        }
+        if (fingerprint == null) {
+            self = null;
+            fingerprint = fingerprint(file, token);
+        }
+        return findSimilar(fingerprint, self != null ? self.id : -1, limit);
+    }
+
+    /** Indexes {@code file} and returns what it duplicates, decoding it only once. */
+    public List<Match> addAndFindSimilar(File file, int limit, IoScheduler.CancellationToken token) throws IOException {
+        Recording existing = get(file);
+        if (existing != null && existing.size == file.length() && existing.modified == file.lastModified()) {
+            return findSimilar(file, limit, token);
+        }
+        Fingerprint fingerprint = fingerprint(file, token);
+        Recording recording = add(file, fingerprint);
+        return findSimilar(fingerprint, recording.id, limit);
+    }
+
+    /**
+     * Votes each matching posting into a (recording, time offset) histogram;
+     * copies of the same audio pile their votes on a single offset.
+     */
+    synchronized List<Match> findSimilar(Fingerprint query, int excludeId, int limit) {
+        VoteTable votes = new VoteTable();
+
+        for (int i = 0; i < query.size(); i++) {
+            long from = (long) query.hashes[i] << (RECORDING_BITS + FRAME_BITS);
+            long to = from + (1L << (RECORDING_BITS + FRAME_BITS));
+            int queryTime = query.times[i];
+            for (int p = lowerBound(main, from), n = main.capacity(); p < n; p++) {
+                long posting = main.get(p);
+                if (posting >= to) {
+                    break;
+                }
+                vote(posting, queryTime, excludeId, votes);
+            }
+            for (int p = lowerBound(delta, from); p < delta.length && delta[p] < to; p++) {
+                vote(delta[p], queryTime, excludeId, votes);
+            }
+        }
+
+        // Best-supported offset per recording
+        Map<Integer, long[]> best = new HashMap<>();
+        for (int slot = 0; slot < votes.keys.length; slot++) {
+            int count = votes.counts[slot];
+            if (count == 0) {
+                continue;
+            }
+            long key = votes.keys[slot];
+            int id = (int) (key >>> 32);
+            long[] top = best.get(id);
+            if (top == null) {
+                best.put(id, new long[] {count, (int) key});
+            } else if (count > top[0]) {
+                top[0] = count;
+                top[1] = (int) key;
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (Map.Entry<Integer, long[]> entry : best.entrySet()) {
+            Recording recording = recordings.get(entry.getKey());
+            int count = (int) entry.getValue()[0];
+            if (recording == null || count < MIN_MATCHES || !new File(recording.path).exists()) {
+                continue;
+            }
+            double similarity = count / (double) Math.max(1, Math.min(query.size(), recording.hashCount));
+            if (similarity < MIN_SIMILARITY) {
+                continue;
+            }
+            matches.add(new Match(recording, count, Math.min(1.0, similarity), entry.getValue()[1] * query.hopMs));
+        }
+        Collections.sort(matches, (a, b) -> Integer.compare(b.matches, a.matches));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    private void vote(long posting, int queryTime, int excludeId, VoteTable votes) {
+        int id = (int) ((posting >>> FRAME_BITS) & RECORDING_MASK);
+        if (id == excludeId || (!removed.isEmpty() && removed.contains(id))) {
+            return;
+        }
+        int offset = (int) (posting & FRAME_MASK) - queryTime;
+        votes.increment(((long) id << 32) | (offset & 0xFFFFFFFFL));
+    }
+
+    /** Open-addressing (recording, offset) -> count map, so voting never boxes. */
+    private static final class VoteTable {
+        long[] keys = new long[4096];
+        int[] counts = new int[4096];
+        private int size;
+
+        void increment(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (mix(key) & mask);
+            while (counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    counts[slot] = 1;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot]++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] == 0) {
+                    continue;
+                }
+                int slot = (int) (mix(oldKeys[i]) & mask);
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        private static long mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            return key ^ (key >>> 33);
+        }
+    }
+
+    /** Drops entries whose file no longer exists. */
+    public synchronized int prune() throws IOException {
+        List<Integer> gone = new ArrayList<>();
+        for (Recording recording : recordings.values()) {
+            if (!new File(recording.path).exists()) {
+                gone.add(recording.id);
+            }
+        }
+        for (int id : gone) {
+            removeId(id);
+        }
+        if (!gone.isEmpty()) {
+            try {
+                saveCatalog();
+            } catch (JSONException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        return gone.size();
+    }
+
+    private void removeId(int id) {
+        Recording recording = recordings.remove(id);
+        if (recording != null) {
+            idsByPath.remove(recording.path);
+        }
+        removed.add(id);
+        forwardFile(id).delete();
+    }
+
+    /** Rewrites main + delta into a new main file, leaving removed recordings out. */
+    private void compact() throws IOException {
+        File tmp = new File(mainFile.getPath() + ".tmp");
+        long written = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+            raf.setLength(0);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(raf.getFD()), 64 * 1024));
+            out.writeInt(MAIN_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0);
+
+            int m = 0;
+            int d = 0;
+            int mainCount = main.capacity();
+            while (m < mainCount || d < delta.length) {
+                long next;
+                if (d >= delta.length || (m < mainCount && main.get(m) <= delta[d])) {
+                    next = main.get(m++);
+                } else {
+                    next = delta[d++];
+                }
+                if (!removed.contains((int) ((next >>> FRAME_BITS) & RECORDING_MASK))) {
+                    out.writeLong(next);
+                    written++;
+                }
+            }
+            out.flush();
+            raf.seek(8);
+            raf.writeLong(written);
+            raf.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        if (!tmp.renameTo(mainFile)) {
+            tmp.delete();
+            throw new IOException("Não foi possível substituir o índice de impressões digitais");
+        }
+        main = mapMain();
+        delta = new long[0];
+        writeLongs(deltaFile, delta);
+        removed.clear();
+    }
+
+    private LongBuffer mapMain() throws IOException {
+        if (!mainFile.exists()) {
+            return LongBuffer.allocate(0);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(mainFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (raf.length() < MAIN_HEADER_BYTES || raf.readInt() != MAIN_MAGIC || raf.readInt() != VERSION) {
+                throw new IOException("Cabeçalho inválido em " + mainFile.getName());
+            }
+            long count = raf.readLong();
+            if (MAIN_HEADER_BYTES + count * 8 > raf.length()) {
+                throw new IOException("Índice de impressões digitais truncado");
+            }
+            // The mapping outlives the channel
+            return channel.map(FileChannel.MapMode.READ_ONLY, MAIN_HEADER_BYTES, count * 8).asLongBuffer();
+        }
+    }
+
+    private File forwardFile(int id) {
+        return new File(dir, "rec-" + id + ".fp");
+    }
+
+    private void writeForward(int id, Fingerprint fingerprint) throws IOException {
+        File file = forwardFile(id);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeDouble(fingerprint.hopMs);
+            out.writeLong(fingerprint.durationMs);
+            out.writeInt(fingerprint.size());
+            for (int i = 0; i < fingerprint.size(); i++) {
+                out.writeInt(fingerprint.hashes[i]);
+                out.writeInt(fingerprint.times[i]);
+            }
+        }
+    }
+
+    private Fingerprint readForward(int id) {
+        File file = forwardFile(id);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            double hopMs = in.readDouble();
+            long durationMs = in.readLong();
+            int count = in.readInt();
+            int[] hashes = new int[count];
+            int[] times = new int[count];
+            for (int i = 0; i < count; i++) {
+                hashes[i] = in.readInt();
+                times[i] = in.readInt();
+            }
+            return new Fingerprint(hashes, times, hopMs, durationMs);
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao ler impressão digital " + id + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void loadCatalog() throws IOException, JSONException {
+        if (!catalogFile.exists()) {
+            return;
+        }
+        JSONObject catalog = new JSONObject(readText(catalogFile));
+        nextId = catalog.optInt("nextId", 1);
+        JSONObject entries = catalog.optJSONObject("recordings");
+        if (entries != null) {
+            Iterator<String> keys = entries.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Recording recording = Recording.fromJson(Integer.parseInt(key), entries.getJSONObject(key));
+                recordings.put(recording.id, recording);
+                idsByPath.put(recording.path, recording.id);
+            }
+        }
+        org.json.JSONArray gone = catalog.optJSONArray("removed");
+        if (gone != null) {
+            for (int i = 0; i < gone.length(); i++) {
+                removed.add(gone.getInt(i));
+            }
+        }
+    }
+
+    private void saveCatalog() throws IOException, JSONException {
+        JSONObject catalog = new JSONObject();
+        catalog.put("nextId", nextId);
+        JSONObject entries = new JSONObject();
+        for (Recording recording : recordings.values()) {
+            entries.put(String.valueOf(recording.id), recording.toJson());
+        }
+        catalog.put("recordings", entries);
+        org.json.JSONArray gone = new org.json.JSONArray();
+        for (int id : removed) {
+            gone.put(id);
+        }
+        catalog.put("removed", gone);
+        writeAtomically(catalogFile, catalog.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long posting(int hash, int recording, int frame) {
+        return ((long) hash << (RECORDING_BITS + FRAME_BITS)) | ((long) recording << FRAME_BITS) | frame;
+    }
+
+    private static int lowerBound(LongBuffer buffer, long key) {
+        int lo = 0;
+        int hi = buffer.capacity();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buffer.get(mid) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int lowerBound(long[] values, long key) {
+        int index = Arrays.binarySearch(values, key);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && values[index - 1] == key) {
+            index--;
+        }
+        return index;
+    }
+
+    private static long[] merge(long[] a, long[] b) {
+        long[] out = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            out[k++] = a[i] <= b[j] ? a[i++] : b[j++];
+        }
+        while (i < a.length) {
+            out[k++] = a[i++];
+        }
+        while (j < b.length) {
+            out[k++] = b[j++];
+        }
+        return out;
+    }
+
+    private static long[] readLongs(File file) throws IOException {
+        if (!file.exists()) {
+            return new long[0];
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(readBytes(file));
+        long[] values = new long[bytes.remaining() / 8];
+        bytes.asLongBuffer().get(values);
+        return values;
+    }
+
+    private static void writeLongs(File file, long[] values) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 8);
+        bytes.asLongBuffer().put(values);
+        writeAtomically(file, bytes.array());
+    }
+
+    private static void writeAtomically(File file, byte[] bytes) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+            out.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Não foi possível substituir " + file.getName());
+        }
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        }
+        return bytes;
+    }
+
+    private static String readText(File file) throws IOException {
+        return new String(readBytes(file), StandardCharsets.UTF_8);
+    }
+}
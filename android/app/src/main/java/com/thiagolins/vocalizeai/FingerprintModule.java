@@ -0,0 +1,130 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.util.List;
+
+public class FingerprintModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "AudioFingerprint";
+    private static final int DEFAULT_LIMIT = 5;
+
+    private final IoScheduler scheduler = IoScheduler.getInstance();
+    private final FingerprintIndex index;
+
+    public FingerprintModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.index = FingerprintIndex.getInstance(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return "AudioFingerprint";
+    }
+
+    private static File toFile(String uri) {
+        return new File(uri.startsWith("file://") ? uri.substring(7) : uri);
+    }
+
+    private static WritableArray toArray(List<FingerprintIndex.Match> matches) {
+        WritableArray array = Arguments.createArray();
+        for (FingerprintIndex.Match match : matches) {
+            WritableMap map = Arguments.createMap();
+            map.putString("uri", "file://" + match.recording.path);
+            map.putInt("matches", match.matches);
+            map.putDouble("similarity", match.similarity);
+            map.putDouble("offsetMs", match.offsetMs);
+            map.putDouble("durationMs", match.recording.durationMs);
+            array.pushMap(map);
+        }
+        return array;
+    }
+
+    @ReactMethod
+    public void index(String uri, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            try {
+                FingerprintIndex.Recording recording = index.add(toFile(uri), token);
+                WritableMap result = Arguments.createMap();
+                result.putInt("hashes", recording.hashCount);
+                result.putDouble("durationMs", recording.durationMs);
+                promise.resolve(result);
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao indexar impressão digital: " + e.getMessage());
+                promise.reject("FINGERPRINT_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void findSimilar(String uri, double limit, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, tokenId, token -> {
+            try {
+                int max = limit > 0 ? (int) limit : DEFAULT_LIMIT;
+                promise.resolve(toArray(index.findSimilar(toFile(uri), max, token)));
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao buscar gravações semelhantes: " + e.getMessage());
+                promise.reject("FINGERPRINT_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void indexAndFindSimilar(String uri, double limit, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            try {
+                int max = limit > 0 ? (int) limit : DEFAULT_LIMIT;
+                promise.resolve(toArray(index.addAndFindSimilar(toFile(uri), max, token)));
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao indexar impressão digital: " + e.getMessage());
+                promise.reject("FINGERPRINT_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void remove(String uri, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                promise.resolve(index.remove(toFile(uri)));
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao remover impressão digital: " + e.getMessage());
+                promise.reject("FINGERPRINT_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void prune(Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, null, token -> {
+            try {
+                promise.resolve(index.prune());
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao limpar índice de impressões digitais: " + e.getMessage());
+                promise.reject("FINGERPRINT_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void getStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("recordings", index.size());
+        stats.putDouble("postings", index.postingCount());
+        promise.resolve(stats);
+    }
+}
@@ -0,0 +1,783 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Lossless archival writer producing a FLAC stream of 16-bit frames of
+ * {@link #BLOCK_SIZE} samples. Each channel of a frame is coded with
+ * whichever of constant, fixed polynomial (orders 0-4), LPC (up to order
+ * {@link #MAX_LPC_ORDER}) or verbatim is smallest, with partitioned Rice
+ * residuals; stereo frames also pick the cheapest of independent,
+ * left/side, right/side and mid/side. All working memory is allocated in
+ * {@link #open}, so the footprint does not depend on the recording length.
+ * The stream is playable up to the last flushed output block if the
+ * process dies; sample count and MD5 are patched into STREAMINFO on close.
+ */
+public class FlacEncoderSink implements PcmSink {
+    static final int BLOCK_SIZE = 4096;
+    private static final int BITS_PER_SAMPLE = 16;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_LPC_ORDER = 8;
+    private static final int LPC_PRECISION = 12;
+    private static final int MAX_PARTITION_ORDER = 6;
+    private static final int MAX_RICE_PARAM = 14;
+    /** Below this many samples a frame is not worth modelling. */
+    private static final int MIN_MODELLED_SAMPLES = 32;
+    private static final int OUTPUT_BLOCK_SIZE = 64 * 1024;
+    private static final int STREAMINFO_OFFSET = 8;
+    private static final int STREAMINFO_SIZE = 34;
+
+    private static final int CHANNELS_LEFT_SIDE = 8;
+    private static final int CHANNELS_RIGHT_SIDE = 9;
+    private static final int CHANNELS_MID_SIDE = 10;
+
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc8 = i;
+            int crc16 = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+            }
+            CRC8_TABLE[i] = crc8 & 0xFF;
+            CRC16_TABLE[i] = crc16 & 0xFFFF;
+        }
+    }
+
+    private final File file;
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private ByteBuffer output;
+    private long fileBytes;
+    private MessageDigest md5;
+    private byte[] md5Bytes;
+
+    private int sampleRate;
+    private int channelCount;
+    private int sampleRateCode;
+    private int[][] samples;
+    private int fill;
+    private int[] mid;
+    private int[] side;
+
+    private double[] window;
+    private double[] windowed;
+    private final long[] fixedSumScratch = new long[MAX_FIXED_ORDER + 1];
+    private final double[] autoc = new double[MAX_LPC_ORDER + 1];
+    private final double[] lpc = new double[MAX_LPC_ORDER];
+    private final double[][] lpcByOrder = new double[MAX_LPC_ORDER][MAX_LPC_ORDER];
+    private final double[] lpcError = new double[MAX_LPC_ORDER];
+    private final int[] qcoefs = new int[MAX_LPC_ORDER];
+    private final long[] partitionSums = new long[1 << MAX_PARTITION_ORDER];
+    private final int[] fixedParams = new int[1 << MAX_PARTITION_ORDER];
+    private final int[] lpcParams = new int[1 << MAX_PARTITION_ORDER];
+    private int[] fixedResidual;
+    private int[] lpcResidual;
+    private int fixedPartitionOrder;
+    private int lpcPartitionOrder;
+
+    private byte[] frame;
+    private int bytePos;
+    private long bitBuffer;
+    private int bitCount;
+
+    private long frameNumber;
+    private long totalSamples;
+    private int minFrameSize;
+    private int maxFrameSize;
+    private long encodeNs;
+
+    public FlacEncoderSink(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** Samples per channel received so far. */
+    public long getTotalSamples() {
+        return totalSamples + fill;
+    }
+
+    public long getEncodedBytes() {
+        return fileBytes + (output != null ? output.position() : 0);
+    }
+
+    /** Time spent modelling and coding frames, excluding file writes. */
+    public long getEncodeNs() {
+        return encodeNs;
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) throws IOException {
+        if (channelCount < 1 || channelCount > 8) {
+            throw new IOException("FLAC suporta de 1 a 8 canais, recebido " + channelCount);
+        }
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.sampleRateCode = sampleRateCode(sampleRate);
+
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("MD5 indisponível", e);
+        }
+        md5Bytes = new byte[BLOCK_SIZE * channelCount * 2];
+
+        samples = new int[channelCount][BLOCK_SIZE];
+        if (channelCount == 2) {
+            mid = new int[BLOCK_SIZE];
+            side = new int[BLOCK_SIZE];
+        }
+        fixedResidual = new int[BLOCK_SIZE];
+        lpcResidual = new int[BLOCK_SIZE];
+        windowed = new double[BLOCK_SIZE];
+        window = tukeyWindow(BLOCK_SIZE, 0.5);
+        frame = new byte[BLOCK_SIZE * channelCount * 3 + 256];
+        output = ByteBuffer.allocateDirect(OUTPUT_BLOCK_SIZE);
+
+        fill = 0;
+        frameNumber = 0;
+        totalSamples = 0;
+        minFrameSize = Integer.MAX_VALUE;
+        maxFrameSize = 0;
+        encodeNs = 0;
+
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(0);
+        channel = randomAccessFile.getChannel();
+        fileBytes = 0;
+
+        output.put(new byte[] {'f', 'L', 'a', 'C'});
+        output.put(buildStreamInfo(new byte[16]));
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+        updateMd5(buffer, length);
+
+        int frames = length / channelCount;
+        int index = 0;
+        for (int i = 0; i < frames; i++) {
+            for (int ch = 0; ch < channelCount; ch++) {
+                samples[ch][fill] = buffer[index++];
+            }
+            if (++fill == BLOCK_SIZE) {
+                encodeFrame(fill);
+                fill = 0;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (fill > 0) {
+                encodeFrame(fill);
+                fill = 0;
+            }
+            flushOutput();
+
+            ByteBuffer streamInfo = buildStreamInfo(md5.digest());
+            streamInfo.position(4);
+            while (streamInfo.hasRemaining()) {
+                channel.write(streamInfo, STREAMINFO_OFFSET + streamInfo.position() - 4);
+            }
+            channel.force(false);
+        } finally {
+            randomAccessFile.close();
+            randomAccessFile = null;
+            channel = null;
+        }
+    }
+
+    private void updateMd5(short[] buffer, int length) {
+        int offset = 0;
+        while (offset < length) {
+            int chunk = Math.min(length - offset, md5Bytes.length / 2);
+            for (int i = 0; i < chunk; i++) {
+                short sample = buffer[offset + i];
+                md5Bytes[i * 2] = (byte) sample;
+                md5Bytes[i * 2 + 1] = (byte) (sample >> 8);
+            }
+            md5.update(md5Bytes, 0, chunk * 2);
+            offset += chunk;
+        }
+    }
+
+    /** Metadata block header plus STREAMINFO, marked as the last metadata block. */
+    private ByteBuffer buildStreamInfo(byte[] digest) {
+        ByteBuffer info = ByteBuffer.allocate(4 + STREAMINFO_SIZE);
+        info.put((byte) 0x80);
+        info.put((byte) 0);
+        info.put((byte) 0);
+        info.put((byte) STREAMINFO_SIZE);
+
+        info.putShort((short) BLOCK_SIZE);
+        info.putShort((short) BLOCK_SIZE);
+        int minFrame = maxFrameSize > 0 ? minFrameSize : 0;
+        info.put((byte) (minFrame >> 16)).put((byte) (minFrame >> 8)).put((byte) minFrame);
+        info.put((byte) (maxFrameSize >> 16)).put((byte) (maxFrameSize >> 8)).put((byte) maxFrameSize);
+
+        long packed = ((long) sampleRate << 44)
+            | ((long) (channelCount - 1) << 41)
+            | ((long) (BITS_PER_SAMPLE - 1) << 36)
+            | (totalSamples & 0xFFFFFFFFFL);
+        info.putLong(packed);
+        info.put(digest);
+        info.flip();
+        return info;
+    }
+
+    private void encodeFrame(int n) throws IOException {
+        long start = System.nanoTime();
+
+        bytePos = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+
+        int assignment = channelCount - 1;
+        int[] first = samples[0];
+        int[] second = channelCount == 2 ? samples[1] : null;
+        int firstBps = BITS_PER_SAMPLE;
+        int secondBps = BITS_PER_SAMPLE;
+
+        if (channelCount == 2 && n >= MIN_MODELLED_SAMPLES) {
+            int[] left = samples[0];
+            int[] right = samples[1];
+            for (int i = 0; i < n; i++) {
+                mid[i] = (left[i] + right[i]) >> 1;
+                side[i] = left[i] - right[i];
+            }
+            double leftBits = estimateFixedBits(left, n, BITS_PER_SAMPLE);
+            double rightBits = estimateFixedBits(right, n, BITS_PER_SAMPLE);
+            double midBits = estimateFixedBits(mid, n, BITS_PER_SAMPLE);
+            double sideBits = estimateFixedBits(side, n, BITS_PER_SAMPLE + 1);
+
+            double best = leftBits + rightBits;
+            if (leftBits + sideBits < best) {
+                best = leftBits + sideBits;
+                assignment = CHANNELS_LEFT_SIDE;
+                first = left;
+                second = side;
+                secondBps = BITS_PER_SAMPLE + 1;
+            }
+            if (sideBits + rightBits < best) {
+                best = sideBits + rightBits;
+                assignment = CHANNELS_RIGHT_SIDE;
+                first = side;
+                second = right;
+                firstBps = BITS_PER_SAMPLE + 1;
+                secondBps = BITS_PER_SAMPLE;
+            }
+            if (midBits + sideBits < best) {
+                assignment = CHANNELS_MID_SIDE;
+                first = mid;
+                second = side;
+                firstBps = BITS_PER_SAMPLE;
+                secondBps = BITS_PER_SAMPLE + 1;
+            }
+        }
+
+        writeFrameHeader(n, assignment);
+        encodeSubframe(first, n, firstBps);
+        if (channelCount == 2) {
+            encodeSubframe(second, n, secondBps);
+        } else {
+            for (int ch = 1; ch < channelCount; ch++) {
+                encodeSubframe(samples[ch], n, BITS_PER_SAMPLE);
+            }
+        }
+
+        if (bitCount > 0) {
+            writeBits(0, 8 - bitCount);
+        }
+        int crc16 = 0;
+        for (int i = 0; i < bytePos; i++) {
+            crc16 = ((crc16 << 8) ^ CRC16_TABLE[((crc16 >> 8) ^ frame[i]) & 0xFF]) & 0xFFFF;
+        }
+        frame[bytePos++] = (byte) (crc16 >> 8);
+        frame[bytePos++] = (byte) crc16;
+
+        encodeNs += System.nanoTime() - start;
+
+        minFrameSize = Math.min(minFrameSize, bytePos);
+        maxFrameSize = Math.max(maxFrameSize, bytePos);
+        totalSamples += n;
+        frameNumber++;
+        appendOutput(frame, bytePos);
+    }
+
+    private void writeFrameHeader(int n, int assignment) {
+        boolean fullBlock = n == BLOCK_SIZE;
+        writeBits(0xFFF8, 16);
+        writeBits(fullBlock ? 12 : 7, 4);
+        writeBits(sampleRateCode, 4);
+        writeBits(assignment, 4);
+        writeBits(4, 3);
+        writeBits(0, 1);
+        writeUtf8(frameNumber);
+        if (!fullBlock) {
+            writeBits(n - 1, 16);
+        }
+        int crc8 = 0;
+        for (int i = 0; i < bytePos; i++) {
+            crc8 = CRC8_TABLE[(crc8 ^ frame[i]) & 0xFF];
+        }
+        writeBits(crc8, 8);
+    }
+
+    private void writeUtf8(long value) {
+        if (value < 0x80) {
+            writeBits((int) value, 8);
+            return;
+        }
+        int bytes = value < 0x800 ? 2
+            : value < 0x10000 ? 3
+            : value < 0x200000 ? 4
+            : value < 0x4000000 ? 5
+            : value < 0x80000000L ? 6 : 7;
+        int lead = (0xFF << (8 - bytes)) & 0xFF;
+        writeBits(lead | (int) (value >>> (6 * (bytes - 1))), 8);
+        for (int i = bytes - 2; i >= 0; i--) {
+            writeBits(0x80 | (int) ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+
+    private void encodeSubframe(int[] x, int n, int bps) {
+        boolean constant = true;
+        for (int i = 1; i < n && constant; i++) {
+            constant = x[i] == x[0];
+        }
+        if (constant) {
+            writeBits(0, 8);
+            writeBits(x[0], bps);
+            return;
+        }
+
+        long verbatimBits = (long) n * bps;
+        if (n < MIN_MODELLED_SAMPLES) {
+            writeVerbatim(x, n, bps);
+            return;
+        }
+
+        int fixedOrder = bestFixedOrder(x, n);
+        computeFixedResidual(x, n, fixedOrder, fixedResidual);
+        long fixedBits = (long) fixedOrder * bps
+            + chooseRiceParams(fixedResidual, n, fixedOrder, fixedParams, true);
+
+        long lpcBits = Long.MAX_VALUE;
+        int lpcOrder = 0;
+        int shift = 0;
+        if (n == BLOCK_SIZE) {
+            lpcOrder = computeLpc(x, n, bps);
+            if (lpcOrder > 0) {
+                shift = quantizeLpc(lpcOrder);
+                if (shift >= 0 && computeLpcResidual(x, n, lpcOrder, shift)) {
+                    lpcBits = (long) lpcOrder * bps + 4 + 5 + (long) lpcOrder * LPC_PRECISION
+                        + chooseRiceParams(lpcResidual, n, lpcOrder, lpcParams, false);
+                }
+            }
+        }
+
+        if (verbatimBits <= fixedBits && verbatimBits <= lpcBits) {
+            writeVerbatim(x, n, bps);
+        } else if (fixedBits <= lpcBits) {
+            writeBits(0x10 | (fixedOrder << 1), 8);
+            for (int i = 0; i < fixedOrder; i++) {
+                writeBits(x[i], bps);
+            }
+            writeResidual(fixedResidual, n, fixedOrder, fixedPartitionOrder, fixedParams);
+        } else {
+            writeBits(0x40 | ((lpcOrder - 1) << 1), 8);
+            for (int i = 0; i < lpcOrder; i++) {
+                writeBits(x[i], bps);
+            }
+            writeBits(LPC_PRECISION - 1, 4);
+            writeBits(shift, 5);
+            for (int i = 0; i < lpcOrder; i++) {
+                writeBits(qcoefs[i], LPC_PRECISION);
+            }
+            writeResidual(lpcResidual, n, lpcOrder, lpcPartitionOrder, lpcParams);
+        }
+    }
+
+    private void writeVerbatim(int[] x, int n, int bps) {
+        writeBits(0x02, 8);
+        for (int i = 0; i < n; i++) {
+            writeBits(x[i], bps);
+        }
+    }
+
+    /** Sums of absolute fixed-predictor residuals for all orders in one pass. */
+    private static long[] fixedSums(int[] x, int n, long[] sums) {
+        int last0 = x[MAX_FIXED_ORDER - 1];
+        int last1 = last0 - x[MAX_FIXED_ORDER - 2];
+        int last2 = last1 - (x[MAX_FIXED_ORDER - 2] - x[MAX_FIXED_ORDER - 3]);
+        int last3 = last2 - (x[MAX_FIXED_ORDER - 2] - 2 * x[MAX_FIXED_ORDER - 3] + x[MAX_FIXED_ORDER - 4]);
+        long s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        for (int i = MAX_FIXED_ORDER; i < n; i++) {
+            int e0 = x[i];
+            int e1 = e0 - last0;
+            int e2 = e1 - last1;
+            int e3 = e2 - last2;
+            int e4 = e3 - last3;
+            last0 = e0;
+            last1 = e1;
+            last2 = e2;
+            last3 = e3;
+            s0 += Math.abs(e0);
+            s1 += Math.abs(e1);
+            s2 += Math.abs(e2);
+            s3 += Math.abs(e3);
+            s4 += Math.abs(e4);
+        }
+        sums[0] = s0;
+        sums[1] = s1;
+        sums[2] = s2;
+        sums[3] = s3;
+        sums[4] = s4;
+        return sums;
+    }
+
+    private int bestFixedOrder(int[] x, int n) {
+        long[] sums = fixedSums(x, n, fixedSumScratch);
+        int best = 0;
+        for (int order = 1; order <= MAX_FIXED_ORDER; order++) {
+            if (sums[order] < sums[best]) {
+                best = order;
+            }
+        }
+        return best;
+    }
+
+    /** Expected coded size of a channel under its best fixed predictor, capped at verbatim, for stereo decisions. */
+    private double estimateFixedBits(int[] x, int n, int bps) {
+        long[] sums = fixedSums(x, n, fixedSumScratch);
+        long best = sums[0];
+        for (int order = 1; order <= MAX_FIXED_ORDER; order++) {
+            best = Math.min(best, sums[order]);
+        }
+        int count = n - MAX_FIXED_ORDER;
+        if (best == 0) {
+            return count;
+        }
+        double bitsPerSample = Math.log(Math.log(2) * best / count) / Math.log(2);
+        return Math.min((double) n * bps, count * Math.max(0, bitsPerSample) + count);
+    }
+
+    private static void computeFixedResidual(int[] x, int n, int order, int[] residual) {
+        switch (order) {
+            case 0:
+                System.arraycopy(x, 0, residual, 0, n);
+                break;
+            case 1:
+                for (int i = 1; i < n; i++) {
+                    residual[i] = x[i] - x[i - 1];
+                }
+                break;
+            case 2:
+                for (int i = 2; i < n; i++) {
+                    residual[i] = x[i] - 2 * x[i - 1] + x[i - 2];
+                }
+                break;
+            case 3:
+                for (int i = 3; i < n; i++) {
+                    residual[i] = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3];
+                }
+                break;
+            default:
+                for (int i = 4; i < n; i++) {
+                    residual[i] = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4];
+                }
+                break;
+        }
+    }
+
+    /**
+     * Windowed autocorrelation and Levinson-Durbin; returns the order with the
+     * smallest expected size, or 0 when the block has no usable correlation.
+     */
+    private int computeLpc(int[] x, int n, int bps) {
+        for (int i = 0; i < n; i++) {
+            windowed[i] = x[i] * window[i];
+        }
+        for (int lag = 0; lag <= MAX_LPC_ORDER; lag++) {
+            double sum = 0;
+            for (int i = lag; i < n; i++) {
+                sum += windowed[i] * windowed[i - lag];
+            }
+            autoc[lag] = sum;
+        }
+        if (autoc[0] == 0) {
+            return 0;
+        }
+
+        double error = autoc[0];
+        int maxOrder = MAX_LPC_ORDER;
+        for (int i = 0; i < maxOrder; i++) {
+            double r = -autoc[i + 1];
+            for (int j = 0; j < i; j++) {
+                r -= lpc[j] * autoc[i - j];
+            }
+            r /= error;
+
+            lpc[i] = r;
+            int j = 0;
+            for (; j < (i >> 1); j++) {
+                double tmp = lpc[j];
+                lpc[j] += r * lpc[i - 1 - j];
+                lpc[i - 1 - j] += r * tmp;
+            }
+            if ((i & 1) != 0) {
+                lpc[j] += lpc[j] * r;
+            }
+            error *= 1.0 - r * r;
+
+            for (j = 0; j <= i; j++) {
+                lpcByOrder[i][j] = -lpc[j];
+            }
+            lpcError[i] = error;
+            if (error <= 0) {
+                maxOrder = i + 1;
+                break;
+            }
+        }
+
+        int bestOrder = 0;
+        double bestBits = Double.MAX_VALUE;
+        double errorScale = 0.5 / n;
+        for (int order = 1; order <= maxOrder; order++) {
+            double scaled = errorScale * lpcError[order - 1];
+            double bitsPerSample = scaled > 0 ? Math.max(0, 0.5 * Math.log(scaled) / Math.log(2)) : 0;
+            double bits = bitsPerSample * (n - order) + order * (double) (bps + LPC_PRECISION);
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = order;
+            }
+        }
+        return bestOrder;
+    }
+
+    /** Quantizes the chosen predictor into {@link #qcoefs}; returns the shift, or -1 if unusable. */
+    private int quantizeLpc(int order) {
+        double[] coefs = lpcByOrder[order - 1];
+        double cmax = 0;
+        for (int i = 0; i < order; i++) {
+            cmax = Math.max(cmax, Math.abs(coefs[i]));
+        }
+        if (cmax <= 0 || Double.isNaN(cmax) || Double.isInfinite(cmax)) {
+            return -1;
+        }
+
+        int precision = LPC_PRECISION - 1;
+        int qmax = (1 << precision) - 1;
+        int qmin = -(1 << precision);
+        int log2cmax = Math.getExponent(cmax) + 1;
+        int shift = Math.min(15, precision - log2cmax);
+        if (shift < 0) {
+            return -1;
+        }
+
+        double error = 0;
+        for (int i = 0; i < order; i++) {
+            error += coefs[i] * (1 << shift);
+            long q = Math.round(error);
+            q = Math.max(qmin, Math.min(qmax, q));
+            error -= q;
+            qcoefs[i] = (int) q;
+        }
+        return shift;
+    }
+
+    private boolean computeLpcResidual(int[] x, int n, int order, int shift) {
+        for (int i = order; i < n; i++) {
+            long sum = 0;
+            for (int j = 0; j < order; j++) {
+                sum += (long) qcoefs[j] * x[i - j - 1];
+            }
+            long residual = x[i] - (sum >> shift);
+            if (residual > (1 << 29) || residual < -(1 << 29)) {
+                return false;
+            }
+            lpcResidual[i] = (int) residual;
+        }
+        return true;
+    }
+
+    /**
+     * Picks the partition order and Rice parameters with the smallest estimated
+     * size and stores them in {@code params}; returns the residual size in bits.
+     */
+    private long chooseRiceParams(int[] residual, int n, int order, int[] params, boolean fixed) {
+        int maxOrder = 0;
+        while (maxOrder < MAX_PARTITION_ORDER
+            && n % (1 << (maxOrder + 1)) == 0
+            && (n >> (maxOrder + 1)) > order) {
+            maxOrder++;
+        }
+
+        int partitions = 1 << maxOrder;
+        int partitionSize = n >> maxOrder;
+        for (int p = 0; p < partitions; p++) {
+            int from = p == 0 ? order : p * partitionSize;
+            int to = (p + 1) * partitionSize;
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                int r = residual[i];
+                sum += (r << 1) ^ (r >> 31);
+            }
+            partitionSums[p] = sum;
+        }
+
+        long bestBits = Long.MAX_VALUE;
+        int bestOrder = 0;
+        for (int po = maxOrder; po >= 0; po--) {
+            int count = 1 << po;
+            if (po < maxOrder) {
+                for (int p = 0; p < count; p++) {
+                    partitionSums[p] = partitionSums[2 * p] + partitionSums[2 * p + 1];
+                }
+            }
+            int size = n >> po;
+            long bits = 6;
+            for (int p = 0; p < count; p++) {
+                int samples = p == 0 ? size - order : size;
+                bits += 4 + riceBits(partitionSums[p], samples, riceParam(partitionSums[p], samples));
+            }
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = po;
+                for (int p = 0; p < count; p++) {
+                    int samples = p == 0 ? size - order : size;
+                    params[p] = riceParam(partitionSums[p], samples);
+                }
+            }
+        }
+
+        if (fixed) {
+            fixedPartitionOrder = bestOrder;
+        } else {
+            lpcPartitionOrder = bestOrder;
+        }
+        return bestBits;
+    }
+
+    private static int riceParam(long sum, int samples) {
+        int best = 0;
+        long bestBits = Long.MAX_VALUE;
+        for (int k = 0; k <= MAX_RICE_PARAM; k++) {
+            long bits = riceBits(sum, samples, k);
+            if (bits < bestBits) {
+                bestBits = bits;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    private static long riceBits(long sum, int samples, int k) {
+        return (long) samples * (k + 1) + (sum >> k);
+    }
+
+    private void writeResidual(int[] residual, int n, int order, int partitionOrder, int[] params) {
+        writeBits(0, 2);
+        writeBits(partitionOrder, 4);
+        int partitions = 1 << partitionOrder;
+        int size = n >> partitionOrder;
+        for (int p = 0; p < partitions; p++) {
+            int k = params[p];
+            writeBits(k, 4);
+            int from = p == 0 ? order : p * size;
+            int to = (p + 1) * size;
+            int mask = (1 << k) - 1;
+            for (int i = from; i < to; i++) {
+                int r = residual[i];
+                int u = (r << 1) ^ (r >> 31);
+                int quotient = u >>> k;
+                while (quotient >= 32) {
+                    writeBits(0, 32);
+                    quotient -= 32;
+                }
+                if (quotient > 0) {
+                    writeBits(0, quotient);
+                }
+                writeBits((1 << k) | (u & mask), k + 1);
+            }
+        }
+    }
+
+    private void writeBits(int value, int bits) {
+        bitBuffer = (bitBuffer << bits) | (value & ((1L << bits) - 1));
+        bitCount += bits;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            frame[bytePos++] = (byte) (bitBuffer >>> bitCount);
+        }
+    }
+
+    private void appendOutput(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int chunk = Math.min(length - offset, output.remaining());
+            output.put(bytes, offset, chunk);
+            offset += chunk;
+            if (!output.hasRemaining()) {
+                flushOutput();
+            }
+        }
+    }
+
+    private void flushOutput() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            fileBytes += channel.write(output, fileBytes);
+        }
+        output.clear();
+    }
+
+    private static int sampleRateCode(int sampleRate) {
+        switch (sampleRate) {
+            case 88200: return 1;
+            case 176400: return 2;
+            case 192000: return 3;
+            case 8000: return 4;
+            case 16000: return 5;
+            case 22050: return 6;
+            case 24000: return 7;
+            case 32000: return 8;
+            case 44100: return 9;
+            case 48000: return 10;
+            case 96000: return 11;
+            default: return 0;
+        }
+    }
+
+    private static double[] tukeyWindow(int n, double p) {
+        double[] w = new double[n];
+        int taper = (int) (p / 2 * n);
+        for (int i = 0; i < n; i++) {
+            w[i] = 1.0;
+        }
+        for (int i = 0; i < taper; i++) {
+            double v = 0.5 - 0.5 * Math.cos(Math.PI * i / taper);
+            w[i] = v;
+            w[n - 1 - i] = v;
+        }
+        return w;
+    }
+}
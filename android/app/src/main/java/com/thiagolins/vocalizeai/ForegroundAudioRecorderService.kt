@@ -9,10 +9,11 @@ import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
 import android.content.IntentFilter
-import android.media.MediaRecorder
 import android.os.Build
+import android.os.Handler
+import android.os.HandlerThread
 import android.os.IBinder
-import android.os.PowerManager
+import android.os.Process
 import android.os.SystemClock
 import android.util.Log
 import androidx.core.app.NotificationCompat
@@ -20,17 +21,115 @@ import java.io.File
 import java.util.Timer
 import java.util.TimerTask
 
+/** Sinks written for one output file, opened as a single pipeline segment. */
+private class SegmentOutputs(
+        val file: File,
+        val segment: CapturePipeline.Segment,
+        val encoder: AacEncoderSink,
+        val wav: WavFileSink?,
+        val flac: FlacEncoderSink?,
+        val features: FeatureSidecarSink?,
+        val derivative: MonoDerivativeSink?,
+        val quality: SignalQualitySink
+) {
+  fun matches(wavArchive: Boolean, flacArchive: Boolean, featureSidecar: Boolean, mlDerivative: Boolean): Boolean =
+          (wav != null) == wavArchive &&
+                  (flac != null) == flacArchive &&
+                  (features != null) == featureSidecar &&
+                  (derivative != null) == mlDerivative
+
+  fun delete() {
+    file.delete()
+    wav?.file?.delete()
+    flac?.file?.delete()
+    features?.file?.delete()
+    derivative?.file?.delete()
+  }
+}
+
+/** The derivative is always opened over a WAV writer. */
+private val MonoDerivativeSink.file: File
+  get() = (downstream as WavFileSink).file
+
+/** A finished output file of a rotated recording. */
+private class RecordingPart(val file: File, val durationMs: Long)
+
+/**
+ * A service command waiting on the command thread; [id] is 0 for
+ * notification actions. [startId] is the one onStartCommand received it with.
+ */
+private class RecorderCommand(val action: String, val id: Int, val intent: Intent, val startId: Int)
+
 class ForegroundAudioRecorderService : Service() {
-  private var mediaRecorder: MediaRecorder? = null
-  private var outputFile: String? = null
-  private var isRecording = false
-  private var isPaused = false
+  private var capturePipeline: CapturePipeline? = null
+  private var currentOutputs: SegmentOutputs? = null
+  private var preparedOutputs: SegmentOutputs? = null
+  private var wavArchiveEnabled = false
+  private var flacArchiveEnabled = false
+  private var featuresEnabled = false
+  private var mlDerivativeEnabled = false
+  private var rapidCapture = false
+  private var requestTimeMs = 0L
+  private var warmStart = false
+  private var firstSegment: CapturePipeline.Segment? = null
+  private var maxPartBytes = 0L
+  private var maxPartDurationMs = 0L
+  private var partMode = PART_MODE_CONCAT
+  private val finishedParts = ArrayList<RecordingPart>()
+  private var wakeLockRenewedAt = 0L
+  private var lowPower = false
+  private var dspChain: DspChain? = null
+  private var sessionWakeLockHeld = false
+  @Volatile private var timerWakeups = 0L
+  private var readsAtStart = 0L
+  private var wakeLockHeldAtStart = 0L
+  private val rotationCheck = Runnable { checkRotation() }
+  private lateinit var commandThread: HandlerThread
+  private lateinit var commandHandler: Handler
+  private val pendingCommands = ArrayDeque<RecorderCommand>()
+  private val drainCommands = Runnable { processCommands() }
+  @Volatile private var lastStartId = 0
+  /** Start id of the command being executed; the service only stops for the latest one. */
+  private var executingStartId = 0
+  private val idleRelease = Runnable {
+    Log.d(TAG, "Captura rápida ociosa, liberando microfone")
+    executingStartId = lastStartId
+    releaseCapture()
+  }
+  /**
+   * Runs on the command thread once the microphone stops delivering audio:
+   * reports the error, then finalizes what was recorded and releases the
+   * capture as a stop would, so JS gets its completion and status events.
+   */
+  private val captureFailure = Runnable {
+    val pipeline = capturePipeline
+    if (pipeline == null || pipeline.isRunning) {
+      return@Runnable
+    }
+    sendBroadcastWithRetry(
+            journaled(
+                    RecorderEventPayloads.ERROR,
+                    Intent("com.thiagolins.vocalizeai.RECORDING_ERROR")
+                            .putExtra("error", "Falha na captura de áudio")
+            )
+    )
+    executingStartId = lastStartId
+    wakeLock.acquire()
+    try {
+      stopRecording()
+      releaseCapture()
+    } finally {
+      wakeLock.release()
+    }
+  }
+  @Volatile private var outputFile: String? = null
+  @Volatile private var isRecording = false
+  @Volatile private var isPaused = false
   private var recordingStartTime: Long = 0
   private var elapsedTimeBeforePause: Long = 0
-  private var wakeLock: PowerManager.WakeLock? = null
+  private lateinit var wakeLock: RecorderWakeLock
   private var timer: Timer? = null
-  private var currentRecordingTime: Long = 0
-  private var lastActionTimestamp = 0L
+  @Volatile private var currentRecordingTime: Long = 0
 
   companion object {
     const val CHANNEL_ID = "VocalizeAIAudioRecorderChannel"
@@ -40,6 +139,56 @@ class ForegroundAudioRecorderService : Service() {
     const val ACTION_PAUSE_RECORDING = "com.thiagolins.vocalizeai.PAUSE_RECORDING"
     const val ACTION_RESUME_RECORDING = "com.thiagolins.vocalizeai.RESUME_RECORDING"
     const val EXTRA_ELAPSED_TIME = "com.thiagolins.vocalizeai.ELAPSED_TIME"
+    const val EXTRA_WAV_ARCHIVE = "com.thiagolins.vocalizeai.WAV_ARCHIVE"
+    const val EXTRA_FLAC_ARCHIVE = "com.thiagolins.vocalizeai.FLAC_ARCHIVE"
+    const val EXTRA_FEATURES = "com.thiagolins.vocalizeai.FEATURES"
+    const val EXTRA_ML_DERIVATIVE = "com.thiagolins.vocalizeai.ML_DERIVATIVE"
+    const val EXTRA_RAPID_CAPTURE = "com.thiagolins.vocalizeai.RAPID_CAPTURE"
+    const val EXTRA_REQUEST_TIME = "com.thiagolins.vocalizeai.REQUEST_TIME"
+    const val ACTION_RELEASE_CAPTURE = "com.thiagolins.vocalizeai.RELEASE_CAPTURE"
+    const val EXTRA_MAX_PART_BYTES = "com.thiagolins.vocalizeai.MAX_PART_BYTES"
+    const val EXTRA_MAX_PART_DURATION_MS = "com.thiagolins.vocalizeai.MAX_PART_DURATION_MS"
+    const val EXTRA_PART_MODE = "com.thiagolins.vocalizeai.PART_MODE"
+    const val EXTRA_LOW_POWER = "com.thiagolins.vocalizeai.LOW_POWER"
+    const val EXTRA_DSP_HIGH_PASS_HZ = "com.thiagolins.vocalizeai.DSP_HIGH_PASS_HZ"
+    const val EXTRA_DSP_GAIN_DB = "com.thiagolins.vocalizeai.DSP_GAIN_DB"
+    const val EXTRA_DSP_GATE_DB = "com.thiagolins.vocalizeai.DSP_GATE_DB"
+    const val EXTRA_DSP_LIMITER_DB = "com.thiagolins.vocalizeai.DSP_LIMITER_DB"
+    const val EXTRA_COMMAND_ID = "com.thiagolins.vocalizeai.COMMAND_ID"
+    const val ACTION_COMMAND_ACK = "com.thiagolins.vocalizeai.COMMAND_ACK"
+    /** {@code elapsedRealtimeNanos} at which the service sent a broadcast. */
+    const val EXTRA_SENT_AT_NS = "com.thiagolins.vocalizeai.SENT_AT_NS"
+
+    const val RESULT_APPLIED = "applied"
+    const val RESULT_COALESCED = "coalesced"
+    const val RESULT_IGNORED = "ignored"
+    const val RESULT_FAILED = "failed"
+
+    /** A warm rapid-capture pipeline with no recording is released after this long. */
+    const val RAPID_IDLE_TIMEOUT_MS = 60_000L
+
+    /** Rotated parts are joined into one file on stop... */
+    const val PART_MODE_CONCAT = "concat"
+    /** ...or reported as an ordered list, each uploadable on its own. */
+    const val PART_MODE_LIST = "list"
+
+    /** Low-power capture reads half a second per wakeup... */
+    const val LOW_POWER_READ_BATCH_MS = 500
+    /** ...and refreshes the timer and notification every few seconds. */
+    private const val LOW_POWER_TICK_MS = 5_000L
+    private const val TICK_MS = 1_000L
+
+    private const val WAKE_LOCK_TIMEOUT_MS = 30 * 60 * 1000L
+    /** Long sessions re-arm the wake lock well before its timeout expires. */
+    private const val WAKE_LOCK_RENEW_MS = 10 * 60 * 1000L
+
+    const val SAMPLE_RATE = 44100
+    const val CHANNEL_COUNT = 2
+    const val AAC_BIT_RATE = 256000
+    /** Async span from a command's arrival to the command thread picking it up. */
+    private const val TRACE_QUEUED = "recorder.service.queued"
+    /** Rate of the mono derivative handed to the classification pipeline. */
+    const val ML_SAMPLE_RATE = 16000
 
     private const val TAG = "AudioRecorderService"
   }
@@ -49,13 +198,13 @@ class ForegroundAudioRecorderService : Service() {
             override fun onReceive(context: Context?, intent: Intent?) {
               when (intent?.action) {
                 "com.thiagolins.vocalizeai.REQUEST_OUTPUT_FILE" -> {
-                  sendBroadcast(
+                  broadcast(
                           Intent("com.thiagolins.vocalizeai.OUTPUT_FILE_SET")
                                   .putExtra("outputFile", outputFile)
                   )
                 }
                 "com.thiagolins.vocalizeai.REQUEST_STATUS" -> {
-                  sendBroadcast(
+                  broadcast(
                           Intent("com.thiagolins.vocalizeai.RECORDING_STATUS")
                                   .putExtra("isRecording", isRecording)
                                   .putExtra("isPaused", isPaused)
@@ -67,12 +216,31 @@ class ForegroundAudioRecorderService : Service() {
             }
           }
 
+  /**
+   * Sends a broadcast to the module, stamped with the send time so a
+   * receiver can tell service work from main-thread delivery delay.
+   */
+  private fun broadcast(intent: Intent) {
+    intent.setPackage(packageName)
+    intent.putExtra(EXTRA_SENT_AT_NS, SystemClock.elapsedRealtimeNanos())
+    sendBroadcast(intent)
+  }
+
+  /**
+   * Journals an event JS must not miss before it is broadcast, so it can
+   * be replayed even if no module is registered to receive it.
+   */
+  private fun journaled(event: String, intent: Intent): Intent {
+    RecorderEventPayloads.journal(this, event, intent)
+    return intent
+  }
+
   private fun sendBroadcastWithRetry(intent: Intent, maxRetries: Int = 3) {
     for (i in 0 until maxRetries) {
       try {
-        sendBroadcast(intent)
+        TraceRecorder.section("recorder.service.broadcast").use { broadcast(intent) }
 
-        Thread.sleep(50)
+        SystemClock.sleep(50)
         return
       } catch (e: Exception) {
         Log.e(TAG, "Erro no envio de broadcast, tentativa ${i+1}: ${e.message}")
@@ -93,7 +261,11 @@ class ForegroundAudioRecorderService : Service() {
   override fun onCreate() {
     super.onCreate()
     createNotificationChannel()
-    acquireWakeLock()
+    wakeLock = RecorderWakeLock(this, "VocalizeAI:AudioRecorderWakeLock", WAKE_LOCK_TIMEOUT_MS)
+
+    commandThread = HandlerThread("RecorderCommands", Process.THREAD_PRIORITY_FOREGROUND)
+    commandThread.start()
+    commandHandler = Handler(commandThread.looper)
 
     val filter = IntentFilter("com.thiagolins.vocalizeai.REQUEST_OUTPUT_FILE")
     filter.addAction("com.thiagolins.vocalizeai.REQUEST_OUTPUT_FILE")
@@ -107,49 +279,197 @@ class ForegroundAudioRecorderService : Service() {
   }
 
   override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
-    val currentTime = System.currentTimeMillis()
-    val action = intent?.action
+    val action = intent?.action ?: return START_STICKY
+
+    val command = RecorderCommand(action, intent.getIntExtra(EXTRA_COMMAND_ID, 0), intent, startId)
+    if (command.id != 0) {
+      TraceRecorder.beginAsync(TRACE_QUEUED, command.id)
+    }
+    synchronized(pendingCommands) {
+      lastStartId = startId
+      pendingCommands.addLast(command)
+    }
+    commandHandler.post(drainCommands)
+
+    return START_STICKY
+  }
+
+  /**
+   * Runs every queued command in arrival order on the command thread. A
+   * command that cannot change the state reached by the commands before it
+   * (a second start, a pause while paused) is coalesced into its
+   * predecessor or ignored, and a pause immediately undone by a resume (or
+   * the reverse) is dropped as a pair. Every command is acknowledged, in
+   * the order it was sent.
+   */
+  private fun processCommands() {
+    val batch =
+            synchronized(pendingCommands) {
+              ArrayList(pendingCommands).also { pendingCommands.clear() }
+            }
+    if (batch.isEmpty()) {
+      return
+    }
+    for (command in batch) {
+      if (command.id != 0) {
+        TraceRecorder.endAsync(TRACE_QUEUED, command.id)
+      }
+    }
+
+    var plan = planCommands(batch, isRecording, isPaused)
+    if (plan.size > 0) {
+      Log.d(TAG, "Fila de comandos: ${batch.size} recebidos, ${batch.size - plan.size} a executar")
+    }
+
+    // A stop can take a while (validation, concatenation); keep the CPU up for it.
+    wakeLock.acquire()
+    try {
+      for ((index, command) in batch.withIndex()) {
+        executingStartId = command.startId
+        val planned = plan[command]
+        val result =
+                planned
+                        ?: TraceRecorder.section("recorder.service.${command.action.substringAfterLast('.')}").use {
+                          executeCommand(command)
+                        }
+        sendCommandAck(command, result)
+
+        // The plan assumed this command would succeed; decide the rest again from the real state.
+        if (planned == null && result == RESULT_FAILED && index + 1 < batch.size) {
+          plan = planCommands(batch.subList(index + 1, batch.size), isRecording, isPaused)
+        }
+      }
+    } finally {
+      wakeLock.release()
+    }
+  }
+
+  /**
+   * Decides which of {@code commands} would not change the state predicted
+   * from {@code recording} and {@code paused}, mapped to the result they are
+   * acknowledged with. Commands missing from the map are executed.
+   */
+  private fun planCommands(
+          commands: List<RecorderCommand>,
+          recording: Boolean,
+          paused: Boolean
+  ): Map<RecorderCommand, String> {
+    val results = HashMap<RecorderCommand, String>()
+    val effective = ArrayList<RecorderCommand>()
+    var predictedRecording = recording
+    var predictedPaused = paused
+
+    for (command in commands) {
+      val applies =
+              when (command.action) {
+                ACTION_START_RECORDING -> !predictedRecording
+                ACTION_STOP_RECORDING -> predictedRecording
+                ACTION_PAUSE_RECORDING -> predictedRecording && !predictedPaused
+                ACTION_RESUME_RECORDING -> predictedRecording && predictedPaused
+                else -> true
+              }
+      val previous = effective.lastOrNull()
+
+      if (!applies) {
+        results[command] =
+                if (previous?.action == command.action) RESULT_COALESCED else RESULT_IGNORED
+        continue
+      }
 
-    if (action != null && currentTime - lastActionTimestamp < 300) {
-      Log.w(TAG, "Ação ignorada: muito rápida ($action)")
-      return START_STICKY
+      if (previous != null && cancelsOut(previous.action, command.action)) {
+        effective.removeAt(effective.size - 1)
+        results[previous] = RESULT_COALESCED
+        results[command] = RESULT_COALESCED
+        predictedPaused = !predictedPaused
+        continue
+      }
+
+      when (command.action) {
+        ACTION_START_RECORDING -> {
+          predictedRecording = true
+          predictedPaused = false
+        }
+        ACTION_STOP_RECORDING, ACTION_RELEASE_CAPTURE -> {
+          predictedRecording = false
+          predictedPaused = false
+        }
+        ACTION_PAUSE_RECORDING -> predictedPaused = true
+        ACTION_RESUME_RECORDING -> predictedPaused = false
+      }
+      effective.add(command)
     }
+    return results
+  }
 
-    lastActionTimestamp = currentTime
+  private fun cancelsOut(first: String, second: String): Boolean =
+          (first == ACTION_PAUSE_RECORDING && second == ACTION_RESUME_RECORDING) ||
+                  (first == ACTION_RESUME_RECORDING && second == ACTION_PAUSE_RECORDING)
 
-    when (action) {
+  private fun executeCommand(command: RecorderCommand): String {
+    val intent = command.intent
+    return when (command.action) {
       ACTION_START_RECORDING -> {
         elapsedTimeBeforePause = intent.getLongExtra(EXTRA_ELAPSED_TIME, 0)
+        wavArchiveEnabled = intent.getBooleanExtra(EXTRA_WAV_ARCHIVE, false)
+        flacArchiveEnabled = intent.getBooleanExtra(EXTRA_FLAC_ARCHIVE, false)
+        featuresEnabled = intent.getBooleanExtra(EXTRA_FEATURES, false)
+        mlDerivativeEnabled = intent.getBooleanExtra(EXTRA_ML_DERIVATIVE, false)
+        rapidCapture = intent.getBooleanExtra(EXTRA_RAPID_CAPTURE, false)
+        requestTimeMs = intent.getLongExtra(EXTRA_REQUEST_TIME, 0)
+        maxPartBytes = intent.getLongExtra(EXTRA_MAX_PART_BYTES, 0)
+        maxPartDurationMs = intent.getLongExtra(EXTRA_MAX_PART_DURATION_MS, 0)
+        partMode = intent.getStringExtra(EXTRA_PART_MODE) ?: PART_MODE_CONCAT
+        lowPower = intent.getBooleanExtra(EXTRA_LOW_POWER, false)
+        dspChain = buildDspChain(intent)
         startRecording()
+        if (isRecording) RESULT_APPLIED else RESULT_FAILED
       }
       ACTION_PAUSE_RECORDING -> {
-        if (isRecording && !isPaused) {
-          pauseRecording()
-        } else {
-          Log.w(
-                  TAG,
-                  "Ignorando pauseRecording: estado não permite (isRecording=$isRecording, isPaused=$isPaused)"
-          )
-        }
+        pauseRecording()
+        if (isPaused || !isRecording) RESULT_APPLIED else RESULT_FAILED
       }
       ACTION_RESUME_RECORDING -> {
-        if (isRecording && isPaused) {
-          resumeRecording()
+        resumeRecording()
+        if (isRecording && !isPaused) RESULT_APPLIED else RESULT_FAILED
+      }
+      ACTION_STOP_RECORDING -> {
+        stopRecording()
+        if (rapidCapture && capturePipeline != null) {
+          prepareNextOutputs()
+          updateNotification()
+          commandHandler.removeCallbacks(idleRelease)
+          commandHandler.postDelayed(idleRelease, RAPID_IDLE_TIMEOUT_MS)
         } else {
-          Log.w(
-                  TAG,
-                  "Ignorando resumeRecording: estado não permite (isRecording=$isRecording, isPaused=$isPaused)"
-          )
+          releaseCapture()
         }
+        RESULT_APPLIED
       }
-      ACTION_STOP_RECORDING -> {
+      ACTION_RELEASE_CAPTURE -> {
         stopRecording()
-        stopForeground(true)
-        stopSelf()
+        releaseCapture()
+        RESULT_APPLIED
+      }
+      else -> {
+        Log.w(TAG, "Comando desconhecido: ${command.action}")
+        RESULT_IGNORED
       }
     }
+  }
 
-    return START_STICKY
+  private fun sendCommandAck(command: RecorderCommand, result: String) {
+    if (result != RESULT_APPLIED) {
+      Log.d(TAG, "Comando ${command.action} (${command.id}): $result")
+    }
+    val intent =
+            Intent(ACTION_COMMAND_ACK)
+                    .putExtra("commandId", command.id)
+                    .putExtra("action", command.action)
+                    .putExtra("result", result)
+                    .putExtra("isRecording", isRecording)
+                    .putExtra("isPaused", isPaused)
+                    .putExtra("outputFile", outputFile)
+                    .putExtra("currentTime", currentRecordingTime)
+    TraceRecorder.section("recorder.service.ack").use { broadcast(intent) }
   }
 
   private fun showNotification(contentText: String) {
@@ -179,91 +499,322 @@ class ForegroundAudioRecorderService : Service() {
     startForeground(NOTIFICATION_ID, notification)
   }
 
-  private fun acquireWakeLock() {
+  /** Holds the shared wake lock for the recording session, at most once. */
+  private fun acquireSessionWakeLock() {
+    if (sessionWakeLockHeld) {
+      return
+    }
     try {
-      val powerManager = getSystemService(POWER_SERVICE) as PowerManager
-      wakeLock =
-              powerManager.newWakeLock(
-                      PowerManager.PARTIAL_WAKE_LOCK,
-                      "VocalizeAI:AudioRecorderWakeLock"
-              )
-      wakeLock?.acquire(30 * 60 * 1000L)
+      wakeLock.acquire()
+      sessionWakeLockHeld = true
+      wakeLockRenewedAt = SystemClock.elapsedRealtime()
     } catch (e: Exception) {
       Log.e(TAG, "Erro ao adquirir WakeLock: ${e.message}")
     }
   }
 
-  private fun startRecording() {
-    if (isRecording) {
-      return
+  private fun releaseSessionWakeLock() {
+    if (sessionWakeLockHeld) {
+      sessionWakeLockHeld = false
+      wakeLock.release()
+    }
+  }
+
+  private val pipelineListener =
+          object : CapturePipeline.Listener {
+            override fun onSinkError(sink: PcmSink, error: Exception) {
+              if (sink === currentOutputs?.encoder) {
+                sendBroadcastWithRetry(
+                        journaled(
+                                RecorderEventPayloads.ERROR,
+                                Intent("com.thiagolins.vocalizeai.RECORDING_ERROR")
+                                        .putExtra("error", "Falha no encoder de áudio")
+                        )
+                )
+              }
+            }
+
+            override fun onCaptureError(error: Exception) {
+              Log.e(TAG, "Erro na captura de áudio: ${error.message}")
+              commandHandler.post(captureFailure)
+            }
+          }
+
+  private fun getSoundDir(): File {
+    val soundDir = File(applicationContext.filesDir, "audiorecordings")
+    if (!soundDir.exists()) {
+      soundDir.mkdirs()
     }
 
+    soundDir.setReadable(true, false)
+    soundDir.setWritable(true, false)
+    soundDir.setExecutable(true, false)
+    return soundDir
+  }
+
+  private fun openOutputs(pipeline: CapturePipeline): SegmentOutputs {
+    val soundDir = getSoundDir()
+    val fileName = "recording_${System.currentTimeMillis()}.m4a"
+    val file = File(soundDir, fileName)
+
+    val encoder = RecorderBackend.get().newEncoder(file.absolutePath, AAC_BIT_RATE)
+    val wav = if (wavArchiveEnabled) WavFileSink(File(soundDir, fileName.replace(".m4a", ".wav"))) else null
+    val flac =
+            if (flacArchiveEnabled) FlacEncoderSink(File(soundDir, fileName.replace(".m4a", ".flac")))
+            else null
+    val features =
+            if (featuresEnabled) FeatureSidecarSink(File(soundDir, fileName.replace(".m4a", ".feat")))
+            else null
+    val derivative =
+            if (mlDerivativeEnabled)
+                    MonoDerivativeSink(
+                            WavFileSink(File(soundDir, fileName.replace(".m4a", "_16k.wav"))),
+                            ML_SAMPLE_RATE
+                    )
+            else null
+
+    val quality = SignalQualitySink()
+
+    val sinks = listOfNotNull<PcmSink>(encoder, wav, flac, features, derivative, quality)
+    return SegmentOutputs(file, pipeline.openSegment(sinks), encoder, wav, flac, features, derivative, quality)
+  }
+
+  /** Opens the next file set ahead of time so a rapid start only swaps segments. */
+  private fun prepareNextOutputs() {
+    val pipeline = capturePipeline ?: return
+    if (preparedOutputs != null) {
+      return
+    }
     try {
-      currentRecordingTime = elapsedTimeBeforePause
+      preparedOutputs = openOutputs(pipeline)
+    } catch (e: Exception) {
+      Log.e(TAG, "Erro ao preparar próximo arquivo: ${e.message}")
+    }
+  }
 
-      val soundDir = File(applicationContext.filesDir, "audiorecordings")
-      if (!soundDir.exists()) {
-        soundDir.mkdirs()
-      }
+  private fun discardPreparedOutputs() {
+    val prepared = preparedOutputs ?: return
+    preparedOutputs = null
+    capturePipeline?.discardSegment(prepared.segment)
+    prepared.delete()
+  }
+
+  private fun releaseCapture() {
+    commandHandler.removeCallbacks(idleRelease)
+    discardPreparedOutputs()
+    capturePipeline?.stop()
+    capturePipeline = null
+    stopForeground(true)
+    stopIfNoNewerCommand()
+  }
+
+  /**
+   * Stops the service unless a command arrived after the one being run:
+   * stopSelfResult ignores a stale start id, so a start queued behind a stop
+   * keeps the service, and its recording, alive.
+   */
+  private fun stopIfNoNewerCommand() {
+    if (!stopSelfResult(executingStartId)) {
+      Log.d(TAG, "Serviço mantido: há comandos mais recentes na fila")
+    }
+  }
 
-      soundDir.setReadable(true, false)
-      soundDir.setWritable(true, false)
-      soundDir.setExecutable(true, false)
+  /**
+   * Runs on the command thread every timer tick while recording: keeps the
+   * wake lock armed and starts a new part once the current one reaches the
+   * configured size or duration.
+   */
+  private fun checkRotation() {
+    val outputs = currentOutputs ?: return
+    if (!isRecording) {
+      return
+    }
 
-      val fileName = "recording_${System.currentTimeMillis()}.m4a"
-      val file = File(soundDir, fileName)
+    if (SystemClock.elapsedRealtime() - wakeLockRenewedAt >= WAKE_LOCK_RENEW_MS) {
+      wakeLock.renew()
+      wakeLockRenewedAt = SystemClock.elapsedRealtime()
+    }
+
+    val partDurationMs = outputs.segment.framesWritten * 1000L / SAMPLE_RATE
+    if ((maxPartDurationMs > 0 && partDurationMs >= maxPartDurationMs) ||
+                    (maxPartBytes > 0 && outputs.file.length() >= maxPartBytes)
+    ) {
+      rotateOutputs(outputs)
+    }
+  }
+
+  /**
+   * Moves the encoder output to a new part file without stopping capture.
+   * The encoder itself keeps running and only its muxer is swapped, so the
+   * parts split the one AAC stream at an access unit and join back without
+   * a second encoder priming. The WAV and FLAC archives, feature sidecar,
+   * 16 kHz derivative and quality analysis are carried over as well.
+   */
+  private fun rotateOutputs(outputs: SegmentOutputs) {
+    val pipeline = capturePipeline ?: return
+    if (pipeline.hasFailed(outputs.encoder)) {
+      return
+    }
+    val baseName = (finishedParts.firstOrNull()?.file ?: outputs.file).nameWithoutExtension
+    val file = File(outputs.file.parentFile, "${baseName}_part${finishedParts.size + 2}.m4a")
+
+    val finalized: Boolean
+    try {
+      finalized = outputs.encoder.rotate(file.absolutePath)
+      // A new segment only restarts the frame count of the part; every sink is carried over.
+      val segment =
+              pipeline.openContinuation(
+                      emptyList(),
+                      listOfNotNull(
+                              outputs.encoder,
+                              outputs.wav,
+                              outputs.flac,
+                              outputs.features,
+                              outputs.derivative,
+                              outputs.quality
+                      )
+              )
+      pipeline.rotateSegment(segment)
+      currentOutputs =
+              SegmentOutputs(
+                      file,
+                      segment,
+                      outputs.encoder,
+                      outputs.wav,
+                      outputs.flac,
+                      outputs.features,
+                      outputs.derivative,
+                      outputs.quality
+              )
       outputFile = file.absolutePath
+    } catch (e: Exception) {
+      Log.e(TAG, "Erro ao rotacionar arquivo, mantendo parte atual: ${e.message}")
+      return
+    }
 
-      sendBroadcast(
-              Intent("com.thiagolins.vocalizeai.OUTPUT_FILE_SET").putExtra("outputFile", outputFile)
-      )
+    val durationMs = outputs.segment.framesWritten * 1000L / SAMPLE_RATE
+    if (!finalized && !repairUnfinalized(outputs.file)) {
+      Log.e(TAG, "Parte não finalizada, mantida com diário de quadros: ${outputs.file.name}")
+      return
+    }
+    finishedParts.add(RecordingPart(outputs.file, durationMs))
+    Log.d(TAG, "Parte ${finishedParts.size} concluída: ${outputs.file.name} (${durationMs} ms)")
 
-      mediaRecorder =
-              if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                MediaRecorder(this)
-              } else {
-                @Suppress("DEPRECATION") MediaRecorder()
-              }
+    val intent =
+            Intent("com.thiagolins.vocalizeai.RECORDING_PART_COMPLETED")
+                    .putExtra("partFile", outputs.file.absolutePath)
+                    .putExtra("partIndex", finishedParts.size - 1)
+                    .putExtra("durationMs", durationMs)
+    broadcast(journaled(RecorderEventPayloads.PART_COMPLETED, intent))
+  }
 
-      mediaRecorder?.apply {
-        try {
-          try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-              setAudioSource(MediaRecorder.AudioSource.UNPROCESSED)
-            } else {
-              setAudioSource(MediaRecorder.AudioSource.MIC)
-            }
-          } catch (e: Exception) {
-            try {
-              setAudioSource(MediaRecorder.AudioSource.MIC)
-            } catch (e2: Exception) {
-              setAudioSource(MediaRecorder.AudioSource.CAMCORDER)
-            }
-          }
+  /**
+   * Returns the file to report as the recording and, in list mode, the
+   * ordered parts. Concatenation falls back to the list if it fails.
+   */
+  private fun finishParts(parts: List<RecordingPart>): Pair<File, List<RecordingPart>> {
+    val first = parts.first().file
+    if (partMode != PART_MODE_CONCAT || parts.size == 1) {
+      return Pair(first, parts)
+    }
+
+    val merged = File(first.parentFile, "${first.nameWithoutExtension}_full.m4a")
+    try {
+      val start = SystemClock.elapsedRealtime()
+      AudioPartConcatenator.concat(parts.map { it.file }, merged)
+      // The parts are only deleted once the merged file has replaced the first.
+      if (!merged.renameTo(first)) {
+        throw IllegalStateException("Não foi possível renomear ${merged.name}")
+      }
+      for (part in parts.drop(1)) {
+        part.file.delete()
+      }
+      Log.d(TAG, "${parts.size} partes concatenadas em ${SystemClock.elapsedRealtime() - start} ms")
+      return Pair(first, emptyList())
+    } catch (e: Exception) {
+      Log.e(TAG, "Erro ao concatenar partes, enviando lista: ${e.message}")
+      merged.delete()
+      return Pair(first, parts.filter { it.file.exists() })
+    }
+  }
 
-          setOutputFormat(MediaRecorder.OutputFormat.MPEG_4)
-          setAudioEncoder(MediaRecorder.AudioEncoder.AAC)
-          setAudioEncodingBitRate(256000)
-          setAudioSamplingRate(44100)
-          setOutputFile(outputFile)
+  /** Stages requested by the start command, in fixed order; null when none were. */
+  private fun buildDspChain(intent: Intent): DspChain? {
+    val chain = DspChain()
+    if (intent.hasExtra(EXTRA_DSP_HIGH_PASS_HZ)) {
+      chain.add(DspChain.HighPass(intent.getFloatExtra(EXTRA_DSP_HIGH_PASS_HZ, 80f)))
+    }
+    if (intent.hasExtra(EXTRA_DSP_GAIN_DB)) {
+      chain.add(DspChain.Gain(intent.getFloatExtra(EXTRA_DSP_GAIN_DB, 0f)))
+    }
+    if (intent.hasExtra(EXTRA_DSP_GATE_DB)) {
+      chain.add(DspChain.NoiseGate(intent.getFloatExtra(EXTRA_DSP_GATE_DB, -60f)))
+    }
+    if (intent.hasExtra(EXTRA_DSP_LIMITER_DB)) {
+      chain.add(DspChain.Limiter(intent.getFloatExtra(EXTRA_DSP_LIMITER_DB, -1f)))
+    }
+    return if (chain.isEmpty) null else chain
+  }
 
-          if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            setAudioChannels(2)
-          }
+  private fun startRecording() {
+    if (isRecording) {
+      return
+    }
 
-          if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-            setPreferredMicrophoneDirection(MediaRecorder.MIC_DIRECTION_UNSPECIFIED)
-            setOrientationHint(0)
-          }
+    commandHandler.removeCallbacks(idleRelease)
+    val requestedAtNs =
+            if (requestTimeMs > 0) requestTimeMs * 1_000_000L else SystemClock.elapsedRealtimeNanos()
+
+    try {
+      currentRecordingTime = elapsedTimeBeforePause
 
-          prepare()
-          start()
-        } catch (e: Exception) {
-          Log.e(TAG, "Erro ao configurar MediaRecorder: ${e.message}")
-          throw e
+      var pipeline = capturePipeline
+      warmStart = pipeline != null
+      if (pipeline == null) {
+        pipeline = CapturePipeline(SAMPLE_RATE, CHANNEL_COUNT)
+        pipeline.setListener(pipelineListener)
+        if (lowPower) {
+          pipeline.setReadBatchMs(LOW_POWER_READ_BATCH_MS)
         }
+        TraceRecorder.section("recorder.service.startCapture").use { pipeline.startCapture() }
+        capturePipeline = pipeline
       }
 
+      val prepared = preparedOutputs
+      preparedOutputs = null
+      val outputs =
+              if (prepared != null &&
+                              prepared.matches(
+                                      wavArchiveEnabled,
+                                      flacArchiveEnabled,
+                                      featuresEnabled,
+                                      mlDerivativeEnabled
+                              )
+              ) {
+                prepared
+              } else {
+                if (prepared != null) {
+                  pipeline.discardSegment(prepared.segment)
+                  prepared.delete()
+                }
+                TraceRecorder.section("recorder.service.openOutputs").use { openOutputs(pipeline) }
+              }
+
+      outputFile = outputs.file.absolutePath
+      currentOutputs = outputs
+      firstSegment = outputs.segment
+      finishedParts.clear()
+      pipeline.setProcessor(dspChain)
+      acquireSessionWakeLock()
+      timerWakeups = 0
+      readsAtStart = pipeline.readCount
+      wakeLockHeldAtStart = wakeLock.heldMs
+      pipeline.beginSegment(outputs.segment, requestedAtNs)
+
+      broadcast(
+              Intent("com.thiagolins.vocalizeai.OUTPUT_FILE_SET").putExtra("outputFile", outputFile)
+      )
+
       isRecording = true
       isPaused = false
       recordingStartTime = System.currentTimeMillis()
@@ -273,7 +824,7 @@ class ForegroundAudioRecorderService : Service() {
       startTimer()
 
       for (i in 0..2) {
-        sendBroadcast(
+        broadcast(
                 Intent("com.thiagolins.vocalizeai.RECORDING_STATUS")
                         .putExtra("isRecording", true)
                         .putExtra("isPaused", false)
@@ -281,25 +832,19 @@ class ForegroundAudioRecorderService : Service() {
                         .putExtra("currentTime", currentRecordingTime)
         )
 
-        try {
-          Thread.sleep(50)
-        } catch (e: Exception) {}
+        SystemClock.sleep(50)
       }
-
-      acquireWakeLock()
     } catch (e: Exception) {
       Log.e(TAG, "Error starting recording: ${e.message}")
 
-      try {
-        mediaRecorder?.release()
-      } catch (releaseError: Exception) {
-        Log.e(TAG, "Error releasing MediaRecorder: ${releaseError.message}")
-      }
-
-      mediaRecorder = null
+      releaseSessionWakeLock()
+      currentOutputs = null
+      discardPreparedOutputs()
+      capturePipeline?.stop()
+      capturePipeline = null
       outputFile = null
       isRecording = false
-      stopSelf()
+      stopIfNoNewerCommand()
     }
   }
 
@@ -308,7 +853,7 @@ class ForegroundAudioRecorderService : Service() {
 
     try {
       if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-        mediaRecorder?.pause()
+        capturePipeline?.pause()
         isPaused = true
         timer?.cancel()
         timer = null
@@ -325,10 +870,9 @@ class ForegroundAudioRecorderService : Service() {
                           .putExtra("outputFile", outputFile)
                           .putExtra("currentTime", currentRecordingTime)
 
-          intent.setPackage(packageName)
-          sendBroadcast(intent)
+          broadcast(intent)
 
-          Thread.sleep(50)
+          SystemClock.sleep(50)
         }
       } else {
         stopRecording()
@@ -343,7 +887,7 @@ class ForegroundAudioRecorderService : Service() {
 
     try {
       if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-        mediaRecorder?.resume()
+        capturePipeline?.resume()
         isPaused = false
         startTimer()
 
@@ -357,10 +901,9 @@ class ForegroundAudioRecorderService : Service() {
                           .putExtra("outputFile", outputFile)
                           .putExtra("currentTime", currentRecordingTime)
 
-          intent.setPackage(packageName)
-          sendBroadcast(intent)
+          broadcast(intent)
 
-          Thread.sleep(50)
+          SystemClock.sleep(50)
         }
       } else {
         startRecording()
@@ -377,42 +920,85 @@ class ForegroundAudioRecorderService : Service() {
 
     timer?.cancel()
     timer = null
+    commandHandler.removeCallbacks(rotationCheck)
 
-    val finalOutputFile = outputFile
+    var finalOutputFile = outputFile
+    val outputs = currentOutputs
+    currentOutputs = null
+    val pipeline = capturePipeline
+    val parts = ArrayList(finishedParts)
+    finishedParts.clear()
+    var lastPartFailed = false
 
     try {
       try {
-        mediaRecorder?.stop()
-      } catch (e: Exception) {
-        Log.e(TAG, "Error stopping MediaRecorder: ${e.message}")
-
-        finalOutputFile?.let {
-          try {
-            File(it).delete()
-          } catch (deleteError: Exception) {
-            Log.e(TAG, "Failed to delete corrupted file: ${deleteError.message}")
+        TraceRecorder.section("recorder.service.stopCapture").use {
+          if (rapidCapture) {
+            pipeline?.endSegment()
+          } else {
+            pipeline?.stop()
+            capturePipeline = null
           }
         }
+        if (pipeline != null && outputs != null && pipeline.hasFailed(outputs.encoder)) {
+          throw IllegalStateException("Encoder AAC falhou durante a gravação")
+        }
+      } catch (e: Exception) {
+        Log.e(TAG, "Error stopping capture pipeline: ${e.message}")
+
+        // A muxer that died before writing its moov leaves a file the frame journal can rebuild
+        val repaired =
+                finalOutputFile?.let { path ->
+                  TraceRecorder.section("recorder.service.repair").use { repairUnfinalized(File(path)) }
+                } ?: false
+        if (!repaired) {
+          finalOutputFile?.let {
+            try {
+              File(it).delete()
+            } catch (deleteError: Exception) {
+              Log.e(TAG, "Failed to delete corrupted file: ${deleteError.message}")
+            }
+          }
 
-        val errorIntent =
-                Intent("com.thiagolins.vocalizeai.RECORDING_ERROR")
-                        .putExtra("error", "Falha ao finalizar gravação")
-        sendBroadcastWithRetry(errorIntent)
+          // Parts already rotated out are intact; only the last one is lost.
+          if (parts.isEmpty()) {
+            val errorIntent =
+                    Intent("com.thiagolins.vocalizeai.RECORDING_ERROR")
+                            .putExtra("error", "Falha ao finalizar gravação")
+            sendBroadcastWithRetry(journaled(RecorderEventPayloads.ERROR, errorIntent))
 
-        resetRecordingState(null)
-        return null
+            resetRecordingState(null)
+            return null
+          }
+          lastPartFailed = true
+        }
       }
 
-      try {
-        mediaRecorder?.reset()
-        mediaRecorder?.release()
-      } catch (e: Exception) {
-        Log.e(TAG, "Error releasing MediaRecorder: ${e.message}")
-      } finally {
-        mediaRecorder = null
+      val archiveFile =
+              outputs?.wav?.let { sink ->
+                if (pipeline?.hasFailed(sink) != true) sink.file.absolutePath else null
+              }
+      val flac = outputs?.flac?.takeIf { pipeline?.hasFailed(it) != true }
+      val features = outputs?.features?.takeIf { pipeline?.hasFailed(it) != true }
+      val derivative = outputs?.derivative?.takeIf { pipeline?.hasFailed(it) != true }
+      val startLatencyMs = firstSegment?.startLatencyMs ?: -1.0
+      val captureWakeups = (pipeline?.readCount ?: readsAtStart) - readsAtStart
+      val wakeLockHeldMs = wakeLock.heldMs - wakeLockHeldAtStart
+      releaseSessionWakeLock()
+
+      var partList: List<RecordingPart> = emptyList()
+      if (parts.isNotEmpty()) {
+        if (!lastPartFailed && outputs != null) {
+          parts.add(RecordingPart(outputs.file, outputs.segment.framesWritten * 1000L / SAMPLE_RATE))
+        }
+        val (file, list) = TraceRecorder.section("recorder.service.finishParts").use { finishParts(parts) }
+        finalOutputFile = file.absolutePath
+        partList = list
       }
 
-      SystemClock.sleep(150)
+      if (!rapidCapture) {
+        SystemClock.sleep(150)
+      }
 
       isRecording = false
       isPaused = false
@@ -429,11 +1015,11 @@ class ForegroundAudioRecorderService : Service() {
       if (finalOutputFile != null) {
         val file = File(finalOutputFile)
 
-        if (!validateAudioFile(file)) {
+        if (!TraceRecorder.section("recorder.service.validate").use { validateAudioFile(file) }) {
           val errorIntent =
                   Intent("com.thiagolins.vocalizeai.RECORDING_ERROR")
                           .putExtra("error", "Arquivo de áudio inválido ou corrompido")
-          sendBroadcastWithRetry(errorIntent)
+          sendBroadcastWithRetry(journaled(RecorderEventPayloads.ERROR, errorIntent))
 
           resetRecordingState(null)
           return null
@@ -442,17 +1028,100 @@ class ForegroundAudioRecorderService : Service() {
         file.setReadable(true, false)
         file.setWritable(true, false)
 
+        if (partList.size > 1) {
+          currentRecordingTime = partList.sumOf { it.durationMs } / 1000
+        }
+
+        // Parked in the upload queue until the app attaches its labels
+        val uploadQueue = UploadQueue.getInstance(applicationContext)
+        IoScheduler.getInstance().submit(IoScheduler.Lane.BACKGROUND, null) { uploadQueue.hold(file) }
+
+        // Journaled once; the retries carry the same sequence number.
+        var completionSeq = 0L
         for (i in 0..2) {
           try {
             val intent =
                     Intent("com.thiagolins.vocalizeai.RECORDING_COMPLETED")
                             .putExtra("outputFile", finalOutputFile)
                             .putExtra("duration", currentRecordingTime)
+                            .putExtra("archiveFile", archiveFile)
+                            .putExtra("startLatencyMs", startLatencyMs)
+                            .putExtra("warmStart", warmStart)
+                            .putExtra("lowPower", lowPower)
+                            .putExtra("readBatchMs", pipeline?.readBatchMs ?: CapturePipeline.DEFAULT_READ_BATCH_MS)
+                            .putExtra("captureWakeups", captureWakeups)
+                            .putExtra("timerWakeups", timerWakeups)
+                            .putExtra("wakeLockHeldMs", wakeLockHeldMs)
+
+            outputs?.quality?.takeIf { it.frameCount > 0 }?.let { quality ->
+              val warnings =
+                      listOfNotNull(
+                              if (quality.isClipped) "clipping" else null,
+                              if (quality.isNoisy) "lowSnr" else null,
+                              if (quality.isMostlyInactive) "mostlyInactive" else null
+                      )
+              intent.putExtra("qualityNoiseFloorDb", quality.noiseFloorDb)
+                      .putExtra("qualitySignalDb", quality.signalDb)
+                      .putExtra("qualitySnrDb", quality.snrDb)
+                      .putExtra("qualityClippingRatio", quality.clippingRatio)
+                      .putExtra("qualityActiveRatio", quality.activeRatio)
+                      .putExtra("qualityPeakDb", quality.peakDb)
+                      .putExtra("qualityDcOffset", quality.dcOffset)
+                      .putExtra("qualityWarnings", warnings.toTypedArray())
+            }
+
+            dspChain?.let { chain ->
+              val stats = chain.stats
+              intent.putExtra("dspStages", stats.map { it.name }.toTypedArray())
+                      .putExtra("dspStageAvgNs", stats.map { it.avgNsPerBuffer }.toDoubleArray())
+                      .putExtra("dspStageMaxNs", stats.map { it.maxNsPerBuffer }.toLongArray())
+                      .putExtra("dspBypassed", chain.isBypassed)
+                      .putExtra("dspLoad", chain.load)
+            }
 
-            intent.setPackage(packageName)
-            sendBroadcast(intent)
+            if (partList.size > 1) {
+              intent.putExtra("parts", partList.map { it.file.absolutePath }.toTypedArray())
+                      .putExtra("partDurationsMs", partList.map { it.durationMs }.toLongArray())
+            }
 
-            Thread.sleep(100)
+            if (features != null) {
+              intent.putExtra("featureFile", features.file.absolutePath)
+                      .putExtra("featureFrames", features.frameCount)
+                      .putExtra("featureAvgFrameUs", features.averageFrameUs)
+                      .putExtra("featureMaxFrameUs", features.maxFrameUs)
+                      .putExtra("featureRealtimeFactor", features.realtimeFactor)
+            }
+
+            if (flac != null) {
+              val pcmBytes = flac.totalSamples * CHANNEL_COUNT * 2
+              val audioNs = flac.totalSamples * 1_000_000_000L / SAMPLE_RATE
+              intent.putExtra("flacFile", flac.file.absolutePath)
+                      .putExtra("flacBytes", flac.encodedBytes)
+                      .putExtra(
+                              "flacCompressionRatio",
+                              if (flac.encodedBytes > 0) pcmBytes.toDouble() / flac.encodedBytes else 0.0
+                      )
+                      .putExtra(
+                              "flacRealtimeFactor",
+                              if (flac.encodeNs > 0) audioNs.toDouble() / flac.encodeNs else 0.0
+                      )
+            }
+
+            if (derivative != null) {
+              intent.putExtra("mlDerivativeFile", derivative.file.absolutePath)
+                      .putExtra("mlDerivativeSampleRate", derivative.targetRate)
+                      .putExtra("mlDerivativeDurationMs", derivative.durationMs)
+                      .putExtra("mlDerivativeProcessNs", derivative.processNs)
+                      .putExtra("mlDerivativeCpuLoad", derivative.cpuLoad)
+            }
+            if (completionSeq == 0L) {
+              completionSeq = RecorderEventPayloads.journal(this, RecorderEventPayloads.COMPLETED, intent)
+            } else {
+              intent.putExtra(RecorderEventPayloads.EXTRA_SEQ, completionSeq)
+            }
+            TraceRecorder.section("recorder.service.completionBroadcast").use { broadcast(intent) }
+
+            SystemClock.sleep(100)
           } catch (e: Exception) {
             Log.e(TAG, "Error sending broadcast on attempt ${i+1}: ${e.message}")
           }
@@ -470,6 +1139,20 @@ class ForegroundAudioRecorderService : Service() {
     }
   }
 
+  private fun repairUnfinalized(file: File): Boolean {
+    return try {
+      if (!Mp4Repair.needsRepair(file)) {
+        return false
+      }
+      val result = Mp4Repair.repairInPlace(file, null)
+      Log.w(TAG, "Recording rebuilt from frame journal: ${result.frames} frames, ${result.droppedBytes} bytes dropped")
+      true
+    } catch (e: Exception) {
+      Log.e(TAG, "Failed to repair recording: ${e.message}")
+      false
+    }
+  }
+
   private fun validateAudioFile(file: File): Boolean {
     try {
       if (!file.exists()) {
@@ -488,16 +1171,7 @@ class ForegroundAudioRecorderService : Service() {
       }
 
       try {
-        val retriever = android.media.MediaMetadataRetriever()
-        retriever.setDataSource(file.absolutePath)
-
-        val durationMs =
-                retriever
-                        .extractMetadata(android.media.MediaMetadataRetriever.METADATA_KEY_DURATION)
-                        ?.toLongOrNull()
-                        ?: 0
-
-        retriever.release()
+        val durationMs = RecorderBackend.get().probeDurationMs(file)
 
         if (durationMs <= 0) {
           Log.e(TAG, "Audio file has no duration")
@@ -520,6 +1194,7 @@ class ForegroundAudioRecorderService : Service() {
   }
 
   private fun resetRecordingState(finalOutputFile: String? = null) {
+    releaseSessionWakeLock()
     isRecording = false
     isPaused = false
     outputFile = finalOutputFile
@@ -527,7 +1202,7 @@ class ForegroundAudioRecorderService : Service() {
     elapsedTimeBeforePause = 0
     recordingStartTime = 0
 
-    sendBroadcast(
+    broadcast(
             Intent("com.thiagolins.vocalizeai.RECORDING_STATUS")
                     .putExtra("isRecording", false)
                     .putExtra("isPaused", false)
@@ -549,6 +1224,7 @@ class ForegroundAudioRecorderService : Service() {
             object : TimerTask() {
               override fun run() {
                 try {
+                  timerWakeups++
                   val elapsedSeconds = ((System.currentTimeMillis() - startTimeMs) / 1000).toInt()
 
                   currentRecordingTime = elapsedTimeBeforePause + elapsedSeconds
@@ -556,13 +1232,16 @@ class ForegroundAudioRecorderService : Service() {
                   updateNotification()
 
                   sendTimeUpdateBroadcast()
+
+                  commandHandler.removeCallbacks(rotationCheck)
+                  commandHandler.post(rotationCheck)
                 } catch (e: Exception) {
                   Log.e(TAG, "Erro no timer: ${e.message}")
                 }
               }
             },
             0,
-            1000
+            if (lowPower) LOW_POWER_TICK_MS else TICK_MS
     )
   }
 
@@ -571,9 +1250,8 @@ class ForegroundAudioRecorderService : Service() {
       val intent = Intent("com.thiagolins.vocalizeai.RECORDING_TIME_UPDATE")
       intent.putExtra("currentTime", currentRecordingTime)
       intent.putExtra("outputFile", outputFile)
-      intent.setPackage(packageName)
 
-      sendBroadcast(intent)
+      broadcast(intent)
     } catch (e: Exception) {
       Log.e(TAG, "Erro ao enviar broadcast de tempo: ${e.message}")
     }
@@ -586,7 +1264,7 @@ class ForegroundAudioRecorderService : Service() {
     currentRecordingTime = 0
     elapsedTimeBeforePause = 0
 
-    sendBroadcast(
+    broadcast(
             Intent("com.thiagolins.vocalizeai.RECORDING_STATUS")
                     .putExtra("isRecording", false)
                     .putExtra("isPaused", false)
@@ -632,7 +1310,13 @@ class ForegroundAudioRecorderService : Service() {
 
     val builder =
             NotificationCompat.Builder(this, CHANNEL_ID)
-                    .setContentTitle(if (isPaused) "Gravação pausada" else "Gravação em andamento")
+                    .setContentTitle(
+                            when {
+                              !isRecording -> "Captura rápida pronta"
+                              isPaused -> "Gravação pausada"
+                              else -> "Gravação em andamento"
+                            }
+                    )
                     .setContentText("Tempo: $formattedTime")
                     .setSmallIcon(R.drawable.ic_notification)
                     .setContentIntent(pendingIntent)
@@ -676,21 +1360,27 @@ class ForegroundAudioRecorderService : Service() {
   }
 
   override fun onDestroy() {
-    stopRecording()
-    clearNotification()
-    clearState()
-
     try {
       unregisterReceiver(broadcastReceiver)
     } catch (e: Exception) {
       Log.e(TAG, "Erro ao desregistrar receptor: ${e.message}")
     }
 
-    wakeLock?.let {
-      if (it.isHeld) {
-        it.release()
-      }
+    // Commands already queued still run, so their callers get an ack; the
+    // teardown runs after them on the same thread.
+    commandHandler.removeCallbacks(idleRelease)
+    commandHandler.post {
+      stopRecording()
+      discardPreparedOutputs()
+      capturePipeline?.stop()
+      capturePipeline = null
+      clearNotification()
+      clearState()
+
+      sessionWakeLockHeld = false
+      wakeLock.releaseAll()
     }
+    commandThread.quitSafely()
     super.onDestroy()
   }
 
@@ -0,0 +1,274 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Promise;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared executor for the native modules. Work is split into lanes so that a
+ * long background job (e.g. cleaning the audio directory) never sits in front
+ * of the recorder's own file checks.
+ */
+public final class IoScheduler {
+    private static final String TAG = "IoScheduler";
+
+    public enum Lane {
+        RECORDING_CRITICAL(1, android.os.Process.THREAD_PRIORITY_FOREGROUND),
+        INTERACTIVE(2, android.os.Process.THREAD_PRIORITY_DEFAULT),
+        BACKGROUND(1, android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+        final int threads;
+        final int priority;
+        final String traceName;
+        final String queuedTraceName;
+
+        Lane(int threads, int priority) {
+            this.threads = threads;
+            this.priority = priority;
+            this.traceName = "io." + name().toLowerCase();
+            this.queuedTraceName = traceName + ".queued";
+        }
+    }
+
+    public interface Task {
+        void run(CancellationToken token) throws Exception;
+    }
+
+    public static final class CancellationToken {
+        private final String id;
+        private volatile boolean cancelled = false;
+
+        CancellationToken(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+
+        public void throwIfCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException("Task " + id + " cancelled");
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    public static final class LaneMetrics {
+        public final int queued;
+        public final int active;
+        public final int maxQueueDepth;
+        public final long completed;
+        public final long cancelled;
+        public final long failed;
+
+        LaneMetrics(int queued, int active, int maxQueueDepth, long completed, long cancelled, long failed) {
+            this.queued = queued;
+            this.active = active;
+            this.maxQueueDepth = maxQueueDepth;
+            this.completed = completed;
+            this.cancelled = cancelled;
+            this.failed = failed;
+        }
+    }
+
+    private static final class LaneState {
+        final ThreadPoolExecutor executor;
+        final AtomicInteger maxQueueDepth = new AtomicInteger();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+
+        LaneState(ThreadPoolExecutor executor) {
+            this.executor = executor;
+        }
+    }
+
+    private static final class PendingTask {
+        final CancellationToken token;
+        final Runnable onCancelled;
+        final Lane lane;
+        final int traceCookie;
+        volatile Future<?> future;
+        private boolean notified = false;
+
+        PendingTask(CancellationToken token, Runnable onCancelled, Lane lane, int traceCookie) {
+            this.token = token;
+            this.onCancelled = onCancelled;
+            this.lane = lane;
+            this.traceCookie = traceCookie;
+        }
+
+        synchronized void notifyCancelled() {
+            if (notified || onCancelled == null) {
+                return;
+            }
+            notified = true;
+            try {
+                onCancelled.run();
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao notificar cancelamento de " + token.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static volatile IoScheduler instance;
+
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private final Map<String, PendingTask> pendingTasks = new ConcurrentHashMap<>();
+    private final AtomicLong tokenCounter = new AtomicLong();
+    private final AtomicInteger traceCookies = new AtomicInteger();
+
+    public static IoScheduler getInstance() {
+        if (instance == null) {
+            synchronized (IoScheduler.class) {
+                if (instance == null) {
+                    instance = new IoScheduler();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private IoScheduler() {
+        for (Lane lane : Lane.values()) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                lane.threads,
+                lane.threads,
+                30L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory(lane)
+            );
+            executor.allowCoreThreadTimeOut(true);
+            lanes.put(lane, new LaneState(executor));
+        }
+    }
+
+    private static ThreadFactory threadFactory(Lane lane) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                android.os.Process.setThreadPriority(lane.priority);
+                runnable.run();
+            }, "io-" + lane.name().toLowerCase() + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public String newTokenId() {
+        return "io_" + tokenCounter.incrementAndGet();
+    }
+
+    public CancellationToken submit(Lane lane, String tokenId, Task task) {
+        return submit(lane, tokenId, task, (Runnable) null);
+    }
+
+    /**
+     * Submits work that settles {@code promise}. If the task is cancelled,
+     * including by a later submit reusing its token id, or throws, the
+     * promise is rejected here so the JS caller is never left waiting.
+     */
+    public CancellationToken submit(Lane lane, String tokenId, Task task, Promise promise) {
+        return submit(lane, tokenId, token -> {
+            try {
+                task.run(token);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                promise.reject("TASK_ERROR", e.getMessage(), e);
+                throw e;
+            }
+        }, () -> promise.reject("CANCELLED", "Operação cancelada"));
+    }
+
+    public CancellationToken submit(Lane lane, String tokenId, Task task, Runnable onCancelled) {
+        String id = tokenId != null && !tokenId.isEmpty() ? tokenId : newTokenId();
+        CancellationToken token = new CancellationToken(id);
+        PendingTask pending = new PendingTask(token, onCancelled, lane, traceCookies.incrementAndGet());
+        PendingTask previous = pendingTasks.put(id, pending);
+        if (previous != null) {
+            previous.token.cancel();
+        }
+
+        LaneState state = lanes.get(lane);
+        TraceRecorder.beginAsync(lane.queuedTraceName, pending.traceCookie);
+        pending.future = state.executor.submit(() -> {
+            TraceRecorder.endAsync(lane.queuedTraceName, pending.traceCookie);
+            try (TraceRecorder.Section trace = TraceRecorder.section(lane.traceName)) {
+                token.throwIfCancelled();
+                task.run(token);
+                state.completed.incrementAndGet();
+            } catch (CancellationException e) {
+                state.cancelled.incrementAndGet();
+                pending.notifyCancelled();
+            } catch (Exception e) {
+                state.failed.incrementAndGet();
+                Log.e(TAG, "Erro na tarefa " + id + " (" + lane + "): " + e.getMessage(), e);
+            } finally {
+                pendingTasks.remove(id, pending);
+            }
+        });
+
+        int depth = state.executor.getQueue().size();
+        state.maxQueueDepth.accumulateAndGet(depth, Math::max);
+        return token;
+    }
+
+    public boolean cancel(String tokenId) {
+        PendingTask pending = pendingTasks.remove(tokenId);
+        if (pending == null) {
+            return false;
+        }
+        pending.token.cancel();
+
+        Future<?> future = pending.future;
+        if (future instanceof Runnable) {
+            for (LaneState state : lanes.values()) {
+                if (state.executor.remove((Runnable) future)) {
+                    TraceRecorder.endAsync(pending.lane.queuedTraceName, pending.traceCookie);
+                    state.cancelled.incrementAndGet();
+                    pending.notifyCancelled();
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    public Map<Lane, LaneMetrics> getMetrics() {
+        Map<Lane, LaneMetrics> metrics = new EnumMap<>(Lane.class);
+        for (Map.Entry<Lane, LaneState> entry : lanes.entrySet()) {
+            LaneState state = entry.getValue();
+            metrics.put(entry.getKey(), new LaneMetrics(
+                state.executor.getQueue().size(),
+                state.executor.getActiveCount(),
+                state.maxQueueDepth.get(),
+                state.completed.get(),
+                state.cancelled.get(),
+                state.failed.get()
+            ));
+        }
+        return metrics;
+    }
+}
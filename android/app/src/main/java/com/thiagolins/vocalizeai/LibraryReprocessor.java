@@ -0,0 +1,627 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Brings every recording in a directory up to date with the requested
+ * analyses (checksum, duration, waveform, quality, feature sidecar). Only
+ * master recordings are walked (see {@link #masterRecordings}); archives
+ * and derivatives next to them are not separate items. Files
+ * are spread over a {@link ForkJoinPool}; each one is decoded once and the
+ * PCM is teed to all analyses that need it.
+ *
+ * <p>Results live in an index keyed by file name, saved atomically every few
+ * seconds. A file whose size and modification time still match its entry and
+ * whose entry already has every requested analysis is skipped, so a run
+ * killed with the process picks up where the last checkpoint left it.
+ */
+public final class LibraryReprocessor {
+    private static final String TAG = "LibraryReprocessor";
+
+    public static final String CHECKSUM = "checksum";
+    public static final String DURATION = "duration";
+    public static final String WAVEFORM = "waveform";
+    public static final String QUALITY = "quality";
+    public static final String FEATURES = "features";
+    public static final Set<String> ALL_ANALYSES =
+        Collections.unmodifiableSet(new HashSet<>(Arrays.asList(CHECKSUM, DURATION, WAVEFORM, QUALITY, FEATURES)));
+
+    /** Concurrent MediaCodec decoders are a scarce resource on low-end devices. */
+    static final int MAX_PARALLELISM = 4;
+    static final int WAVEFORM_POINTS = 200;
+    private static final long CHECKPOINT_INTERVAL_MS = 2_000;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    /** In order of preference when several files share a base name. */
+    private static final String[] AUDIO_EXTENSIONS = {".m4a", ".mp4", ".aac", ".wav", ".flac"};
+    /** The 16 kHz mono copy written next to a recording for classification. */
+    private static final String DERIVATIVE_SUFFIX = "_16k.wav";
+
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    public static final class Progress {
+        public final int total;
+        public final int processed;
+        public final int skipped;
+        public final int failed;
+        public final long bytesDone;
+        public final long totalBytes;
+        public final long elapsedMs;
+        public final String currentFile;
+
+        Progress(int total, int processed, int skipped, int failed, long bytesDone, long totalBytes,
+                 long elapsedMs, String currentFile) {
+            this.total = total;
+            this.processed = processed;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.bytesDone = bytesDone;
+            this.totalBytes = totalBytes;
+            this.elapsedMs = elapsedMs;
+            this.currentFile = currentFile;
+        }
+
+        public boolean isDone() {
+            return processed + skipped + failed == total;
+        }
+    }
+
+    private final File directory;
+    private final File indexFile;
+    private final Set<String> analyses;
+    private final int parallelism;
+
+    private JSONObject index;
+    private long lastCheckpointMs;
+    private boolean dirty;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong lastProgressMs = new AtomicLong();
+    private int total;
+    private long totalBytes;
+    private long startMs;
+
+    public LibraryReprocessor(File directory, File indexFile, Set<String> analyses, int parallelism) {
+        this.directory = directory;
+        this.indexFile = indexFile;
+        this.analyses = analyses.isEmpty() ? ALL_ANALYSES : analyses;
+        this.parallelism = parallelism > 0 ? parallelism : defaultParallelism();
+    }
+
+    /** One core is left for the UI and capture threads. */
+    public static int defaultParallelism() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(MAX_PARALLELISM, cores - 1));
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Progress run(IoScheduler.CancellationToken token, ProgressListener listener) throws IOException {
+        startMs = System.currentTimeMillis();
+        index = loadIndex(indexFile);
+
+        File[] listed = directory.listFiles((dir, name) -> isAudioFile(name));
+        List<File> files = masterRecordings(listed != null ? listed : new File[0]);
+        // Largest first, so a long recording does not start last and leave the other workers idle
+        Collections.sort(files, (a, b) -> Long.compare(b.length(), a.length()));
+        total = files.size();
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        pruneIndex(files);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            if (!files.isEmpty()) {
+                pool.invoke(new FileRange(files, 0, files.size(), token, listener));
+            }
+        } finally {
+            pool.shutdownNow();
+            synchronized (this) {
+                saveIndex();
+            }
+        }
+
+        Progress done = snapshot(null);
+        if (listener != null) {
+            listener.onProgress(done);
+        }
+        return done;
+    }
+
+    /** The saved index as JSON text, or an empty object when none was written yet. */
+    public static String readIndex(File indexFile) throws IOException {
+        return loadIndex(indexFile).toString();
+    }
+
+    private final class FileRange extends RecursiveAction {
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final IoScheduler.CancellationToken token;
+        private final ProgressListener listener;
+
+        FileRange(List<File> files, int from, int to, IoScheduler.CancellationToken token, ProgressListener listener) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.token = token;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                processFile(files.get(from), token, listener);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(
+                new FileRange(files, from, mid, token, listener),
+                new FileRange(files, mid, to, token, listener));
+        }
+    }
+
+    private void processFile(File file, IoScheduler.CancellationToken token, ProgressListener listener) {
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+
+        String name = file.getName();
+        Set<String> missing = missingAnalyses(file);
+        if (missing.isEmpty()) {
+            skipped.incrementAndGet();
+            bytesDone.addAndGet(file.length());
+            report(name, listener);
+            return;
+        }
+
+        try {
+            JSONObject entry = analyze(file, missing, token);
+            record(name, entry);
+            processed.incrementAndGet();
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao reprocessar " + name + ": " + e.getMessage());
+            recordError(name, file, e);
+            failed.incrementAndGet();
+        }
+        bytesDone.addAndGet(file.length());
+        report(name, listener);
+    }
+
+    private JSONObject analyze(File file, Set<String> wanted, IoScheduler.CancellationToken token)
+            throws IOException, JSONException {
+        JSONObject entry = new JSONObject();
+
+        if (wanted.contains(CHECKSUM)) {
+            entry.put(CHECKSUM, UploadQueue.contentHash(file));
+        }
+
+        List<PcmSink> sinks = new ArrayList<>();
+        DurationSink duration = null;
+        WaveformSink waveform = null;
+        SignalQualitySink quality = null;
+        File featureFile = null;
+        File featureTmp = null;
+
+        if (wanted.contains(DURATION)) {
+            duration = new DurationSink();
+            sinks.add(duration);
+        }
+        if (wanted.contains(WAVEFORM)) {
+            waveform = new WaveformSink();
+            sinks.add(waveform);
+        }
+        if (wanted.contains(QUALITY)) {
+            quality = new SignalQualitySink();
+            sinks.add(quality);
+        }
+        if (wanted.contains(FEATURES)) {
+            featureFile = featureSidecar(file);
+            featureTmp = new File(featureFile.getPath() + ".tmp");
+            sinks.add(new FeatureSidecarSink(featureTmp));
+        }
+
+        if (!sinks.isEmpty()) {
+            try {
+                PcmDecoder.decode(file.getAbsolutePath(), new TeeSink(sinks), token);
+            } catch (IOException | RuntimeException e) {
+                if (featureTmp != null) {
+                    featureTmp.delete();
+                }
+                throw e;
+            }
+        }
+
+        if (duration != null) {
+            entry.put(DURATION, duration.getDurationMs());
+        }
+        if (waveform != null) {
+            JSONArray points = new JSONArray();
+            for (float point : waveform.getPoints(WAVEFORM_POINTS)) {
+                points.put((double) point);
+            }
+            entry.put(WAVEFORM, points);
+        }
+        if (quality != null) {
+            JSONObject q = new JSONObject();
+            q.put("noiseFloorDb", quality.getNoiseFloorDb());
+            q.put("snrDb", quality.getSnrDb());
+            q.put("peakDb", quality.getPeakDb());
+            q.put("clippingRatio", quality.getClippingRatio());
+            q.put("activeRatio", quality.getActiveRatio());
+            entry.put(QUALITY, q);
+        }
+        if (featureFile != null) {
+            if (!featureTmp.renameTo(featureFile)) {
+                featureTmp.delete();
+                throw new IOException("Não foi possível gravar " + featureFile.getName());
+            }
+            entry.put(FEATURES, featureFile.getName());
+        }
+        return entry;
+    }
+
+    /** Analyses the index does not have yet for this exact version of the file. */
+    private synchronized Set<String> missingAnalyses(File file) {
+        Set<String> missing = new HashSet<>(analyses);
+        JSONObject entry = index.optJSONObject(file.getName());
+        if (entry == null
+            || entry.optLong("size", -1) != file.length()
+            || entry.optLong("modified", -1) != file.lastModified()) {
+            return missing;
+        }
+        Iterator<String> it = missing.iterator();
+        while (it.hasNext()) {
+            String analysis = it.next();
+            if (analysis.equals(FEATURES)) {
+                if (entry.has(FEATURES) && featureSidecar(file).exists()) {
+                    it.remove();
+                }
+            } else if (entry.has(analysis)) {
+                it.remove();
+            }
+        }
+        return missing;
+    }
+
+    private synchronized void record(String name, JSONObject results) throws JSONException {
+        File file = new File(directory, name);
+        JSONObject entry = index.optJSONObject(name);
+        if (entry == null
+            || entry.optLong("size", -1) != file.length()
+            || entry.optLong("modified", -1) != file.lastModified()) {
+            entry = new JSONObject();
+        }
+        Iterator<String> keys = results.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            entry.put(key, results.get(key));
+        }
+        entry.put("size", file.length());
+        entry.put("modified", file.lastModified());
+        entry.remove("error");
+        index.put(name, entry);
+        dirty = true;
+        maybeCheckpoint();
+    }
+
+    private synchronized void recordError(String name, File file, Exception error) {
+        try {
+            JSONObject entry = index.optJSONObject(name);
+            if (entry == null) {
+                entry = new JSONObject();
+                entry.put("size", file.length());
+                entry.put("modified", file.lastModified());
+            }
+            entry.put("error", error.getMessage() != null ? error.getMessage() : error.toString());
+            index.put(name, entry);
+            dirty = true;
+            maybeCheckpoint();
+        } catch (JSONException e) {
+            Log.e(TAG, "Erro ao registrar falha de " + name + ": " + e.getMessage());
+        }
+    }
+
+    private void maybeCheckpoint() {
+        long now = System.currentTimeMillis();
+        if (now - lastCheckpointMs >= CHECKPOINT_INTERVAL_MS) {
+            saveIndex();
+            lastCheckpointMs = now;
+        }
+    }
+
+    private synchronized void pruneIndex(List<File> files) {
+        Set<String> present = new HashSet<>();
+        for (File file : files) {
+            present.add(file.getName());
+        }
+        List<String> stale = new ArrayList<>();
+        Iterator<String> keys = index.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!present.contains(key)) {
+                stale.add(key);
+            }
+        }
+        for (String key : stale) {
+            index.remove(key);
+            dirty = true;
+        }
+    }
+
+    private void report(String currentFile, ProgressListener listener) {
+        if (listener == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastProgressMs.get();
+        if (now - last >= PROGRESS_INTERVAL_MS && lastProgressMs.compareAndSet(last, now)) {
+            listener.onProgress(snapshot(currentFile));
+        }
+    }
+
+    private Progress snapshot(String currentFile) {
+        return new Progress(total, processed.get(), skipped.get(), failed.get(), bytesDone.get(), totalBytes,
+            System.currentTimeMillis() - startMs, currentFile);
+    }
+
+    private void saveIndex() {
+        if (!dirty) {
+            return;
+        }
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(index.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao salvar índice da biblioteca: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(indexFile)) {
+            Log.e(TAG, "Não foi possível substituir o índice da biblioteca");
+            tmp.delete();
+            return;
+        }
+        dirty = false;
+    }
+
+    private static JSONObject loadIndex(File indexFile) throws IOException {
+        if (!indexFile.exists()) {
+            return new JSONObject();
+        }
+        byte[] bytes = new byte[(int) indexFile.length()];
+        try (InputStream in = new FileInputStream(indexFile)) {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        }
+        try {
+            return new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            Log.e(TAG, "Índice da biblioteca corrompido, recomeçando: " + e.getMessage());
+            return new JSONObject();
+        }
+    }
+
+    static File featureSidecar(File audio) {
+        return new File(audio.getParentFile(), baseName(audio.getName()) + ".feat");
+    }
+
+    /**
+     * The recordings to analyse, one per base name: the compressed master
+     * rather than its WAV or FLAC archive, never the 16 kHz derivative, and
+     * nothing from a recording an encoder in this process is still writing.
+     * Each master then owns its base name's feature sidecar alone.
+     */
+    static List<File> masterRecordings(File[] listed) {
+        Set<String> inProgress = new HashSet<>();
+        for (File file : listed) {
+            if (AacEncoderSink.isRecording(file.getAbsolutePath())) {
+                inProgress.add(baseName(file.getName()));
+            }
+        }
+
+        Map<String, File> masters = new LinkedHashMap<>();
+        for (File file : listed) {
+            String name = file.getName();
+            String base = baseName(name);
+            if (name.toLowerCase(Locale.ROOT).endsWith(DERIVATIVE_SUFFIX) || inProgress.contains(base)) {
+                continue;
+            }
+            File current = masters.get(base);
+            if (current == null || extensionRank(name) < extensionRank(current.getName())) {
+                masters.put(base, file);
+            }
+        }
+        return new ArrayList<>(masters.values());
+    }
+
+    private static String baseName(String name) {
+        return name.replaceFirst("\\.[^./]+$", "");
+    }
+
+    private static int extensionRank(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < AUDIO_EXTENSIONS.length; i++) {
+            if (lower.endsWith(AUDIO_EXTENSIONS[i])) {
+                return i;
+            }
+        }
+        return AUDIO_EXTENSIONS.length;
+    }
+
+    private static boolean isAudioFile(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String extension : AUDIO_EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Fans each decoded buffer out to several sinks. */
+    private static final class TeeSink implements PcmSink {
+        private final List<PcmSink> sinks;
+
+        TeeSink(List<PcmSink> sinks) {
+            this.sinks = sinks;
+        }
+
+        @Override
+        public void open(int sampleRate, int channelCount) throws IOException {
+            for (PcmSink sink : sinks) {
+                sink.open(sampleRate, channelCount);
+            }
+        }
+
+        @Override
+        public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+            for (PcmSink sink : sinks) {
+                sink.write(buffer, length, presentationTimeUs);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException first = null;
+            for (PcmSink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    if (first == null) {
+                        first = e;
+                    }
+                }
+            }
+            if (first != null) {
+                throw first;
+            }
+        }
+    }
+
+    private static final class DurationSink implements PcmSink {
+        private int sampleRate;
+        private int channelCount;
+        private long samples;
+
+        @Override
+        public void open(int sampleRate, int channelCount) {
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+        }
+
+        @Override
+        public void write(short[] buffer, int length, long presentationTimeUs) {
+            samples += length;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        long getDurationMs() {
+            return sampleRate == 0 ? 0 : samples / channelCount * 1000 / sampleRate;
+        }
+    }
+
+    /**
+     * Keeps the peak of every 10 ms window, which is small enough to hold for
+     * any recording length and is reduced to a fixed number of points at the end.
+     */
+    private static final class WaveformSink implements PcmSink {
+        private short[] peaks = new short[1024];
+        private int count;
+        private int windowSamples;
+        private int fill;
+        private int peak;
+
+        @Override
+        public void open(int sampleRate, int channelCount) {
+            windowSamples = Math.max(1, sampleRate / 100 * channelCount);
+        }
+
+        @Override
+        public void write(short[] buffer, int length, long presentationTimeUs) {
+            for (int i = 0; i < length; i++) {
+                int value = Math.abs(buffer[i]);
+                if (value > peak) {
+                    peak = value;
+                }
+                if (++fill == windowSamples) {
+                    push();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (fill > 0) {
+                push();
+            }
+        }
+
+        private void push() {
+            if (count == peaks.length) {
+                peaks = Arrays.copyOf(peaks, count * 2);
+            }
+            peaks[count++] = (short) Math.min(peak, Short.MAX_VALUE);
+            peak = 0;
+            fill = 0;
+        }
+
+        /** Peak of each of {@code points} equal spans, scaled to 0..1. */
+        float[] getPoints(int points) {
+            int n = Math.min(points, count);
+            float[] result = new float[n];
+            for (int p = 0; p < n; p++) {
+                int from = (int) ((long) p * count / n);
+                int to = (int) ((long) (p + 1) * count / n);
+                int max = 0;
+                for (int i = from; i < to; i++) {
+                    max = Math.max(max, peaks[i]);
+                }
+                result[p] = max / 32767f;
+            }
+            return result;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import com.facebook.react.soloader.OpenSourceMergedSoMapping
 import com.facebook.soloader.SoLoader
 import com.thiagolins.vocalizeai.AudioRecorderPackage;
 import com.thiagolins.vocalizeai.FileOperationsPackage;
+import com.thiagolins.vocalizeai.VocalizationSuggestionPackage;
 
 import expo.modules.ApplicationLifecycleDispatcher
 import expo.modules.ReactNativeHostWrapper
@@ -29,6 +30,12 @@ class MainApplication : Application(), ReactApplication {
             // packages.add(new MyReactNativePackage());
             packages.add(AudioRecorderPackage());
             packages.add(FileOperationsPackage());
+            packages.add(VocalizationSuggestionPackage());
+            packages.add(SpectrogramPackage());
+            packages.add(AudioPlayerPoolPackage());
+            packages.add(RemoteAudioCachePackage());
+            packages.add(UploadQueuePackage());
+            packages.add(FingerprintPackage());
             return packages
           }
 
@@ -52,6 +59,17 @@ class MainApplication : Application(), ReactApplication {
       load()
     }
     ApplicationLifecycleDispatcher.onApplicationCreate(this)
+    MemoryBudget.getInstance().configure(this)
+  }
+
+  override fun onTrimMemory(level: Int) {
+    super.onTrimMemory(level)
+    MemoryBudget.getInstance().onTrimMemory(level)
+  }
+
+  override fun onLowMemory() {
+    super.onLowMemory()
+    MemoryBudget.getInstance().onLowMemory()
   }
 
   override fun onConfigurationChanged(newConfig: Configuration) {
@@ -0,0 +1,262 @@
+package com.thiagolins.vocalizeai;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide budget for native memory held by caches and buffers. Each
+ * consumer registers with a {@link Priority} and reports what it holds;
+ * {@link #onTrimMemory} (from {@code MainApplication}) asks them to shrink
+ * to a fraction of that, lowest priority first and harder as the level
+ * rises, and {@link #enforce()} trims the same way whenever the total goes
+ * over the budget. {@link Priority#CRITICAL} consumers, the active capture,
+ * are only ever reported.
+ */
+public final class MemoryBudget {
+    private static final String TAG = "MemoryBudget";
+    /** Share of the app's heap class the native caches may use together. */
+    private static final int BUDGET_DIVISOR = 8;
+    private static final int LOW_RAM_BUDGET_DIVISOR = 16;
+
+    /** Order in which consumers give memory back; lowest first. */
+    public enum Priority {
+        /** Cheap to rebuild, e.g. prepared players. */
+        LOW,
+        /** Expensive to rebuild, e.g. decoded spectrograms. */
+        NORMAL,
+        HIGH,
+        /** Needed by a recording in progress; never trimmed. */
+        CRITICAL
+    }
+
+    public interface Consumer {
+        long getMemoryBytes();
+
+        /**
+         * Releases memory until at most {@code targetBytes} are held. May
+         * complete asynchronously on the consumer's own thread.
+         */
+        void trimMemory(long targetBytes);
+    }
+
+    public static final class Usage {
+        public final String name;
+        public final Priority priority;
+        public final long bytes;
+        public final int trims;
+
+        Usage(String name, Priority priority, long bytes, int trims) {
+            this.name = name;
+            this.priority = priority;
+            this.bytes = bytes;
+            this.trims = trims;
+        }
+    }
+
+    private static final class Registration {
+        final String name;
+        final Priority priority;
+        final Consumer consumer;
+        int trims;
+
+        Registration(String name, Priority priority, Consumer consumer) {
+            this.name = name;
+            this.priority = priority;
+            this.consumer = consumer;
+        }
+    }
+
+    private static volatile MemoryBudget instance;
+
+    private final List<Registration> registrations = new ArrayList<>();
+    private volatile long budgetBytes = Long.MAX_VALUE;
+    private volatile int lastTrimLevel = -1;
+    private volatile long lastTrimAtMs;
+
+    public static MemoryBudget getInstance() {
+        if (instance == null) {
+            synchronized (MemoryBudget.class) {
+                if (instance == null) {
+                    instance = new MemoryBudget();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private MemoryBudget() {
+    }
+
+    /** Sizes the budget from the device's heap class; until then nothing is enforced. */
+    public void configure(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager.isLowRamDevice();
+        long heapClassBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        budgetBytes = heapClassBytes / (lowRam ? LOW_RAM_BUDGET_DIVISOR : BUDGET_DIVISOR);
+        Log.d(TAG, "Orçamento de memória nativa: " + budgetBytes / 1024 + " KiB" + (lowRam ? " (low RAM)" : ""));
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public int getLastTrimLevel() {
+        return lastTrimLevel;
+    }
+
+    public long getLastTrimAtMs() {
+        return lastTrimAtMs;
+    }
+
+    /** Registers {@code consumer} under {@code name}, replacing any previous one. */
+    public void register(String name, Priority priority, Consumer consumer) {
+        synchronized (registrations) {
+            unregisterLocked(name);
+            registrations.add(new Registration(name, priority, consumer));
+        }
+        enforce();
+    }
+
+    public void unregister(String name) {
+        synchronized (registrations) {
+            unregisterLocked(name);
+        }
+    }
+
+    private void unregisterLocked(String name) {
+        for (int i = registrations.size() - 1; i >= 0; i--) {
+            if (registrations.get(i).name.equals(name)) {
+                registrations.remove(i);
+            }
+        }
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (Registration registration : snapshot()) {
+            total += registration.consumer.getMemoryBytes();
+        }
+        return total;
+    }
+
+    public List<Usage> getUsage() {
+        List<Usage> usage = new ArrayList<>();
+        for (Registration registration : snapshot()) {
+            usage.add(new Usage(registration.name, registration.priority,
+                registration.consumer.getMemoryBytes(), registration.trims));
+        }
+        return usage;
+    }
+
+    /**
+     * Trims consumers lowest priority first until the total fits the budget.
+     * Consumers call this after they grow.
+     */
+    public void enforce() {
+        long budget = budgetBytes;
+        if (budget == Long.MAX_VALUE) {
+            return;
+        }
+        List<Registration> all = snapshot();
+        long total = 0;
+        for (Registration registration : all) {
+            total += registration.consumer.getMemoryBytes();
+        }
+        for (Priority priority : Priority.values()) {
+            if (total <= budget || priority == Priority.CRITICAL) {
+                break;
+            }
+            for (Registration registration : all) {
+                if (registration.priority != priority || total <= budget) {
+                    continue;
+                }
+                long held = registration.consumer.getMemoryBytes();
+                long target = Math.max(0, held - (total - budget));
+                trim(registration, target);
+                total -= held - target;
+            }
+        }
+    }
+
+    public void onTrimMemory(int level) {
+        lastTrimLevel = level;
+        lastTrimAtMs = System.currentTimeMillis();
+        long freed = 0;
+        for (Registration registration : snapshot()) {
+            double fraction = retainedFraction(registration.priority, level);
+            if (fraction >= 1) {
+                continue;
+            }
+            long held = registration.consumer.getMemoryBytes();
+            long target = (long) (held * fraction);
+            if (target < held) {
+                trim(registration, target);
+                freed += held - target;
+            }
+        }
+        Log.i(TAG, "onTrimMemory(" + level + "): ~" + freed / 1024 + " KiB liberados");
+    }
+
+    public void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * Share of its current memory a consumer keeps at a trim level. The
+     * RUNNING_* levels arrive while the recorder's foreground service is
+     * alive and are taken as seriously as the background level one step
+     * above them, since losing the process there means losing a recording.
+     */
+    static double retainedFraction(Priority priority, int level) {
+        if (priority == Priority.CRITICAL) {
+            return 1;
+        }
+        int severity;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            severity = 4;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            severity = 3;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            severity = 2;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            severity = 1;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            severity = 3;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            severity = 2;
+        } else {
+            severity = 1;
+        }
+
+        // Rows: severity 1..4; columns: LOW, NORMAL, HIGH
+        double[][] table = {
+            {0.5, 1, 1},
+            {0, 0.5, 1},
+            {0, 0, 0.5},
+            {0, 0, 0},
+        };
+        return table[severity - 1][priority.ordinal()];
+    }
+
+    private void trim(Registration registration, long targetBytes) {
+        try {
+            registration.consumer.trimMemory(targetBytes);
+            synchronized (registrations) {
+                registration.trims++;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao reduzir " + registration.name + ": " + e.getMessage());
+        }
+    }
+
+    private List<Registration> snapshot() {
+        synchronized (registrations) {
+            return new ArrayList<>(registrations);
+        }
+    }
+}
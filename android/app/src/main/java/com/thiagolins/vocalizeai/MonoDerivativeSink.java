@@ -0,0 +1,125 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.IOException;
+
+/**
+ * Derives a mono, lower-rate copy of the capture for analysis pipelines that
+ * would otherwise have to download and decode the master again. Channels are
+ * averaged, resampled by a {@link PolyphaseResampler} and handed to
+ * {@code downstream} in fixed blocks, so the master and the copy come from
+ * the same samples. Time spent here, downstream writes included, is kept so
+ * the extra cost of the copy can be reported per recording.
+ */
+public class MonoDerivativeSink implements PcmSink {
+    private static final int BLOCK_FRAMES = 4096;
+
+    private final PcmSink downstream;
+    private final int targetRate;
+
+    private PolyphaseResampler resampler;
+    private int inputRate;
+    private int channelCount;
+    private final float[] mono = new float[BLOCK_FRAMES];
+    private float[] resampled;
+    private short[] output;
+
+    private long inputFrames;
+    private long outputFrames;
+    private long processNs;
+
+    public MonoDerivativeSink(PcmSink downstream, int targetRate) {
+        this.downstream = downstream;
+        this.targetRate = targetRate;
+    }
+
+    public PcmSink getDownstream() {
+        return downstream;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    public long getOutputFrames() {
+        return outputFrames;
+    }
+
+    public long getDurationMs() {
+        return outputFrames * 1000L / targetRate;
+    }
+
+    /** Downmix, resampling and downstream writes, in nanoseconds. */
+    public long getProcessNs() {
+        return processNs;
+    }
+
+    /** Fraction of one core spent per second of captured audio. */
+    public double getCpuLoad() {
+        if (inputFrames == 0) {
+            return 0;
+        }
+        double audioNs = inputFrames * 1_000_000_000.0 / inputRate;
+        return processNs / audioNs;
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) throws IOException {
+        this.inputRate = sampleRate;
+        this.channelCount = channelCount;
+        resampler = new PolyphaseResampler(sampleRate, targetRate);
+        int capacity = (int) resampler.outputLength(Math.max(BLOCK_FRAMES, resampler.getDelay())) + 1;
+        resampled = new float[capacity];
+        output = new short[capacity];
+        inputFrames = 0;
+        outputFrames = 0;
+        processNs = 0;
+        downstream.open(targetRate, 1);
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+        long start = System.nanoTime();
+        int frames = length / channelCount;
+        float scale = 1f / channelCount;
+        for (int offset = 0; offset < frames; offset += BLOCK_FRAMES) {
+            int count = Math.min(BLOCK_FRAMES, frames - offset);
+            int base = offset * channelCount;
+            for (int i = 0; i < count; i++) {
+                int sum = 0;
+                for (int ch = 0; ch < channelCount; ch++) {
+                    sum += buffer[base + i * channelCount + ch];
+                }
+                mono[i] = sum * scale;
+            }
+            emit(resampler.process(mono, 0, count, resampled, 0), presentationTimeUs);
+        }
+        inputFrames += frames;
+        processNs += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (resampler != null) {
+                long start = System.nanoTime();
+                emit(resampler.flush(resampled, 0), inputFrames * 1_000_000L / inputRate);
+                processNs += System.nanoTime() - start;
+            }
+        } finally {
+            downstream.close();
+        }
+    }
+
+    private void emit(int count, long presentationTimeUs) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            float value = resampled[i];
+            // The filter can overshoot full scale on clipped input
+            output[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        }
+        downstream.write(output, count, presentationTimeUs);
+        outputFrames += count;
+    }
+}
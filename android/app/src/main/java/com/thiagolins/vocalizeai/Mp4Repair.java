@@ -0,0 +1,314 @@
+package com.thiagolins.vocalizeai;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds a playable MP4 from a recording whose muxer never wrote its moov
+ * (process killed mid-recording, {@code MediaMuxer.stop()} failed). The
+ * mdat still holds every access unit flushed to disk, but raw AAC frames are
+ * not self-delimiting, so their sizes come from the journal
+ * {@link AacEncoderSink} keeps next to the file. The frames are copied one at
+ * a time into a new muxer, which writes the sample table and moov; memory use
+ * does not depend on the recording length.
+ */
+public final class Mp4Repair {
+    static final String JOURNAL_MAGIC = "VFRM";
+    static final int JOURNAL_VERSION = 1;
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+    /** Largest legal AAC-LC access unit is 6144 bits per channel. */
+    private static final int MAX_FRAME_BYTES = 768 * 8;
+
+    public static final class Result {
+        public final File file;
+        public final int frames;
+        public final long durationMs;
+        public final long recoveredBytes;
+        public final long droppedBytes;
+
+        Result(File file, int frames, long durationMs, long recoveredBytes, long droppedBytes) {
+            this.file = file;
+            this.frames = frames;
+            this.durationMs = durationMs;
+            this.recoveredBytes = recoveredBytes;
+            this.droppedBytes = droppedBytes;
+        }
+    }
+
+    /** Encoder settings as recorded at the head of a journal. */
+    static final class JournalHeader {
+        final int sampleRate;
+        final int channelCount;
+        final int bitRate;
+        final byte[] csd;
+
+        JournalHeader(int sampleRate, int channelCount, int bitRate, byte[] csd) {
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            this.bitRate = bitRate;
+            this.csd = csd;
+        }
+    }
+
+    private Mp4Repair() {
+    }
+
+    public static File journalFor(File recording) {
+        return new File(recording.getParentFile(), recording.getName().replaceFirst("\\.[^./]+$", "") + ".frames");
+    }
+
+    /** True when the file has a journal, no moov and is not being recorded right now. */
+    public static boolean needsRepair(File recording) throws IOException {
+        if (!recording.exists() || !journalFor(recording).exists()
+            || AacEncoderSink.isRecording(recording.getAbsolutePath())) {
+            return false;
+        }
+        return scanBoxes(recording).moovOffset < 0;
+    }
+
+    /** Recordings in {@code dir} left without a moov by a session that never finished. */
+    public static List<File> findUnfinalized(File dir) throws IOException {
+        List<File> result = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".m4a"));
+        if (files != null) {
+            for (File file : files) {
+                if (needsRepair(file)) {
+                    result.add(file);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Repairs {@code recording} through a temporary file that replaces it only
+     * once the new moov has been written; the journal is deleted afterwards.
+     */
+    public static Result repairInPlace(File recording, IoScheduler.CancellationToken token) throws IOException {
+        File tmp = new File(recording.getParentFile(), recording.getName() + ".repair");
+        try {
+            Result result = repair(recording, tmp, token);
+            if (!tmp.renameTo(recording)) {
+                throw new IOException("Não foi possível substituir " + recording.getName());
+            }
+            journalFor(recording).delete();
+            return new Result(recording, result.frames, result.durationMs, result.recoveredBytes, result.droppedBytes);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    public static Result repair(File source, File dest, IoScheduler.CancellationToken token) throws IOException {
+        if (AacEncoderSink.isRecording(source.getAbsolutePath())) {
+            throw new IOException("Arquivo ainda está sendo gravado");
+        }
+        File journal = journalFor(source);
+        if (!journal.exists()) {
+            throw new IOException("Sem diário de quadros para " + source.getName() + "; o arquivo não pode ser reconstruído");
+        }
+
+        Boxes boxes = scanBoxes(source);
+        if (boxes.moovOffset >= 0) {
+            throw new IOException("Arquivo já está finalizado");
+        }
+        if (boxes.mdatPayload < 0) {
+            throw new IOException("Nenhum mdat em " + source.getName());
+        }
+
+        MediaMuxer muxer = null;
+        boolean started = false;
+        boolean stopped = false;
+        try (DataInputStream frames = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+             InputStream data = new BufferedInputStream(new FileInputStream(source), IO_BUFFER_BYTES)) {
+            JournalHeader header = readHeader(frames);
+            skipFully(data, boxes.mdatPayload);
+
+            muxer = new MediaMuxer(dest.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            int track = muxer.addTrack(formatFor(header));
+            muxer.start();
+            started = true;
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            ByteBuffer sample = ByteBuffer.allocateDirect(MAX_FRAME_BYTES);
+            byte[] bytes = new byte[MAX_FRAME_BYTES];
+            long available = boxes.mdatEnd - boxes.mdatPayload;
+            long consumed = 0;
+            int count = 0;
+
+            while (true) {
+                int size;
+                try {
+                    size = frames.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                // A torn journal tail, or frames the muxer still held in memory when the process died
+                if (size <= 0 || size > MAX_FRAME_BYTES || consumed + size > available) {
+                    break;
+                }
+                if ((count & 255) == 0 && token != null) {
+                    token.throwIfCancelled();
+                }
+
+                readFully(data, bytes, size);
+                sample.clear();
+                sample.put(bytes, 0, size);
+                sample.flip();
+                info.set(0, size, (long) count * AAC_FRAME_SAMPLES * 1_000_000L / header.sampleRate, 0);
+                muxer.writeSampleData(track, sample, info);
+                consumed += size;
+                count++;
+            }
+
+            if (count == 0) {
+                throw new IOException("Nenhum quadro de áudio recuperável em " + source.getName());
+            }
+            muxer.stop();
+            stopped = true;
+
+            long durationMs = (long) count * AAC_FRAME_SAMPLES * 1000L / header.sampleRate;
+            return new Result(dest, count, durationMs, consumed, available - consumed);
+        } finally {
+            if (muxer != null) {
+                if (started && !stopped) {
+                    try {
+                        muxer.stop();
+                    } catch (Exception ignored) {
+                    }
+                }
+                muxer.release();
+            }
+            if (!stopped) {
+                dest.delete();
+            }
+        }
+    }
+
+    static JournalHeader readHeader(DataInputStream in) throws IOException {
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        if (!JOURNAL_MAGIC.equals(new String(magic, StandardCharsets.US_ASCII))) {
+            throw new IOException("Diário de quadros inválido");
+        }
+        int version = in.readInt();
+        if (version != JOURNAL_VERSION) {
+            throw new IOException("Versão de diário não suportada: " + version);
+        }
+        int sampleRate = in.readInt();
+        int channelCount = in.readInt();
+        int bitRate = in.readInt();
+        byte[] csd = new byte[in.readUnsignedShort()];
+        in.readFully(csd);
+        return new JournalHeader(sampleRate, channelCount, bitRate, csd);
+    }
+
+    private static MediaFormat formatFor(JournalHeader header) {
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, header.sampleRate, header.channelCount);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, header.bitRate);
+        byte[] csd = header.csd.length > 0 ? header.csd : audioSpecificConfig(header.sampleRate, header.channelCount);
+        format.setByteBuffer("csd-0", ByteBuffer.wrap(csd));
+        return format;
+    }
+
+    /** AAC-LC AudioSpecificConfig for the encoder settings, for journals without the codec config. */
+    static byte[] audioSpecificConfig(int sampleRate, int channelCount) {
+        int[] rates = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+        int index = -1;
+        for (int i = 0; i < rates.length; i++) {
+            if (rates[i] == sampleRate) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            throw new IllegalArgumentException("Taxa de amostragem sem índice AAC: " + sampleRate);
+        }
+        int config = (2 << 11) | (index << 7) | (channelCount << 3);
+        return new byte[] {(byte) (config >> 8), (byte) config};
+    }
+
+    private static final class Boxes {
+        long mdatPayload = -1;
+        long mdatEnd = -1;
+        long moovOffset = -1;
+    }
+
+    /**
+     * Walks the top-level boxes. An mdat whose size was never patched (the
+     * muxer writes a placeholder until stop) is taken to run to end of file.
+     */
+    private static Boxes scanBoxes(File file) throws IOException {
+        Boxes boxes = new Boxes();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            long offset = 0;
+            byte[] type = new byte[4];
+            while (offset + 8 <= length) {
+                raf.seek(offset);
+                long size = raf.readInt() & 0xFFFFFFFFL;
+                raf.readFully(type);
+                String name = new String(type, StandardCharsets.US_ASCII);
+                int headerSize = 8;
+                if (size == 1) {
+                    if (offset + 16 > length) {
+                        break;
+                    }
+                    size = raf.readLong();
+                    headerSize = 16;
+                }
+                boolean unbounded = size == 0 || size < headerSize || offset + size > length;
+
+                if (name.equals("moov")) {
+                    boxes.moovOffset = offset;
+                } else if (name.equals("mdat") && boxes.mdatPayload < 0) {
+                    boxes.mdatPayload = offset + headerSize;
+                    boxes.mdatEnd = unbounded ? length : offset + size;
+                }
+                if (unbounded) {
+                    break;
+                }
+                offset += size;
+            }
+        }
+        return boxes;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.thiagolins.vocalizeai;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Streams a compressed audio file through MediaCodec and hands the decoded
+ * PCM to a {@link PcmSink} one output buffer at a time, so memory use does
+ * not depend on the file length.
+ */
+public final class PcmDecoder {
+    private static final long TIMEOUT_US = 10_000;
+
+    private PcmDecoder() {
+    }
+
+    public static void decode(String path, PcmSink sink, IoScheduler.CancellationToken token) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        boolean sinkOpened = false;
+
+        try {
+            extractor.setDataSource(path);
+            MediaFormat inputFormat = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat candidate = extractor.getTrackFormat(i);
+                String mime = candidate.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    inputFormat = candidate;
+                    break;
+                }
+            }
+            if (inputFormat == null) {
+                throw new IOException("Nenhuma faixa de áudio em " + path);
+            }
+
+            codec = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            codec.configure(inputFormat, null, null, 0);
+            codec.start();
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            short[] pcm = new short[8192];
+            boolean inputDone = false;
+            boolean outputDone = false;
+
+            while (!outputDone) {
+                if (token != null) {
+                    token.throwIfCancelled();
+                }
+
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inputIndex);
+                        int size = extractor.readSampleData(input, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    if (!sinkOpened) {
+                        MediaFormat outputFormat = codec.getOutputFormat();
+                        sink.open(
+                            outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                            outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+                        );
+                        sinkOpened = true;
+                    }
+                } else if (outputIndex >= 0) {
+                    if (!sinkOpened) {
+                        sink.open(
+                            inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                            inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+                        );
+                        sinkOpened = true;
+                    }
+
+                    ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                    if (output != null && info.size > 0) {
+                        output.position(info.offset);
+                        output.limit(info.offset + info.size);
+                        ShortBuffer samples = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                        int count = samples.remaining();
+                        if (count > pcm.length) {
+                            pcm = new short[count];
+                        }
+                        samples.get(pcm, 0, count);
+                        codec.releaseOutputBuffer(outputIndex, false);
+                        sink.write(pcm, count, info.presentationTimeUs);
+                    } else {
+                        codec.releaseOutputBuffer(outputIndex, false);
+                    }
+
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        outputDone = true;
+                    }
+                }
+            }
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (Exception ignored) {
+                }
+                codec.release();
+            }
+            extractor.release();
+            if (sinkOpened) {
+                sink.close();
+            }
+        }
+    }
+}
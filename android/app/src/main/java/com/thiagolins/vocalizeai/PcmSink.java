@@ -0,0 +1,15 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.IOException;
+
+public interface PcmSink {
+    void open(int sampleRate, int channelCount) throws IOException;
+
+    /**
+     * Receives interleaved 16-bit samples. The buffer is reused by the caller
+     * as soon as this returns, so implementations must copy what they keep.
+     */
+    void write(short[] buffer, int length, long presentationTimeUs) throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,188 @@
+package com.thiagolins.vocalizeai;
+
+/**
+ * Streaming rational-ratio sample rate converter for one channel. The rate
+ * ratio is reduced to L/M; a Kaiser-windowed sinc prototype designed at L
+ * times the input rate is split into L phases, and each output sample is one
+ * dot product of a phase against the newest input samples, so nothing is
+ * ever computed at the upsampled rate. 44.1 kHz to 16 kHz is 160/441.
+ *
+ * <p>The passband runs to 87.5% of the lower Nyquist frequency and the
+ * stopband starts where its alias would fold back onto the passband edge,
+ * so whatever leaks through the transition band lands above the passband.
+ * Stopband attenuation is {@link #STOPBAND_DB}.
+ */
+public final class PolyphaseResampler {
+    static final double STOPBAND_DB = 90;
+    static final double PASSBAND_FRACTION = 0.875;
+
+    private final int upFactor;
+    private final int downFactor;
+    private final int taps;
+    /** Phase-major, each phase reversed so it runs oldest sample first. */
+    private final float[] coefficients;
+    /** Every sample is written twice so the newest {@code taps} are always contiguous. */
+    private final float[] history;
+    private int cursor;
+    private int phase;
+    private int skip;
+
+    public PolyphaseResampler(int inputRate, int outputRate) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Taxas de amostragem inválidas: " + inputRate + " -> " + outputRate);
+        }
+        int divisor = gcd(inputRate, outputRate);
+        upFactor = outputRate / divisor;
+        downFactor = inputRate / divisor;
+
+        double nyquist = Math.min(inputRate, outputRate) / 2.0;
+        double passband = nyquist * PASSBAND_FRACTION;
+        double transition = 2 * (nyquist - passband);
+        // Kaiser's estimate of the length at the input rate, which is the length of each phase
+        int length = (int) Math.ceil((STOPBAND_DB - 8) / (2.285 * 2 * Math.PI * transition / inputRate));
+        taps = length + (length & 1);
+
+        coefficients = design(upFactor, taps, nyquist / ((double) inputRate * upFactor));
+        history = new float[taps * 2];
+        reset();
+    }
+
+    public int getUpFactor() {
+        return upFactor;
+    }
+
+    public int getDownFactor() {
+        return downFactor;
+    }
+
+    public int getTaps() {
+        return taps;
+    }
+
+    /** Input samples of delay through the filter. */
+    public int getDelay() {
+        return taps / 2;
+    }
+
+    /** Output samples {@code inputSamples} inputs will produce, flush included. */
+    public long outputLength(long inputSamples) {
+        return (inputSamples * upFactor + downFactor - 1) / downFactor;
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(history, 0);
+        cursor = 0;
+        phase = 0;
+        // Starts as if half the filter had already seen silence, so the first
+        // outputs line up with the first inputs instead of lagging by the delay
+        skip = getDelay();
+    }
+
+    /**
+     * Consumes {@code length} samples and writes the outputs they complete
+     * into {@code out} from {@code outOffset}; returns how many were written.
+     * {@code out} needs room for {@code length * L / M + 1} samples.
+     */
+    public int process(float[] in, int offset, int length, float[] out, int outOffset) {
+        int produced = outOffset;
+        for (int n = offset; n < offset + length; n++) {
+            float sample = in[n];
+            history[cursor] = sample;
+            history[cursor + taps] = sample;
+            cursor++;
+            if (cursor == taps) {
+                cursor = 0;
+            }
+
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            while (skip == 0) {
+                out[produced++] = dot(phase);
+                phase += downFactor;
+                skip = phase / upFactor;
+                phase -= skip * upFactor;
+            }
+            skip--;
+        }
+        return produced - outOffset;
+    }
+
+    /** Pushes the delay's worth of silence so the last inputs come out. */
+    public int flush(float[] out, int outOffset) {
+        float[] silence = new float[getDelay()];
+        return process(silence, 0, silence.length, out, outOffset);
+    }
+
+    private float dot(int p) {
+        float[] h = coefficients;
+        float[] x = history;
+        int base = p * taps;
+        int start = cursor;
+        float sum = 0;
+        for (int k = 0; k < taps; k++) {
+            sum += h[base + k] * x[start + k];
+        }
+        return sum;
+    }
+
+    /**
+     * Windowed-sinc prototype of {@code phases * taps} coefficients with its
+     * cutoff at {@code cutoff} cycles per upsampled sample, split into phases
+     * that are each normalized to unity DC gain so a constant input has no
+     * ripple at the output.
+     */
+    static float[] design(int phases, int taps, double cutoff) {
+        int length = phases * taps;
+        double center = (length - 1) / 2.0;
+        double beta = 0.1102 * (STOPBAND_DB - 8.7);
+        double i0Beta = besselI0(beta);
+
+        double[] prototype = new double[length];
+        for (int m = 0; m < length; m++) {
+            double t = m - center;
+            double x = 2 * cutoff * t;
+            double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+            double r = t / center;
+            double window = besselI0(beta * Math.sqrt(Math.max(0, 1 - r * r))) / i0Beta;
+            prototype[m] = 2 * cutoff * sinc * window;
+        }
+
+        float[] coefficients = new float[length];
+        for (int p = 0; p < phases; p++) {
+            double sum = 0;
+            for (int j = 0; j < taps; j++) {
+                sum += prototype[p + j * phases];
+            }
+            for (int k = 0; k < taps; k++) {
+                coefficients[p * taps + k] = (float) (prototype[p + (taps - 1 - k) * phases] / sum);
+            }
+        }
+        return coefficients;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= half / k;
+            double squared = term * term;
+            sum += squared;
+            if (squared < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
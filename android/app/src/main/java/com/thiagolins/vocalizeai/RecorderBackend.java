@@ -0,0 +1,59 @@
+package com.thiagolins.vocalizeai;
+
+import android.media.MediaMetadataRetriever;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Platform pieces the recorder service is built on: the microphone, the
+ * AAC encoder and the probe that checks a finished file plays. Devices use
+ * {@link #PLATFORM}; the JVM latency harness installs fakes so the real
+ * module and service can run without audio hardware.
+ */
+public abstract class RecorderBackend {
+    public static final RecorderBackend PLATFORM = new RecorderBackend() {
+        @Override
+        public CapturePipeline.AudioInput openInput(int sampleRate, int channelCount, int batchFrames) throws IOException {
+            return AudioRecordInput.open(sampleRate, channelCount, batchFrames);
+        }
+
+        @Override
+        public AacEncoderSink newEncoder(String outputPath, int bitRate) {
+            return new AacEncoderSink(outputPath, bitRate);
+        }
+
+        @Override
+        public long probeDurationMs(File file) throws IOException {
+            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+            try {
+                retriever.setDataSource(file.getAbsolutePath());
+                String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+                return duration != null ? Long.parseLong(duration) : 0;
+            } catch (RuntimeException e) {
+                throw new IOException(e.getMessage());
+            } finally {
+                retriever.release();
+            }
+        }
+    };
+
+    private static volatile RecorderBackend current = PLATFORM;
+
+    public static RecorderBackend get() {
+        return current;
+    }
+
+    /** Replaces the backend for every recorder started afterwards; tests only. */
+    static void set(RecorderBackend backend) {
+        current = backend != null ? backend : PLATFORM;
+    }
+
+    /** Opens and starts capture; reads deliver {@code batchFrames} frames at a time. */
+    public abstract CapturePipeline.AudioInput openInput(int sampleRate, int channelCount, int batchFrames) throws IOException;
+
+    public abstract AacEncoderSink newEncoder(String outputPath, int bitRate);
+
+    /** Duration a player would report for {@code file}, or 0 if it has none. */
+    public abstract long probeDurationMs(File file) throws IOException;
+}
@@ -0,0 +1,222 @@
+package com.thiagolins.vocalizeai;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only journal of recorder events, one JSON line per event with a
+ * sequence number, so a reloaded JS context can replay what it missed.
+ * The recorder service appends each event before broadcasting it; the
+ * module only reads it back for {@code replaySince}.
+ * Each append is written straight to the file, so it survives the process.
+ * Once the journal grows past {@link #COMPACT_AFTER_ENTRIES} it is rewritten
+ * with the most recent entries younger than {@link #MAX_AGE_MS}; the last
+ * entry is always kept so sequence numbers never restart.
+ */
+public class RecorderEventJournal {
+    private static final String TAG = "RecorderEventJournal";
+    private static final int COMPACT_AFTER_ENTRIES = 256;
+    private static final int KEEP_ENTRIES = 64;
+    private static final long MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static RecorderEventJournal instance;
+
+    public static final class Entry {
+        public final long seq;
+        public final String event;
+        public final long timestamp;
+        public final JSONObject payload;
+
+        Entry(long seq, String event, long timestamp, JSONObject payload) {
+            this.seq = seq;
+            this.event = event;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    private boolean loaded = false;
+    private long lastSeq = 0;
+    private int entryCount = 0;
+
+    public static synchronized RecorderEventJournal getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecorderEventJournal(
+                new File(context.getApplicationContext().getFilesDir(), "recorder-events.jsonl"));
+        }
+        return instance;
+    }
+
+    RecorderEventJournal(File file) {
+        this.file = file;
+    }
+
+    /** Appends an event and returns its sequence number. */
+    public synchronized long append(String event, Map<String, Object> payload) {
+        load();
+        long seq = ++lastSeq;
+        try {
+            JSONObject line = new JSONObject();
+            line.put("seq", seq);
+            line.put("event", event);
+            line.put("time", System.currentTimeMillis());
+            line.put("payload", new JSONObject(payload));
+
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write((line.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            entryCount++;
+        } catch (JSONException | IOException e) {
+            Log.e(TAG, "Erro ao registrar evento " + event + ": " + e.getMessage());
+        }
+
+        if (entryCount > COMPACT_AFTER_ENTRIES) {
+            compact();
+        }
+        return seq;
+    }
+
+    /** Entries with a sequence number greater than {@code seq}, oldest first. */
+    public synchronized List<Entry> readSince(long seq) {
+        load();
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : readAll()) {
+            if (entry.seq > seq) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public synchronized long getLastSeq() {
+        load();
+        return lastSeq;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        List<Entry> entries = readAll();
+        entryCount = entries.size();
+        lastSeq = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).seq;
+        loaded = true;
+    }
+
+    private List<Entry> readAll() {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.exists()) {
+            return entries;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    JSONObject json = new JSONObject(line);
+                    entries.add(new Entry(
+                        json.getLong("seq"),
+                        json.getString("event"),
+                        json.optLong("time", 0),
+                        json.optJSONObject("payload")));
+                } catch (JSONException e) {
+                    // A line cut short by the process dying mid-write.
+                    Log.w(TAG, "Linha inválida ignorada no diário de eventos");
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao ler diário de eventos: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    private void compact() {
+        List<Entry> entries = readAll();
+        long cutoff = System.currentTimeMillis() - MAX_AGE_MS;
+        int from = Math.max(0, entries.size() - KEEP_ENTRIES);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        int kept = 0;
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            for (int i = from; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                boolean last = i == entries.size() - 1;
+                if (entry.timestamp < cutoff && !last) {
+                    continue;
+                }
+                JSONObject line = new JSONObject();
+                line.put("seq", entry.seq);
+                line.put("event", entry.event);
+                line.put("time", entry.timestamp);
+                line.put("payload", entry.payload != null ? entry.payload : new JSONObject());
+                out.write((line.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+                kept++;
+            }
+        } catch (JSONException | IOException e) {
+            Log.e(TAG, "Erro ao compactar diário de eventos: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Não foi possível substituir o diário de eventos");
+            tmp.delete();
+            return;
+        }
+        Log.d(TAG, "Diário compactado: " + entries.size() + " -> " + kept + " eventos");
+        entryCount = kept;
+    }
+
+    /** Converts a journaled payload back into plain maps and lists for the bridge. */
+    public static Map<String, Object> toMap(JSONObject json) throws JSONException {
+        Map<String, Object> map = new HashMap<>();
+        if (json == null) {
+            return map;
+        }
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, unwrap(json.get(key)));
+        }
+        return map;
+    }
+
+    private static Object unwrap(Object value) throws JSONException {
+        if (value == JSONObject.NULL) {
+            return null;
+        }
+        if (value instanceof JSONObject) {
+            return toMap((JSONObject) value);
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                list.add(unwrap(array.get(i)));
+            }
+            return list;
+        }
+        return value;
+    }
+}
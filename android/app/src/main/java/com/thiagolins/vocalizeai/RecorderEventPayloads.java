@@ -0,0 +1,181 @@
+package com.thiagolins.vocalizeai;
+
+import android.content.Context;
+import android.content.Intent;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JS payloads of the recorder events JS must not miss, built from the
+ * service broadcast that carries them. The service journals the payload
+ * before broadcasting, so the event is on disk even when no module is
+ * listening; the module builds the same payload from the broadcast it
+ * receives, so a live event and its replay look alike.
+ */
+public final class RecorderEventPayloads {
+    public static final String COMPLETED = "onRecordingComplete";
+    public static final String PART_COMPLETED = "onRecordingPartComplete";
+    public static final String ERROR = "onRecordingError";
+
+    /** Sequence number of a journaled event, on the broadcast that carries it. */
+    public static final String EXTRA_SEQ = "com.thiagolins.vocalizeai.EVENT_SEQ";
+
+    private RecorderEventPayloads() {
+    }
+
+    /**
+     * Journals the payload of {@code intent} as {@code event} and tags the
+     * intent with its sequence number. Returns the sequence number.
+     */
+    public static long journal(Context context, String event, Intent intent) {
+        long seq = RecorderEventJournal.getInstance(context).append(event, payloadOf(event, intent));
+        intent.putExtra(EXTRA_SEQ, seq);
+        return seq;
+    }
+
+    public static Map<String, Object> payloadOf(String event, Intent intent) {
+        switch (event) {
+            case COMPLETED:
+                return completed(intent);
+            case PART_COMPLETED:
+                return partCompleted(intent);
+            default:
+                return error(intent);
+        }
+    }
+
+    public static Map<String, Object> completed(Intent intent) {
+        Map<String, Object> params = new HashMap<>();
+        long duration = intent.getLongExtra("duration", 0);
+        params.put("outputFile", fileUrl(intent.getStringExtra("outputFile")));
+        params.put("duration", (double) duration);
+        params.put("startLatencyMs", intent.getDoubleExtra("startLatencyMs", -1));
+        params.put("warmStart", intent.getBooleanExtra("warmStart", false));
+
+        String archiveFile = intent.getStringExtra("archiveFile");
+        if (archiveFile != null) {
+            params.put("archiveFile", fileUrl(archiveFile));
+        }
+
+        String featureFile = intent.getStringExtra("featureFile");
+        if (featureFile != null) {
+            Map<String, Object> features = new HashMap<>();
+            features.put("file", fileUrl(featureFile));
+            features.put("frames", intent.getIntExtra("featureFrames", 0));
+            features.put("avgFrameUs", intent.getDoubleExtra("featureAvgFrameUs", 0));
+            features.put("maxFrameUs", intent.getDoubleExtra("featureMaxFrameUs", 0));
+            features.put("realtimeFactor", intent.getDoubleExtra("featureRealtimeFactor", 0));
+            params.put("features", features);
+        }
+
+        String flacFile = intent.getStringExtra("flacFile");
+        if (flacFile != null) {
+            Map<String, Object> flac = new HashMap<>();
+            flac.put("file", fileUrl(flacFile));
+            flac.put("bytes", (double) intent.getLongExtra("flacBytes", 0));
+            flac.put("compressionRatio", intent.getDoubleExtra("flacCompressionRatio", 0));
+            flac.put("realtimeFactor", intent.getDoubleExtra("flacRealtimeFactor", 0));
+            params.put("flac", flac);
+        }
+
+        String mlDerivativeFile = intent.getStringExtra("mlDerivativeFile");
+        if (mlDerivativeFile != null) {
+            Map<String, Object> derivative = new HashMap<>();
+            derivative.put("file", fileUrl(mlDerivativeFile));
+            derivative.put("sampleRate", intent.getIntExtra("mlDerivativeSampleRate", 0));
+            derivative.put("channels", 1);
+            derivative.put("durationMs", (double) intent.getLongExtra("mlDerivativeDurationMs", 0));
+            derivative.put("processMs", intent.getLongExtra("mlDerivativeProcessNs", 0) / 1_000_000.0);
+            derivative.put("cpuLoad", intent.getDoubleExtra("mlDerivativeCpuLoad", 0));
+            params.put("mlDerivative", derivative);
+        }
+
+        long captureWakeups = intent.getLongExtra("captureWakeups", 0);
+        long timerWakeups = intent.getLongExtra("timerWakeups", 0);
+        Map<String, Object> power = new HashMap<>();
+        power.put("lowPower", intent.getBooleanExtra("lowPower", false));
+        power.put("readBatchMs", intent.getIntExtra("readBatchMs", 0));
+        power.put("captureWakeups", (double) captureWakeups);
+        power.put("timerWakeups", (double) timerWakeups);
+        power.put("wakeLockHeldMs", (double) intent.getLongExtra("wakeLockHeldMs", 0));
+        if (duration > 0) {
+            power.put("wakeupsPerMinute", (captureWakeups + timerWakeups) * 60.0 / duration);
+        }
+        params.put("power", power);
+
+        String[] qualityWarnings = intent.getStringArrayExtra("qualityWarnings");
+        if (qualityWarnings != null) {
+            Map<String, Object> quality = new HashMap<>();
+            quality.put("noiseFloorDb", intent.getDoubleExtra("qualityNoiseFloorDb", 0));
+            quality.put("signalDb", intent.getDoubleExtra("qualitySignalDb", 0));
+            quality.put("snrDb", intent.getDoubleExtra("qualitySnrDb", 0));
+            quality.put("clippingRatio", intent.getDoubleExtra("qualityClippingRatio", 0));
+            quality.put("activeRatio", intent.getDoubleExtra("qualityActiveRatio", 0));
+            quality.put("peakDb", intent.getDoubleExtra("qualityPeakDb", 0));
+            quality.put("dcOffset", intent.getDoubleExtra("qualityDcOffset", 0));
+            List<Object> warnings = new ArrayList<>();
+            for (String warning : qualityWarnings) {
+                warnings.add(warning);
+            }
+            quality.put("warnings", warnings);
+            params.put("quality", quality);
+        }
+
+        String[] dspStages = intent.getStringArrayExtra("dspStages");
+        double[] dspStageAvgNs = intent.getDoubleArrayExtra("dspStageAvgNs");
+        long[] dspStageMaxNs = intent.getLongArrayExtra("dspStageMaxNs");
+        if (dspStages != null && dspStageAvgNs != null && dspStageMaxNs != null) {
+            List<Object> stages = new ArrayList<>();
+            for (int i = 0; i < dspStages.length; i++) {
+                Map<String, Object> stage = new HashMap<>();
+                stage.put("name", dspStages[i]);
+                stage.put("avgNsPerBuffer", dspStageAvgNs[i]);
+                stage.put("maxNsPerBuffer", (double) dspStageMaxNs[i]);
+                stages.add(stage);
+            }
+            Map<String, Object> dsp = new HashMap<>();
+            dsp.put("stages", stages);
+            dsp.put("bypassed", intent.getBooleanExtra("dspBypassed", false));
+            dsp.put("load", intent.getDoubleExtra("dspLoad", 0));
+            params.put("dsp", dsp);
+        }
+
+        String[] parts = intent.getStringArrayExtra("parts");
+        long[] partDurationsMs = intent.getLongArrayExtra("partDurationsMs");
+        if (parts != null && partDurationsMs != null) {
+            List<Object> partList = new ArrayList<>();
+            for (int i = 0; i < parts.length; i++) {
+                Map<String, Object> part = new HashMap<>();
+                part.put("file", fileUrl(parts[i]));
+                part.put("durationMs", (double) partDurationsMs[i]);
+                part.put("size", (double) new File(parts[i]).length());
+                partList.add(part);
+            }
+            params.put("parts", partList);
+        }
+        return params;
+    }
+
+    public static Map<String, Object> partCompleted(Intent intent) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("file", fileUrl(intent.getStringExtra("partFile")));
+        params.put("index", intent.getIntExtra("partIndex", 0));
+        params.put("durationMs", (double) intent.getLongExtra("durationMs", 0));
+        return params;
+    }
+
+    public static Map<String, Object> error(Intent intent) {
+        String message = intent.getStringExtra("error");
+        Map<String, Object> params = new HashMap<>();
+        params.put("error", message != null ? message : "Unknown error");
+        return params;
+    }
+
+    private static String fileUrl(String path) {
+        return path != null ? "file://" + path : null;
+    }
+}
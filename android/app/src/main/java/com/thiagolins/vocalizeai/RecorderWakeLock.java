@@ -0,0 +1,80 @@
+package com.thiagolins.vocalizeai;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Partial wake lock shared by everything in the recorder that needs the CPU.
+ * Each {@link #acquire} must be paired with one {@link #release}; the
+ * system lock is taken on the first acquire and dropped on the last
+ * release, and the time it was held is accumulated for power reports.
+ */
+public class RecorderWakeLock {
+    private static final String TAG = "RecorderWakeLock";
+
+    private final PowerManager.WakeLock lock;
+    private final long timeoutMs;
+    private int holders = 0;
+    private long heldSinceMs = 0;
+    private long heldTotalMs = 0;
+    private long acquisitions = 0;
+
+    public RecorderWakeLock(Context context, String tag, long timeoutMs) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        this.lock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+        // The counting is done here, so acquiring again only re-arms the timeout.
+        this.lock.setReferenceCounted(false);
+        this.timeoutMs = timeoutMs;
+    }
+
+    public synchronized void acquire() {
+        if (holders++ == 0) {
+            lock.acquire(timeoutMs);
+            heldSinceMs = SystemClock.elapsedRealtime();
+            acquisitions++;
+        }
+    }
+
+    public synchronized void release() {
+        if (holders == 0) {
+            Log.w(TAG, "release() sem acquire() correspondente");
+            return;
+        }
+        if (--holders == 0) {
+            heldTotalMs += SystemClock.elapsedRealtime() - heldSinceMs;
+            if (lock.isHeld()) {
+                lock.release();
+            }
+        }
+    }
+
+    /** Re-arms the timeout of a held lock, for sessions longer than it. */
+    public synchronized void renew() {
+        if (holders > 0) {
+            lock.acquire(timeoutMs);
+        }
+    }
+
+    /** Drops the lock whatever the count, for service teardown. */
+    public synchronized void releaseAll() {
+        if (holders > 0) {
+            holders = 1;
+            release();
+        }
+    }
+
+    public synchronized boolean isHeld() {
+        return holders > 0;
+    }
+
+    /** Total time the system lock has been held, including the current hold. */
+    public synchronized long getHeldMs() {
+        return heldTotalMs + (holders > 0 ? SystemClock.elapsedRealtime() - heldSinceMs : 0);
+    }
+
+    public synchronized long getAcquisitions() {
+        return acquisitions;
+    }
+}
@@ -0,0 +1,210 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk cache for remote audio. Files are fetched with HTTP range requests
+ * in fixed-size chunks into a .part file, so an interrupted download
+ * resumes where it stopped. They are renamed into place only once
+ * complete. Entries are keyed by a caller-supplied id rather than the URL,
+ * because presigned S3 URLs change on every request.
+ */
+public class RemoteAudioCache {
+    private static final String TAG = "RemoteAudioCache";
+    static final int CHUNK_BYTES = 256 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private final DiskLruBudget disk;
+    private final ConcurrentHashMap<String, Object> fetchLocks = new ConcurrentHashMap<>();
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final AtomicLong bytesDownloaded = new AtomicLong();
+    final AtomicLong bytesServed = new AtomicLong();
+    final AtomicLong resumed = new AtomicLong();
+
+    public RemoteAudioCache(File directory, long budgetBytes) {
+        this.disk = new DiskLruBudget(directory, budgetBytes);
+    }
+
+    private File fileFor(String cacheKey) {
+        return new File(disk.getDirectory(), DiskLruBudget.hashName(cacheKey) + ".audio");
+    }
+
+    /** Returns the cached file for {@code cacheKey}, or null when absent. */
+    public File getCached(String cacheKey) {
+        File file = fileFor(cacheKey);
+        if (!file.exists()) {
+            return null;
+        }
+        DiskLruBudget.touch(file);
+        hits.incrementAndGet();
+        bytesServed.addAndGet(file.length());
+        return file;
+    }
+
+    public boolean contains(String cacheKey) {
+        return fileFor(cacheKey).exists();
+    }
+
+    public File fetch(String cacheKey, String url, IoScheduler.CancellationToken token) throws IOException {
+        File cached = getCached(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        synchronized (fetchLocks.computeIfAbsent(cacheKey, k -> new Object())) {
+            cached = getCached(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            misses.incrementAndGet();
+
+            disk.ensureDirectory();
+            File target = fileFor(cacheKey);
+            File part = new File(target.getPath() + ".part");
+            if (part.exists()) {
+                // Keeps a resumed download from looking stale to the trimmer
+                DiskLruBudget.touch(part);
+            }
+            long size = download(url, part, token);
+            if (!part.renameTo(target)) {
+                throw new IOException("Não foi possível mover " + part + " para o cache");
+            }
+            disk.recordWrite(size);
+            return target;
+        }
+    }
+
+    private long download(String url, File part, IoScheduler.CancellationToken token) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (RandomAccessFile out = new RandomAccessFile(part, "rw")) {
+            long offset = out.length();
+            long total = -1;
+            if (offset > 0) {
+                resumed.incrementAndGet();
+            }
+
+            while (total < 0 || offset < total) {
+                if (token != null) {
+                    token.throwIfCancelled();
+                }
+
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                connection.setRequestProperty("Range", "bytes=" + offset + "-" + (offset + CHUNK_BYTES - 1));
+                try {
+                    int status = connection.getResponseCode();
+                    if (status == 416) {
+                        long length = parseTotal(connection.getHeaderField("Content-Range"));
+                        if (length == offset && offset > 0) {
+                            return offset;
+                        }
+                        // The partial file no longer matches the remote object.
+                        out.setLength(0);
+                        offset = 0;
+                        total = -1;
+                        continue;
+                    }
+
+                    boolean wholeBody;
+                    if (status == HttpURLConnection.HTTP_PARTIAL) {
+                        String contentRange = connection.getHeaderField("Content-Range");
+                        if (parseStart(contentRange) != offset) {
+                            throw new IOException("Content-Range inesperado: " + contentRange);
+                        }
+                        total = parseTotal(contentRange);
+                        wholeBody = false;
+                    } else if (status == HttpURLConnection.HTTP_OK) {
+                        // Server ignored the range: take the whole body from the start.
+                        out.setLength(0);
+                        offset = 0;
+                        wholeBody = true;
+                    } else {
+                        throw new IOException("Erro HTTP " + status + " ao baixar áudio");
+                    }
+
+                    long received = 0;
+                    out.seek(offset);
+                    try (InputStream input = connection.getInputStream()) {
+                        int read;
+                        while ((read = input.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                            offset += read;
+                            received += read;
+                            bytesDownloaded.addAndGet(read);
+                            if (token != null) {
+                                token.throwIfCancelled();
+                            }
+                        }
+                    }
+
+                    if (wholeBody || (total < 0 && received < CHUNK_BYTES)) {
+                        total = offset;
+                    }
+                } finally {
+                    connection.disconnect();
+                }
+            }
+
+            if (offset == 0) {
+                throw new IOException("Resposta vazia ao baixar áudio");
+            }
+            return offset;
+        } catch (IOException e) {
+            Log.w(TAG, "Download interrompido em " + part.length() + " bytes: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private static long parseStart(String contentRange) {
+        // bytes <start>-<end>/<total>
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        try {
+            return dash > 6 ? Long.parseLong(contentRange.substring(6, dash).trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseTotal(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public long getDiskBytes() {
+        return disk.getBytes();
+    }
+
+    public long getBudgetBytes() {
+        return disk.getBudgetBytes();
+    }
+
+    public void clear() {
+        disk.clear();
+    }
+}
@@ -0,0 +1,172 @@
+package com.thiagolins.vocalizeai;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RemoteAudioCacheModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "RemoteAudioCache";
+    private static final long DISK_BUDGET_BYTES = 96L * 1024 * 1024;
+
+    private final ReactApplicationContext reactContext;
+    private final IoScheduler scheduler = IoScheduler.getInstance();
+    private final RemoteAudioCache cache;
+    private final AtomicLong prefetched = new AtomicLong();
+
+    public RemoteAudioCacheModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.cache = new RemoteAudioCache(new File(reactContext.getCacheDir(), "remote-audio"), DISK_BUDGET_BYTES);
+    }
+
+    @Override
+    public String getName() {
+        return "RemoteAudioCache";
+    }
+
+    private boolean isUnmetered() {
+        ConnectivityManager connectivity =
+            (ConnectivityManager) reactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) {
+            return false;
+        }
+        Network network = connectivity.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+        return capabilities != null
+            && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+    }
+
+    @ReactMethod
+    public void getCachedFile(String cacheKey, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            File file = cache.getCached(cacheKey);
+            promise.resolve(file != null ? "file://" + file.getAbsolutePath() : null);
+        }, promise);
+    }
+
+    /** Whether {@code cacheKey} is on disk, without counting it as a hit. */
+    @ReactMethod
+    public void isCached(String cacheKey, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            promise.resolve(cache.contains(cacheKey));
+        }, promise);
+    }
+
+    @ReactMethod
+    public void fetch(String cacheKey, String url, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, tokenId, token -> {
+            try {
+                long start = System.nanoTime();
+                boolean wasCached = cache.contains(cacheKey);
+                File file = cache.fetch(cacheKey, url, token);
+
+                WritableMap result = Arguments.createMap();
+                result.putString("uri", "file://" + file.getAbsolutePath());
+                result.putBoolean("cached", wasCached);
+                result.putDouble("size", file.length());
+                result.putDouble("elapsedMs", (System.nanoTime() - start) / 1_000_000.0);
+                promise.resolve(result);
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao baixar áudio " + cacheKey + ": " + e.getMessage());
+                promise.reject("FETCH_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void isUnmeteredNetwork(Promise promise) {
+        try {
+            promise.resolve(isUnmetered());
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao verificar a rede: " + e.getMessage());
+            promise.resolve(false);
+        }
+    }
+
+    /**
+     * Downloads {@code items} ([{key, url}]) in order on the background lane.
+     * With {@code unmeteredOnly} the batch stops as soon as the device leaves
+     * Wi-Fi (or any other unmetered network).
+     */
+    @ReactMethod
+    public void prefetch(ReadableArray items, boolean unmeteredOnly, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            int fetched = 0;
+            int skipped = 0;
+            int failed = 0;
+            for (int i = 0; i < items.size(); i++) {
+                token.throwIfCancelled();
+                if (unmeteredOnly && !isUnmetered()) {
+                    skipped += items.size() - i;
+                    break;
+                }
+
+                ReadableMap item = items.getMap(i);
+                String key = item.getString("key");
+                if (cache.contains(key)) {
+                    skipped++;
+                    continue;
+                }
+                try {
+                    cache.fetch(key, item.getString("url"), token);
+                    prefetched.incrementAndGet();
+                    fetched++;
+                } catch (java.util.concurrent.CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    Log.w(TAG, "Pré-busca falhou para " + key + ": " + e.getMessage());
+                    failed++;
+                }
+            }
+
+            WritableMap result = Arguments.createMap();
+            result.putInt("fetched", fetched);
+            result.putInt("skipped", skipped);
+            result.putInt("failed", failed);
+            promise.resolve(result);
+        }, promise);
+    }
+
+    @ReactMethod
+    public void getStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("hits", cache.hits.get());
+        stats.putDouble("misses", cache.misses.get());
+        stats.putDouble("resumed", cache.resumed.get());
+        stats.putDouble("prefetched", prefetched.get());
+        stats.putDouble("bytesDownloaded", cache.bytesDownloaded.get());
+        stats.putDouble("bytesServed", cache.bytesServed.get());
+        stats.putDouble("diskBytes", cache.getDiskBytes());
+        stats.putDouble("budgetBytes", cache.getBudgetBytes());
+        promise.resolve(stats);
+    }
+
+    @ReactMethod
+    public void clearCache(Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, null, token -> {
+            try {
+                cache.clear();
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao limpar cache de áudio remoto: " + e.getMessage());
+                promise.reject("CLEAR_CACHE_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+}
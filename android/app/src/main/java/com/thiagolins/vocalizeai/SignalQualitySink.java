@@ -0,0 +1,146 @@
+package com.thiagolins.vocalizeai;
+
+/**
+ * One streaming pass over the captured PCM that estimates whether a
+ * recording is worth uploading. Levels of 20 ms frames go into a fixed
+ * 0.5 dB histogram, so the noise floor (10th percentile), signal level
+ * (95th percentile), SNR and the share of frames clearly above the floor
+ * come out at the end without keeping any audio. Clipped samples, the
+ * peak and the DC offset are counted along the way. As a
+ * {@link CapturePipeline.RawSink} it sees the microphone before the DSP
+ * chain, so a noise gate or limiter cannot hide hiss or clipping.
+ */
+public class SignalQualitySink implements CapturePipeline.RawSink {
+    private static final double MIN_DB = -100;
+    private static final double BIN_DB = 0.5;
+    private static final int BINS = (int) (-MIN_DB / BIN_DB) + 1;
+    private static final int CLIP_LEVEL = 32_700;
+    /** Frames this far above the noise floor count as activity. */
+    private static final double ACTIVE_MARGIN_DB = 10;
+
+    static final double CLIPPING_WARNING_RATIO = 0.001;
+    static final double SNR_WARNING_DB = 10;
+    static final double ACTIVE_WARNING_RATIO = 0.05;
+
+    private final long[] histogram = new long[BINS];
+    private int frameSamples;
+    private double frameSumSquares = 0;
+    private int frameFill = 0;
+    private long frames = 0;
+    private long samples = 0;
+    private long clippedSamples = 0;
+    private long sum = 0;
+    private int peak = 0;
+
+    @Override
+    public void open(int sampleRate, int channelCount) {
+        this.frameSamples = sampleRate / 50 * channelCount;
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) {
+        for (int i = 0; i < length; i++) {
+            int sample = buffer[i];
+            int magnitude = Math.abs(sample);
+            if (magnitude >= CLIP_LEVEL) {
+                clippedSamples++;
+            }
+            if (magnitude > peak) {
+                peak = magnitude;
+            }
+            sum += sample;
+            frameSumSquares += (double) sample * sample;
+
+            if (++frameFill == frameSamples) {
+                double rms = Math.sqrt(frameSumSquares / frameSamples);
+                addFrame(toDb(rms));
+                frameSumSquares = 0;
+                frameFill = 0;
+            }
+        }
+        samples += length;
+    }
+
+    private void addFrame(double db) {
+        int bin = (int) ((Math.max(MIN_DB, Math.min(0, db)) - MIN_DB) / BIN_DB);
+        histogram[Math.min(BINS - 1, bin)]++;
+        frames++;
+    }
+
+    private static double toDb(double amplitude) {
+        return amplitude <= 0 ? MIN_DB : 20 * Math.log10(amplitude / 32768.0);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private double percentileDb(double p) {
+        if (frames == 0) {
+            return MIN_DB;
+        }
+        long target = (long) Math.ceil(p * frames);
+        long seen = 0;
+        for (int i = 0; i < BINS; i++) {
+            seen += histogram[i];
+            if (seen >= target) {
+                return MIN_DB + i * BIN_DB;
+            }
+        }
+        return 0;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public double getNoiseFloorDb() {
+        return percentileDb(0.10);
+    }
+
+    public double getSignalDb() {
+        return percentileDb(0.95);
+    }
+
+    public double getSnrDb() {
+        return getSignalDb() - getNoiseFloorDb();
+    }
+
+    public double getClippingRatio() {
+        return samples > 0 ? (double) clippedSamples / samples : 0;
+    }
+
+    /** Share of frames at least {@link #ACTIVE_MARGIN_DB} above the noise floor. */
+    public double getActiveRatio() {
+        if (frames == 0) {
+            return 0;
+        }
+        int from = (int) Math.ceil((getNoiseFloorDb() + ACTIVE_MARGIN_DB - MIN_DB) / BIN_DB);
+        long active = 0;
+        for (int i = Math.max(0, from); i < BINS; i++) {
+            active += histogram[i];
+        }
+        return (double) active / frames;
+    }
+
+    public double getPeakDb() {
+        return toDb(peak);
+    }
+
+    /** Mean sample value as a fraction of full scale. */
+    public double getDcOffset() {
+        return samples > 0 ? (double) sum / samples / 32768.0 : 0;
+    }
+
+    public boolean isClipped() {
+        return getClippingRatio() > CLIPPING_WARNING_RATIO;
+    }
+
+    public boolean isNoisy() {
+        return frames > 0 && getSnrDb() < SNR_WARNING_DB;
+    }
+
+    public boolean isMostlyInactive() {
+        return frames > 0 && getActiveRatio() < ACTIVE_WARNING_RATIO;
+    }
+}
@@ -0,0 +1,163 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-level cache for spectrogram rendering. Memory holds decoded
+ * {@link SpectrogramData} (bounded by bytes) and the locations of rendered
+ * tiles; disk holds the .spec files and the PNG tiles, trimmed least
+ * recently used first once the byte budget is exceeded (see
+ * {@link DiskLruBudget}).
+ */
+public class SpectrogramCache implements MemoryBudget.Consumer {
+    private static final String TAG = "SpectrogramCache";
+
+    private final File directory;
+    private final DiskLruBudget disk;
+    private final LruCache<String, SpectrogramData> spectra;
+    private final LruCache<String, File> tiles;
+    private final ConcurrentHashMap<String, Object> decodeLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> renderLocks = new ConcurrentHashMap<>();
+
+    final AtomicLong spectrumMemoryHits = new AtomicLong();
+    final AtomicLong spectrumDiskHits = new AtomicLong();
+    final AtomicLong decodes = new AtomicLong();
+    final AtomicLong tileMemoryHits = new AtomicLong();
+    final AtomicLong tileDiskHits = new AtomicLong();
+    final AtomicLong renders = new AtomicLong();
+
+    public SpectrogramCache(File directory, int memoryBudgetBytes, long diskBudgetBytes) {
+        this.directory = directory;
+        this.disk = new DiskLruBudget(directory, diskBudgetBytes);
+        this.spectra = new LruCache<String, SpectrogramData>(memoryBudgetBytes) {
+            @Override
+            protected int sizeOf(String key, SpectrogramData value) {
+                return value.getSizeInBytes();
+            }
+        };
+        this.tiles = new LruCache<>(512);
+    }
+
+    /**
+     * Cache key for a source. Without a caller key, local files also hash
+     * their size and mtime so a re-recorded file never shows a stale
+     * spectrogram. A caller key is trusted as is, since the file behind it
+     * may be a cache entry whose mtime changes on every hit.
+     */
+    public static String keyFor(String source, String cacheKey) throws IOException {
+        if (cacheKey != null) {
+            return DiskLruBudget.hashName(cacheKey);
+        }
+        StringBuilder identity = new StringBuilder(source);
+        if (!source.contains("://")) {
+            File file = new File(source);
+            if (!file.exists()) {
+                throw new java.io.FileNotFoundException("Arquivo não encontrado: " + source);
+            }
+            identity.append('|').append(file.length()).append('|').append(file.lastModified());
+        }
+        return DiskLruBudget.hashName(identity.toString());
+    }
+
+    public SpectrogramData getSpectrum(String key, String source, IoScheduler.CancellationToken token) throws IOException {
+        SpectrogramData data = spectra.get(key);
+        if (data != null) {
+            spectrumMemoryHits.incrementAndGet();
+            return data;
+        }
+
+        // Two tiles of the same clip requested together must not decode twice.
+        synchronized (decodeLocks.computeIfAbsent(key, k -> new Object())) {
+            data = spectra.get(key);
+            if (data != null) {
+                spectrumMemoryHits.incrementAndGet();
+                return data;
+            }
+
+            File file = new File(directory, key + ".spec");
+            if (file.exists()) {
+                try {
+                    data = SpectrogramData.readFrom(file);
+                    DiskLruBudget.touch(file);
+                    spectrumDiskHits.incrementAndGet();
+                } catch (IOException e) {
+                    Log.w(TAG, "Descartando cache inválido: " + e.getMessage());
+                    file.delete();
+                }
+            }
+
+            if (data == null) {
+                data = SpectrogramData.decode(source, token);
+                decodes.incrementAndGet();
+                disk.ensureDirectory();
+                data.writeTo(file);
+                disk.recordWrite(file.length());
+            }
+
+            spectra.put(key, data);
+            MemoryBudget.getInstance().enforce();
+            return data;
+        }
+    }
+
+    public File getTile(String key, SpectrogramData data, int zoom, int tileIndex, SpectrogramTileRenderer renderer) throws IOException {
+        String tileKey = key + "_z" + zoom + "_" + tileIndex;
+        File tile = tiles.get(tileKey);
+        if (tile != null && tile.exists()) {
+            tileMemoryHits.incrementAndGet();
+            return tile;
+        }
+
+        // Two renders of one tile would share its .png.tmp; the second waits and reads the first.
+        synchronized (renderLocks.computeIfAbsent(tileKey, k -> new Object())) {
+            tile = tiles.get(tileKey);
+            if (tile != null && tile.exists()) {
+                tileMemoryHits.incrementAndGet();
+                return tile;
+            }
+
+            tile = new File(directory, tileKey + ".png");
+            if (tile.exists()) {
+                DiskLruBudget.touch(tile);
+                tileDiskHits.incrementAndGet();
+            } else {
+                disk.ensureDirectory();
+                renderer.render(data, zoom, tileIndex, tile);
+                renders.incrementAndGet();
+                disk.recordWrite(tile.length());
+            }
+            tiles.put(tileKey, tile);
+            return tile;
+        }
+    }
+
+    public long getDiskBytes() {
+        return disk.getBytes();
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return spectra.size();
+    }
+
+    /** Drops decoded spectra least recently used first; the disk copies stay. */
+    @Override
+    public void trimMemory(long targetBytes) {
+        spectra.trimToSize((int) Math.min(targetBytes, Integer.MAX_VALUE));
+        if (targetBytes == 0) {
+            tiles.evictAll();
+        }
+    }
+
+    public void clear() {
+        spectra.evictAll();
+        tiles.evictAll();
+        disk.clear();
+    }
+}
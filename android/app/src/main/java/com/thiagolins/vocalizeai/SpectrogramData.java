@@ -0,0 +1,183 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Log-mel magnitudes of a whole clip, quantised to one byte per cell and
+ * stored column-major. This is what the tile renderer reads, so a clip is
+ * decoded once no matter how many zoom levels or tiles are requested. The
+ * on-disk form is little-endian:
+ *
+ * <pre>
+ * "VSPC" | version | sampleRate | hop | rows | columns | peak
+ * columns x byte[rows] levels (row 0 = lowest band)
+ * </pre>
+ */
+public class SpectrogramData {
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 28;
+    public static final int ROWS = 96;
+    public static final int FFT_SIZE = 2048;
+    public static final int HOP_SIZE = 512;
+
+    private static final float DB_MIN = -60f;
+    private static final float DB_MAX = 60f;
+    private static final float LN_TO_DB = (float) (10.0 / Math.log(10.0));
+
+    private final int sampleRate;
+    private final int columns;
+    private final byte[] levels;
+    private final int peak;
+
+    private SpectrogramData(int sampleRate, int columns, byte[] levels, int peak) {
+        this.sampleRate = sampleRate;
+        this.columns = columns;
+        this.levels = levels;
+        this.peak = peak;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /** Highest quantised level in the clip, used to normalise contrast. */
+    public int getPeak() {
+        return peak;
+    }
+
+    byte[] getLevels() {
+        return levels;
+    }
+
+    public double getColumnDurationMs() {
+        return sampleRate == 0 ? 0 : HOP_SIZE * 1000.0 / sampleRate;
+    }
+
+    public double getDurationMs() {
+        return columns * getColumnDurationMs();
+    }
+
+    public int getSizeInBytes() {
+        return levels.length + HEADER_SIZE;
+    }
+
+    public static SpectrogramData decode(String source, IoScheduler.CancellationToken token) throws IOException {
+        Analyzer analyzer = new Analyzer();
+        PcmDecoder.decode(source, analyzer, token);
+        return analyzer.build();
+    }
+
+    public void writeTo(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(temp, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            randomAccessFile.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(new byte[] {'V', 'S', 'P', 'C'});
+            header.putInt(VERSION);
+            header.putInt(sampleRate);
+            header.putInt(HOP_SIZE);
+            header.putInt(ROWS);
+            header.putInt(columns);
+            header.putInt(peak);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer body = ByteBuffer.wrap(levels, 0, columns * ROWS);
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Não foi possível gravar o espectrograma em " + file);
+        }
+    }
+
+    public static SpectrogramData readFrom(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE
+                || header.get() != 'V' || header.get() != 'S' || header.get() != 'P' || header.get() != 'C') {
+                throw new IOException("Cache de espectrograma inválido: " + file);
+            }
+            int version = header.getInt();
+            int sampleRate = header.getInt();
+            int hop = header.getInt();
+            int rows = header.getInt();
+            int columns = header.getInt();
+            int peak = header.getInt();
+            if (version != VERSION || hop != HOP_SIZE || rows != ROWS || columns < 0
+                || channel.size() < HEADER_SIZE + (long) columns * ROWS) {
+                throw new IOException("Cache de espectrograma incompatível: " + file);
+            }
+
+            byte[] levels = new byte[columns * ROWS];
+            ByteBuffer body = ByteBuffer.wrap(levels);
+            while (body.hasRemaining() && channel.read(body) > 0) {
+            }
+            return new SpectrogramData(sampleRate, columns, levels, peak);
+        }
+    }
+
+    private static final class Analyzer implements PcmSink, FeatureFramer.FrameListener {
+        private FeatureFramer framer;
+        private int sampleRate;
+        private byte[] levels = new byte[ROWS * 1024];
+        private int columns = 0;
+        private int peak = 0;
+
+        @Override
+        public void open(int sampleRate, int channelCount) {
+            this.sampleRate = sampleRate;
+            framer = new FeatureFramer(sampleRate, channelCount, FFT_SIZE, HOP_SIZE, ROWS, 0);
+        }
+
+        @Override
+        public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+            framer.process(buffer, length, this);
+        }
+
+        @Override
+        public void onFrame(float[] logMel, float[] mfcc) {
+            int offset = columns * ROWS;
+            if (offset + ROWS > levels.length) {
+                levels = Arrays.copyOf(levels, levels.length * 2);
+            }
+            float scale = 255f / (DB_MAX - DB_MIN);
+            for (int row = 0; row < ROWS; row++) {
+                float db = logMel[row] * LN_TO_DB;
+                int level = (int) ((db - DB_MIN) * scale);
+                if (level < 0) {
+                    level = 0;
+                } else if (level > 255) {
+                    level = 255;
+                }
+                levels[offset + row] = (byte) level;
+                if (level > peak) {
+                    peak = level;
+                }
+            }
+            columns++;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        SpectrogramData build() {
+            return new SpectrogramData(sampleRate, columns, Arrays.copyOf(levels, columns * ROWS), peak);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+
+public class SpectrogramModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "SpectrogramModule";
+    private static final int MEMORY_BUDGET_BYTES = 8 * 1024 * 1024;
+    private static final long DISK_BUDGET_BYTES = 48L * 1024 * 1024;
+
+    private final IoScheduler scheduler = IoScheduler.getInstance();
+    private final SpectrogramCache cache;
+    private final ThreadLocal<SpectrogramTileRenderer> renderers =
+        ThreadLocal.withInitial(SpectrogramTileRenderer::new);
+
+    public SpectrogramModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.cache = new SpectrogramCache(
+            new File(reactContext.getCacheDir(), "spectrograms"),
+            MEMORY_BUDGET_BYTES,
+            DISK_BUDGET_BYTES
+        );
+        MemoryBudget.getInstance().register("spectrogram", MemoryBudget.Priority.NORMAL, cache);
+    }
+
+    @Override
+    public String getName() {
+        return "Spectrogram";
+    }
+
+    /**
+     * Resolves a tile of {@code source} (local path or http(s) URL). A negative
+     * zoom picks the level that fits the whole clip in one tile. Remote
+     * sources should pass a stable {@code cacheKey} since signed URLs change.
+     */
+    @ReactMethod
+    public void renderTile(String source, String cacheKey, int zoom, int tileIndex, String tokenId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, tokenId, token -> {
+            try {
+                String path = source.startsWith("file://") ? source.substring(7) : source;
+                long start = System.nanoTime();
+
+                String key = SpectrogramCache.keyFor(path, cacheKey);
+                SpectrogramData data = cache.getSpectrum(key, path, token);
+                token.throwIfCancelled();
+
+                int level = zoom < 0
+                    ? SpectrogramTileRenderer.getFitZoom(data)
+                    : Math.min(zoom, SpectrogramTileRenderer.MAX_ZOOM);
+                int tileCount = SpectrogramTileRenderer.getTileCount(data, level);
+                if (tileIndex < 0 || tileIndex >= tileCount) {
+                    promise.reject("SPECTROGRAM_ERROR", "Tile " + tileIndex + " fora do intervalo (0-" + (tileCount - 1) + ")");
+                    return;
+                }
+
+                File tile = cache.getTile(key, data, level, tileIndex, renderers.get());
+
+                WritableMap result = Arguments.createMap();
+                result.putString("uri", "file://" + tile.getAbsolutePath());
+                result.putInt("zoom", level);
+                result.putInt("tileIndex", tileIndex);
+                result.putInt("tileCount", tileCount);
+                result.putInt("width", SpectrogramTileRenderer.TILE_WIDTH);
+                result.putInt("height", SpectrogramTileRenderer.TILE_HEIGHT);
+                result.putInt("contentWidth", SpectrogramTileRenderer.getContentWidth(data, level, tileIndex));
+                result.putDouble("msPerPixel", data.getColumnDurationMs() * (1 << level));
+                result.putDouble("durationMs", data.getDurationMs());
+                result.putDouble("elapsedMs", (System.nanoTime() - start) / 1_000_000.0);
+                promise.resolve(result);
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao gerar espectrograma: " + e.getMessage());
+                promise.reject("SPECTROGRAM_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void getCacheStats(Promise promise) {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("spectrumMemoryHits", cache.spectrumMemoryHits.get());
+        stats.putDouble("spectrumDiskHits", cache.spectrumDiskHits.get());
+        stats.putDouble("decodes", cache.decodes.get());
+        stats.putDouble("tileMemoryHits", cache.tileMemoryHits.get());
+        stats.putDouble("tileDiskHits", cache.tileDiskHits.get());
+        stats.putDouble("renders", cache.renders.get());
+        stats.putDouble("memoryBytes", cache.getMemoryBytes());
+        stats.putDouble("diskBytes", cache.getDiskBytes());
+        promise.resolve(stats);
+    }
+
+    @ReactMethod
+    public void clearCache(Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, null, token -> {
+            try {
+                cache.clear();
+                promise.resolve(true);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao limpar cache de espectrogramas: " + e.getMessage());
+                promise.reject("CLEAR_CACHE_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+}
@@ -0,0 +1,136 @@
+package com.thiagolins.vocalizeai;
+
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Draws fixed-size tiles of a {@link SpectrogramData}. At zoom level z each
+ * pixel column covers 2^z analysis columns (max-pooled). The pixel buffer
+ * and the bitmap are owned by the renderer and reused for every tile, so a
+ * renderer must stay on one thread.
+ */
+public class SpectrogramTileRenderer {
+    public static final int TILE_WIDTH = 256;
+    public static final int TILE_HEIGHT = SpectrogramData.ROWS;
+    public static final int MAX_ZOOM = 12;
+
+    /** Levels below peak - DYNAMIC_RANGE are drawn as background. */
+    private static final int DYNAMIC_RANGE = 170;
+    private static final int BACKGROUND = 0xFF000004;
+    private static final int[] PALETTE = buildPalette();
+
+    private final int[] pixels = new int[TILE_WIDTH * TILE_HEIGHT];
+    private final int[] columnMax = new int[TILE_HEIGHT];
+    private final int[] lut = new int[256];
+    private Bitmap bitmap;
+
+    private static int[] buildPalette() {
+        // Dark-to-bright stops approximating "magma".
+        int[][] stops = {
+            {0, 0, 0, 4},
+            {64, 59, 15, 112},
+            {128, 140, 41, 129},
+            {176, 222, 73, 104},
+            {224, 254, 159, 109},
+            {255, 252, 253, 191},
+        };
+        int[] palette = new int[256];
+        for (int s = 0; s < stops.length - 1; s++) {
+            int[] from = stops[s];
+            int[] to = stops[s + 1];
+            for (int i = from[0]; i <= to[0]; i++) {
+                float t = (i - from[0]) / (float) Math.max(1, to[0] - from[0]);
+                int r = Math.round(from[1] + (to[1] - from[1]) * t);
+                int g = Math.round(from[2] + (to[2] - from[2]) * t);
+                int b = Math.round(from[3] + (to[3] - from[3]) * t);
+                palette[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return palette;
+    }
+
+    public static int getTileCount(SpectrogramData data, int zoom) {
+        long columnsPerTile = (long) TILE_WIDTH << zoom;
+        return (int) Math.max(1, (data.getColumns() + columnsPerTile - 1) / columnsPerTile);
+    }
+
+    /** Smallest zoom level at which the whole clip fits in a single tile. */
+    public static int getFitZoom(SpectrogramData data) {
+        int zoom = 0;
+        while (zoom < MAX_ZOOM && ((long) TILE_WIDTH << zoom) < data.getColumns()) {
+            zoom++;
+        }
+        return zoom;
+    }
+
+    /** Number of pixel columns in the tile that hold audio. */
+    public static int getContentWidth(SpectrogramData data, int zoom, int tileIndex) {
+        long firstColumn = ((long) tileIndex * TILE_WIDTH) << zoom;
+        long remaining = data.getColumns() - firstColumn;
+        if (remaining <= 0) {
+            return 0;
+        }
+        long width = (remaining + (1L << zoom) - 1) >> zoom;
+        return (int) Math.min(TILE_WIDTH, width);
+    }
+
+    public void render(SpectrogramData data, int zoom, int tileIndex, File output) throws IOException {
+        int shift = 255 - data.getPeak();
+        for (int level = 0; level < 256; level++) {
+            int normalized = level + shift - (255 - DYNAMIC_RANGE);
+            lut[level] = normalized <= 0
+                ? BACKGROUND
+                : PALETTE[Math.min(255, normalized * 255 / DYNAMIC_RANGE)];
+        }
+
+        byte[] levels = data.getLevels();
+        int columns = data.getColumns();
+        int span = 1 << zoom;
+        long firstColumn = ((long) tileIndex * TILE_WIDTH) << zoom;
+
+        for (int x = 0; x < TILE_WIDTH; x++) {
+            long start = firstColumn + (long) x * span;
+            if (start >= columns) {
+                for (int y = 0; y < TILE_HEIGHT; y++) {
+                    pixels[y * TILE_WIDTH + x] = BACKGROUND;
+                }
+                continue;
+            }
+            int end = (int) Math.min(columns, start + span);
+
+            java.util.Arrays.fill(columnMax, 0);
+            for (int column = (int) start; column < end; column++) {
+                int offset = column * SpectrogramData.ROWS;
+                for (int row = 0; row < TILE_HEIGHT; row++) {
+                    int level = levels[offset + row] & 0xFF;
+                    if (level > columnMax[row]) {
+                        columnMax[row] = level;
+                    }
+                }
+            }
+            for (int row = 0; row < TILE_HEIGHT; row++) {
+                pixels[(TILE_HEIGHT - 1 - row) * TILE_WIDTH + x] = lut[columnMax[row]];
+            }
+        }
+
+        if (bitmap == null || bitmap.isRecycled()) {
+            bitmap = Bitmap.createBitmap(TILE_WIDTH, TILE_HEIGHT, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.setPixels(pixels, 0, TILE_WIDTH, 0, 0, TILE_WIDTH, TILE_HEIGHT);
+
+        File temp = new File(output.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Falha ao codificar o tile do espectrograma");
+            }
+        }
+        if (!temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Não foi possível gravar o tile em " + output);
+        }
+    }
+}
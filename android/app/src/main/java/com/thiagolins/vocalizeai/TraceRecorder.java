@@ -0,0 +1,236 @@
+package com.thiagolins.vocalizeai;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timing spans for the recorder and file operations. Every section is also
+ * an {@link Trace} section, so it shows up in a system trace, and is kept in
+ * a fixed ring of the last {@link #CAPACITY} events that can be written out
+ * as Chrome trace JSON (chrome://tracing, Perfetto) from the app itself.
+ *
+ * <p>Sections are synchronous and must close on the thread that opened them.
+ * Async spans cover work that starts and ends on different threads, such as
+ * a command and the service's acknowledgement; they are matched by name and
+ * cookie. Spans are meant for command-level stages, not per-buffer work.
+ */
+public final class TraceRecorder {
+    static final int CAPACITY = 4096;
+    private static final String CATEGORY = "vocalizeai";
+
+    private static final byte COMPLETE = 0;
+    private static final byte ASYNC_BEGIN = 1;
+    private static final byte ASYNC_END = 2;
+    private static final byte INSTANT = 3;
+
+    private static final Object lock = new Object();
+    private static final String[] names = new String[CAPACITY];
+    private static final byte[] kinds = new byte[CAPACITY];
+    private static final long[] startNs = new long[CAPACITY];
+    private static final long[] durationNs = new long[CAPACITY];
+    private static final int[] tids = new int[CAPACITY];
+    private static final int[] cookies = new int[CAPACITY];
+    private static final Map<Integer, String> threadNames = new HashMap<>();
+    private static int head;
+    private static int count;
+    private static long dropped;
+    private static volatile boolean enabled = true;
+
+    /** An open synchronous section; closing it ends the system trace section too. */
+    public static final class Section implements AutoCloseable {
+        private final String name;
+        private final long start;
+        private boolean closed;
+
+        private Section(String name) {
+            this.name = name;
+            this.start = SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Trace.endSection();
+            if (enabled) {
+                record(COMPLETE, name, start, SystemClock.elapsedRealtimeNanos() - start, 0);
+            }
+        }
+    }
+
+    private TraceRecorder() {
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static Section section(String name) {
+        Trace.beginSection(name);
+        return new Section(name);
+    }
+
+    public static void beginAsync(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+        if (enabled) {
+            record(ASYNC_BEGIN, name, SystemClock.elapsedRealtimeNanos(), 0, cookie);
+        }
+    }
+
+    public static void endAsync(String name, int cookie) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+        if (enabled) {
+            record(ASYNC_END, name, SystemClock.elapsedRealtimeNanos(), 0, cookie);
+        }
+    }
+
+    /** A point event, such as a tap reported from JS. */
+    public static void instant(String name) {
+        if (enabled) {
+            record(INSTANT, name, SystemClock.elapsedRealtimeNanos(), 0, 0);
+        }
+    }
+
+    public static int size() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    /** Events overwritten since the last {@link #clear()}. */
+    public static long getDropped() {
+        synchronized (lock) {
+            return dropped;
+        }
+    }
+
+    public static void clear() {
+        synchronized (lock) {
+            head = 0;
+            count = 0;
+            dropped = 0;
+            Arrays.fill(names, null);
+        }
+    }
+
+    private static void record(byte kind, String name, long start, long duration, int cookie) {
+        int tid = Process.myTid();
+        synchronized (lock) {
+            int slot = (head + count) % CAPACITY;
+            if (count == CAPACITY) {
+                head = (head + 1) % CAPACITY;
+                dropped++;
+            } else {
+                count++;
+            }
+            names[slot] = name;
+            kinds[slot] = kind;
+            startNs[slot] = start;
+            durationNs[slot] = duration;
+            tids[slot] = tid;
+            cookies[slot] = cookie;
+            if (!threadNames.containsKey(tid)) {
+                threadNames.put(tid, Thread.currentThread().getName());
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered events as a Chrome trace to {@code file} and returns
+     * how many were written. Timestamps are {@code elapsedRealtime} in
+     * microseconds, so spans line up with logcat and system traces.
+     */
+    public static int exportChromeTrace(File file) throws IOException {
+        JSONArray events = new JSONArray();
+        int pid = Process.myPid();
+        int written;
+        long lost;
+        try {
+            synchronized (lock) {
+                written = count;
+                lost = dropped;
+                for (int i = 0; i < count; i++) {
+                    int slot = (head + i) % CAPACITY;
+                    events.put(toEvent(slot, pid));
+                }
+                for (Map.Entry<Integer, String> thread : threadNames.entrySet()) {
+                    events.put(new JSONObject()
+                        .put("name", "thread_name")
+                        .put("ph", "M")
+                        .put("pid", pid)
+                        .put("tid", thread.getKey())
+                        .put("args", new JSONObject().put("name", thread.getValue())));
+                }
+            }
+
+            JSONObject trace = new JSONObject()
+                .put("traceEvents", events)
+                .put("displayTimeUnit", "ms")
+                .put("otherData", new JSONObject()
+                    .put("droppedEvents", lost)
+                    .put("capacity", CAPACITY));
+
+            File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                writer.write(trace.toString());
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Não foi possível gravar " + file.getName());
+            }
+        } catch (JSONException e) {
+            throw new IOException("Erro ao montar trace: " + e.getMessage());
+        }
+        return written;
+    }
+
+    private static JSONObject toEvent(int slot, int pid) throws JSONException {
+        JSONObject event = new JSONObject()
+            .put("name", names[slot])
+            .put("cat", CATEGORY)
+            .put("pid", pid)
+            .put("tid", tids[slot])
+            .put("ts", startNs[slot] / 1000.0);
+        switch (kinds[slot]) {
+            case COMPLETE:
+                event.put("ph", "X").put("dur", durationNs[slot] / 1000.0);
+                break;
+            case ASYNC_BEGIN:
+                event.put("ph", "b").put("id", cookies[slot]);
+                break;
+            case ASYNC_END:
+                event.put("ph", "e").put("id", cookies[slot]);
+                break;
+            default:
+                event.put("ph", "i").put("s", "t");
+                break;
+        }
+        return event;
+    }
+}
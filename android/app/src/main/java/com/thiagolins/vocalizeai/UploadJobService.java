@@ -0,0 +1,56 @@
+package com.thiagolins.vocalizeai;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JobScheduler entry point for {@link UploadQueue}. The uploads run on the
+ * background lane; when the system stops the job (constraints lost, time
+ * limit) the lane token is cancelled and the job asks to be rescheduled.
+ */
+public class UploadJobService extends JobService {
+    private static final String TAG = "UploadJobService";
+
+    private final IoScheduler scheduler = IoScheduler.getInstance();
+    private volatile String tokenId;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        UploadQueue queue = UploadQueue.getInstance(this);
+        queue.setJobRunning(true);
+        AtomicBoolean finished = new AtomicBoolean(false);
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                queue.setJobRunning(false);
+                jobFinished(params, false);
+                queue.schedule();
+            }
+        };
+
+        tokenId = scheduler.newTokenId();
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, tokenId, token -> {
+            try {
+                queue.runPending(token);
+            } catch (java.util.concurrent.CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao processar fila de envio: " + e.getMessage(), e);
+            } finally {
+                finish.run();
+            }
+        }, finish);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        String id = tokenId;
+        if (id != null) {
+            scheduler.cancel(id);
+        }
+        return true;
+    }
+}
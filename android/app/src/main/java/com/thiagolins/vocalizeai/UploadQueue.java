@@ -0,0 +1,592 @@
+package com.thiagolins.vocalizeai;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Durable queue of recordings waiting to be uploaded. Entries are keyed by
+ * the SHA-256 of the file content, so the same recording enqueued twice, or
+ * copied to a new path by the app, stays a single entry. The recorder
+ * service holds every finished recording here; it becomes uploadable once
+ * the app attaches its vocalization and participant. The queue is a small
+ * JSON file rewritten atomically on each change, and uploads are run by
+ * {@link UploadJobService} under JobScheduler network/charging constraints
+ * with per-entry exponential backoff. The entry id is also the upload's
+ * idempotency key, which makes it safe to re-send an upload whose outcome
+ * was never seen.
+ */
+public class UploadQueue {
+    private static final String TAG = "UploadQueue";
+    static final int JOB_ID = 4401;
+    private static final String PREFS = "upload_queue";
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long BASE_BACKOFF_MS = 30_000;
+    private static final long MAX_BACKOFF_MS = 6L * 60 * 60 * 1000;
+    /** Uploaded entries are kept this long so re-sending a file is recognised. */
+    private static final long UPLOADED_RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    public static final String STATE_HELD = "held";
+    public static final String STATE_PENDING = "pending";
+    public static final String STATE_UPLOADING = "uploading";
+    public static final String STATE_UPLOADED = "uploaded";
+    public static final String STATE_AUTH_REQUIRED = "authRequired";
+    public static final String STATE_FAILED = "failed";
+
+    public interface Listener {
+        void onEntryChanged(Entry entry);
+    }
+
+    public static final class Entry {
+        public final String id;
+        public String path;
+        public long vocalizationId;
+        public long participantId;
+        public String state;
+        public int attempts;
+        public long nextAttemptAt;
+        public long bytesSent;
+        public long totalBytes;
+        public String error;
+        public final long createdAt;
+        public long updatedAt;
+
+        Entry(String id, String path, long createdAt) {
+            this.id = id;
+            this.path = path;
+            this.createdAt = createdAt;
+            this.updatedAt = createdAt;
+        }
+
+        Entry copy() {
+            Entry copy = new Entry(id, path, createdAt);
+            copy.vocalizationId = vocalizationId;
+            copy.participantId = participantId;
+            copy.state = state;
+            copy.attempts = attempts;
+            copy.nextAttemptAt = nextAttemptAt;
+            copy.bytesSent = bytesSent;
+            copy.totalBytes = totalBytes;
+            copy.error = error;
+            copy.updatedAt = updatedAt;
+            return copy;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("path", path);
+            json.put("vocalizationId", vocalizationId);
+            json.put("participantId", participantId);
+            json.put("state", state);
+            json.put("attempts", attempts);
+            json.put("nextAttemptAt", nextAttemptAt);
+            json.put("totalBytes", totalBytes);
+            json.put("error", error != null ? error : JSONObject.NULL);
+            json.put("createdAt", createdAt);
+            json.put("updatedAt", updatedAt);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) throws JSONException {
+            Entry entry = new Entry(json.getString("id"), json.getString("path"), json.optLong("createdAt", 0));
+            entry.vocalizationId = json.optLong("vocalizationId", 0);
+            entry.participantId = json.optLong("participantId", 0);
+            entry.state = json.optString("state", STATE_HELD);
+            entry.attempts = json.optInt("attempts", 0);
+            entry.nextAttemptAt = json.optLong("nextAttemptAt", 0);
+            entry.totalBytes = json.optLong("totalBytes", 0);
+            entry.error = json.isNull("error") ? null : json.optString("error", null);
+            entry.updatedAt = json.optLong("updatedAt", entry.createdAt);
+            return entry;
+        }
+    }
+
+    /** Server settings the job needs; the app refreshes them after login. */
+    public static final class Config {
+        public final String baseUrl;
+        public final String apiKey;
+        public final String authToken;
+
+        Config(String baseUrl, String apiKey, String authToken) {
+            this.baseUrl = baseUrl;
+            this.apiKey = apiKey;
+            this.authToken = authToken;
+        }
+
+        boolean isComplete() {
+            return baseUrl != null && !baseUrl.isEmpty() && authToken != null && !authToken.isEmpty();
+        }
+    }
+
+    private static UploadQueue instance;
+
+    private final Context context;
+    private final File file;
+    private final SharedPreferences prefs;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> lastProgressAt = new LinkedHashMap<>();
+    private final Random random = new Random();
+    private boolean jobRunning = false;
+
+    public static synchronized UploadQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new UploadQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    UploadQueue(Context context) {
+        this.context = context;
+        this.file = new File(context.getFilesDir(), "upload-queue.json");
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void configure(String baseUrl, String apiKey, String authToken) {
+        prefs.edit()
+            .putString("baseUrl", baseUrl)
+            .putString("apiKey", apiKey)
+            .putString("authToken", authToken)
+            .apply();
+
+        boolean changed = false;
+        for (Entry entry : entries.values()) {
+            if (STATE_AUTH_REQUIRED.equals(entry.state)) {
+                entry.state = STATE_PENDING;
+                entry.error = null;
+                entry.nextAttemptAt = 0;
+                touch(entry);
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+        schedule();
+    }
+
+    public synchronized Config getConfig() {
+        return new Config(
+            prefs.getString("baseUrl", null),
+            prefs.getString("apiKey", null),
+            prefs.getString("authToken", null));
+    }
+
+    public synchronized void setConstraints(boolean unmeteredOnly, boolean requiresCharging) {
+        prefs.edit()
+            .putBoolean("unmeteredOnly", unmeteredOnly)
+            .putBoolean("requiresCharging", requiresCharging)
+            .apply();
+        schedule();
+    }
+
+    /**
+     * Records a finished recording that has no vocalization or participant
+     * yet. A held entry for the same content follows the file to its new path.
+     */
+    public void hold(File recording) {
+        String id;
+        try {
+            id = contentHash(recording);
+        } catch (IOException e) {
+            Log.e(TAG, "Erro ao registrar gravação na fila: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            Entry existing = entries.get(id);
+            if (existing != null) {
+                if (STATE_HELD.equals(existing.state) && !existing.path.equals(recording.getAbsolutePath())) {
+                    existing.path = recording.getAbsolutePath();
+                    touch(existing);
+                    save();
+                    notifyChanged(existing);
+                }
+                return;
+            }
+            Entry entry = new Entry(id, recording.getAbsolutePath(), System.currentTimeMillis());
+            entry.state = STATE_HELD;
+            entry.totalBytes = recording.length();
+            entries.put(id, entry);
+            save();
+            notifyChanged(entry);
+        }
+    }
+
+    /**
+     * Makes {@code recording} uploadable with the given labels. A file already
+     * in the queue is updated in place unless it is being or has been sent.
+     */
+    public Entry enqueue(File recording, long vocalizationId, long participantId) throws IOException {
+        if (!recording.exists()) {
+            throw new IOException("Arquivo não encontrado: " + recording.getAbsolutePath());
+        }
+        String id = contentHash(recording);
+
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                entry = new Entry(id, recording.getAbsolutePath(), System.currentTimeMillis());
+                entries.put(id, entry);
+            } else if (STATE_UPLOADED.equals(entry.state) || STATE_UPLOADING.equals(entry.state)) {
+                return entry.copy();
+            }
+
+            entry.path = recording.getAbsolutePath();
+            entry.vocalizationId = vocalizationId;
+            entry.participantId = participantId;
+            entry.totalBytes = recording.length();
+            entry.state = STATE_PENDING;
+            entry.attempts = 0;
+            entry.nextAttemptAt = 0;
+            entry.error = null;
+            touch(entry);
+            save();
+            notifyChanged(entry);
+            schedule();
+            return entry.copy();
+        }
+    }
+
+    public synchronized boolean retry(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null || !(STATE_FAILED.equals(entry.state) || STATE_PENDING.equals(entry.state))) {
+            return false;
+        }
+        entry.state = STATE_PENDING;
+        entry.attempts = 0;
+        entry.nextAttemptAt = 0;
+        entry.error = null;
+        touch(entry);
+        save();
+        notifyChanged(entry);
+        schedule();
+        return true;
+    }
+
+    public synchronized boolean remove(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null || STATE_UPLOADING.equals(entry.state)) {
+            return false;
+        }
+        entries.remove(id);
+        save();
+        return true;
+    }
+
+    public synchronized List<Entry> snapshot() {
+        List<Entry> copy = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            copy.add(entry.copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Uploads every entry that is due, one at a time, until none are left or
+     * the token is cancelled. Called by {@link UploadJobService}.
+     */
+    void runPending(IoScheduler.CancellationToken token) {
+        Entry next;
+        while ((next = claimNext()) != null) {
+            token.throwIfCancelled();
+            Config config = getConfig();
+            if (!config.isComplete()) {
+                finish(next, STATE_AUTH_REQUIRED, "Configuração de envio ausente");
+                continue;
+            }
+
+            File recording = new File(next.path);
+            if (!recording.exists()) {
+                finish(next, STATE_FAILED, "Arquivo não encontrado");
+                continue;
+            }
+
+            final Entry uploading = next;
+            try {
+                AudioUploader.Response response = AudioUploader.upload(
+                    config, recording, uploading.id, uploading.vocalizationId, uploading.participantId, token,
+                    (sent, total) -> onProgress(uploading, sent, total));
+
+                if (response.isSuccessful() || response.isDuplicate()) {
+                    finish(uploading, STATE_UPLOADED, null);
+                } else if (response.isAuthError()) {
+                    finish(uploading, STATE_AUTH_REQUIRED, response.message());
+                } else if (response.isRetryable()) {
+                    backoff(uploading, response.message());
+                } else {
+                    finish(uploading, STATE_FAILED, response.message());
+                }
+            } catch (java.util.concurrent.CancellationException e) {
+                // Stopped by JobScheduler: leave the entry due so the next run starts over.
+                requeue(uploading);
+                throw e;
+            } catch (IOException e) {
+                Log.w(TAG, "Envio de " + recording.getName() + " falhou: " + e.getMessage());
+                backoff(uploading, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized Entry claimNext() {
+        prune();
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries.values()) {
+            if (STATE_PENDING.equals(entry.state) && entry.nextAttemptAt <= now) {
+                entry.state = STATE_UPLOADING;
+                entry.bytesSent = 0;
+                touch(entry);
+                save();
+                notifyChanged(entry);
+                return entry.copy();
+            }
+        }
+        return null;
+    }
+
+    private synchronized void finish(Entry claimed, String state, String error) {
+        Entry entry = entries.get(claimed.id);
+        if (entry == null) {
+            return;
+        }
+        entry.state = state;
+        entry.error = error;
+        if (STATE_UPLOADED.equals(state)) {
+            entry.bytesSent = entry.totalBytes;
+        }
+        touch(entry);
+        lastProgressAt.remove(entry.id);
+        save();
+        notifyChanged(entry);
+    }
+
+    private synchronized void backoff(Entry claimed, String error) {
+        Entry entry = entries.get(claimed.id);
+        if (entry == null) {
+            return;
+        }
+        entry.attempts++;
+        if (entry.attempts >= MAX_ATTEMPTS) {
+            finish(entry, STATE_FAILED, error);
+            return;
+        }
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(20, entry.attempts - 1));
+        delay += (long) (delay * 0.2 * (random.nextDouble() * 2 - 1));
+        entry.nextAttemptAt = System.currentTimeMillis() + delay;
+        entry.state = STATE_PENDING;
+        entry.error = error;
+        touch(entry);
+        lastProgressAt.remove(entry.id);
+        save();
+        notifyChanged(entry);
+    }
+
+    private synchronized void requeue(Entry claimed) {
+        Entry entry = entries.get(claimed.id);
+        if (entry != null && STATE_UPLOADING.equals(entry.state)) {
+            entry.state = STATE_PENDING;
+            entry.bytesSent = 0;
+            touch(entry);
+            save();
+            notifyChanged(entry);
+        }
+    }
+
+    private void onProgress(Entry claimed, long sent, long total) {
+        Entry snapshot;
+        synchronized (this) {
+            Entry entry = entries.get(claimed.id);
+            if (entry == null) {
+                return;
+            }
+            entry.bytesSent = sent;
+            entry.totalBytes = total;
+            long now = System.currentTimeMillis();
+            Long last = lastProgressAt.get(entry.id);
+            if (sent < total && last != null && now - last < PROGRESS_INTERVAL_MS) {
+                return;
+            }
+            lastProgressAt.put(entry.id, now);
+            snapshot = entry.copy();
+        }
+        for (Listener listener : listeners) {
+            listener.onEntryChanged(snapshot);
+        }
+    }
+
+    synchronized void setJobRunning(boolean running) {
+        jobRunning = running;
+    }
+
+    /**
+     * Schedules the upload job for the earliest due entry. Skipped while the
+     * job runs, because rescheduling the same job id would stop it; the job
+     * calls this again when it finishes.
+     */
+    public synchronized void schedule() {
+        if (jobRunning) {
+            return;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            if (STATE_PENDING.equals(entry.state)) {
+                earliest = Math.min(earliest, entry.nextAttemptAt);
+            }
+        }
+
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (jobScheduler == null) {
+            return;
+        }
+        if (earliest == Long.MAX_VALUE) {
+            jobScheduler.cancel(JOB_ID);
+            return;
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, UploadJobService.class))
+            .setRequiredNetworkType(prefs.getBoolean("unmeteredOnly", false)
+                ? JobInfo.NETWORK_TYPE_UNMETERED
+                : JobInfo.NETWORK_TYPE_ANY)
+            .setRequiresCharging(prefs.getBoolean("requiresCharging", false))
+            .setPersisted(true)
+            .setBackoffCriteria(BASE_BACKOFF_MS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+            .setMinimumLatency(Math.max(0, earliest - System.currentTimeMillis()))
+            .build();
+        if (jobScheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(TAG, "Não foi possível agendar o envio de áudios");
+        }
+    }
+
+    /** Drops held entries whose file is gone and uploaded entries past retention. */
+    private void prune() {
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            boolean discarded = STATE_HELD.equals(entry.state) && !new File(entry.path).exists();
+            boolean expired = STATE_UPLOADED.equals(entry.state) && now - entry.updatedAt > UPLOADED_RETENTION_MS;
+            if (discarded || expired) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private static void touch(Entry entry) {
+        entry.updatedAt = System.currentTimeMillis();
+    }
+
+    private void notifyChanged(Entry entry) {
+        Entry snapshot = entry.copy();
+        for (Listener listener : listeners) {
+            listener.onEntryChanged(snapshot);
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            JSONArray array = new JSONArray(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            for (int i = 0; i < array.length(); i++) {
+                Entry entry = Entry.fromJson(array.getJSONObject(i));
+                if (STATE_UPLOADING.equals(entry.state)) {
+                    // The process died mid-upload and the server may or may not have
+                    // stored it; the retry's idempotency key lets it drop a repeat.
+                    entry.state = STATE_PENDING;
+                }
+                entries.put(entry.id, entry);
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Erro ao carregar fila de envio: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            JSONArray array = new JSONArray();
+            for (Entry entry : entries.values()) {
+                array.put(entry.toJson());
+            }
+            out.write(array.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Erro ao salvar fila de envio: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Não foi possível substituir a fila de envio");
+            tmp.delete();
+        }
+    }
+
+    static String contentHash(File recording) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 indisponível", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(recording)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,149 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.File;
+
+public class UploadQueueModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "UploadQueueModule";
+
+    private final ReactApplicationContext reactContext;
+    private final IoScheduler scheduler = IoScheduler.getInstance();
+    private final UploadQueue queue;
+    private final UploadQueue.Listener listener = entry -> sendEvent("onUploadQueueChanged", toMap(entry));
+
+    public UploadQueueModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.reactContext = reactContext;
+        this.queue = UploadQueue.getInstance(reactContext);
+        queue.addListener(listener);
+    }
+
+    @Override
+    public String getName() {
+        return "UploadQueue";
+    }
+
+    private static WritableMap toMap(UploadQueue.Entry entry) {
+        WritableMap map = Arguments.createMap();
+        map.putString("id", entry.id);
+        map.putString("uri", "file://" + entry.path);
+        map.putString("state", entry.state);
+        map.putDouble("vocalizationId", entry.vocalizationId);
+        map.putDouble("participantId", entry.participantId);
+        map.putInt("attempts", entry.attempts);
+        map.putDouble("nextAttemptAt", entry.nextAttemptAt);
+        map.putDouble("bytesSent", entry.bytesSent);
+        map.putDouble("totalBytes", entry.totalBytes);
+        map.putString("error", entry.error);
+        map.putDouble("updatedAt", entry.updatedAt);
+        return map;
+    }
+
+    private void sendEvent(String eventName, WritableMap params) {
+        try {
+            if (reactContext.hasActiveReactInstance()) {
+                reactContext
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(eventName, params);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao enviar evento " + eventName + ": " + e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void configure(ReadableMap config, Promise promise) {
+        try {
+            queue.configure(
+                config.hasKey("baseUrl") ? config.getString("baseUrl") : null,
+                config.hasKey("apiKey") ? config.getString("apiKey") : null,
+                config.hasKey("token") ? config.getString("token") : null);
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao configurar fila de envio: " + e.getMessage());
+            promise.reject("UPLOAD_CONFIG_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void setConstraints(boolean unmeteredOnly, boolean requiresCharging, Promise promise) {
+        try {
+            queue.setConstraints(unmeteredOnly, requiresCharging);
+            promise.resolve(true);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao definir restrições de envio: " + e.getMessage());
+            promise.reject("UPLOAD_CONFIG_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void hold(String uri, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, null, token -> {
+            String path = uri.startsWith("file://") ? uri.substring(7) : uri;
+            queue.hold(new File(path));
+            promise.resolve(true);
+        }, promise);
+    }
+
+    @ReactMethod
+    public void enqueue(String uri, double vocalizationId, double participantId, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                String path = uri.startsWith("file://") ? uri.substring(7) : uri;
+                UploadQueue.Entry entry = queue.enqueue(new File(path), (long) vocalizationId, (long) participantId);
+                promise.resolve(toMap(entry));
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao enfileirar áudio: " + e.getMessage());
+                promise.reject("UPLOAD_ENQUEUE_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void getQueue(Promise promise) {
+        try {
+            WritableArray entries = Arguments.createArray();
+            for (UploadQueue.Entry entry : queue.snapshot()) {
+                entries.pushMap(toMap(entry));
+            }
+            promise.resolve(entries);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao ler fila de envio: " + e.getMessage());
+            promise.reject("UPLOAD_QUEUE_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void retry(String id, Promise promise) {
+        promise.resolve(queue.retry(id));
+    }
+
+    @ReactMethod
+    public void remove(String id, Promise promise) {
+        promise.resolve(queue.remove(id));
+    }
+
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(Integer count) {
+    }
+
+    @Override
+    public void invalidate() {
+        queue.removeListener(listener);
+    }
+}
@@ -0,0 +1,126 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Standardised linear softmax model over {@link FeatureStats} vectors. The
+ * model file is little-endian:
+ *
+ * <pre>
+ * "VMDL" | version | featureDim | classCount
+ * classCount x (int32 nameLength, utf8 name)
+ * float32[featureDim] mean, float32[featureDim] std
+ * float32[classCount][featureDim] weights, float32[classCount] bias
+ * </pre>
+ *
+ * Labels are vocalization names as returned by /vocalizacoes.
+ */
+public class VocalizationClassifier {
+    static final int VERSION = 1;
+
+    private final String[] labels;
+    private final float[] mean;
+    private final float[] std;
+    private final float[][] weights;
+    private final float[] bias;
+
+    VocalizationClassifier(String[] labels, float[] mean, float[] std, float[][] weights, float[] bias) {
+        this.labels = labels;
+        this.mean = mean;
+        this.std = std;
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    public static VocalizationClassifier load(InputStream input) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(readAll(input)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.get() != 'V' || buffer.get() != 'M' || buffer.get() != 'D' || buffer.get() != 'L') {
+                throw new IOException("Arquivo de modelo inválido");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Versão de modelo não suportada: " + version);
+            }
+            int featureDim = buffer.getInt();
+            int classCount = buffer.getInt();
+            if (featureDim != FeatureStats.VECTOR_DIM) {
+                throw new IOException("Dimensão do modelo (" + featureDim + ") difere das features (" + FeatureStats.VECTOR_DIM + ")");
+            }
+            if (classCount <= 0 || classCount > 1024) {
+                throw new IOException("Número de classes inválido: " + classCount);
+            }
+
+            String[] labels = new String[classCount];
+            for (int c = 0; c < classCount; c++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                labels[c] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            float[] mean = readFloats(buffer, featureDim);
+            float[] std = readFloats(buffer, featureDim);
+            float[][] weights = new float[classCount][];
+            for (int c = 0; c < classCount; c++) {
+                weights[c] = readFloats(buffer, featureDim);
+            }
+            float[] bias = readFloats(buffer, classCount);
+
+            return new VocalizationClassifier(labels, mean, std, weights, bias);
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Arquivo de modelo truncado");
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] chunk = new byte[16 * 1024];
+        int read;
+        while ((read = input.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = buffer.getFloat();
+        }
+        return values;
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+
+    /** Returns a probability per label, in {@link #getLabels()} order. */
+    public float[] score(float[] features) {
+        float[] probabilities = new float[labels.length];
+        float maxLogit = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < labels.length; c++) {
+            float[] w = weights[c];
+            float logit = bias[c];
+            for (int i = 0; i < features.length; i++) {
+                float z = (features[i] - mean[i]) / (std[i] > 1e-6f ? std[i] : 1f);
+                logit += w[i] * z;
+            }
+            probabilities[c] = logit;
+            maxLogit = Math.max(maxLogit, logit);
+        }
+
+        float sum = 0f;
+        for (int c = 0; c < labels.length; c++) {
+            probabilities[c] = (float) Math.exp(probabilities[c] - maxLogit);
+            sum += probabilities[c];
+        }
+        for (int c = 0; c < labels.length; c++) {
+            probabilities[c] /= sum;
+        }
+        return probabilities;
+    }
+}
@@ -0,0 +1,270 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Learns a {@link VocalizationClassifier} on the device from clips the user
+ * has labelled. Only per-label sums of the {@link FeatureStats} vectors are
+ * kept, so adding a clip is O(dimension) and the store stays a few KB however
+ * many clips are learned. The model is a shared-diagonal-variance Gaussian
+ * classifier, which is linear in the standardised features and so fits the
+ * classifier's softmax format as is. Each clip's label is kept with its key,
+ * so a clip relabelled by the user moves from the old label's sums to the new
+ * one's. The store is little-endian:
+ *
+ * <pre>
+ * "VEXM" | version | featureDim | classCount | keyCount
+ * classCount x (int32 nameLength, utf8 name, int32 count, float64[featureDim] sum, float64[featureDim] sumSq)
+ * keyCount x (int32 keyLength, utf8 key, int32 labelLength, utf8 label)
+ * </pre>
+ */
+public class VocalizationModelBuilder {
+    static final int VERSION = 2;
+    /** A model with fewer labels could only ever suggest one. */
+    static final int MIN_CLASSES = 2;
+    /**
+     * Pseudo-observations of unit variance (the variance of the whole set)
+     * mixed into the within-label variance, so a handful of clips does not
+     * yield a model that is certain of everything.
+     */
+    private static final double PRIOR_STRENGTH = 2.0;
+
+    private static final class LabelSums {
+        int count;
+        final double[] sum = new double[FeatureStats.VECTOR_DIM];
+        final double[] sumSq = new double[FeatureStats.VECTOR_DIM];
+    }
+
+    private final Map<String, LabelSums> labels = new LinkedHashMap<>();
+    /** The label each learned clip is currently counted under. */
+    private final Map<String, String> keys = new HashMap<>();
+
+    /** Reads the store at {@code file}, or starts an empty one if there is none. */
+    public static VocalizationModelBuilder load(File file) throws IOException {
+        VocalizationModelBuilder builder = new VocalizationModelBuilder();
+        if (!file.exists()) {
+            return builder;
+        }
+        byte[] bytes;
+        try (InputStream input = new FileInputStream(file)) {
+            bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = input.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.get() != 'V' || buffer.get() != 'E' || buffer.get() != 'X' || buffer.get() != 'M') {
+                throw new IOException("Arquivo de exemplos inválido");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Versão de exemplos não suportada: " + version);
+            }
+            int featureDim = buffer.getInt();
+            if (featureDim != FeatureStats.VECTOR_DIM) {
+                throw new IOException("Dimensão dos exemplos (" + featureDim + ") difere das features (" + FeatureStats.VECTOR_DIM + ")");
+            }
+            int classCount = buffer.getInt();
+            int keyCount = buffer.getInt();
+            for (int c = 0; c < classCount; c++) {
+                LabelSums sums = new LabelSums();
+                String name = readString(buffer);
+                sums.count = buffer.getInt();
+                for (int i = 0; i < featureDim; i++) {
+                    sums.sum[i] = buffer.getDouble();
+                }
+                for (int i = 0; i < featureDim; i++) {
+                    sums.sumSq[i] = buffer.getDouble();
+                }
+                builder.labels.put(name, sums);
+            }
+            for (int k = 0; k < keyCount; k++) {
+                String key = readString(buffer);
+                builder.keys.put(key, readString(buffer));
+            }
+            return builder;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Arquivo de exemplos truncado");
+        }
+    }
+
+    /**
+     * Adds one clip under {@code label}. If the clip with the same {@code key}
+     * was learned under another label, {@code vector} (the same clip's, so
+     * the one added then) is moved from that label to this one. Returns false,
+     * without changing anything, if it is already learned under {@code label}.
+     */
+    public boolean add(String key, String label, float[] vector) {
+        if (vector.length != FeatureStats.VECTOR_DIM) {
+            throw new IllegalArgumentException("Vetor de " + vector.length + " dimensões, esperado " + FeatureStats.VECTOR_DIM);
+        }
+        String previous = keys.put(key, label);
+        if (label.equals(previous)) {
+            return false;
+        }
+        if (previous != null) {
+            LabelSums old = labels.get(previous);
+            if (old != null) {
+                accumulate(old, vector, -1);
+                if (old.count <= 0) {
+                    labels.remove(previous);
+                }
+            }
+        }
+        LabelSums sums = labels.get(label);
+        if (sums == null) {
+            sums = new LabelSums();
+            labels.put(label, sums);
+        }
+        accumulate(sums, vector, 1);
+        return true;
+    }
+
+    private static void accumulate(LabelSums sums, float[] vector, int sign) {
+        sums.count += sign;
+        for (int i = 0; i < vector.length; i++) {
+            sums.sum[i] += sign * vector[i];
+            sums.sumSq[i] += sign * (double) vector[i] * vector[i];
+        }
+    }
+
+    /** The label the clip with {@code key} is learned under, or null if it was not learned. */
+    public String getLabel(String key) {
+        return keys.get(key);
+    }
+
+    public int getClassCount() {
+        return labels.size();
+    }
+
+    public int getExampleCount() {
+        return keys.size();
+    }
+
+    /** Returns the model for the clips learned so far, or null with fewer than {@link #MIN_CLASSES} labels. */
+    public VocalizationClassifier build() {
+        if (labels.size() < MIN_CLASSES) {
+            return null;
+        }
+        int dim = FeatureStats.VECTOR_DIM;
+        int classCount = labels.size();
+        long total = 0;
+        double[] sum = new double[dim];
+        double[] sumSq = new double[dim];
+        double[] within = new double[dim];
+        for (LabelSums sums : labels.values()) {
+            total += sums.count;
+            for (int i = 0; i < dim; i++) {
+                sum[i] += sums.sum[i];
+                sumSq[i] += sums.sumSq[i];
+                within[i] += sums.sumSq[i] - sums.sum[i] * sums.sum[i] / sums.count;
+            }
+        }
+
+        float[] mean = new float[dim];
+        float[] std = new float[dim];
+        double[] scale = new double[dim];
+        double[] variance = new double[dim];
+        long dof = Math.max(0, total - classCount);
+        for (int i = 0; i < dim; i++) {
+            double m = sum[i] / total;
+            double s = Math.sqrt(Math.max(0, sumSq[i] / total - m * m));
+            mean[i] = (float) m;
+            std[i] = (float) s;
+            scale[i] = s > 1e-6 ? s : 1;
+            double withinZ = Math.max(0, within[i]) / (scale[i] * scale[i]);
+            variance[i] = (withinZ + PRIOR_STRENGTH) / (dof + PRIOR_STRENGTH);
+        }
+
+        String[] names = new String[classCount];
+        float[][] weights = new float[classCount][dim];
+        float[] bias = new float[classCount];
+        int c = 0;
+        for (Map.Entry<String, LabelSums> entry : labels.entrySet()) {
+            LabelSums sums = entry.getValue();
+            names[c] = entry.getKey();
+            double b = Math.log((double) sums.count / total);
+            for (int i = 0; i < dim; i++) {
+                double centroid = (sums.sum[i] / sums.count - mean[i]) / scale[i];
+                weights[c][i] = (float) (centroid / variance[i]);
+                b -= centroid * centroid / (2 * variance[i]);
+            }
+            bias[c] = (float) b;
+            c++;
+        }
+        return new VocalizationClassifier(names, mean, std, weights, bias);
+    }
+
+    /** Writes the store through a temporary file, so a crash leaves the previous one intact. */
+    public void save(File file) throws IOException {
+        int size = 4 * 5;
+        for (Map.Entry<String, LabelSums> entry : labels.entrySet()) {
+            size += 4 + entry.getKey().getBytes(StandardCharsets.UTF_8).length + 4 + 16 * FeatureStats.VECTOR_DIM;
+        }
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            size += 4 + entry.getKey().getBytes(StandardCharsets.UTF_8).length
+                + 4 + entry.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[] {'V', 'E', 'X', 'M'});
+        buffer.putInt(VERSION);
+        buffer.putInt(FeatureStats.VECTOR_DIM);
+        buffer.putInt(labels.size());
+        buffer.putInt(keys.size());
+        for (Map.Entry<String, LabelSums> entry : labels.entrySet()) {
+            LabelSums sums = entry.getValue();
+            writeString(buffer, entry.getKey());
+            buffer.putInt(sums.count);
+            for (double value : sums.sum) {
+                buffer.putDouble(value);
+            }
+            for (double value : sums.sumSq) {
+                buffer.putDouble(value);
+            }
+        }
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            writeString(buffer, entry.getKey());
+            writeString(buffer, entry.getValue());
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(parent, file.getName() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(buffer.array());
+            output.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Não foi possível salvar os exemplos");
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+}
@@ -0,0 +1,165 @@
+package com.thiagolins.vocalizeai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Energy detector with hysteresis over 20 ms hops. A region opens when the
+ * level rises {@code onMarginDb} above the tracked noise floor and closes
+ * once it has stayed below {@code offMarginDb} for the hangover time. Only
+ * the region list is kept, never the audio.
+ */
+public class VocalizationSegmenter implements PcmSink {
+    private static final int HOPS_PER_SECOND = 50;
+    private static final double FLOOR_RISE_DB_PER_HOP = 1.0 / HOPS_PER_SECOND;
+    private static final double MIN_FLOOR_DB = -90.0;
+
+    public static final class Region {
+        public final long startUs;
+        public final long endUs;
+        public final double peakDb;
+
+        Region(long startUs, long endUs, double peakDb) {
+            this.startUs = startUs;
+            this.endUs = endUs;
+            this.peakDb = peakDb;
+        }
+    }
+
+    private double onMarginDb = 12.0;
+    private double offMarginDb = 6.0;
+    private long minRegionUs = 250_000;
+    private long hangoverUs = 200_000;
+    private long mergeGapUs = 300_000;
+    private long paddingUs = 100_000;
+    private int maxRegions = 500;
+
+    private final List<Region> regions = new ArrayList<>();
+
+    private int channelCount;
+    private int hopFrames;
+    private long hopDurationUs;
+    private long hopIndex;
+    private int framesInHop;
+    private double sumSquares;
+
+    private double noiseFloorDb;
+    private boolean active;
+    private long regionStartUs;
+    private long lastLoudUs;
+    private double regionPeakDb;
+
+    public VocalizationSegmenter setThresholds(double onMarginDb, double offMarginDb) {
+        this.onMarginDb = onMarginDb;
+        this.offMarginDb = Math.min(offMarginDb, onMarginDb);
+        return this;
+    }
+
+    public VocalizationSegmenter setTiming(long minRegionMs, long hangoverMs, long mergeGapMs, long paddingMs) {
+        this.minRegionUs = minRegionMs * 1000;
+        this.hangoverUs = hangoverMs * 1000;
+        this.mergeGapUs = mergeGapMs * 1000;
+        this.paddingUs = paddingMs * 1000;
+        return this;
+    }
+
+    public VocalizationSegmenter setMaxRegions(int maxRegions) {
+        this.maxRegions = maxRegions;
+        return this;
+    }
+
+    public List<Region> getRegions() {
+        return regions;
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) {
+        this.channelCount = channelCount;
+        this.hopFrames = sampleRate / HOPS_PER_SECOND;
+        this.hopDurationUs = hopFrames * 1_000_000L / sampleRate;
+        hopIndex = 0;
+        framesInHop = 0;
+        sumSquares = 0;
+        noiseFloorDb = Double.NaN;
+        active = false;
+        regions.clear();
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) {
+        for (int i = 0; i + channelCount <= length; i += channelCount) {
+            int mixed = 0;
+            for (int c = 0; c < channelCount; c++) {
+                mixed += buffer[i + c];
+            }
+            double sample = mixed / (double) channelCount / 32768.0;
+            sumSquares += sample * sample;
+
+            if (++framesInHop == hopFrames) {
+                processHop(10.0 * Math.log10(Math.max(sumSquares / hopFrames, 1e-12)));
+                hopIndex++;
+                framesInHop = 0;
+                sumSquares = 0;
+            }
+        }
+    }
+
+    private void processHop(double levelDb) {
+        long hopStartUs = hopIndex * hopDurationUs;
+        long hopEndUs = hopStartUs + hopDurationUs;
+
+        if (Double.isNaN(noiseFloorDb)) {
+            noiseFloorDb = Math.max(levelDb, MIN_FLOOR_DB);
+        }
+
+        if (!active) {
+            if (levelDb > noiseFloorDb + onMarginDb) {
+                active = true;
+                regionStartUs = hopStartUs;
+                lastLoudUs = hopEndUs;
+                regionPeakDb = levelDb;
+            } else if (levelDb < noiseFloorDb) {
+                noiseFloorDb = Math.max(levelDb, MIN_FLOOR_DB);
+            } else {
+                noiseFloorDb += FLOOR_RISE_DB_PER_HOP;
+            }
+            return;
+        }
+
+        regionPeakDb = Math.max(regionPeakDb, levelDb);
+        if (levelDb > noiseFloorDb + offMarginDb) {
+            lastLoudUs = hopEndUs;
+        } else if (hopEndUs - lastLoudUs >= hangoverUs) {
+            closeRegion();
+        }
+    }
+
+    private void closeRegion() {
+        active = false;
+        if (lastLoudUs - regionStartUs < minRegionUs) {
+            return;
+        }
+
+        long start = Math.max(0, regionStartUs - paddingUs);
+        long end = lastLoudUs + paddingUs;
+
+        if (!regions.isEmpty()) {
+            Region previous = regions.get(regions.size() - 1);
+            if (start - previous.endUs <= mergeGapUs) {
+                regions.set(regions.size() - 1,
+                    new Region(previous.startUs, end, Math.max(previous.peakDb, regionPeakDb)));
+                return;
+            }
+        }
+        if (regions.size() < maxRegions) {
+            regions.add(new Region(start, end, regionPeakDb));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (active) {
+            closeRegion();
+        }
+    }
+}
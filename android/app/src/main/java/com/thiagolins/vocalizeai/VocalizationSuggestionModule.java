@@ -0,0 +1,265 @@
+package com.thiagolins.vocalizeai;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class VocalizationSuggestionModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "VocalizationSuggestion";
+    private static final String MODEL_NAME = "vocalization_model.bin";
+    private static final String EXAMPLES_NAME = "vocalization_examples.bin";
+
+    private final ReactApplicationContext reactContext;
+    private final IoScheduler scheduler = IoScheduler.getInstance();
+    private volatile VocalizationClassifier classifier;
+    private volatile String modelSource;
+    private VocalizationModelBuilder builder;
+
+    public VocalizationSuggestionModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+        this.reactContext = reactContext;
+    }
+
+    @Override
+    public String getName() {
+        return "VocalizationSuggestions";
+    }
+
+    private File getInstalledModelFile() {
+        return new File(new File(reactContext.getFilesDir(), "models"), MODEL_NAME);
+    }
+
+    private File getExamplesFile() {
+        return new File(new File(reactContext.getFilesDir(), "models"), EXAMPLES_NAME);
+    }
+
+    private synchronized VocalizationModelBuilder getBuilder() throws Exception {
+        if (builder == null) {
+            try {
+                builder = VocalizationModelBuilder.load(getExamplesFile());
+            } catch (java.io.IOException e) {
+                Log.e(TAG, "Exemplos aprendidos ilegíveis, recomeçando: " + e.getMessage());
+                builder = new VocalizationModelBuilder();
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * The installed model if there is a valid one, else the one learned from
+     * the user's labelled clips, else the one bundled in assets.
+     */
+    private synchronized VocalizationClassifier getClassifier() throws Exception {
+        if (classifier != null) {
+            return classifier;
+        }
+
+        File installed = getInstalledModelFile();
+        if (installed.exists()) {
+            try (InputStream input = new FileInputStream(installed)) {
+                classifier = VocalizationClassifier.load(input);
+                modelSource = installed.getAbsolutePath();
+                return classifier;
+            } catch (Exception e) {
+                Log.e(TAG, "Modelo instalado inválido, usando o modelo do app: " + e.getMessage());
+            }
+        }
+
+        VocalizationClassifier learned = getBuilder().build();
+        if (learned != null) {
+            classifier = learned;
+            modelSource = "learned";
+            return classifier;
+        }
+
+        try (InputStream input = reactContext.getAssets().open("models/" + MODEL_NAME)) {
+            classifier = VocalizationClassifier.load(input);
+            modelSource = "asset:models/" + MODEL_NAME;
+            return classifier;
+        }
+    }
+
+    private FeatureStats loadFeatures(String audioPath, boolean[] fromSidecar) throws Exception {
+        File sidecar = new File(audioPath.replaceFirst("\\.[^./]+$", "") + ".feat");
+        if (sidecar.exists()) {
+            try {
+                FeatureStats stats = FeatureStats.fromSidecar(sidecar);
+                if (stats.getFrameCount() > 0) {
+                    fromSidecar[0] = true;
+                    return stats;
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Sidecar ignorado: " + e.getMessage());
+            }
+        }
+
+        FeatureStats stats = new FeatureStats();
+        PcmDecoder.decode(audioPath, stats, null);
+        fromSidecar[0] = false;
+        return stats;
+    }
+
+    private WritableArray rank(VocalizationClassifier model, float[] scores, int topK) {
+        Integer[] order = new Integer[scores.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+
+        WritableArray suggestions = Arguments.createArray();
+        for (int i = 0; i < Math.min(topK, order.length); i++) {
+            WritableMap suggestion = Arguments.createMap();
+            suggestion.putString("label", model.getLabels()[order[i]]);
+            suggestion.putDouble("score", scores[order[i]]);
+            suggestions.pushMap(suggestion);
+        }
+        return suggestions;
+    }
+
+    @ReactMethod
+    public void suggestLabels(String filePath, int topK, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            try {
+                VocalizationClassifier model = getClassifier();
+                String path = filePath.startsWith("file://") ? filePath.substring(7) : filePath;
+
+                long start = System.nanoTime();
+                boolean[] fromSidecar = new boolean[1];
+                FeatureStats stats = loadFeatures(path, fromSidecar);
+                if (stats.getFrameCount() == 0) {
+                    promise.reject("SUGGEST_ERROR", "Áudio curto demais para sugerir uma vocalização");
+                    return;
+                }
+                float[] scores = model.score(stats.toVector());
+                double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+                WritableMap result = Arguments.createMap();
+                result.putArray("suggestions", rank(model, scores, topK));
+                result.putString("featureSource", fromSidecar[0] ? "sidecar" : "decoded");
+                result.putDouble("elapsedMs", elapsedMs);
+                promise.resolve(result);
+            } catch (java.io.FileNotFoundException e) {
+                promise.reject("MODEL_UNAVAILABLE", "Nenhum modelo de sugestão disponível");
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao sugerir vocalização: " + e.getMessage(), e);
+                promise.reject("SUGGEST_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    /**
+     * Adds a saved clip to the examples the model is learned from and, unless
+     * a model was installed, switches suggestions to the updated one. A clip
+     * already learned under {@code label} is ignored, so JS can offer the
+     * whole library again; one learned under another label is moved to it.
+     */
+    @ReactMethod
+    public void learn(String filePath, String label, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, null, token -> {
+            try {
+                String path = filePath.startsWith("file://") ? filePath.substring(7) : filePath;
+                String key = new File(path).getName();
+                VocalizationModelBuilder examples = getBuilder();
+
+                boolean known;
+                synchronized (this) {
+                    known = label.equals(examples.getLabel(key));
+                }
+                FeatureStats stats = known ? null : loadFeatures(path, new boolean[1]);
+
+                WritableMap result = Arguments.createMap();
+                synchronized (this) {
+                    boolean added = stats != null && stats.getFrameCount() > 0
+                        && examples.add(key, label, stats.toVector());
+                    if (added) {
+                        examples.save(getExamplesFile());
+                        VocalizationClassifier learned = examples.build();
+                        if (learned != null && !getInstalledModelFile().exists()) {
+                            classifier = learned;
+                            modelSource = "learned";
+                        }
+                    }
+                    result.putBoolean("added", added);
+                    result.putInt("examples", examples.getExampleCount());
+                    result.putInt("labels", examples.getClassCount());
+                }
+                promise.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao aprender vocalização: " + e.getMessage());
+                promise.reject("LEARN_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void installModel(String modelPath, Promise promise) {
+        scheduler.submit(IoScheduler.Lane.BACKGROUND, null, token -> {
+            try {
+                String path = modelPath.startsWith("file://") ? modelPath.substring(7) : modelPath;
+                VocalizationClassifier candidate;
+                try (InputStream input = new FileInputStream(path)) {
+                    candidate = VocalizationClassifier.load(input);
+                }
+
+                File target = getInstalledModelFile();
+                if (target.getParentFile() != null && !target.getParentFile().exists()) {
+                    target.getParentFile().mkdirs();
+                }
+                File temp = new File(target.getParentFile(), MODEL_NAME + ".tmp");
+                java.nio.file.Files.copy(
+                    new File(path).toPath(),
+                    temp.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING
+                );
+                if (!temp.renameTo(target)) {
+                    throw new java.io.IOException("Não foi possível substituir o modelo");
+                }
+
+                synchronized (this) {
+                    classifier = candidate;
+                    modelSource = target.getAbsolutePath();
+                }
+                promise.resolve(candidate.getLabels().length);
+            } catch (Exception e) {
+                Log.e(TAG, "Erro ao instalar modelo: " + e.getMessage());
+                promise.reject("INSTALL_MODEL_ERROR", e.getMessage());
+            }
+        }, promise);
+    }
+
+    @ReactMethod
+    public void getModelInfo(Promise promise) {
+        scheduler.submit(IoScheduler.Lane.INTERACTIVE, null, token -> {
+            WritableMap info = Arguments.createMap();
+            try {
+                VocalizationModelBuilder examples = getBuilder();
+                info.putInt("learnedExamples", examples.getExampleCount());
+                info.putInt("learnedLabels", examples.getClassCount());
+
+                VocalizationClassifier model = getClassifier();
+                WritableArray labels = Arguments.createArray();
+                for (String label : model.getLabels()) {
+                    labels.pushString(label);
+                }
+                info.putBoolean("available", true);
+                info.putString("source", modelSource);
+                info.putArray("labels", labels);
+            } catch (Exception e) {
+                info.putBoolean("available", false);
+                info.putString("error", e.getMessage());
+            }
+            promise.resolve(info);
+        }, promise);
+    }
+}
@@ -0,0 +1,213 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Uncompressed archival writer. The header is padded with a JUNK chunk so
+ * sample data starts on a 4 KiB boundary and every block write is aligned.
+ * RIFF/data sizes are patched after each forced flush, so a killed process
+ * leaves a file that plays up to the last patch.
+ *
+ * <p>The archive is carried across part rotations, so it has no size limit.
+ * A reserved JUNK chunk right after the RIFF header is turned into the RF64
+ * {@code ds64} chunk (EBU Tech 3306) once the RIFF size no longer fits a
+ * signed 32-bit field; from then on the 32-bit sizes read 0xFFFFFFFF and the
+ * real ones live in {@code ds64}.
+ */
+public class WavFileSink implements PcmSink {
+    static final int HEADER_SIZE = 4096;
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final long PATCH_INTERVAL_MS = 1000;
+    /** Offset of the reserved chunk that becomes {@code ds64}. */
+    private static final int DS64_OFFSET = 12;
+    private static final int DS64_SIZE = 28;
+    /** Largest RIFF size written as a plain RIFF; readers that treat it as signed break above it. */
+    static final long MAX_RIFF_SIZE = Integer.MAX_VALUE;
+
+    private final File file;
+    private final ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ShortBuffer blockShorts = block.asShortBuffer();
+    private final ByteBuffer sizePatch = ByteBuffer.allocate(8 + DS64_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private long dataBytes = 0;
+    private long patchedDataBytes = 0;
+    private long patchIntervalBytes;
+    private int blockAlign;
+    private boolean rf64;
+
+    public WavFileSink(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getDataBytes() {
+        return dataBytes + block.position();
+    }
+
+    /** Whether the file has grown past {@link #MAX_RIFF_SIZE} and is now RF64. */
+    public boolean isRf64() {
+        return rf64;
+    }
+
+    @Override
+    public void open(int sampleRate, int channelCount) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(0);
+        channel = randomAccessFile.getChannel();
+
+        dataBytes = 0;
+        patchedDataBytes = 0;
+        patchIntervalBytes = sampleRate * channelCount * 2L * PATCH_INTERVAL_MS / 1000;
+        blockAlign = channelCount * 2;
+        rf64 = false;
+        block.clear();
+        blockShorts.clear();
+
+        ByteBuffer header = buildHeader(sampleRate, channelCount, 0);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(false);
+    }
+
+    static ByteBuffer buildHeader(int sampleRate, int channelCount, long dataBytes) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int blockAlign = channelCount * 2;
+        int junkSize = HEADER_SIZE - 12 - (8 + DS64_SIZE) - 24 - 8 - 8;
+
+        header.put(new byte[] {'R', 'I', 'F', 'F'});
+        header.putInt((int) (HEADER_SIZE - 8 + dataBytes));
+        header.put(new byte[] {'W', 'A', 'V', 'E'});
+
+        header.put(new byte[] {'J', 'U', 'N', 'K'});
+        header.putInt(DS64_SIZE);
+        header.position(header.position() + DS64_SIZE);
+
+        header.put(new byte[] {'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) channelCount);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) 16);
+
+        header.put(new byte[] {'J', 'U', 'N', 'K'});
+        header.putInt(junkSize);
+        header.position(header.position() + junkSize);
+
+        header.put(new byte[] {'d', 'a', 't', 'a'});
+        header.putInt((int) dataBytes);
+        header.flip();
+        return header;
+    }
+
+    @Override
+    public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int chunk = Math.min(length - offset, blockShorts.remaining());
+            blockShorts.put(buffer, offset, chunk);
+            block.position(blockShorts.position() * 2);
+            offset += chunk;
+
+            if (!blockShorts.hasRemaining()) {
+                flushBlock();
+            }
+        }
+
+        if (dataBytes - patchedDataBytes >= patchIntervalBytes) {
+            patchSizes();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            dataBytes += channel.write(block, HEADER_SIZE + dataBytes);
+        }
+        block.clear();
+        blockShorts.clear();
+    }
+
+    private void patchSizes() throws IOException {
+        channel.force(false);
+
+        long riffSize = HEADER_SIZE - 8 + dataBytes;
+        if (riffSize > MAX_RIFF_SIZE) {
+            patchRf64(riffSize);
+        } else {
+            sizePatch.clear();
+            sizePatch.putInt((int) riffSize).flip();
+            channel.write(sizePatch, 4);
+
+            sizePatch.clear();
+            sizePatch.putInt((int) dataBytes).flip();
+            channel.write(sizePatch, HEADER_SIZE - 4);
+        }
+
+        patchedDataBytes = dataBytes;
+    }
+
+    /**
+     * Fills {@code ds64} before relabelling the file, so a reader never sees
+     * an RF64 header without the sizes it points to.
+     */
+    private void patchRf64(long riffSize) throws IOException {
+        sizePatch.clear();
+        sizePatch.put(new byte[] {'d', 's', '6', '4'});
+        sizePatch.putInt(DS64_SIZE);
+        sizePatch.putLong(riffSize);
+        sizePatch.putLong(dataBytes);
+        sizePatch.putLong(dataBytes / blockAlign);
+        sizePatch.putInt(0);
+        sizePatch.flip();
+        while (sizePatch.hasRemaining()) {
+            channel.write(sizePatch, DS64_OFFSET + sizePatch.position());
+        }
+        if (rf64) {
+            return;
+        }
+        channel.force(false);
+
+        sizePatch.clear();
+        sizePatch.putInt(-1).flip();
+        channel.write(sizePatch, HEADER_SIZE - 4);
+
+        sizePatch.clear();
+        sizePatch.put(new byte[] {'R', 'F', '6', '4'});
+        sizePatch.putInt(-1).flip();
+        channel.write(sizePatch, 0);
+        rf64 = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (block.position() > 0) {
+                flushBlock();
+            }
+            patchSizes();
+            channel.force(true);
+        } finally {
+            channel.close();
+            randomAccessFile.close();
+            channel = null;
+            randomAccessFile = null;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.thiagolins.vocalizeai;
+
+/**
+ * Opt-in switch for the timing half of the benchmark tests, which measures
+ * this machine as much as the code: {@code ./gradlew test -Pbenchmarks}.
+ * Without it those tests only check their deterministic output.
+ */
+final class Benchmarks {
+    static final boolean ENABLED = Boolean.getBoolean("benchmarks");
+
+    private Benchmarks() {
+    }
+}
@@ -0,0 +1,181 @@
+package com.thiagolins.vocalizeai;
+
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Stands in for the microphone, the AAC encoder and the playback probe.
+ * Audio becomes due as the Robolectric clock advances, and every platform
+ * call that takes time on a device takes the configured time on that
+ * clock, so latencies measured against it include them.
+ */
+final class FakeRecorderBackend extends RecorderBackend {
+    /** Filler written per second of audio, as a constant-rate AAC stream would. */
+    static final int BYTES_PER_SECOND = 32_000;
+
+    /** Creating and starting AudioRecord. */
+    long openInputMs = 40;
+    /** Configuring MediaCodec and creating the MediaMuxer. */
+    long openEncoderMs = 20;
+    /** Draining the encoder and writing the moov. */
+    long closeEncoderMs = 60;
+    /** MediaMetadataRetriever on the finished file. */
+    long probeMs = 15;
+
+    private volatile ToneInput input;
+
+    @Override
+    public CapturePipeline.AudioInput openInput(int sampleRate, int channelCount, int batchFrames) {
+        SystemClock.sleep(openInputMs);
+        ToneInput tone = new ToneInput(sampleRate, channelCount, batchFrames);
+        input = tone;
+        return tone;
+    }
+
+    @Override
+    public AacEncoderSink newEncoder(String outputPath, int bitRate) {
+        return new FakeEncoder(outputPath, bitRate);
+    }
+
+    @Override
+    public long probeDurationMs(File file) {
+        SystemClock.sleep(probeMs);
+        return file.length() * 1000 / BYTES_PER_SECOND;
+    }
+
+    /** True once the capture thread has read every batch the clock has made due. */
+    boolean isCaughtUp() {
+        ToneInput tone = input;
+        return tone == null || tone.released || tone.failed || tone.pendingFrames() < tone.batchFrames;
+    }
+
+    /** Makes every further read of the open input fail, as AudioRecord does when the device goes away. */
+    void failInput() {
+        ToneInput tone = input;
+        if (tone != null) {
+            tone.failed = true;
+        }
+    }
+
+    /** A 440 Hz tone, delivered in batches no faster than the clock makes them due. */
+    private static final class ToneInput implements CapturePipeline.AudioInput {
+        /** Wall time a read waits for the clock before returning nothing. */
+        private static final long READ_WAIT_MS = 5;
+        /** AudioRecord.ERROR_DEAD_OBJECT. */
+        private static final int ERROR_DEAD_OBJECT = -6;
+
+        private final int sampleRate;
+        private final int channelCount;
+        private final int batchFrames;
+        private final long startedAtNs = SystemClock.elapsedRealtimeNanos();
+        private volatile long framesRead;
+        private volatile boolean released;
+        private volatile boolean failed;
+
+        ToneInput(int sampleRate, int channelCount, int batchFrames) {
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            this.batchFrames = batchFrames;
+        }
+
+        long pendingFrames() {
+            long dueFrames = (SystemClock.elapsedRealtimeNanos() - startedAtNs) * sampleRate / 1_000_000_000L;
+            return dueFrames - framesRead;
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            if (failed) {
+                return ERROR_DEAD_OBJECT;
+            }
+            int frames = Math.min(batchFrames, length / channelCount);
+            long deadlineNs = System.nanoTime() + READ_WAIT_MS * 1_000_000L;
+            while (!released) {
+                if (pendingFrames() >= frames) {
+                    for (int i = 0; i < frames; i++) {
+                        short sample = (short) (8000 * Math.sin(2 * Math.PI * 440 * (framesRead + i) / sampleRate));
+                        for (int c = 0; c < channelCount; c++) {
+                            buffer[offset + i * channelCount + c] = sample;
+                        }
+                    }
+                    framesRead += frames;
+                    return frames * channelCount;
+                }
+                if (System.nanoTime() >= deadlineNs) {
+                    return 0;
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public int getBufferBytes() {
+            return batchFrames * channelCount * 2 * 2;
+        }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+
+    private final class FakeEncoder extends AacEncoderSink {
+        private File file;
+        private FileOutputStream out;
+        private int sampleRate;
+        private int channelCount;
+        private long frames;
+        private long bytesWritten;
+
+        FakeEncoder(String outputPath, int bitRate) {
+            super(outputPath, bitRate);
+            this.file = new File(outputPath);
+        }
+
+        @Override
+        public void open(int sampleRate, int channelCount) throws IOException {
+            SystemClock.sleep(openEncoderMs);
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            out = new FileOutputStream(file);
+        }
+
+        @Override
+        public void write(short[] buffer, int length, long presentationTimeUs) throws IOException {
+            frames += length / channelCount;
+            long target = frames * BYTES_PER_SECOND / sampleRate;
+            if (target > bytesWritten) {
+                out.write(new byte[(int) (target - bytesWritten)]);
+                bytesWritten = target;
+            }
+        }
+
+        @Override
+        public boolean rotate(String nextPath) throws IOException {
+            SystemClock.sleep(closeEncoderMs);
+            out.close();
+            file = new File(nextPath);
+            out = new FileOutputStream(file);
+            bytesWritten = frames * BYTES_PER_SECOND / sampleRate;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                SystemClock.sleep(closeEncoderMs);
+                out.close();
+                out = null;
+            }
+        }
+    }
+}
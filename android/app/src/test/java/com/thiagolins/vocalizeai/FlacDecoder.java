@@ -0,0 +1,379 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Reference reader for the FLAC streams {@link FlacEncoderSink} writes:
+ * STREAMINFO plus frames of up to 16-bit samples with constant, verbatim,
+ * fixed and LPC subframes, any stereo decorrelation and Rice or Rice2
+ * residuals. Every frame header CRC-8 and frame CRC-16 is checked, so a
+ * corrupt frame fails the decode instead of yielding wrong samples.
+ */
+final class FlacDecoder {
+    static final class Stream {
+        int minBlockSize;
+        int maxBlockSize;
+        int sampleRate;
+        int channelCount;
+        int bitsPerSample;
+        long totalSamples;
+        final byte[] md5 = new byte[16];
+        /** Decoded samples, interleaved. */
+        short[] samples;
+        int frames;
+    }
+
+    private final byte[] data;
+    private int bytePos;
+    private int bitPos;
+
+    private FlacDecoder(byte[] data) {
+        this.data = data;
+    }
+
+    static Stream decode(File file) throws IOException {
+        return new FlacDecoder(Files.readAllBytes(file.toPath())).decode();
+    }
+
+    private Stream decode() throws IOException {
+        if (readBits(32) != 0x664C6143) {
+            throw new IOException("Sem a marca fLaC");
+        }
+        Stream stream = new Stream();
+        boolean sawStreamInfo = false;
+        boolean last = false;
+        while (!last) {
+            last = readBits(1) == 1;
+            int type = readBits(7);
+            int length = readBits(24);
+            int end = bytePos + length;
+            if (type == 0) {
+                stream.minBlockSize = readBits(16);
+                stream.maxBlockSize = readBits(16);
+                readBits(24);
+                readBits(24);
+                stream.sampleRate = readBits(20);
+                stream.channelCount = readBits(3) + 1;
+                stream.bitsPerSample = readBits(5) + 1;
+                stream.totalSamples = ((long) readBits(4) << 32) | (readBits(32) & 0xFFFFFFFFL);
+                for (int i = 0; i < 16; i++) {
+                    stream.md5[i] = (byte) readBits(8);
+                }
+                sawStreamInfo = true;
+            }
+            bytePos = end;
+        }
+        if (!sawStreamInfo) {
+            throw new IOException("STREAMINFO ausente");
+        }
+        if (stream.bitsPerSample > 16) {
+            throw new IOException("Só amostras de até 16 bits, recebido " + stream.bitsPerSample);
+        }
+
+        short[] out = new short[(int) stream.totalSamples * stream.channelCount];
+        int written = 0;
+        int[][] block = new int[stream.channelCount][Math.max(stream.maxBlockSize, 1)];
+        while (bytePos < data.length) {
+            int n = readFrame(stream, block);
+            if (written + n * stream.channelCount > out.length) {
+                throw new IOException("Mais amostras do que o STREAMINFO declara");
+            }
+            for (int i = 0; i < n; i++) {
+                for (int ch = 0; ch < stream.channelCount; ch++) {
+                    int sample = block[ch][i];
+                    if (sample < Short.MIN_VALUE || sample > Short.MAX_VALUE) {
+                        throw new IOException("Amostra fora de 16 bits no quadro " + stream.frames);
+                    }
+                    out[written++] = (short) sample;
+                }
+            }
+            stream.frames++;
+        }
+        if (written != out.length) {
+            throw new IOException("Decodificadas " + written / stream.channelCount
+                + " amostras, STREAMINFO declara " + stream.totalSamples);
+        }
+        stream.samples = out;
+        return stream;
+    }
+
+    private int readFrame(Stream stream, int[][] block) throws IOException {
+        int frameStart = bytePos;
+        int sync = readBits(15);
+        if (sync != 0x7FFC) {
+            throw new IOException("Sincronismo inválido no byte " + frameStart);
+        }
+        readBits(1);
+        int blockSizeCode = readBits(4);
+        int sampleRateCode = readBits(4);
+        int assignment = readBits(4);
+        int sampleSizeCode = readBits(3);
+        readBits(1);
+        readUtf8();
+
+        int n;
+        if (blockSizeCode == 1) {
+            n = 192;
+        } else if (blockSizeCode >= 2 && blockSizeCode <= 5) {
+            n = 576 << (blockSizeCode - 2);
+        } else if (blockSizeCode == 6) {
+            n = readBits(8) + 1;
+        } else if (blockSizeCode == 7) {
+            n = readBits(16) + 1;
+        } else if (blockSizeCode >= 8) {
+            n = 256 << (blockSizeCode - 8);
+        } else {
+            throw new IOException("Código de tamanho de bloco reservado");
+        }
+        if (n > block[0].length) {
+            throw new IOException("Bloco de " + n + " amostras acima do máximo do STREAMINFO");
+        }
+        if (sampleRateCode == 12) {
+            readBits(8);
+        } else if (sampleRateCode == 13 || sampleRateCode == 14) {
+            readBits(16);
+        }
+        int bps = sampleSizeCode == 0 ? stream.bitsPerSample : sampleSize(sampleSizeCode);
+
+        int headerCrc = crc8(frameStart, bytePos);
+        if (readBits(8) != headerCrc) {
+            throw new IOException("CRC-8 do cabeçalho inválido no quadro " + stream.frames);
+        }
+
+        int channels = assignment < 8 ? assignment + 1 : 2;
+        if (channels != stream.channelCount) {
+            throw new IOException("Quadro com " + channels + " canais, STREAMINFO declara " + stream.channelCount);
+        }
+        for (int ch = 0; ch < channels; ch++) {
+            boolean side = (assignment == 8 && ch == 1) || (assignment == 9 && ch == 0)
+                || (assignment == 10 && ch == 1);
+            readSubframe(block[ch], n, side ? bps + 1 : bps);
+        }
+        if (bitPos != 0) {
+            bitPos = 0;
+            bytePos++;
+        }
+        int frameCrc = crc16(frameStart, bytePos);
+        if (readBits(16) != frameCrc) {
+            throw new IOException("CRC-16 inválido no quadro " + stream.frames);
+        }
+
+        int[] a = block[0];
+        int[] b = channels == 2 ? block[1] : null;
+        for (int i = 0; i < n && b != null; i++) {
+            switch (assignment) {
+                case 8:
+                    b[i] = a[i] - b[i];
+                    break;
+                case 9:
+                    a[i] += b[i];
+                    break;
+                case 10: {
+                    int side = b[i];
+                    int mid = (a[i] << 1) | (side & 1);
+                    a[i] = (mid + side) >> 1;
+                    b[i] = (mid - side) >> 1;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        return n;
+    }
+
+    private void readSubframe(int[] x, int n, int bps) throws IOException {
+        if (readBits(1) != 0) {
+            throw new IOException("Bit de preenchimento do subquadro diferente de zero");
+        }
+        int type = readBits(6);
+        int wasted = 0;
+        if (readBits(1) == 1) {
+            wasted = 1;
+            while (readBits(1) == 0) {
+                wasted++;
+            }
+        }
+        bps -= wasted;
+
+        if (type == 0) {
+            int value = readSigned(bps);
+            for (int i = 0; i < n; i++) {
+                x[i] = value;
+            }
+        } else if (type == 1) {
+            for (int i = 0; i < n; i++) {
+                x[i] = readSigned(bps);
+            }
+        } else if (type >= 8 && type <= 12) {
+            int order = type - 8;
+            for (int i = 0; i < order; i++) {
+                x[i] = readSigned(bps);
+            }
+            readResidual(x, n, order);
+            for (int i = order; i < n; i++) {
+                switch (order) {
+                    case 1:
+                        x[i] += x[i - 1];
+                        break;
+                    case 2:
+                        x[i] += 2 * x[i - 1] - x[i - 2];
+                        break;
+                    case 3:
+                        x[i] += 3 * x[i - 1] - 3 * x[i - 2] + x[i - 3];
+                        break;
+                    case 4:
+                        x[i] += 4 * x[i - 1] - 6 * x[i - 2] + 4 * x[i - 3] - x[i - 4];
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } else if (type >= 32) {
+            int order = type - 31;
+            for (int i = 0; i < order; i++) {
+                x[i] = readSigned(bps);
+            }
+            int precision = readBits(4) + 1;
+            if (precision == 16) {
+                throw new IOException("Precisão de LPC inválida");
+            }
+            int shift = readSigned(5);
+            if (shift < 0) {
+                throw new IOException("Deslocamento de LPC negativo");
+            }
+            int[] coefs = new int[order];
+            for (int i = 0; i < order; i++) {
+                coefs[i] = readSigned(precision);
+            }
+            readResidual(x, n, order);
+            for (int i = order; i < n; i++) {
+                long sum = 0;
+                for (int j = 0; j < order; j++) {
+                    sum += (long) coefs[j] * x[i - 1 - j];
+                }
+                x[i] += (int) (sum >> shift);
+            }
+        } else {
+            throw new IOException("Tipo de subquadro reservado: " + type);
+        }
+
+        if (wasted > 0) {
+            for (int i = 0; i < n; i++) {
+                x[i] <<= wasted;
+            }
+        }
+    }
+
+    /** Reads the residual of samples {@code order..n-1} into {@code x}. */
+    private void readResidual(int[] x, int n, int order) throws IOException {
+        int method = readBits(2);
+        if (method > 1) {
+            throw new IOException("Método de resíduo reservado: " + method);
+        }
+        int paramBits = method == 0 ? 4 : 5;
+        int escape = (1 << paramBits) - 1;
+        int partitionOrder = readBits(4);
+        int partitions = 1 << partitionOrder;
+        int size = n >> partitionOrder;
+        if (size << partitionOrder != n || size < order) {
+            throw new IOException("Ordem de partição " + partitionOrder + " inválida para " + n + " amostras");
+        }
+        int i = order;
+        for (int p = 0; p < partitions; p++) {
+            int k = readBits(paramBits);
+            int end = (p + 1) * size;
+            if (k == escape) {
+                int bits = readBits(5);
+                for (; i < end; i++) {
+                    x[i] = bits == 0 ? 0 : readSigned(bits);
+                }
+                continue;
+            }
+            for (; i < end; i++) {
+                int quotient = 0;
+                while (readBits(1) == 0) {
+                    quotient++;
+                }
+                int u = (quotient << k) | (k > 0 ? readBits(k) : 0);
+                x[i] = (u >>> 1) ^ -(u & 1);
+            }
+        }
+    }
+
+    private long readUtf8() throws IOException {
+        int first = readBits(8);
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        int extra = Integer.numberOfLeadingZeros(~first << 24) - 1;
+        if (extra < 1 || extra > 6) {
+            throw new IOException("Número de quadro mal codificado");
+        }
+        long value = first & (0x3F >> extra);
+        for (int i = 0; i < extra; i++) {
+            int next = readBits(8);
+            if ((next & 0xC0) != 0x80) {
+                throw new IOException("Número de quadro mal codificado");
+            }
+            value = (value << 6) | (next & 0x3F);
+        }
+        return value;
+    }
+
+    private int readSigned(int bits) throws IOException {
+        int value = readBits(bits);
+        return bits < 32 ? (value << (32 - bits)) >> (32 - bits) : value;
+    }
+
+    private int readBits(int bits) throws IOException {
+        int value = 0;
+        for (int i = 0; i < bits; i++) {
+            if (bytePos >= data.length) {
+                throw new IOException("Fim inesperado do arquivo");
+            }
+            value = (value << 1) | ((data[bytePos] >> (7 - bitPos)) & 1);
+            if (++bitPos == 8) {
+                bitPos = 0;
+                bytePos++;
+            }
+        }
+        return value;
+    }
+
+    private int crc8(int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= data[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0x07) & 0xFF : (crc << 1) & 0xFF;
+            }
+        }
+        return crc;
+    }
+
+    private int crc16(int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? ((crc << 1) ^ 0x8005) & 0xFFFF : (crc << 1) & 0xFFFF;
+            }
+        }
+        return crc;
+    }
+
+    private static int sampleSize(int code) throws IOException {
+        switch (code) {
+            case 1: return 8;
+            case 2: return 12;
+            case 4: return 16;
+            case 5: return 20;
+            case 6: return 24;
+            case 7: return 32;
+            default: throw new IOException("Código de tamanho de amostra reservado: " + code);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Feeds {@link FlacEncoderSink} with 20 ms capture buffers of a synthetic
+ * vocalization (harmonics with vibrato, bursts and a low noise floor) and
+ * reports how much faster than real time it encodes on the calling thread
+ * and how much smaller than raw PCM the output is.
+ */
+final class FlacEncoderBenchmark {
+    public static final class Result {
+        public final double audioMs;
+        public final long encodeNs;
+        public final long totalNs;
+        public final long pcmBytes;
+        public final long flacBytes;
+
+        Result(double audioMs, long encodeNs, long totalNs, long pcmBytes, long flacBytes) {
+            this.audioMs = audioMs;
+            this.encodeNs = encodeNs;
+            this.totalNs = totalNs;
+            this.pcmBytes = pcmBytes;
+            this.flacBytes = flacBytes;
+        }
+
+        /** Seconds of audio encoded per second of wall time, file writes included. */
+        public double getRealtimeFactor() {
+            return totalNs > 0 ? audioMs * 1_000_000.0 / totalNs : 0;
+        }
+
+        public double getCompressionRatio() {
+            return flacBytes > 0 ? (double) pcmBytes / flacBytes : 0;
+        }
+    }
+
+    private FlacEncoderBenchmark() {
+    }
+
+    static Result run(File dir, int seconds, int sampleRate, int channelCount) throws IOException {
+        short[][] source = synthesize(sampleRate, channelCount);
+        int buffers = seconds * 50;
+        File file = new File(dir, "bench_flac.flac");
+
+        try {
+            FlacEncoderSink sink = new FlacEncoderSink(file);
+            long start = System.nanoTime();
+            sink.open(sampleRate, channelCount);
+            for (int b = 0; b < buffers; b++) {
+                short[] buffer = source[b % source.length];
+                sink.write(buffer, buffer.length, 0);
+            }
+            sink.close();
+            long totalNs = System.nanoTime() - start;
+
+            long frames = (long) buffers * (sampleRate / 50);
+            return new Result(
+                frames * 1000.0 / sampleRate,
+                sink.getEncodeNs(),
+                totalNs,
+                frames * channelCount * 2,
+                file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Two seconds of buffers, generated up front so only encoding is timed. */
+    static short[][] synthesize(int sampleRate, int channelCount) {
+        int frames = sampleRate / 50;
+        short[][] buffers = new short[100][frames * channelCount];
+        Random random = new Random(42);
+        long sample = 0;
+        for (short[] buffer : buffers) {
+            for (int i = 0; i < frames; i++, sample++) {
+                double t = (double) sample / sampleRate;
+                double pitch = 600 + 80 * Math.sin(2 * Math.PI * 5 * t);
+                double envelope = Math.max(0, Math.sin(2 * Math.PI * 0.5 * t));
+                double voice = envelope * (6000 * Math.sin(2 * Math.PI * pitch * t)
+                    + 2500 * Math.sin(4 * Math.PI * pitch * t)
+                    + 900 * Math.sin(6 * Math.PI * pitch * t));
+                for (int ch = 0; ch < channelCount; ch++) {
+                    double value = voice * (1 - 0.1 * ch) + random.nextGaussian() * 40;
+                    buffer[i * channelCount + ch] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+                }
+            }
+        }
+        return buffers;
+    }
+}
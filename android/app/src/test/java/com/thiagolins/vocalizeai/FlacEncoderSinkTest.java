@@ -0,0 +1,127 @@
+package com.thiagolins.vocalizeai;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Encodes PCM with {@link FlacEncoderSink}, decodes the file with
+ * {@link FlacDecoder} and checks that the samples come back bit-exact and
+ * that the STREAMINFO MD5 matches the PCM that was written.
+ */
+public class FlacEncoderSinkTest {
+    private static final int SAMPLE_RATE = ForegroundAudioRecorderService.SAMPLE_RATE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stereoVocalizationRoundTrips() throws Exception {
+        short[] pcm = concat(FlacEncoderBenchmark.synthesize(SAMPLE_RATE, 2));
+        assertRoundTrip(pcm, 2);
+    }
+
+    @Test
+    public void monoVocalizationRoundTrips() throws Exception {
+        short[] pcm = concat(FlacEncoderBenchmark.synthesize(SAMPLE_RATE, 1));
+        assertRoundTrip(pcm, 1);
+    }
+
+    /**
+     * Silence, full-scale noise, a clipped square wave and opposite-phase
+     * channels push every frame onto constant, verbatim, fixed and side
+     * coding, and the odd length leaves a short last frame.
+     */
+    @Test
+    public void edgeCaseSignalsRoundTrip() throws Exception {
+        int block = FlacEncoderSink.BLOCK_SIZE;
+        short[] pcm = new short[(block * 4 + 777) * 2];
+        Random random = new Random(7);
+        for (int i = 0; i < pcm.length / 2; i++) {
+            short left;
+            short right;
+            if (i < block) {
+                left = 0;
+                right = 0;
+            } else if (i < block * 2) {
+                left = (short) random.nextInt(1 << 16);
+                right = (short) random.nextInt(1 << 16);
+            } else if (i < block * 3) {
+                left = (i / 50) % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE;
+                right = left;
+            } else {
+                left = (short) (12000 * Math.sin(i * 0.03));
+                right = (short) -left;
+            }
+            pcm[i * 2] = left;
+            pcm[i * 2 + 1] = right;
+        }
+        assertRoundTrip(pcm, 2);
+    }
+
+    @Test
+    public void shortRecordingRoundTrips() throws Exception {
+        short[] pcm = new short[20 * 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (i * 311 - 4000);
+        }
+        assertRoundTrip(pcm, 2);
+    }
+
+    private void assertRoundTrip(short[] pcm, int channelCount) throws IOException {
+        File file = folder.newFile("roundtrip.flac");
+        FlacEncoderSink sink = new FlacEncoderSink(file);
+        sink.open(SAMPLE_RATE, channelCount);
+        int bufferLength = SAMPLE_RATE / 50 * channelCount;
+        for (int offset = 0; offset < pcm.length; offset += bufferLength) {
+            int length = Math.min(bufferLength, pcm.length - offset);
+            sink.write(Arrays.copyOfRange(pcm, offset, offset + length), length, 0);
+        }
+        sink.close();
+
+        FlacDecoder.Stream stream = FlacDecoder.decode(file);
+        assertEquals(SAMPLE_RATE, stream.sampleRate);
+        assertEquals(channelCount, stream.channelCount);
+        assertEquals(16, stream.bitsPerSample);
+        assertEquals(pcm.length / channelCount, stream.totalSamples);
+        assertArrayEquals(pcm, stream.samples);
+        assertArrayEquals("MD5 do STREAMINFO", md5(pcm), stream.md5);
+    }
+
+    private static short[] concat(short[][] buffers) {
+        int total = 0;
+        for (short[] buffer : buffers) {
+            total += buffer.length;
+        }
+        short[] out = new short[total];
+        int offset = 0;
+        for (short[] buffer : buffers) {
+            System.arraycopy(buffer, 0, out, offset, buffer.length);
+            offset += buffer.length;
+        }
+        return out;
+    }
+
+    /** MD5 of the samples as signed 16-bit little-endian, interleaved, as the FLAC spec defines it. */
+    private static byte[] md5(short[] pcm) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (short sample : pcm) {
+                digest.update((byte) sample);
+                digest.update((byte) (sample >> 8));
+            }
+            return digest.digest();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
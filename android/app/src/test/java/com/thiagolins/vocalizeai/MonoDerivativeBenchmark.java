@@ -0,0 +1,68 @@
+package com.thiagolins.vocalizeai;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Feeds {@link MonoDerivativeSink} over a {@link WavFileSink} with the same
+ * 20 ms synthetic capture buffers as {@link FlacEncoderBenchmark} and
+ * reports what producing the derivative costs on the calling thread.
+ */
+final class MonoDerivativeBenchmark {
+    public static final class Result {
+        public final double audioMs;
+        public final long processNs;
+        public final long totalNs;
+        public final int taps;
+        public final long outputFrames;
+
+        Result(double audioMs, long processNs, long totalNs, int taps, long outputFrames) {
+            this.audioMs = audioMs;
+            this.processNs = processNs;
+            this.totalNs = totalNs;
+            this.taps = taps;
+            this.outputFrames = outputFrames;
+        }
+
+        /** Fraction of one core the derivative adds while recording. */
+        public double getCpuLoad() {
+            return audioMs > 0 ? processNs / (audioMs * 1_000_000.0) : 0;
+        }
+
+        /** Seconds of audio processed per second of wall time, file writes included. */
+        public double getRealtimeFactor() {
+            return totalNs > 0 ? audioMs * 1_000_000.0 / totalNs : 0;
+        }
+    }
+
+    private MonoDerivativeBenchmark() {
+    }
+
+    static Result run(File dir, int seconds, int sampleRate, int channelCount, int targetRate) throws IOException {
+        short[][] source = FlacEncoderBenchmark.synthesize(sampleRate, channelCount);
+        int buffers = seconds * 50;
+        File file = new File(dir, "bench_derivative.wav");
+
+        try {
+            MonoDerivativeSink sink = new MonoDerivativeSink(new WavFileSink(file), targetRate);
+            long start = System.nanoTime();
+            sink.open(sampleRate, channelCount);
+            for (int b = 0; b < buffers; b++) {
+                short[] buffer = source[b % source.length];
+                sink.write(buffer, buffer.length, 0);
+            }
+            sink.close();
+            long totalNs = System.nanoTime() - start;
+
+            long frames = (long) buffers * (sampleRate / 50);
+            return new Result(
+                frames * 1000.0 / sampleRate,
+                sink.getProcessNs(),
+                totalNs,
+                new PolyphaseResampler(sampleRate, targetRate).getTaps(),
+                sink.getOutputFrames());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.thiagolins.vocalizeai;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.mockito.Mockito;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowService;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Drives the real {@link AudioRecorderModule} and
+ * {@link ForegroundAudioRecorderService} on Robolectric's paused clock,
+ * with {@link FakeRecorderBackend} in place of the hardware.
+ *
+ * <p>Commands go through the module's React methods; the intents it starts
+ * are handed to one service instance each time the clock advances, all
+ * those sent since the last advance in one batch, as a busy command thread
+ * would see them. Service broadcasts are timed by the send stamp they
+ * carry, since the main looper only delivers them once the harness idles
+ * it, and every event the module emits to JS is counted.
+ */
+final class RecorderHarness implements AutoCloseable {
+    /** Clock granularity of {@link #advance}. */
+    private static final long STEP_MS = 10;
+    /** Wall time allowed for the capture thread and the scheduler lanes to go quiet. */
+    private static final long SETTLE_TIMEOUT_MS = 5_000;
+
+    static final class Command {
+        final String action;
+        final long sentAtNs;
+        int id;
+        volatile String outcome;
+
+        Command(String action, long sentAtNs) {
+            this.action = action;
+            this.sentAtNs = sentAtNs;
+        }
+
+        boolean isResolved() {
+            return "resolve".equals(outcome);
+        }
+    }
+
+    private static final class Broadcast {
+        final String action;
+        final int commandId;
+        final long sentAtNs;
+
+        Broadcast(String action, int commandId, long sentAtNs) {
+            this.action = action;
+            this.commandId = commandId;
+            this.sentAtNs = sentAtNs;
+        }
+    }
+
+    private final class RecordingModule extends AudioRecorderModule {
+        RecordingModule(ReactApplicationContext context) {
+            super(context);
+        }
+
+        @Override
+        void emitToJs(String eventName, WritableMap params) {
+            events.add(eventName);
+        }
+    }
+
+    final FakeRecorderBackend backend = new FakeRecorderBackend();
+
+    private final Application app;
+    private final AudioRecorderModule module;
+    private final ServiceController<ForegroundAudioRecorderService> service;
+    private final Looper commandLooper;
+    private final List<Intent> undelivered = new ArrayList<>();
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final List<Broadcast> broadcasts = new ArrayList<>();
+    private int startId;
+
+    private final BroadcastReceiver broadcastLog = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            broadcasts.add(new Broadcast(intent.getAction(), intent.getIntExtra("commandId", 0),
+                intent.getLongExtra(ForegroundAudioRecorderService.EXTRA_SENT_AT_NS, 0)));
+        }
+    };
+
+    RecorderHarness() {
+        RecorderBackend.set(backend);
+        app = RuntimeEnvironment.getApplication();
+        shadowOf(app).grantPermissions(Manifest.permission.RECORD_AUDIO);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction("com.thiagolins.vocalizeai.RECORDING_STATUS");
+        filter.addAction("com.thiagolins.vocalizeai.RECORDING_COMPLETED");
+        filter.addAction("com.thiagolins.vocalizeai.RECORDING_ERROR");
+        filter.addAction("com.thiagolins.vocalizeai.OUTPUT_FILE_SET");
+        filter.addAction(ForegroundAudioRecorderService.ACTION_COMMAND_ACK);
+        app.registerReceiver(broadcastLog, filter, Context.RECEIVER_NOT_EXPORTED);
+
+        module = new RecordingModule(new ReactApplicationContext(app));
+        service = Robolectric.buildService(ForegroundAudioRecorderService.class).create();
+        commandLooper = findLooper("RecorderCommands");
+    }
+
+    Command start(ReadableMap options) {
+        Command command = newCommand(ForegroundAudioRecorderService.ACTION_START_RECORDING);
+        module.startRecording(0, options, promiseFor(command));
+        return sent(command);
+    }
+
+    Command pause() {
+        Command command = newCommand(ForegroundAudioRecorderService.ACTION_PAUSE_RECORDING);
+        module.pauseRecording(promiseFor(command));
+        return sent(command);
+    }
+
+    Command resume() {
+        Command command = newCommand(ForegroundAudioRecorderService.ACTION_RESUME_RECORDING);
+        module.resumeRecording(promiseFor(command));
+        return sent(command);
+    }
+
+    Command stop() {
+        Command command = newCommand(ForegroundAudioRecorderService.ACTION_STOP_RECORDING);
+        module.stopRecording(promiseFor(command));
+        return sent(command);
+    }
+
+    Command releaseCapture() {
+        Command command = newCommand(ForegroundAudioRecorderService.ACTION_RELEASE_CAPTURE);
+        module.releaseCapture(promiseFor(command));
+        return sent(command);
+    }
+
+    /** Moves the clock forward by {@code ms}, running everything that becomes due on the way. */
+    void advance(long ms) {
+        long endMs = SystemClock.uptimeMillis() + ms;
+        pump();
+        while (SystemClock.uptimeMillis() < endMs) {
+            ShadowSystemClock.advanceBy(Duration.ofMillis(Math.min(STEP_MS, endMs - SystemClock.uptimeMillis())));
+            pump();
+        }
+    }
+
+    /** Time from sending {@code command} to the service acknowledging it, or -1. */
+    long ackLatencyMs(Command command) {
+        for (Broadcast broadcast : broadcasts) {
+            if (ForegroundAudioRecorderService.ACTION_COMMAND_ACK.equals(broadcast.action)
+                    && command.id != 0 && broadcast.commandId == command.id) {
+                return (broadcast.sentAtNs - command.sentAtNs) / 1_000_000L;
+            }
+        }
+        return -1;
+    }
+
+    /** Time from sending {@code command} to the first broadcast of {@code action} after it, or -1. */
+    long latencyToBroadcastMs(Command command, String action) {
+        for (Broadcast broadcast : broadcasts) {
+            if (action.equals(broadcast.action) && broadcast.sentAtNs >= command.sentAtNs) {
+                return (broadcast.sentAtNs - command.sentAtNs) / 1_000_000L;
+            }
+        }
+        return -1;
+    }
+
+    int broadcastCount(String action) {
+        int count = 0;
+        for (Broadcast broadcast : broadcasts) {
+            if (action.equals(broadcast.action)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Broadcasts of {@code action} sent between two commands. */
+    int broadcastCount(String action, Command from, Command to) {
+        int count = 0;
+        for (Broadcast broadcast : broadcasts) {
+            if (action.equals(broadcast.action) && broadcast.sentAtNs >= from.sentAtNs
+                    && (to == null || broadcast.sentAtNs < to.sentAtNs)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * True if Android would have stopped the service: after a plain
+     * stopSelf, or a stopSelfResult for the latest start id. Robolectric
+     * records both but stops nothing.
+     */
+    boolean isStoppedBySystem() {
+        ShadowService shadow = shadowOf(service.get());
+        if (!shadow.isStoppedBySelf()) {
+            return false;
+        }
+        int stopId = shadow.getStopSelfResultId();
+        return stopId <= 0 || stopId == startId;
+    }
+
+    int eventCount(String eventName) {
+        synchronized (events) {
+            return Collections.frequency(events, eventName);
+        }
+    }
+
+    @Override
+    public void close() {
+        pump();
+        service.destroy();
+        ShadowSystemClock.advanceBy(Duration.ofMillis(STEP_MS));
+        shadowOf(Looper.getMainLooper()).idle();
+        app.unregisterReceiver(broadcastLog);
+        RecorderBackend.set(null);
+    }
+
+    private Command newCommand(String action) {
+        return new Command(action, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /** Takes the intent the module just started, if it started one, to deliver on the next advance. */
+    private Command sent(Command command) {
+        Intent intent = shadowOf(app).getNextStartedService();
+        if (intent != null) {
+            command.id = intent.getIntExtra(ForegroundAudioRecorderService.EXTRA_COMMAND_ID, 0);
+            undelivered.add(intent);
+        }
+        return command;
+    }
+
+    private Promise promiseFor(Command command) {
+        return Mockito.mock(Promise.class, invocation -> {
+            String method = invocation.getMethod().getName();
+            if (method.equals("resolve") || method.equals("reject")) {
+                command.outcome = method;
+            }
+            return null;
+        });
+    }
+
+    /** Runs everything due at the current clock time until nothing is left to do. */
+    private void pump() {
+        deliverCommands();
+        for (int round = 0; round < 100; round++) {
+            shadowOf(commandLooper).idle();
+            awaitQuiet();
+            shadowOf(Looper.getMainLooper()).idle();
+            awaitQuiet();
+            if (shadowOf(Looper.getMainLooper()).isIdle() && shadowOf(commandLooper).isIdle()
+                    && schedulerIdle()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hands every pending intent to the service while the command thread is
+     * held, so they are drained as one batch.
+     */
+    private void deliverCommands() {
+        if (undelivered.isEmpty()) {
+            return;
+        }
+        CountDownLatch held = new CountDownLatch(1);
+        new Handler(commandLooper).post(() -> {
+            try {
+                held.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (Intent intent : undelivered) {
+            service.get().onStartCommand(intent, 0, ++startId);
+        }
+        undelivered.clear();
+        held.countDown();
+    }
+
+    /** Waits until the capture thread has read what the clock made due and the lanes are empty. */
+    private void awaitQuiet() {
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MS;
+        while ((!backend.isCaughtUp() || !schedulerIdle()) && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static boolean schedulerIdle() {
+        for (Map.Entry<IoScheduler.Lane, IoScheduler.LaneMetrics> lane : IoScheduler.getInstance().getMetrics().entrySet()) {
+            if (lane.getValue().queued > 0 || lane.getValue().active > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Looper findLooper(String threadName) {
+        for (Looper looper : ShadowLooper.getAllLoopers()) {
+            if (threadName.equals(looper.getThread().getName())) {
+                return looper;
+            }
+        }
+        throw new IllegalStateException("Looper " + threadName + " não encontrado");
+    }
+}
@@ -0,0 +1,253 @@
+package com.thiagolins.vocalizeai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command-to-event latencies and event counts of the recorder, per
+ * scenario, checked against the budgets in
+ * {@code recorder_latency_budgets.json}. Latencies are on the fake clock,
+ * so they measure the sleeps, retries and simulated platform costs on the
+ * command path rather than this machine's speed.
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+@Config(sdk = 34, shadows = ShadowArguments.class, instrumentedPackages = "com.facebook.react.bridge")
+public class RecorderLatencyTest {
+    private static final String STATUS = "com.thiagolins.vocalizeai.RECORDING_STATUS";
+    private static final String COMPLETED = "com.thiagolins.vocalizeai.RECORDING_COMPLETED";
+
+    private RecorderHarness harness;
+
+    @Before
+    public void setUp() {
+        harness = new RecorderHarness();
+    }
+
+    @After
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Test
+    public void startStop() throws Exception {
+        RecorderHarness.Command start = harness.start(null);
+        harness.advance(2_000);
+        RecorderHarness.Command stop = harness.stop();
+        harness.advance(1_000);
+
+        assertResolved(start, stop);
+        Map<String, Long> measured = new LinkedHashMap<>();
+        measured.put("start.ackMs", harness.ackLatencyMs(start));
+        measured.put("stop.ackMs", harness.ackLatencyMs(stop));
+        measured.put("stop.completedMs", harness.latencyToBroadcastMs(stop, COMPLETED));
+        putCounts(measured);
+        assertWithinBudget("startStop", measured);
+    }
+
+    @Test
+    public void pauseResume() throws Exception {
+        RecorderHarness.Command start = harness.start(null);
+        harness.advance(1_000);
+        RecorderHarness.Command pause = harness.pause();
+        harness.advance(500);
+        RecorderHarness.Command resume = harness.resume();
+        harness.advance(1_000);
+        RecorderHarness.Command stop = harness.stop();
+        harness.advance(1_000);
+
+        assertResolved(start, pause, resume, stop);
+        Map<String, Long> measured = new LinkedHashMap<>();
+        measured.put("start.ackMs", harness.ackLatencyMs(start));
+        measured.put("pause.ackMs", harness.ackLatencyMs(pause));
+        measured.put("resume.ackMs", harness.ackLatencyMs(resume));
+        measured.put("stop.ackMs", harness.ackLatencyMs(stop));
+        measured.put("stop.completedMs", harness.latencyToBroadcastMs(stop, COMPLETED));
+        putCounts(measured);
+        assertWithinBudget("pauseResume", measured);
+    }
+
+    /** Pause/resume pairs sent faster than the service runs them cancel out. */
+    @Test
+    public void pauseResumeBurst() throws Exception {
+        RecorderHarness.Command start = harness.start(null);
+        harness.advance(1_000);
+        RecorderHarness.Command[] burst = {
+            harness.pause(), harness.resume(), harness.pause(), harness.resume()
+        };
+        harness.advance(500);
+        RecorderHarness.Command stop = harness.stop();
+        harness.advance(1_000);
+
+        assertResolved(start, stop);
+        assertResolved(burst);
+        long burstAckMs = 0;
+        for (RecorderHarness.Command command : burst) {
+            burstAckMs = Math.max(burstAckMs, harness.ackLatencyMs(command));
+        }
+        Map<String, Long> measured = new LinkedHashMap<>();
+        measured.put("burst.ackMs", burstAckMs);
+        measured.put("burst.statusBroadcasts", (long) harness.broadcastCount(STATUS, burst[0], stop));
+        measured.put("stop.ackMs", harness.ackLatencyMs(stop));
+        putCounts(measured);
+        assertWithinBudget("pauseResumeBurst", measured);
+    }
+
+    /**
+     * A microphone that stops delivering audio ends the recording as a stop
+     * would: the part recorded so far is finalized and JS hears why.
+     */
+    @Test
+    public void captureError() throws Exception {
+        RecorderHarness.Command start = harness.start(null);
+        harness.advance(1_000);
+        harness.backend.failInput();
+        harness.advance(1_000);
+
+        assertResolved(start);
+        assertEquals(1, harness.eventCount("onRecordingError"));
+        assertEquals(1, harness.eventCount("onRecordingComplete"));
+        assertTrue(harness.isStoppedBySystem());
+    }
+
+    /**
+     * A start queued right behind a stop, without rapid capture, runs in the
+     * same batch; the stop must not take the service, and with it the new
+     * recording, down.
+     */
+    @Test
+    public void stopThenStart() throws Exception {
+        RecorderHarness.Command start = harness.start(null);
+        harness.advance(1_000);
+        RecorderHarness.Command stop = harness.stop();
+        RecorderHarness.Command restart = harness.start(null);
+        harness.advance(1_000);
+        assertFalse("Serviço parado com uma gravação em andamento", harness.isStoppedBySystem());
+        RecorderHarness.Command finalStop = harness.stop();
+        harness.advance(1_000);
+
+        assertResolved(start, stop, restart, finalStop);
+        assertTrue("Serviço não parou após a última parada", harness.isStoppedBySystem());
+        Map<String, Long> measured = new LinkedHashMap<>();
+        measured.put("start.ackMs", harness.ackLatencyMs(start));
+        measured.put("restart.ackMs", harness.ackLatencyMs(restart));
+        measured.put("stop.ackMs", Math.max(harness.ackLatencyMs(stop), harness.ackLatencyMs(finalStop)));
+        measured.put("stop.completedMs", harness.latencyToBroadcastMs(finalStop, COMPLETED));
+        putCounts(measured);
+        assertWithinBudget("stopThenStart", measured);
+    }
+
+    /** A warm pipeline makes the second start only swap in the prepared segment. */
+    @Test
+    public void rapidCapture() throws Exception {
+        JavaOnlyMap rapid = JavaOnlyMap.of("rapidCapture", true);
+        RecorderHarness.Command coldStart = harness.start(rapid);
+        harness.advance(1_000);
+        RecorderHarness.Command firstStop = harness.stop();
+        harness.advance(500);
+        RecorderHarness.Command warmStart = harness.start(rapid);
+        harness.advance(1_000);
+        RecorderHarness.Command secondStop = harness.stop();
+        harness.advance(500);
+        RecorderHarness.Command release = harness.releaseCapture();
+        harness.advance(500);
+
+        assertResolved(coldStart, firstStop, warmStart, secondStop, release);
+        Map<String, Long> measured = new LinkedHashMap<>();
+        measured.put("coldStart.ackMs", harness.ackLatencyMs(coldStart));
+        measured.put("warmStart.ackMs", harness.ackLatencyMs(warmStart));
+        measured.put("stop.ackMs", Math.max(harness.ackLatencyMs(firstStop), harness.ackLatencyMs(secondStop)));
+        measured.put("stop.completedMs", harness.latencyToBroadcastMs(secondStop, COMPLETED));
+        measured.put("release.ackMs", harness.ackLatencyMs(release));
+        putCounts(measured);
+        assertWithinBudget("rapidCapture", measured);
+    }
+
+    private void putCounts(Map<String, Long> measured) {
+        measured.put("broadcasts.RECORDING_STATUS", (long) harness.broadcastCount(STATUS));
+        measured.put("events.onRecordingStatusChange", (long) harness.eventCount("onRecordingStatusChange"));
+        measured.put("events.onRecordingComplete", (long) harness.eventCount("onRecordingComplete"));
+        measured.put("events.onRecordingError", (long) harness.eventCount("onRecordingError"));
+    }
+
+    private static void assertResolved(RecorderHarness.Command... commands) {
+        for (RecorderHarness.Command command : commands) {
+            assertEquals(command.action + " (" + command.id + ")", "resolve", command.outcome);
+        }
+    }
+
+    /**
+     * Fails on any metric over its budget, on a latency that was never
+     * measured, and on a mismatch between the measured and budgeted metric
+     * names, so a renamed metric cannot silently drop out of the check.
+     */
+    private static void assertWithinBudget(String scenario, Map<String, Long> measured) throws Exception {
+        JSONObject budgets = loadBudgets().getJSONObject(scenario);
+        StringBuilder report = new StringBuilder(scenario).append(':');
+        StringBuilder failures = new StringBuilder();
+
+        for (Map.Entry<String, Long> metric : measured.entrySet()) {
+            String name = metric.getKey();
+            long value = metric.getValue();
+            report.append("\n  ").append(name).append(" = ").append(value);
+            if (!budgets.has(name)) {
+                failures.append("\n  ").append(name).append(" has no budget");
+                continue;
+            }
+            long budget = budgets.getLong(name);
+            report.append(" (budget ").append(budget).append(')');
+            if (value < 0) {
+                failures.append("\n  ").append(name).append(" was not observed");
+            } else if (value > budget) {
+                failures.append("\n  ").append(name).append(" = ").append(value).append(" > ").append(budget);
+            }
+        }
+        for (Iterator<String> names = budgets.keys(); names.hasNext(); ) {
+            String name = names.next();
+            if (!measured.containsKey(name)) {
+                failures.append("\n  ").append(name).append(" is budgeted but not measured");
+            }
+        }
+
+        if (failures.length() > 0) {
+            fail(scenario + " fora do orçamento:" + failures + "\nMedições:" + report);
+        }
+    }
+
+    private static JSONObject loadBudgets() throws IOException, org.json.JSONException {
+        try (InputStream in = RecorderLatencyTest.class.getClassLoader()
+                .getResourceAsStream("recorder_latency_budgets.json")) {
+            if (in == null) {
+                throw new IOException("recorder_latency_budgets.json não encontrado");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                out.write(chunk, 0, n);
+            }
+            return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+}
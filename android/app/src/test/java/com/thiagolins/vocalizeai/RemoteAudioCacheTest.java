@@ -0,0 +1,142 @@
+package com.thiagolins.vocalizeai;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link RemoteAudioCache} against a local HTTP server that honours Range
+ * requests the way S3 does.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class RemoteAudioCacheTest {
+    private static final long BUDGET_BYTES = 2L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] clip = new byte[RemoteAudioCache.CHUNK_BYTES * 2 + 1234];
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(3).nextBytes(clip);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/clip", exchange -> {
+            requests.incrementAndGet();
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            int end = clip.length - 1;
+            int status = 200;
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-");
+                start = Integer.parseInt(bounds[0]);
+                if (bounds.length > 1 && !bounds[1].isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(bounds[1]));
+                }
+                if (start >= clip.length) {
+                    exchange.getResponseHeaders().set("Content-Range", "bytes */" + clip.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + clip.length);
+            }
+            exchange.sendResponseHeaders(status, end - start + 1);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(clip, start, end - start + 1);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/clip";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fetchesInRangesAndServesRepeatsFromDisk() throws Exception {
+        RemoteAudioCache cache = new RemoteAudioCache(folder.getRoot(), BUDGET_BYTES);
+        File file = cache.fetch("audio-1", url, null);
+        assertArrayEquals(clip, Files.readAllBytes(file.toPath()));
+        assertEquals(3, requests.get());
+
+        cache.fetch("audio-1", url, null);
+        assertEquals(3, requests.get());
+        assertEquals(1, cache.hits.get());
+        assertEquals(1, cache.misses.get());
+    }
+
+    @Test
+    public void resumesAPartialDownload() throws Exception {
+        RemoteAudioCache cache = new RemoteAudioCache(folder.getRoot(), BUDGET_BYTES);
+        File part = new File(folder.getRoot(), DiskLruBudget.hashName("audio-2") + ".audio.part");
+        try (FileOutputStream out = new FileOutputStream(part)) {
+            out.write(clip, 0, RemoteAudioCache.CHUNK_BYTES + 100);
+        }
+
+        File file = cache.fetch("audio-2", url, null);
+        assertArrayEquals(clip, Files.readAllBytes(file.toPath()));
+        assertEquals(1, cache.resumed.get());
+        assertEquals(clip.length - RemoteAudioCache.CHUNK_BYTES - 100, cache.bytesDownloaded.get());
+    }
+
+    /** Probing for a prefetch must not look like serving the clip. */
+    @Test
+    public void containsDoesNotCountAsAHit() throws Exception {
+        RemoteAudioCache cache = new RemoteAudioCache(folder.getRoot(), BUDGET_BYTES);
+        cache.fetch("audio-3", url, null);
+        long served = cache.bytesServed.get();
+
+        assertTrue(cache.contains("audio-3"));
+        assertFalse(cache.contains("audio-4"));
+        assertEquals(0, cache.hits.get());
+        assertEquals(served, cache.bytesServed.get());
+    }
+
+    @Test
+    public void trimExpiresStalePartialDownloads() throws Exception {
+        File stale = new File(folder.getRoot(), "abandoned.audio.part");
+        File fresh = new File(folder.getRoot(), "active.audio.part");
+        for (File part : new File[] {stale, fresh}) {
+            try (FileOutputStream out = new FileOutputStream(part)) {
+                out.write(new byte[(int) BUDGET_BYTES / 2]);
+            }
+        }
+        stale.setLastModified(System.currentTimeMillis() - DiskLruBudget.STALE_IN_PROGRESS_MS - 1000);
+
+        RemoteAudioCache cache = new RemoteAudioCache(folder.getRoot(), BUDGET_BYTES);
+        cache.fetch("audio-5", url, null);
+
+        assertFalse("parcial abandonado continua no cache", stale.exists());
+        assertTrue("download em andamento foi removido", fresh.exists());
+        assertTrue(cache.getDiskBytes() <= BUDGET_BYTES);
+    }
+}
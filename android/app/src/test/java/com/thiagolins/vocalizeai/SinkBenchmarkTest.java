@@ -0,0 +1,58 @@
+package com.thiagolins.vocalizeai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs the sink benchmarks on the JVM and checks their output. With
+ * {@link Benchmarks#ENABLED} it also prints their figures and asserts they
+ * keep up with real time; those assertions only catch gross regressions,
+ * so compare the printed numbers between runs on the same machine for
+ * anything finer.
+ */
+public class SinkBenchmarkTest {
+    private static final int SECONDS = 10;
+    private static final int SAMPLE_RATE = ForegroundAudioRecorderService.SAMPLE_RATE;
+    private static final int CHANNEL_COUNT = ForegroundAudioRecorderService.CHANNEL_COUNT;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void wavWriter() throws Exception {
+        WavWriterBenchmark.Result result = WavWriterBenchmark.run(folder.getRoot(), SECONDS, SAMPLE_RATE, CHANNEL_COUNT);
+        assertEquals((long) SECONDS * SAMPLE_RATE * CHANNEL_COUNT * 2, result.bytesWritten);
+        if (Benchmarks.ENABLED) {
+            System.out.printf("wavWriter: channel %.1f ms, stream %.1f ms, %d bytes em %d buffers%n",
+                result.channelWriterNs / 1e6, result.streamWriterNs / 1e6, result.bytesWritten, result.buffers);
+        }
+    }
+
+    @Test
+    public void flacEncoder() throws Exception {
+        FlacEncoderBenchmark.Result result = FlacEncoderBenchmark.run(folder.getRoot(), SECONDS, SAMPLE_RATE, CHANNEL_COUNT);
+        assertTrue("FLAC maior que o PCM", result.getCompressionRatio() > 1);
+        if (Benchmarks.ENABLED) {
+            System.out.printf("flacEncoder: %.1fx tempo real, compressão %.2f, codificação %.1f ms%n",
+                result.getRealtimeFactor(), result.getCompressionRatio(), result.encodeNs / 1e6);
+            assertTrue("FLAC mais lento que o tempo real", result.getRealtimeFactor() > 1);
+        }
+    }
+
+    @Test
+    public void mlDerivative() throws Exception {
+        MonoDerivativeBenchmark.Result result = MonoDerivativeBenchmark.run(folder.getRoot(), SECONDS,
+            SAMPLE_RATE, CHANNEL_COUNT, ForegroundAudioRecorderService.ML_SAMPLE_RATE);
+        long expected = (long) SECONDS * ForegroundAudioRecorderService.ML_SAMPLE_RATE;
+        assertTrue("Quadros de saída: " + result.outputFrames, Math.abs(result.outputFrames - expected) <= 64);
+        if (Benchmarks.ENABLED) {
+            System.out.printf("mlDerivative: %.1fx tempo real, carga %.3f, %d taps, %d quadros%n",
+                result.getRealtimeFactor(), result.getCpuLoad(), result.taps, result.outputFrames);
+            assertTrue("Cópia de 16 kHz mais lenta que o tempo real", result.getRealtimeFactor() > 1);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.thiagolins.vocalizeai;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * {@link UploadQueue} and {@link AudioUploader} against a local stand-in for
+ * {@code POST /audios} that, like the API should, stores each idempotency
+ * key once and answers a repeat with 409.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class UploadQueueTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class Request {
+        final String query;
+        final String authorization;
+        final String apiKey;
+        final String idempotencyKey;
+        final byte[] body;
+
+        Request(HttpExchange exchange, byte[] body) {
+            this.query = exchange.getRequestURI().getQuery();
+            this.authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            this.apiKey = exchange.getRequestHeaders().getFirst("X-API-Key");
+            this.idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            this.body = body;
+        }
+    }
+
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, byte[]> stored = Collections.synchronizedMap(new HashMap<>());
+    /** Statuses to answer before storing anything; empty means accept. */
+    private final LinkedList<Integer> failures = new LinkedList<>();
+    /** Runs inside the handler while the upload is in flight. */
+    private volatile Runnable onRequest;
+
+    private Context context;
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.getApplication();
+        new File(context.getFilesDir(), "upload-queue.json").delete();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/audios", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            Request request = new Request(exchange, body);
+            requests.add(request);
+            Runnable hook = onRequest;
+            if (hook != null) {
+                hook.run();
+            }
+
+            int status;
+            synchronized (failures) {
+                status = failures.isEmpty() ? 0 : failures.removeFirst();
+            }
+            if (status == 0) {
+                status = stored.putIfAbsent(request.idempotencyKey, body) == null ? 201 : 409;
+            }
+            byte[] response = (status == 201 ? "{\"id\": 1}" : "{\"detail\": \"Status " + status + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void uploadsAPendingEntryAsMultipart() throws Exception {
+        File recording = recording("recording_1.m4a", 200_000);
+        UploadQueue queue = configuredQueue();
+        UploadQueue.Entry entry = queue.enqueue(recording, 7, 3);
+        assertEquals(UploadQueue.STATE_PENDING, entry.state);
+
+        queue.runPending(token());
+
+        assertEquals(UploadQueue.STATE_UPLOADED, only(queue).state);
+        assertEquals(1, requests.size());
+        Request request = requests.get(0);
+        assertEquals("id_vocalizacao=7&id_participante=3", request.query);
+        assertEquals("Bearer session", request.authorization);
+        assertEquals("api-key", request.apiKey);
+        assertEquals(entry.id, request.idempotencyKey);
+        assertTrue(contains(request.body, Files.readAllBytes(recording.toPath())));
+        assertTrue(contains(request.body, "filename=\"recording_1.m4a\"".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void sameContentAtAnotherPathIsNotSentAgain() throws Exception {
+        File recording = recording("recording_2.m4a", 50_000);
+        UploadQueue queue = configuredQueue();
+        queue.enqueue(recording, 7, 3);
+        queue.runPending(token());
+
+        File copy = folder.newFile("copy.m4a");
+        Files.copy(recording.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        UploadQueue.Entry again = queue.enqueue(copy, 7, 3);
+        queue.runPending(token());
+
+        assertEquals(UploadQueue.STATE_UPLOADED, again.state);
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void heldEntriesWaitForTheirLabels() throws Exception {
+        File recording = recording("recording_3.m4a", 10_000);
+        UploadQueue queue = configuredQueue();
+        queue.hold(recording);
+        queue.runPending(token());
+        assertEquals(UploadQueue.STATE_HELD, only(queue).state);
+        assertEquals(0, requests.size());
+
+        queue.enqueue(recording, 2, 5);
+        queue.runPending(token());
+        assertEquals(UploadQueue.STATE_UPLOADED, only(queue).state);
+        assertEquals(1, requests.size());
+    }
+
+    /** The app moves a recording when it saves it; the held entry must follow, not be pruned. */
+    @Test
+    public void heldEntryFollowsAMovedRecording() throws Exception {
+        File recording = recording("recording_10.m4a", 10_000);
+        UploadQueue queue = configuredQueue();
+        queue.hold(recording);
+
+        File saved = new File(folder.newFolder("audio"), "recording_saved.m4a");
+        assertTrue(recording.renameTo(saved));
+        queue.hold(saved);
+        queue.runPending(token());
+
+        UploadQueue.Entry entry = only(queue);
+        assertEquals(UploadQueue.STATE_HELD, entry.state);
+        assertEquals(saved.getAbsolutePath(), entry.path);
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    public void serverErrorsBackOff() throws Exception {
+        failures.add(503);
+        UploadQueue queue = configuredQueue();
+        queue.enqueue(recording("recording_4.m4a", 10_000), 1, 1);
+
+        queue.runPending(token());
+        UploadQueue.Entry entry = only(queue);
+        assertEquals(UploadQueue.STATE_PENDING, entry.state);
+        assertEquals(1, entry.attempts);
+        assertEquals("Status 503", entry.error);
+        assertTrue(entry.nextAttemptAt > System.currentTimeMillis());
+
+        // Not due yet: nothing is sent.
+        queue.runPending(token());
+        assertEquals(1, requests.size());
+
+        assertTrue(queue.retry(entry.id));
+        queue.runPending(token());
+        assertEquals(UploadQueue.STATE_UPLOADED, only(queue).state);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void authErrorsWaitForANewSession() throws Exception {
+        failures.add(401);
+        UploadQueue queue = configuredQueue();
+        queue.enqueue(recording("recording_5.m4a", 10_000), 1, 1);
+
+        queue.runPending(token());
+        assertEquals(UploadQueue.STATE_AUTH_REQUIRED, only(queue).state);
+
+        queue.configure(baseUrl, "api-key", "renewed");
+        assertEquals(UploadQueue.STATE_PENDING, only(queue).state);
+        queue.runPending(token());
+        assertEquals(UploadQueue.STATE_UPLOADED, only(queue).state);
+        assertEquals("Bearer renewed", requests.get(1).authorization);
+    }
+
+    @Test
+    public void clientErrorsFail() throws Exception {
+        failures.add(422);
+        UploadQueue queue = configuredQueue();
+        queue.enqueue(recording("recording_6.m4a", 10_000), 1, 1);
+
+        queue.runPending(token());
+        assertEquals(UploadQueue.STATE_FAILED, only(queue).state);
+        assertEquals(1, requests.size());
+    }
+
+    /**
+     * The process dies after the server stored the upload but before the
+     * response was seen. The reloaded queue sends it again with the same
+     * key, and the server keeps a single copy.
+     */
+    @Test
+    public void resendAfterDeathMidUploadIsStoredOnce() throws Exception {
+        File queueFile = new File(context.getFilesDir(), "upload-queue.json");
+        File atDeath = folder.newFile("queue-at-death.json");
+        onRequest = () -> {
+            try {
+                Files.copy(queueFile.toPath(), atDeath.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        };
+        UploadQueue queue = configuredQueue();
+        queue.enqueue(recording("recording_7.m4a", 80_000), 4, 2);
+        queue.runPending(token());
+        onRequest = null;
+
+        Files.copy(atDeath.toPath(), queueFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        UploadQueue restarted = new UploadQueue(context);
+        assertEquals(UploadQueue.STATE_PENDING, only(restarted).state);
+
+        restarted.runPending(token());
+        assertEquals(UploadQueue.STATE_UPLOADED, only(restarted).state);
+        assertEquals(2, requests.size());
+        assertEquals(requests.get(0).idempotencyKey, requests.get(1).idempotencyKey);
+        assertEquals(1, stored.size());
+    }
+
+    @Test
+    public void cancellationLeavesTheEntryDue() throws Exception {
+        UploadQueue queue = configuredQueue();
+        queue.enqueue(recording("recording_8.m4a", 1_000_000), 1, 1);
+        IoScheduler.CancellationToken token = token();
+        queue.addListener(entry -> {
+            if (UploadQueue.STATE_UPLOADING.equals(entry.state) && entry.bytesSent > 0) {
+                token.cancel();
+            }
+        });
+
+        try {
+            queue.runPending(token);
+            throw new AssertionError("Envio não foi cancelado");
+        } catch (CancellationException expected) {
+        }
+        UploadQueue.Entry entry = only(queue);
+        assertEquals(UploadQueue.STATE_PENDING, entry.state);
+        assertEquals(0, entry.attempts);
+        assertEquals(0, stored.size());
+    }
+
+    @Test
+    public void uploaderReportsProgressUpToTheBodyLength() throws Exception {
+        File recording = recording("recording_9.flac", 300_000);
+        UploadQueue.Config config = new UploadQueue.Config(baseUrl, null, "session");
+        long[] last = new long[2];
+        AudioUploader.Response response = AudioUploader.upload(config, recording, "key-9", 1, 1, token(),
+            (sent, total) -> {
+                assertTrue(sent >= last[0]);
+                last[0] = sent;
+                last[1] = total;
+            });
+
+        assertTrue(response.isSuccessful());
+        assertEquals(last[1], last[0]);
+        assertEquals(requests.get(0).body.length, last[1]);
+        assertNull(requests.get(0).apiKey);
+        assertTrue(contains(requests.get(0).body, "Content-Type: audio/flac".getBytes(StandardCharsets.UTF_8)));
+
+        AudioUploader.Response repeat = AudioUploader.upload(config, recording, "key-9", 1, 1, token(), null);
+        assertTrue(repeat.isDuplicate());
+        assertArrayEquals(stored.get("key-9"), requests.get(0).body);
+    }
+
+    private UploadQueue configuredQueue() {
+        UploadQueue queue = new UploadQueue(context);
+        queue.configure(baseUrl, "api-key", "session");
+        return queue;
+    }
+
+    private static UploadQueue.Entry only(UploadQueue queue) {
+        List<UploadQueue.Entry> entries = queue.snapshot();
+        assertEquals(1, entries.size());
+        return entries.get(0);
+    }
+
+    private static IoScheduler.CancellationToken token() {
+        return new IoScheduler.CancellationToken("upload-test");
+    }
+
+    private File recording(String name, int bytes) throws IOException {
+        byte[] content = new byte[bytes];
+        new Random(name.hashCode()).nextBytes(content);
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean contains(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,258 @@
+package com.thiagolins.vocalizeai;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Learns {@link VocalizationModelBuilder} models on a synthetic fixture
+ * corpus of three vocalization types. Half of the corpus is learned, the
+ * other half is suggested, so accuracy is measured on clips the model has
+ * not seen. With {@link Benchmarks#ENABLED} the time per suggestion
+ * (features plus scoring) is measured too.
+ */
+public class VocalizationSuggestionTest {
+    private static final int SAMPLE_RATE = ForegroundAudioRecorderService.SAMPLE_RATE;
+    private static final int CHANNEL_COUNT = ForegroundAudioRecorderService.CHANNEL_COUNT;
+    private static final String[] LABELS = {"Delight", "Frustration", "Selftalk"};
+    private static final int CLIPS_PER_LABEL = 16;
+    private static final double CLIP_SECONDS = 2.0;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class Clip {
+        final String key;
+        final String label;
+        final short[] pcm;
+
+        Clip(String key, String label, short[] pcm) {
+            this.key = key;
+            this.label = label;
+            this.pcm = pcm;
+        }
+    }
+
+    @Test
+    public void suggestsUnseenClipsOfTheFixtureCorpus() throws Exception {
+        List<Clip> corpus = fixtureCorpus();
+        VocalizationModelBuilder builder = new VocalizationModelBuilder();
+        List<Clip> unseen = new ArrayList<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            Clip clip = corpus.get(i);
+            if (i % 2 == 0) {
+                assertTrue(builder.add(clip.key, clip.label, features(clip.pcm).toVector()));
+            } else {
+                unseen.add(clip);
+            }
+        }
+        VocalizationClassifier model = builder.build();
+
+        int correct = 0;
+        for (Clip clip : unseen) {
+            float[] scores = model.score(features(clip.pcm).toVector());
+            if (model.getLabels()[argmax(scores)].equals(clip.label)) {
+                correct++;
+            }
+        }
+        double accuracy = (double) correct / unseen.size();
+        assertTrue("Acerto " + accuracy, accuracy >= 0.9);
+
+        if (Benchmarks.ENABLED) {
+            benchmarkSuggestion(model, unseen);
+        }
+    }
+
+    private static void benchmarkSuggestion(VocalizationClassifier model, List<Clip> clips) {
+        for (Clip clip : clips.subList(0, 4)) {
+            model.score(features(clip.pcm).toVector());
+        }
+
+        List<Double> timings = new ArrayList<>();
+        for (Clip clip : clips) {
+            long start = System.nanoTime();
+            model.score(features(clip.pcm).toVector());
+            timings.add((System.nanoTime() - start) / 1_000_000.0);
+        }
+
+        Collections.sort(timings);
+        double total = 0;
+        for (double t : timings) {
+            total += t;
+        }
+        double p95 = timings.get((int) Math.ceil(timings.size() * 0.95) - 1);
+        System.out.printf("sugestões: %d clipes de %.1f s, média %.2f ms, p95 %.2f ms, máx %.2f ms%n",
+            clips.size(), CLIP_SECONDS, total / timings.size(), p95, timings.get(timings.size() - 1));
+        assertTrue("p95 de " + p95 + " ms por clipe", p95 < 100);
+    }
+
+    @Test
+    public void needsTwoLabelsForAModel() {
+        VocalizationModelBuilder builder = new VocalizationModelBuilder();
+        List<Clip> corpus = fixtureCorpus();
+        builder.add(corpus.get(0).key, corpus.get(0).label, features(corpus.get(0).pcm).toVector());
+        assertNull(builder.build());
+
+        Clip other = corpus.get(CLIPS_PER_LABEL);
+        builder.add(other.key, other.label, features(other.pcm).toVector());
+        assertEquals(2, builder.build().getLabels().length);
+    }
+
+    @Test
+    public void learnsEachClipOnce() {
+        Clip clip = fixtureCorpus().get(0);
+        float[] vector = features(clip.pcm).toVector();
+        VocalizationModelBuilder builder = new VocalizationModelBuilder();
+        assertTrue(builder.add(clip.key, clip.label, vector));
+        assertFalse(builder.add(clip.key, clip.label, vector));
+        assertEquals(1, builder.getExampleCount());
+        assertEquals(1, builder.getClassCount());
+    }
+
+    @Test
+    public void relabellingMovesTheClip() {
+        List<Clip> corpus = fixtureCorpus();
+        VocalizationModelBuilder relabelled = new VocalizationModelBuilder();
+        VocalizationModelBuilder expected = new VocalizationModelBuilder();
+        for (int i = 0; i < corpus.size(); i += 2) {
+            Clip clip = corpus.get(i);
+            float[] vector = features(clip.pcm).toVector();
+            String wrong = i % 4 == 0 ? "Social" : LABELS[(i / CLIPS_PER_LABEL + 1) % LABELS.length];
+            assertTrue(relabelled.add(clip.key, wrong, vector));
+            assertTrue(relabelled.add(clip.key, clip.label, vector));
+            expected.add(clip.key, clip.label, vector);
+        }
+
+        assertEquals(expected.getExampleCount(), relabelled.getExampleCount());
+        assertEquals(LABELS.length, relabelled.getClassCount());
+        assertEquals(corpus.get(0).label, relabelled.getLabel(corpus.get(0).key));
+        float[] probe = features(corpus.get(1).pcm).toVector();
+        assertArrayEquals(expected.build().score(probe), relabelled.build().score(probe), 1e-4f);
+    }
+
+    @Test
+    public void storeRoundTrips() throws IOException {
+        List<Clip> corpus = fixtureCorpus();
+        VocalizationModelBuilder builder = new VocalizationModelBuilder();
+        for (int i = 0; i < corpus.size(); i += 3) {
+            Clip clip = corpus.get(i);
+            builder.add(clip.key, clip.label, features(clip.pcm).toVector());
+        }
+        File store = new File(folder.getRoot(), "models/vocalization_examples.bin");
+        builder.save(store);
+
+        VocalizationModelBuilder loaded = VocalizationModelBuilder.load(store);
+        assertEquals(builder.getExampleCount(), loaded.getExampleCount());
+        assertEquals(corpus.get(0).label, loaded.getLabel(corpus.get(0).key));
+        float[] probe = features(corpus.get(1).pcm).toVector();
+        assertArrayEquals(builder.build().score(probe), loaded.build().score(probe), 1e-6f);
+    }
+
+    private static FeatureStats features(short[] pcm) {
+        FeatureStats stats = new FeatureStats();
+        stats.open(SAMPLE_RATE, CHANNEL_COUNT);
+        int bufferLength = SAMPLE_RATE / 50 * CHANNEL_COUNT;
+        try {
+            for (int offset = 0; offset < pcm.length; offset += bufferLength) {
+                int length = Math.min(bufferLength, pcm.length - offset);
+                stats.write(Arrays.copyOfRange(pcm, offset, offset + length), length, 0);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return stats;
+    }
+
+    private static int argmax(float[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Deterministic stand-ins for three vocalization types, each clip with
+     * its own pitch, level and noise: a bright rising tone, a low harsh
+     * buzz and quiet syllabic babble.
+     */
+    private static List<Clip> fixtureCorpus() {
+        Random random = new Random(2024);
+        List<Clip> corpus = new ArrayList<>();
+        for (String label : LABELS) {
+            for (int n = 0; n < CLIPS_PER_LABEL; n++) {
+                corpus.add(new Clip(label + "_" + n + ".m4a", label, synthesize(label, random)));
+            }
+        }
+        return corpus;
+    }
+
+    private static short[] synthesize(String label, Random random) {
+        int frames = (int) (CLIP_SECONDS * SAMPLE_RATE);
+        short[] pcm = new short[frames * CHANNEL_COUNT];
+        double level = 0.6 + 0.4 * random.nextDouble();
+        double noise = 30 + 60 * random.nextDouble();
+        double base;
+        switch (label) {
+            case "Delight":
+                base = 800 + 300 * random.nextDouble();
+                break;
+            case "Frustration":
+                base = 180 + 120 * random.nextDouble();
+                break;
+            default:
+                base = 200 + 60 * random.nextDouble();
+                break;
+        }
+        double phase = 0;
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double value;
+            switch (label) {
+                case "Delight": {
+                    double pitch = base * (1 + 0.3 * t / CLIP_SECONDS);
+                    phase += 2 * Math.PI * pitch / SAMPLE_RATE;
+                    value = 9000 * Math.sin(phase) + 2000 * Math.sin(2 * phase);
+                    break;
+                }
+                case "Frustration": {
+                    phase += 2 * Math.PI * base / SAMPLE_RATE;
+                    double buzz = 0;
+                    for (int h = 1; h <= 12; h++) {
+                        buzz += Math.sin(h * phase) / h;
+                    }
+                    value = 9000 * buzz + 1500 * random.nextGaussian();
+                    break;
+                }
+                default: {
+                    double syllables = Math.max(0, Math.sin(2 * Math.PI * 4 * t));
+                    phase += 2 * Math.PI * base / SAMPLE_RATE;
+                    value = syllables * (2500 * Math.sin(phase) + 1200 * Math.sin(3 * phase));
+                    break;
+                }
+            }
+            value = level * value + noise * random.nextGaussian();
+            short sample = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            for (int c = 0; c < CHANNEL_COUNT; c++) {
+                pcm[i * CHANNEL_COUNT + c] = sample;
+            }
+        }
+        return pcm;
+    }
+}
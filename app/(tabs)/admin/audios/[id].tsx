@@ -1,4 +1,5 @@
 import ConfirmationModal from "@/components/ConfirmationModal";
+import SpectrogramThumbnail from "@/components/SpectrogramThumbnail";
 import VocalizationSelect from "@/components/VocalizationSelect";
 import {
   deleteAudio,
@@ -10,6 +11,7 @@ import { getUserById } from "@/services/usuarioService";
 import { getVocalizacoes } from "@/services/vocalizacoesService";
 import { AudioItem } from "@/types/Audio";
 import { Vocalizacao } from "@/types/Vocalizacao";
+import RemoteAudioCache from "@/utils/RemoteAudioCache";
 import translateVocalization from "@/utils/TranslateVocalization";
 import { MaterialIcons } from "@expo/vector-icons";
 import { Audio } from "expo-av";
@@ -257,6 +259,35 @@ export default function AudiosUsuarioScreen() {
     }
   };
 
+  const PREFETCH_COUNT = 3;
+
+  const resolveAudioSource = (audioId: number) =>
+    RemoteAudioCache.resolvePlayable(`audio-${audioId}`, () =>
+      getAudioPlayUrl(audioId)
+    );
+
+  const resolveLocalAudio = (
+    audioId: number,
+    token: { id: string | null }
+  ): Promise<string | null> =>
+    RemoteAudioCache.resolveLocal(
+      `audio-${audioId}`,
+      () => getAudioPlayUrl(audioId),
+      token
+    );
+
+  const prefetchAfter = (audioId: number) => {
+    const index = audios.findIndex((audio) => audio.id === audioId);
+    if (index < 0) return;
+
+    RemoteAudioCache.prefetch(
+      audios.slice(index + 1, index + 1 + PREFETCH_COUNT).map((audio) => ({
+        key: `audio-${audio.id}`,
+        getUrl: () => getAudioPlayUrl(audio.id),
+      }))
+    );
+  };
+
   const handlePlayAudio = async (audioId: number) => {
     try {
       if (playingAudioId === audioId && soundRef.current) {
@@ -268,7 +299,7 @@ export default function AudiosUsuarioScreen() {
         await stopAudioPlayback();
       }
 
-      const audioUrl = await getAudioPlayUrl(audioId);
+      const audioUrl = await resolveAudioSource(audioId);
       const { sound: newSound } = await Audio.Sound.createAsync(
         { uri: audioUrl },
         { progressUpdateIntervalMillis: 500 }
@@ -285,6 +316,7 @@ export default function AudiosUsuarioScreen() {
       await newSound.playAsync();
       soundRef.current = newSound;
       setPlayingAudioId(audioId);
+      prefetchAfter(audioId);
     } catch (error) {
       Toast.show({
         type: "error",
@@ -343,7 +375,10 @@ export default function AudiosUsuarioScreen() {
       <TouchableOpacity onPress={() => handlePressAudio(item)}>
         <View style={styles.audioContainer}>
           <View style={styles.iconContainer}>
-            <MaterialIcons name="audio-file" size={40} color="#666" />
+            <SpectrogramThumbnail
+              cacheKey={`audio-${item.id}`}
+              resolveSource={(token) => resolveLocalAudio(item.id, token)}
+            />
           </View>
           <View style={styles.audioInfo}>
             <Text style={styles.audioName} numberOfLines={1}>
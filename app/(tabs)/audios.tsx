@@ -10,8 +10,12 @@ import { getParticipantesByUsuario } from "@/services/participanteService";
 import { getVocalizacoes } from "@/services/vocalizacoesService";
 import { AudioRecording } from "@/types/AudioRecording";
 import { Vocalizacao } from "@/types/Vocalizacao";
+import AudioFingerprint from "@/utils/AudioFingerprint";
+import AudioPlayerPool from "@/utils/AudioPlayerPool";
 import FileOperations from "@/utils/FileOperations";
 import translateVocalization from "@/utils/TranslateVocalization";
+import UploadQueue from "@/utils/UploadQueue";
+import VocalizationSuggestions from "@/utils/VocalizationSuggestions";
 import { MaterialIcons } from "@expo/vector-icons";
 import AsyncStorage from "@react-native-async-storage/async-storage";
 import NetInfo from "@react-native-community/netinfo";
@@ -52,6 +56,7 @@ export default function AudiosScreen() {
   const [showConfirmBatchSendModal, setShowConfirmBatchSendModal] =
     useState(false);
   const soundRef = useRef<Audio.Sound | null>(null);
+  const pooledUriRef = useRef<string | null>(null);
   const [sendingAudio, setSendingAudio] = useState(false);
   const [showConfirmDeleteAllModal, setShowConfirmDeleteAllModal] =
     useState(false);
@@ -121,6 +126,20 @@ export default function AudiosScreen() {
     };
   }, []);
 
+  useEffect(() => {
+    const subscription = UploadQueue.addListener(
+      (entry: { uri: string; state: string }) => {
+        if (entry.state === "uploaded") {
+          markRecordingsSent([entry.uri]);
+        }
+      }
+    );
+
+    return () => {
+      subscription.remove();
+    };
+  }, []);
+
   useEffect(() => {
     applyFilters();
   }, [filterParticipanteId, filterVocalizacaoId, filterStatus, recordings]);
@@ -154,6 +173,12 @@ export default function AudiosScreen() {
   };
 
   const stopAudioPlayback = async () => {
+    if (pooledUriRef.current) {
+      pooledUriRef.current = null;
+      setPlayingUri(null);
+      await AudioPlayerPool.stop();
+    }
+
     if (soundRef.current) {
       try {
         await soundRef.current.stopAsync();
@@ -170,6 +195,60 @@ export default function AudiosScreen() {
     }
   };
 
+  useEffect(() => {
+    const completeListener = AudioPlayerPool.addListener(
+      "onPlaybackComplete",
+      () => {
+        pooledUriRef.current = null;
+        setPlayingUri(null);
+      }
+    );
+    const errorListener = AudioPlayerPool.addListener(
+      "onPlaybackError",
+      (event: { what: number; extra: number }) => {
+        const uri = pooledUriRef.current;
+        pooledUriRef.current = null;
+        setPlayingUri(null);
+        Toast.show({
+          text1: "Erro",
+          text2: `Erro de reprodução: ${event.what}/${event.extra}`,
+          type: "error",
+        });
+        if (uri) {
+          markCorruptedAudio(uri);
+        }
+      }
+    );
+
+    return () => {
+      completeListener.remove();
+      errorListener.remove();
+      AudioPlayerPool.releaseAll();
+    };
+  }, []);
+
+  const filteredRecordingsRef = useRef<AudioRecording[]>([]);
+  filteredRecordingsRef.current = filteredRecordings;
+
+  const viewabilityConfig = useRef({ itemVisiblePercentThreshold: 50 });
+  const onViewableItemsChanged = useRef(
+    ({ viewableItems }: { viewableItems: { index: number | null }[] }) => {
+      const indexes = viewableItems
+        .map((viewable) => viewable.index)
+        .filter((index): index is number => index !== null);
+      if (indexes.length === 0) return;
+
+      const list = filteredRecordingsRef.current;
+      const first = Math.min(...indexes);
+      const last = Math.max(...indexes);
+      const candidates = [...indexes, last + 1, first - 1]
+        .filter((index) => index >= 0 && index < list.length)
+        .map((index) => list[index])
+        .map((recording) => recording.uri);
+
+      AudioPlayerPool.preload(candidates);
+    }
+  );
   useFocusEffect(
     useCallback(() => {
       fetchRecordings();
@@ -194,6 +273,14 @@ export default function AudiosScreen() {
         setRecordings(parsedRecordings);
         setFilteredRecordings(parsedRecordings);
       }
+
+      const queue = await UploadQueue.getQueue();
+      const uploaded = queue
+        .filter((entry: { state: string }) => entry.state === "uploaded")
+        .map((entry: { uri: string }) => entry.uri);
+      if (uploaded.length > 0) {
+        await markRecordingsSent(uploaded);
+      }
     } catch (error) {
       Toast.show({
         text1: error instanceof Error ? error.message : "Erro",
@@ -205,6 +292,27 @@ export default function AudiosScreen() {
     }
   }
 
+  async function markRecordingsSent(uris: string[]) {
+    const storedRecordings = await AsyncStorage.getItem("recordings");
+    if (!storedRecordings) return;
+
+    let changed = false;
+    const updatedList = JSON.parse(storedRecordings).map(
+      (rec: AudioRecording) => {
+        if (rec.status !== "sent" && uris.includes(rec.uri)) {
+          changed = true;
+          return { ...rec, status: "sent" };
+        }
+        return rec;
+      }
+    );
+
+    if (changed) {
+      await AsyncStorage.setItem("recordings", JSON.stringify(updatedList));
+      setRecordings(updatedList);
+    }
+  }
+
   const audioStats = useMemo(() => {
     const sent = recordings.filter((audio) => audio.status === "sent");
     const pending = recordings.filter((audio) => audio.status === "pending");
@@ -259,6 +367,7 @@ export default function AudiosScreen() {
       setRecordings([]);
       setFilteredRecordings([]);
       await AsyncStorage.setItem("recordings", JSON.stringify([]));
+      await AudioFingerprint.prune();
 
       setShowConfirmDeleteAllModal(false);
 
@@ -278,7 +387,37 @@ export default function AudiosScreen() {
     }
   }
 
-  async function handlePlayAudio(uri: string) {
+  async function handlePooledPlay(uri: string, tapTimeMs: number) {
+    if (pooledUriRef.current === uri) {
+      await stopAudioPlayback();
+      return;
+    }
+
+    try {
+      pooledUriRef.current = uri;
+      setPlayingUri(uri);
+      await AudioPlayerPool.play(uri, tapTimeMs);
+    } catch (error: any) {
+      if (error?.code === "CANCELLED") return;
+
+      if (pooledUriRef.current === uri) {
+        pooledUriRef.current = null;
+        setPlayingUri(null);
+      }
+      Toast.show({
+        text1: error instanceof Error ? error.message : "Erro",
+        text2: "Erro ao reproduzir áudio",
+        type: "error",
+      });
+      markCorruptedAudio(uri);
+    }
+  }
+
+  async function handlePlayAudio(uri: string, tapTimeMs: number = Date.now()) {
+    if (AudioPlayerPool.isAvailable()) {
+      return handlePooledPlay(uri, tapTimeMs);
+    }
+
     try {
       if (soundRef.current) {
         await soundRef.current.stopAsync();
@@ -494,6 +633,7 @@ export default function AudiosScreen() {
 
       setRecordings(updated);
       await AsyncStorage.setItem("recordings", JSON.stringify(updated));
+      AudioFingerprint.remove(recording.uri).catch(() => AudioFingerprint.prune());
       setShowOptionsModal(false);
       setShowConfirmDeleteModal(false);
       setSelectedRecording(null);
@@ -543,6 +683,21 @@ export default function AudiosScreen() {
 
       await AsyncStorage.setItem("recordings", JSON.stringify(updatedList));
       setRecordings(updatedList);
+      VocalizationSuggestions.learn(
+        selectedRecording.uri,
+        vocalization?.nome || ""
+      );
+
+      if (
+        selectedRecording.status !== "sent" &&
+        selectedAudioParticipanteId
+      ) {
+        await UploadQueue.enqueue(
+          selectedRecording.uri,
+          selectedVocalizationId,
+          selectedAudioParticipanteId
+        );
+      }
 
       Toast.show({
         text1: "Sucesso",
@@ -588,31 +743,43 @@ export default function AudiosScreen() {
 
     setSendingAudio(true);
     try {
-      const isConnected = await NetInfo.fetch().then(
-        (state) => state.isConnected
-      );
+      // The recording may already be in the native queue; sending it through
+      // the queue keeps it a single upload.
+      let sent = true;
+      if (UploadQueue.isAvailable()) {
+        const entry = await UploadQueue.enqueue(
+          fileUri,
+          idVocalizacao,
+          selectedAudioParticipanteId
+        );
+        sent = entry?.state === "uploaded";
+      } else {
+        const isConnected = await NetInfo.fetch().then(
+          (state) => state.isConnected
+        );
 
-      if (!isConnected) {
-        showModalMessage(
-          "error",
-          "Sem conexão com a internet. Tente novamente quando estiver online."
+        if (!isConnected) {
+          showModalMessage(
+            "error",
+            "Sem conexão com a internet. Tente novamente quando estiver online."
+          );
+          setSendingAudio(false);
+          return;
+        }
+
+        await uploadAudioFile(
+          idVocalizacao,
+          fileUri,
+          selectedAudioParticipanteId
         );
-        setSendingAudio(false);
-        return;
       }
 
-      await uploadAudioFile(
-        idVocalizacao,
-        fileUri,
-        selectedAudioParticipanteId
-      );
-
       if (selectedRecording) {
         const updateRecordings = recordings.map((rec) => {
           if (rec.timestamp === selectedRecording.timestamp) {
             return {
               ...rec,
-              status: "sent",
+              status: sent ? "sent" : rec.status,
               participanteId: selectedAudioParticipanteId,
             };
           }
@@ -624,7 +791,12 @@ export default function AudiosScreen() {
           JSON.stringify(updateRecordings)
         );
 
-        showModalMessage("success", "Áudio enviado com sucesso!");
+        showModalMessage(
+          "success",
+          sent
+            ? "Áudio enviado com sucesso!"
+            : "Envio agendado. O áudio será enviado em segundo plano."
+        );
 
         setTimeout(() => {
           setShowOptionsModal(false);
@@ -668,6 +840,11 @@ export default function AudiosScreen() {
     setSendingBatch(true);
     setShowConfirmBatchSendModal(false);
 
+    if (UploadQueue.isAvailable()) {
+      await enqueueBatch(pendingRecordings);
+      return;
+    }
+
     let successCount = 0;
     let errorCount = 0;
     let updatedRecordingsList = [...recordings];
@@ -745,6 +922,49 @@ export default function AudiosScreen() {
     }
   }
 
+  async function enqueueBatch(pendingRecordings: AudioRecording[]) {
+    let queuedCount = 0;
+    let missingParticipant = 0;
+
+    try {
+      for (const recording of pendingRecordings) {
+        if (!recording.participanteId) {
+          missingParticipant++;
+          continue;
+        }
+
+        await UploadQueue.enqueue(
+          recording.uri,
+          recording.vocalizationId,
+          recording.participanteId
+        );
+        queuedCount++;
+      }
+
+      if (missingParticipant > 0) {
+        Toast.show({
+          type: "error",
+          text1: "Erro",
+          text2: `${missingParticipant} áudio(s) sem participante definido. Edite o áudio para adicionar um participante.`,
+        });
+      } else {
+        Toast.show({
+          type: "success",
+          text1: "Envio agendado",
+          text2: `${queuedCount} áudio(s) serão enviados em segundo plano`,
+        });
+      }
+    } catch (error) {
+      Toast.show({
+        type: "error",
+        text1: error instanceof Error ? error.message : "Erro",
+        text2: "Erro ao agendar o envio em lote",
+      });
+    } finally {
+      setSendingBatch(false);
+    }
+  }
+
   const getPendingCount = () => {
     return recordings.filter((recording) => recording.status !== "sent").length;
   };
@@ -800,7 +1020,7 @@ export default function AudiosScreen() {
 
           <TouchableOpacity
             style={styles.playButton}
-            onPress={() => handlePlayAudio(item.uri)}
+            onPress={() => handlePlayAudio(item.uri, Date.now())}
           >
             <MaterialIcons
               name={isPlaying ? "pause" : "play-arrow"}
@@ -977,6 +1197,8 @@ export default function AudiosScreen() {
         data={filteredRecordings}
         renderItem={renderRecording}
         keyExtractor={(item) => item.timestamp.toString()}
+        viewabilityConfig={viewabilityConfig.current}
+        onViewableItemsChanged={onViewableItemsChanged.current}
         ListEmptyComponent={
           <View style={styles.emptyContainer}>
             <MaterialIcons name="audiotrack" size={64} color="#ccc" />
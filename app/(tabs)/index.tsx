@@ -8,8 +8,12 @@ import {
 } from "@/services/participanteService";
 import { getVocalizacoes } from "@/services/vocalizacoesService";
 import { Vocalizacao } from "@/types/Vocalizacao";
+import { VocalizationSuggestion } from "@/types/VocalizationSelectProps";
 import BackgroundAudioRecorder from "@/utils/BackgroundAudioRecorder";
 import FileOperations from "@/utils/FileOperations";
+import AudioFingerprint from "@/utils/AudioFingerprint";
+import UploadQueue from "@/utils/UploadQueue";
+import VocalizationSuggestions from "@/utils/VocalizationSuggestions";
 import { MaterialIcons } from "@expo/vector-icons";
 import AsyncStorage from "@react-native-async-storage/async-storage";
 import * as FileSystem from "expo-file-system";
@@ -35,6 +39,12 @@ import {
 } from "react-native";
 import Toast from "react-native-toast-message";
 
+const QUALITY_WARNINGS: Record<string, string> = {
+  clipping: "áudio saturado",
+  lowSnr: "muito ruído de fundo",
+  mostlyInactive: "pouca vocalização detectada",
+};
+
 export default function HomeScreen() {
   const router = useRouter();
   const appState = useRef(AppState.currentState);
@@ -48,6 +58,9 @@ export default function HomeScreen() {
     number | null
   >(null);
   const [loadingVocalizations, setLoadingVocalizations] = useState(false);
+  const [suggestions, setSuggestions] = useState<VocalizationSuggestion[]>(
+    []
+  );
   const [outputFile, setOutputFile] = useState<string | null>(null);
   const [elapsedTimeBeforePause, setElapsedTimeBeforePause] = useState(0);
   const [isLoading, setIsLoading] = useState(false);
@@ -118,6 +131,8 @@ export default function HomeScreen() {
       await setupApp();
       setupRecordingListeners();
       await verifyParticipantExists();
+      // Labels saved before suggestions existed still teach the model
+      VocalizationSuggestions.learnFromLibrary();
     };
 
     setup();
@@ -305,12 +320,14 @@ export default function HomeScreen() {
 
       setOutputFile(filePath);
 
+      let availableVocalizations = vocalizations;
       if (vocalizations.length === 0) {
         fetchVocalizations();
         setLoadingVocalizations(true);
         try {
           const vocs = await getVocalizacoes();
           setVocalizations(vocs);
+          availableVocalizations = vocs;
 
           if (!selectedVocalizationId && vocs.length > 0) {
             setSelectedVocalizationId(vocs[0].id);
@@ -327,6 +344,10 @@ export default function HomeScreen() {
         }
       }
       await loadParticipantes();
+      setSuggestions([]);
+      VocalizationSuggestions.suggest(filePath, availableVocalizations).then(
+        setSuggestions
+      );
       setShowVocalizationModal(true);
     } catch (error) {
       Toast.show({
@@ -441,11 +462,21 @@ export default function HomeScreen() {
         (data: {
           outputFile: SetStateAction<string | null>;
           duration: SetStateAction<number>;
+          quality: { warnings: string[] } | null;
         }) => {
           setOutputFile(data.outputFile);
           setRecordingTime(data.duration);
           setIsRecording(false);
           setIsPaused(false);
+
+          const warnings = data.quality?.warnings ?? [];
+          if (warnings.length > 0) {
+            Toast.show({
+              type: "info",
+              text1: "Verifique a gravação antes de enviar",
+              text2: warnings.map((w) => QUALITY_WARNINGS[w] ?? w).join(", "),
+            });
+          }
         }
       );
 
@@ -610,6 +641,8 @@ export default function HomeScreen() {
 
     if (isLoading || isProcessingAction || actionCooldown) return;
 
+    BackgroundAudioRecorder.markTrace("recordPress");
+
     try {
       setIsProcessingAction(true);
       setActionCooldown(true);
@@ -698,6 +731,39 @@ export default function HomeScreen() {
     setShowVocalizationModal(false);
   };
 
+  /**
+   * Fingerprints a saved recording in the background and only then lets it
+   * be uploaded. Until the check clears it the recording stays held in the
+   * upload queue; a likely re-recording is kept but not sent automatically.
+   */
+  async function releaseForUpload(
+    uri: string,
+    vocalizationId: number | null,
+    participantId: number | null
+  ) {
+    try {
+      await UploadQueue.hold(uri);
+    } catch (error) {
+      console.error("Erro ao reter gravação na fila de envio:", error);
+    }
+
+    const duplicates = await AudioFingerprint.indexAndFindSimilar(uri);
+    if (duplicates.length > 0) {
+      Toast.show({
+        type: "info",
+        text1: "Possível gravação duplicada",
+        text2: "Ela não será enviada automaticamente. Envie pela lista se quiser mantê-la.",
+      });
+      return;
+    }
+
+    try {
+      await UploadQueue.enqueue(uri, vocalizationId, participantId);
+    } catch (error) {
+      console.error("Erro ao enfileirar gravação para envio:", error);
+    }
+  }
+
   async function handleSaveAudio() {
     if (!selectedVocalizationId) {
       Toast.show({
@@ -718,6 +784,7 @@ export default function HomeScreen() {
     }
 
     setIsLoading(true);
+    BackgroundAudioRecorder.markTrace("stopPress");
 
     try {
       await BackgroundAudioRecorder.stopRecording();
@@ -798,7 +865,20 @@ export default function HomeScreen() {
         });
       }
 
+      // The feature sidecar lives next to its audio
+      const featurePath = normalizedPath.replace(/\.m4a$/, ".feat");
+      const featureInfo = await FileSystem.getInfoAsync(featurePath);
+      if (featureInfo.exists) {
+        await FileOperations.moveFile(
+          featurePath,
+          newUri.replace(/\.m4a$/, ".feat")
+        );
+      }
+
       const duration = recordingTime;
+      const vocalizationName = vocalizations.find(
+        (v) => v.id === selectedVocalizationId
+      )?.nome;
       const existingRecordings = await AsyncStorage.getItem("recordings");
       const recordings = existingRecordings
         ? JSON.parse(existingRecordings)
@@ -809,14 +889,15 @@ export default function HomeScreen() {
         timestamp: Date.now(),
         duration: duration,
         vocalizationId: selectedVocalizationId,
-        vocalizationName: vocalizations.find(
-          (v) => v.id === selectedVocalizationId
-        )?.nome,
+        vocalizationName,
         participanteId: selectedParticipanteId,
         status: "pending",
       });
 
       await AsyncStorage.setItem("recordings", JSON.stringify(recordings));
+      VocalizationSuggestions.learn(newUri, vocalizationName);
+
+      releaseForUpload(newUri, selectedVocalizationId, selectedParticipanteId);
 
       setOutputFile(null);
       setElapsedTimeBeforePause(0);
@@ -1059,6 +1140,7 @@ export default function HomeScreen() {
                 vocalizations={vocalizations}
                 selectedVocalizationId={selectedVocalizationId}
                 onValueChange={(value) => setSelectedVocalizationId(value)}
+                suggestions={suggestions}
               />
             )}
 
@@ -0,0 +1,93 @@
+import SpectrogramModule from "@/utils/Spectrogram";
+import { MaterialIcons } from "@expo/vector-icons";
+import React, { useEffect, useState } from "react";
+import { ActivityIndicator, Image, StyleSheet, View } from "react-native";
+
+type CancellationToken = { id: string | null; cancel: () => Promise<boolean> };
+
+interface SpectrogramThumbnailProps {
+  cacheKey: string;
+  /** Local source to render, or null to keep the placeholder icon. */
+  resolveSource: (token: CancellationToken) => Promise<string | null>;
+  width?: number;
+  height?: number;
+}
+
+export default function SpectrogramThumbnail({
+  cacheKey,
+  resolveSource,
+  width = 64,
+  height = 40,
+}: SpectrogramThumbnailProps) {
+  const [uri, setUri] = useState<string | null>(
+    () => SpectrogramModule.getCachedTile(cacheKey)?.uri ?? null
+  );
+  const [failed, setFailed] = useState(false);
+
+  useEffect(() => {
+    if (uri || !SpectrogramModule.isAvailable()) return;
+
+    let active = true;
+    let token: CancellationToken | null = null;
+
+    (async () => {
+      try {
+        token = await SpectrogramModule.createCancellationToken();
+        const source = await resolveSource(token);
+        if (!active) return;
+        if (!source) {
+          setFailed(true);
+          return;
+        }
+        const tile = await SpectrogramModule.renderTile(
+          source,
+          cacheKey,
+          SpectrogramModule.FIT_ZOOM,
+          0,
+          token
+        );
+        if (!active) return;
+        if (tile) {
+          setUri(tile.uri);
+        } else {
+          setFailed(true);
+        }
+      } catch (error) {
+        if (active) setFailed(true);
+      }
+    })();
+
+    return () => {
+      active = false;
+      token?.cancel();
+    };
+  }, [cacheKey]);
+
+  if (!SpectrogramModule.isAvailable() || failed) {
+    return <MaterialIcons name="audio-file" size={40} color="#666" />;
+  }
+
+  return (
+    <View style={[styles.container, { width, height }]}>
+      {uri ? (
+        <Image
+          source={{ uri }}
+          style={{ width, height }}
+          resizeMode="stretch"
+        />
+      ) : (
+        <ActivityIndicator size="small" color="#2196F3" />
+      )}
+    </View>
+  );
+}
+
+const styles = StyleSheet.create({
+  container: {
+    borderRadius: 4,
+    overflow: "hidden",
+    backgroundColor: "#000004",
+    justifyContent: "center",
+    alignItems: "center",
+  },
+});
@@ -1,6 +1,7 @@
 import Select from "@/components/Select";
 import translateVocalization from "@/utils/TranslateVocalization";
 import React from "react";
+import { StyleSheet, Text, TouchableOpacity, View } from "react-native";
 import { VocalizationSelectProps } from "@/types/VocalizationSelectProps";
 import { MaterialIcons } from "@expo/vector-icons";
 
@@ -10,6 +11,7 @@ export default function VocalizationSelect({
   onValueChange,
   label = "Tipo de Vocalização",
   placeholder,
+  suggestions = [],
 }: VocalizationSelectProps) {
   const sortedOptions = vocalizations
     .map((voc) => ({
@@ -21,16 +23,72 @@ export default function VocalizationSelect({
     .sort((a, b) => a.label.localeCompare(b.label, "pt-BR"));
 
   return (
-    <Select
-      placeholder={placeholder}
-      leftIcon={<MaterialIcons name="record-voice-over" size={20} color="#666" />}
-      label={label}
-      selectedValue={selectedVocalizationId?.toString() || ""}
-      onValueChange={(itemValue) => onValueChange(Number(itemValue))}
-      options={sortedOptions.map((option) => ({
-        label: option.label,
-        value: option.value,
-      }))}
-    />
+    <View>
+      <Select
+        placeholder={placeholder}
+        leftIcon={<MaterialIcons name="record-voice-over" size={20} color="#666" />}
+        label={label}
+        selectedValue={selectedVocalizationId?.toString() || ""}
+        onValueChange={(itemValue) => onValueChange(Number(itemValue))}
+        options={sortedOptions.map((option) => ({
+          label: option.label,
+          value: option.value,
+        }))}
+      />
+      {suggestions.length > 0 && (
+        <View style={styles.suggestions}>
+          <Text style={styles.suggestionsLabel}>Sugestões:</Text>
+          {suggestions.map(({ vocalization, score }) => {
+            const selected = vocalization.id === selectedVocalizationId;
+            return (
+              <TouchableOpacity
+                key={vocalization.id}
+                style={[styles.chip, selected && styles.chipSelected]}
+                onPress={() => onValueChange(vocalization.id)}
+              >
+                <Text style={[styles.chipText, selected && styles.chipTextSelected]}>
+                  {translateVocalization[vocalization.nome] || vocalization.nome}{" "}
+                  {Math.round(score * 100)}%
+                </Text>
+              </TouchableOpacity>
+            );
+          })}
+        </View>
+      )}
+    </View>
   );
 }
+
+const styles = StyleSheet.create({
+  suggestions: {
+    flexDirection: "row",
+    flexWrap: "wrap",
+    alignItems: "center",
+    marginTop: -8,
+    marginBottom: 16,
+  },
+  suggestionsLabel: {
+    fontSize: 14,
+    color: "#666",
+    marginRight: 8,
+  },
+  chip: {
+    borderWidth: 1,
+    borderColor: "#2196F3",
+    borderRadius: 16,
+    paddingHorizontal: 12,
+    paddingVertical: 4,
+    marginRight: 8,
+    marginBottom: 4,
+  },
+  chipSelected: {
+    backgroundColor: "#2196F3",
+  },
+  chipText: {
+    fontSize: 14,
+    color: "#2196F3",
+  },
+  chipTextSelected: {
+    color: "#FFF",
+  },
+});
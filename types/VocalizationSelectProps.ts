@@ -1,9 +1,15 @@
 import { Vocalizacao } from "./Vocalizacao";
 
+export interface VocalizationSuggestion {
+  vocalization: Vocalizacao;
+  score: number;
+}
+
 export interface VocalizationSelectProps {
   vocalizations: Vocalizacao[];
   selectedVocalizationId: number | null;
   onValueChange: (value: number) => void;
   label?: string;
   placeholder?: string;
+  suggestions?: VocalizationSuggestion[];
 }
\ No newline at end of file
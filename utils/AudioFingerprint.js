@@ -0,0 +1,82 @@
+import { NativeModules, Platform } from 'react-native';
+
+const { AudioFingerprint } = NativeModules;
+
+const AudioFingerprintModule = {
+  isAvailable() {
+    return Platform.OS === 'android' && !!AudioFingerprint;
+  },
+
+  async index(uri, token = null) {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    return await AudioFingerprint.index(uri, token ? token.id : null);
+  },
+
+  /**
+   * Indexed recordings that share audio with uri, best first:
+   * [{ uri, matches, similarity, offsetMs, durationMs }].
+   */
+  async findSimilar(uri, limit = 5, token = null) {
+    if (!this.isAvailable()) {
+      return [];
+    }
+
+    try {
+      return await AudioFingerprint.findSimilar(uri, limit, token ? token.id : null);
+    } catch (error) {
+      console.error('Erro ao buscar gravações semelhantes:', error);
+      return [];
+    }
+  },
+
+  /**
+   * Indexes a new recording on the background lane and returns the earlier
+   * ones it duplicates.
+   */
+  async indexAndFindSimilar(uri, limit = 5, token = null) {
+    if (!this.isAvailable()) {
+      return [];
+    }
+
+    try {
+      return await AudioFingerprint.indexAndFindSimilar(uri, limit, token ? token.id : null);
+    } catch (error) {
+      console.error('Erro ao indexar impressão digital:', error);
+      return [];
+    }
+  },
+
+  async remove(uri) {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await AudioFingerprint.remove(uri);
+  },
+
+  async prune() {
+    if (!this.isAvailable()) {
+      return 0;
+    }
+
+    try {
+      return await AudioFingerprint.prune();
+    } catch (error) {
+      console.error('Erro ao limpar índice de impressões digitais:', error);
+      return 0;
+    }
+  },
+
+  async getStats() {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    return await AudioFingerprint.getStats();
+  }
+};
+
+export default AudioFingerprintModule;
@@ -0,0 +1,72 @@
+import { NativeEventEmitter, NativeModules, Platform } from 'react-native';
+
+const { AudioPlayerPool } = NativeModules;
+
+const AudioPlayerPoolEmitter = AudioPlayerPool
+  ? new NativeEventEmitter(AudioPlayerPool)
+  : null;
+
+const AudioPlayerPoolModule = {
+  isAvailable() {
+    return Platform.OS === 'android' && !!AudioPlayerPool;
+  },
+
+  async play(uri, tapTimeMs = Date.now()) {
+    return await AudioPlayerPool.play(uri, tapTimeMs);
+  },
+
+  async stop() {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await AudioPlayerPool.stop();
+  },
+
+  async preload(uris) {
+    if (!this.isAvailable() || uris.length === 0) {
+      return 0;
+    }
+
+    try {
+      return await AudioPlayerPool.preload(uris);
+    } catch (error) {
+      console.error('Erro ao pré-carregar áudios:', error);
+      return 0;
+    }
+  },
+
+  async evict(uri) {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await AudioPlayerPool.evict(uri);
+  },
+
+  async getMetrics() {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    return await AudioPlayerPool.getMetrics();
+  },
+
+  async releaseAll() {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await AudioPlayerPool.releaseAll();
+  },
+
+  addListener(eventName, callback) {
+    if (!AudioPlayerPoolEmitter) {
+      return { remove: () => {} };
+    }
+
+    return AudioPlayerPoolEmitter.addListener(eventName, callback);
+  }
+};
+
+export default AudioPlayerPoolModule;
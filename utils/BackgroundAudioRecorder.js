@@ -1,3 +1,4 @@
+import AsyncStorage from '@react-native-async-storage/async-storage';
 import * as FileSystem from 'expo-file-system';
 import { NativeEventEmitter, NativeModules, Platform } from 'react-native';
 
@@ -11,6 +12,9 @@ const BackgroundAudioRecorderEmitter = BackgroundAudioRecorder
   ? new NativeEventEmitter(BackgroundAudioRecorder)
   : null;
 
+// Sequence number of the last journaled native event this app has handled.
+const LAST_EVENT_SEQ_KEY = '@backgroundRecorder:lastEventSeq';
+
 class AudioRecorderService {
   constructor() {
     this._isRecording = false;
@@ -20,6 +24,9 @@ class AudioRecorderService {
     this._timeUpdateListeners = [];
     this._statusChangeListeners = [];
     this._recordingCompleteListeners = [];
+    this._recordingPartListeners = [];
+    this._lastEventSeq = null;
+    this._replayStarted = false;
 
     if (BackgroundAudioRecorderEmitter) {
       this._recordingStatusListener = BackgroundAudioRecorderEmitter.addListener(
@@ -37,6 +44,11 @@ class AudioRecorderService {
         this._handleRecordingComplete.bind(this)
       );
 
+      this._recordingPartListener = BackgroundAudioRecorderEmitter.addListener(
+        'onRecordingPartComplete',
+        this._handleRecordingPartComplete.bind(this)
+      );
+
       this._recordingErrorListener = BackgroundAudioRecorderEmitter.addListener(
         'onRecordingError',
         this._handleRecordingError.bind(this)
@@ -205,7 +217,68 @@ class AudioRecorderService {
     }
   }
 
+  // Journaled events carry a seq; anything at or below the last handled one is a duplicate.
+  _acceptEvent(seq) {
+    if (seq == null) {
+      return true;
+    }
+    if (this._lastEventSeq != null && seq <= this._lastEventSeq) {
+      return false;
+    }
+    this._lastEventSeq = seq;
+    AsyncStorage.setItem(LAST_EVENT_SEQ_KEY, String(seq)).catch(error => {
+      console.error('Erro ao salvar sequência de eventos:', error);
+    });
+    return true;
+  }
+
+  /**
+   * Delivers completed recordings and parts that were emitted while no JS
+   * context was listening (reload, background). Runs once, when the first
+   * completion listener is added.
+   */
+  async replayMissedEvents() {
+    if (!BackgroundAudioRecorder?.replaySince) {
+      return 0;
+    }
+
+    try {
+      const stored = parseInt(await AsyncStorage.getItem(LAST_EVENT_SEQ_KEY), 10) || 0;
+      let result = await BackgroundAudioRecorder.replaySince(stored);
+
+      // The journal was cleared (e.g. app data wiped): start over from its beginning.
+      if (result.lastSeq < stored) {
+        result = await BackgroundAudioRecorder.replaySince(0);
+        this._lastEventSeq = 0;
+      } else {
+        this._lastEventSeq = Math.max(this._lastEventSeq ?? 0, stored);
+      }
+
+      let replayed = 0;
+      result.events.forEach(({ event, payload }) => {
+        if (event === 'onRecordingComplete') {
+          this._handleRecordingComplete(payload);
+          replayed++;
+        } else if (event === 'onRecordingPartComplete') {
+          this._handleRecordingPartComplete(payload);
+          replayed++;
+        } else {
+          // Past errors no longer describe the current state; just mark them seen.
+          this._acceptEvent(payload.seq);
+        }
+      });
+      return replayed;
+    } catch (error) {
+      console.error('Erro ao reproduzir eventos perdidos:', error);
+      return 0;
+    }
+  }
+
   _handleRecordingError(error) {
+    if (!this._acceptEvent(error.seq)) {
+      return;
+    }
+
     console.error('Erro na gravação:', error);
 
     this._isRecording = false;
@@ -433,17 +506,45 @@ class AudioRecorderService {
   }
 
   _handleRecordingComplete(data) {
+    if (!this._acceptEvent(data.seq)) {
+      return;
+    }
+
     this._isRecording = false;
     this._isPaused = false;
 
     this._recordingCompleteListeners.forEach(listener => {
       listener({
         outputFile: data.outputFile,
-        duration: data.duration
+        duration: data.duration,
+        archiveFile: data.archiveFile || null,
+        flac: data.flac || null,
+        mlDerivative: data.mlDerivative || null,
+        features: data.features || null,
+        startLatencyMs: data.startLatencyMs ?? null,
+        warmStart: !!data.warmStart,
+        parts: data.parts || null,
+        power: data.power || null,
+        dsp: data.dsp || null,
+        quality: data.quality || null
       });
     });
   }
 
+  _handleRecordingPartComplete(data) {
+    if (!this._acceptEvent(data.seq)) {
+      return;
+    }
+
+    this._recordingPartListeners.forEach(listener => {
+      try {
+        listener(data);
+      } catch (error) {
+        console.error('Erro ao notificar listener de parte:', error);
+      }
+    });
+  }
+
   async syncOutputFile() {
     if (!BackgroundAudioRecorder) {
       throw new Error('Módulo nativo BackgroundAudioRecorder não disponível');
@@ -565,7 +666,7 @@ class AudioRecorderService {
     }
   }
 
-  async startRecording(elapsedTimeBeforePause = 0) {
+  async startRecording(elapsedTimeBeforePause = 0, options = {}) {
     if (Platform.OS !== 'android') {
       throw new Error('Background recording only available for Android');
     }
@@ -583,16 +684,17 @@ class AudioRecorderService {
         return true;
       }
 
-      await BackgroundAudioRecorder.startRecording(elapsedTimeBeforePause);
+      // Resolves once the service has run the command, with the state it left.
+      const ack = await BackgroundAudioRecorder.startRecording(elapsedTimeBeforePause, options);
 
-      this._isRecording = true;
-      this._isPaused = false;
+      this._isRecording = ack.isRecording;
+      this._isPaused = ack.isPaused;
 
       this._statusChangeListeners.forEach(listener => {
         try {
           listener({
-            isRecording: true,
-            isPaused: false,
+            isRecording: this._isRecording,
+            isPaused: this._isPaused,
             currentTime: this._recordingTime,
             outputFile: this._outputFile
           });
@@ -620,15 +722,16 @@ class AudioRecorderService {
         return false;
       }
 
-      await BackgroundAudioRecorder.pauseRecording();
+      const ack = await BackgroundAudioRecorder.pauseRecording();
 
-      this._isPaused = true;
+      this._isRecording = ack.isRecording;
+      this._isPaused = ack.isPaused;
 
       this._statusChangeListeners.forEach(listener => {
         try {
           listener({
             isRecording: this._isRecording,
-            isPaused: true,
+            isPaused: this._isPaused,
             currentTime: this._recordingTime,
             outputFile: this._outputFile
           });
@@ -656,15 +759,16 @@ class AudioRecorderService {
         return false;
       }
 
-      await BackgroundAudioRecorder.resumeRecording();
+      const ack = await BackgroundAudioRecorder.resumeRecording();
 
-      this._isPaused = false;
+      this._isRecording = ack.isRecording;
+      this._isPaused = ack.isPaused;
 
       this._statusChangeListeners.forEach(listener => {
         try {
           listener({
             isRecording: this._isRecording,
-            isPaused: false,
+            isPaused: this._isPaused,
             currentTime: this._recordingTime,
             outputFile: this._outputFile
           });
@@ -698,6 +802,41 @@ class AudioRecorderService {
     }
   }
 
+  async releaseCapture() {
+    if (!BackgroundAudioRecorder) {
+      throw new Error('Módulo nativo BackgroundAudioRecorder não disponível');
+    }
+
+    return await BackgroundAudioRecorder.releaseCapture();
+  }
+
+  /**
+   * Marks a point in the native trace, e.g. the tap that starts a command, so
+   * the JS side shows up next to the recorder's own spans.
+   */
+  markTrace(name) {
+    if (BackgroundAudioRecorder?.markTrace) {
+      BackgroundAudioRecorder.markTrace(name);
+    }
+  }
+
+  /** Writes the native trace buffer as Chrome trace JSON; resolves with { file, events, droppedEvents }. */
+  async exportTrace() {
+    if (!BackgroundAudioRecorder) {
+      throw new Error('Native BackgroundAudioRecorder module not available');
+    }
+
+    return await BackgroundAudioRecorder.exportTrace();
+  }
+
+  async clearTrace() {
+    if (!BackgroundAudioRecorder) {
+      throw new Error('Native BackgroundAudioRecorder module not available');
+    }
+
+    return await BackgroundAudioRecorder.clearTrace();
+  }
+
   isRecording() {
     return this._isRecording;
   }
@@ -736,11 +875,23 @@ class AudioRecorderService {
 
   addRecordingCompleteListener(listener) {
     this._recordingCompleteListeners.push(listener);
+    if (!this._replayStarted) {
+      this._replayStarted = true;
+      setTimeout(() => this.replayMissedEvents(), 0);
+    }
     return () => {
       this._recordingCompleteListeners = this._recordingCompleteListeners.filter(l => l !== listener);
     };
   }
 
+  // Called for each part closed by size/duration rotation, while recording continues.
+  addRecordingPartListener(listener) {
+    this._recordingPartListeners.push(listener);
+    return () => {
+      this._recordingPartListeners = this._recordingPartListeners.filter(l => l !== listener);
+    };
+  }
+
   cleanup() {
     if (this._recordingStatusListener) {
       this._recordingStatusListener.remove();
@@ -757,6 +908,11 @@ class AudioRecorderService {
       this._recordingCompleteListener = null;
     }
 
+    if (this._recordingPartListener) {
+      this._recordingPartListener.remove();
+      this._recordingPartListener = null;
+    }
+
     if (this._syncTimer) {
       clearInterval(this._syncTimer);
       this._syncTimer = null;
@@ -765,6 +921,7 @@ class AudioRecorderService {
     this._timeUpdateListeners = [];
     this._statusChangeListeners = [];
     this._recordingCompleteListeners = [];
+    this._recordingPartListeners = [];
   }
 }
 
@@ -1,8 +1,12 @@
 import * as FileSystem from 'expo-file-system';
-import { NativeModules, Platform } from 'react-native';
+import { NativeEventEmitter, NativeModules, Platform } from 'react-native';
 
 const { FileOperations } = NativeModules;
 
+const FileOperationsEmitter = FileOperations
+  ? new NativeEventEmitter(FileOperations)
+  : null;
+
 const FileOperationsModule = {
   async deleteFile(filePath) {
     if (Platform.OS === 'android') {
@@ -51,10 +55,10 @@ const FileOperationsModule = {
     }
   },
 
-  async cleanAudioDirectory() {
+  async cleanAudioDirectory(token = null) {
     if (Platform.OS === 'android') {
       try {
-        return await FileOperations.cleanAudioDirectory();
+        return await FileOperations.cleanAudioDirectory(token ? token.id : null);
       } catch (error) {
         console.error('Error cleaning audio directory:', error);
         return 0;
@@ -87,6 +91,167 @@ const FileOperationsModule = {
     }
   },
 
+  /**
+   * Cuts [startMs, endMs) without re-encoding. The clip begins with one AAC
+   * frame of pre-roll so its first frame decodes cleanly; the requested audio
+   * starts `prerollMs` into the file and `startMs` is its time in the source.
+   */
+  async extractRange(sourcePath, startMs, endMs, destPath) {
+    if (Platform.OS !== 'android') {
+      throw new Error('Extração de trechos disponível apenas para Android');
+    }
+
+    try {
+      return await FileOperations.extractRange(sourcePath, startMs, endMs, destPath);
+    } catch (error) {
+      console.error('Error extracting range:', error);
+      throw error;
+    }
+  },
+
+  async segmentRecording(sourcePath, destDir = null, options = {}, token = null) {
+    if (Platform.OS !== 'android') {
+      throw new Error('Segmentação disponível apenas para Android');
+    }
+
+    try {
+      return await FileOperations.segmentRecording(sourcePath, destDir, options, token ? token.id : null);
+    } catch (error) {
+      console.error('Error segmenting recording:', error);
+      throw error;
+    }
+  },
+
+  async convertToFlac(sourcePath, destPath = null, token = null) {
+    if (Platform.OS !== 'android') {
+      throw new Error('Conversão para FLAC disponível apenas para Android');
+    }
+
+    try {
+      return await FileOperations.convertToFlac(sourcePath, destPath, token ? token.id : null);
+    } catch (error) {
+      console.error('Error converting to FLAC:', error);
+      throw error;
+    }
+  },
+
+  /**
+   * Rebuilds a recording whose session was killed before the file was
+   * finalized, using the frame journal written next to it.
+   */
+  async repairRecording(filePath, token = null) {
+    if (Platform.OS !== 'android') {
+      throw new Error('Reparo de gravações disponível apenas para Android');
+    }
+
+    try {
+      return await FileOperations.repairRecording(filePath, token ? token.id : null);
+    } catch (error) {
+      console.error('Error repairing recording:', error);
+      throw error;
+    }
+  },
+
+  /** Repairs every unfinalized recording; entries that failed carry an error. */
+  async recoverUnfinalizedRecordings(token = null) {
+    if (Platform.OS !== 'android') {
+      return [];
+    }
+
+    try {
+      return await FileOperations.recoverUnfinalizedRecordings(token ? token.id : null);
+    } catch (error) {
+      console.error('Error recovering recordings:', error);
+      return [];
+    }
+  },
+
+  /**
+   * Runs the requested analyses (checksum, duration, waveform, quality,
+   * features; all by default) over every local recording. Progress arrives
+   * through the onLibraryReprocessProgress event and an interrupted run
+   * resumes from its last checkpoint.
+   */
+  async reprocessLibrary(options = {}, token = null) {
+    if (Platform.OS !== 'android') {
+      throw new Error('Reprocessamento disponível apenas para Android');
+    }
+
+    try {
+      return await FileOperations.reprocessLibrary(options, token ? token.id : null);
+    } catch (error) {
+      if (error.code !== 'CANCELLED') {
+        console.error('Error reprocessing library:', error);
+      }
+      throw error;
+    }
+  },
+
+  async getLibraryIndex() {
+    if (Platform.OS !== 'android') {
+      return {};
+    }
+
+    return JSON.parse(await FileOperations.getLibraryIndex());
+  },
+
+  addListener(eventName, callback) {
+    if (!FileOperationsEmitter) {
+      return { remove: () => {} };
+    }
+
+    return FileOperationsEmitter.addListener(eventName, callback);
+  },
+
+  async createCancellationToken() {
+    if (Platform.OS !== 'android') {
+      return { id: null, cancel: async () => false };
+    }
+
+    const id = await FileOperations.createCancellationToken();
+    return {
+      id,
+      cancel: async () => {
+        try {
+          return await FileOperations.cancelTask(id);
+        } catch (error) {
+          console.error('Error cancelling task:', error);
+          return false;
+        }
+      }
+    };
+  },
+
+  async getSchedulerMetrics() {
+    if (Platform.OS !== 'android') {
+      return null;
+    }
+
+    try {
+      return await FileOperations.getSchedulerMetrics();
+    } catch (error) {
+      console.error('Error getting scheduler metrics:', error);
+      return null;
+    }
+  },
+
+  /**
+   * Native memory held per registered cache or buffer, with the shared
+   * budget and the last onTrimMemory level seen (-1 for none).
+   */
+  async getMemoryUsage() {
+    if (Platform.OS !== 'android') {
+      return null;
+    }
+
+    try {
+      return await FileOperations.getMemoryUsage();
+    } catch (error) {
+      console.error('Error getting memory usage:', error);
+      return null;
+    }
+  },
+
   async moveFile(sourcePath, destPath) {
     try {
       await FileSystem.copyAsync({
@@ -0,0 +1,127 @@
+import { NativeModules, Platform } from 'react-native';
+
+const { RemoteAudioCache } = NativeModules;
+
+const RemoteAudioCacheModule = {
+  isAvailable() {
+    return Platform.OS === 'android' && !!RemoteAudioCache;
+  },
+
+  async getCachedFile(cacheKey) {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    try {
+      return await RemoteAudioCache.getCachedFile(cacheKey);
+    } catch (error) {
+      console.error('Erro ao consultar cache de áudio:', error);
+      return null;
+    }
+  },
+
+  /**
+   * Returns a playable URI for cacheKey without waiting for a download: the
+   * cached file when present, otherwise the remote URL to stream from, in
+   * which case the clip is cached in the background on unmetered networks.
+   */
+  async resolvePlayable(cacheKey, getUrl) {
+    if (!this.isAvailable()) {
+      return await getUrl();
+    }
+
+    const cached = await this.getCachedFile(cacheKey);
+    if (cached) {
+      return cached;
+    }
+
+    const url = await getUrl();
+    this.prefetch([{ key: cacheKey, getUrl: async () => url }]);
+    return url;
+  },
+
+  /**
+   * Returns a local file for cacheKey, downloading it only on an unmetered
+   * network; null otherwise. token cancels the download.
+   */
+  async resolveLocal(cacheKey, getUrl, token = null) {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    const cached = await this.getCachedFile(cacheKey);
+    if (cached) {
+      return cached;
+    }
+
+    try {
+      if (!(await RemoteAudioCache.isUnmeteredNetwork())) {
+        return null;
+      }
+      const result = await RemoteAudioCache.fetch(
+        cacheKey,
+        await getUrl(),
+        token ? token.id : null
+      );
+      return result.uri;
+    } catch (error) {
+      if (error.code !== 'CANCELLED') {
+        console.error('Erro ao baixar áudio para o cache:', error);
+      }
+      return null;
+    }
+  },
+
+  /**
+   * Prefetches items ([{ key, getUrl }]) while on an unmetered network. URLs
+   * are only requested for entries that are not cached yet.
+   */
+  async prefetch(items, token = null) {
+    if (!this.isAvailable() || items.length === 0) {
+      return null;
+    }
+
+    try {
+      if (!(await RemoteAudioCache.isUnmeteredNetwork())) {
+        return null;
+      }
+
+      const pending = [];
+      for (const item of items) {
+        if (await RemoteAudioCache.isCached(item.key)) {
+          continue;
+        }
+        pending.push({ key: item.key, url: await item.getUrl() });
+      }
+
+      if (pending.length === 0) {
+        return { fetched: 0, skipped: items.length, failed: 0 };
+      }
+
+      return await RemoteAudioCache.prefetch(pending, true, token ? token.id : null);
+    } catch (error) {
+      if (error.code !== 'CANCELLED') {
+        console.error('Erro na pré-busca de áudios:', error);
+      }
+      return null;
+    }
+  },
+
+  async getStats() {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    return await RemoteAudioCache.getStats();
+  },
+
+  async clearCache() {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await RemoteAudioCache.clearCache();
+  }
+};
+
+export default RemoteAudioCacheModule;
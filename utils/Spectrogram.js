@@ -0,0 +1,73 @@
+import { NativeModules, Platform } from 'react-native';
+import FileOperationsModule from './FileOperations';
+
+const { Spectrogram } = NativeModules;
+
+const FIT_ZOOM = -1;
+const tiles = new Map();
+
+const tileKey = (cacheKey, zoom, tileIndex) => `${cacheKey}|${zoom}|${tileIndex}`;
+
+const SpectrogramModule = {
+  FIT_ZOOM,
+
+  isAvailable() {
+    return Platform.OS === 'android' && !!Spectrogram;
+  },
+
+  getCachedTile(cacheKey, zoom = FIT_ZOOM, tileIndex = 0) {
+    return tiles.get(tileKey(cacheKey, zoom, tileIndex)) || null;
+  },
+
+  async renderTile(source, cacheKey, zoom = FIT_ZOOM, tileIndex = 0, token = null) {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    const key = tileKey(cacheKey || source, zoom, tileIndex);
+    const cached = tiles.get(key);
+    if (cached) {
+      return cached;
+    }
+
+    try {
+      const tile = await Spectrogram.renderTile(
+        source,
+        cacheKey,
+        zoom,
+        tileIndex,
+        token ? token.id : null
+      );
+      tiles.set(key, tile);
+      return tile;
+    } catch (error) {
+      if (error.code !== 'CANCELLED') {
+        console.error('Erro ao gerar espectrograma:', error);
+      }
+      return null;
+    }
+  },
+
+  createCancellationToken() {
+    return FileOperationsModule.createCancellationToken();
+  },
+
+  async getCacheStats() {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    return await Spectrogram.getCacheStats();
+  },
+
+  async clearCache() {
+    tiles.clear();
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await Spectrogram.clearCache();
+  }
+};
+
+export default SpectrogramModule;
@@ -0,0 +1,106 @@
+import AsyncStorage from '@react-native-async-storage/async-storage';
+import Constants from 'expo-constants';
+import { NativeEventEmitter, NativeModules, Platform } from 'react-native';
+
+const { UploadQueue } = NativeModules;
+
+const UploadQueueEmitter = UploadQueue
+  ? new NativeEventEmitter(UploadQueue)
+  : null;
+
+const UploadQueueModule = {
+  isAvailable() {
+    return Platform.OS === 'android' && !!UploadQueue;
+  },
+
+  /**
+   * Hands the API address and the current session to the native queue so
+   * uploads keep working while the app is closed. Call again after login.
+   */
+  async configure() {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    const { EXPO_PUBLIC_API_URL, EXPO_PUBLIC_API_KEY } = Constants.expoConfig?.extra || process.env;
+    const token = await AsyncStorage.getItem('token');
+
+    try {
+      return await UploadQueue.configure({
+        baseUrl: EXPO_PUBLIC_API_URL,
+        apiKey: EXPO_PUBLIC_API_KEY || null,
+        token,
+      });
+    } catch (error) {
+      console.error('Erro ao configurar fila de envio:', error);
+      return false;
+    }
+  },
+
+  async setConstraints(unmeteredOnly, requiresCharging = false) {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await UploadQueue.setConstraints(unmeteredOnly, requiresCharging);
+  },
+
+  /**
+   * Keeps a saved recording in the queue without letting it upload, until
+   * enqueue releases it.
+   */
+  async hold(uri) {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await UploadQueue.hold(uri);
+  },
+
+  /**
+   * Queues a saved recording for upload with its labels. Enqueueing the same
+   * file again only updates the labels unless it is already being sent.
+   */
+  async enqueue(uri, vocalizationId, participantId) {
+    if (!this.isAvailable()) {
+      return null;
+    }
+
+    await this.configure();
+    return await UploadQueue.enqueue(uri, Number(vocalizationId), Number(participantId));
+  },
+
+  async getQueue() {
+    if (!this.isAvailable()) {
+      return [];
+    }
+
+    return await UploadQueue.getQueue();
+  },
+
+  async retry(id) {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await UploadQueue.retry(id);
+  },
+
+  async remove(id) {
+    if (!this.isAvailable()) {
+      return false;
+    }
+
+    return await UploadQueue.remove(id);
+  },
+
+  addListener(callback) {
+    if (!UploadQueueEmitter) {
+      return { remove: () => {} };
+    }
+
+    return UploadQueueEmitter.addListener('onUploadQueueChanged', callback);
+  }
+};
+
+export default UploadQueueModule;
@@ -0,0 +1,84 @@
+import AsyncStorage from '@react-native-async-storage/async-storage';
+import { NativeModules, Platform } from 'react-native';
+
+const { VocalizationSuggestions } = NativeModules;
+
+const VocalizationSuggestionsModule = {
+  isAvailable() {
+    return Platform.OS === 'android' && !!VocalizationSuggestions;
+  },
+
+  async getModelInfo() {
+    if (!this.isAvailable()) {
+      return { available: false };
+    }
+
+    try {
+      return await VocalizationSuggestions.getModelInfo();
+    } catch (error) {
+      console.error('Erro ao obter informações do modelo:', error);
+      return { available: false };
+    }
+  },
+
+  async suggest(filePath, vocalizations = [], topK = 3) {
+    if (!this.isAvailable()) {
+      return [];
+    }
+
+    try {
+      const result = await VocalizationSuggestions.suggestLabels(filePath, topK);
+
+      return result.suggestions
+        .map(suggestion => {
+          const vocalization = vocalizations.find(voc => voc.nome === suggestion.label);
+          return vocalization ? { ...suggestion, vocalization } : null;
+        })
+        .filter(Boolean);
+    } catch (error) {
+      if (error.code !== 'MODEL_UNAVAILABLE') {
+        console.error('Erro ao sugerir vocalização:', error);
+      }
+      return [];
+    }
+  },
+
+  async learn(filePath, label) {
+    if (!this.isAvailable() || !label) {
+      return null;
+    }
+
+    try {
+      return await VocalizationSuggestions.learn(filePath, label);
+    } catch (error) {
+      console.error('Erro ao aprender vocalização:', error);
+      return null;
+    }
+  },
+
+  // Clips already learned under the same label are skipped natively, so this
+  // is cheap to repeat; a clip relabelled since is moved to its new label
+  async learnFromLibrary() {
+    if (!this.isAvailable()) {
+      return;
+    }
+
+    const stored = await AsyncStorage.getItem('recordings');
+    const recordings = stored ? JSON.parse(stored) : [];
+    for (const recording of recordings) {
+      if (recording.uri && recording.vocalizationName) {
+        await this.learn(recording.uri, recording.vocalizationName);
+      }
+    }
+  },
+
+  async installModel(modelPath) {
+    if (!this.isAvailable()) {
+      throw new Error('Sugestão de vocalizações disponível apenas para Android');
+    }
+
+    return await VocalizationSuggestions.installModel(modelPath);
+  }
+};
+
+export default VocalizationSuggestionsModule;